@@ -0,0 +1,84 @@
+package com.Benchmarks;
+
+import com.data_management.Aggregate;
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.Resolution;
+
+import java.util.List;
+
+/**
+ * Compares per-minute min/max/average over the last 24 hours answered from the
+ * minute rollups against computing them from the raw records, for a 1 Hz
+ * signal and a 25 Hz signal. The rollup query should cost the same for both.
+ */
+public class AggregateQueryBenchmark {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final int QUERIES = 20;
+
+    private static volatile double sink;
+
+    public static void main(String[] args) {
+        long now = 1_700_000_000_000L;
+        DataStorage storage = new DataStorage();
+        for (long t = now - DAY; t < now; t += 40) {
+            if (t % 1000 == 0) {
+                storage.addPatientData(1, 100 + t / 1000 % 40, "SystolicPressure", t);
+            }
+            storage.addPatientData(1, Math.sin(t / 100.0), "ECG", t);
+        }
+
+        for (int round = 0; round < 3; round++) {
+            for (String signal : new String[]{"SystolicPressure", "ECG"}) {
+                System.out.printf("round %d, %-16s rollups %8.3f ms/query, raw scan %8.3f ms/query%n", round, signal,
+                        rollupMillis(storage, signal, now), rawMillis(storage, signal, now));
+            }
+        }
+    }
+
+    private static double rollupMillis(DataStorage storage, String signal, long now) {
+        long start = System.nanoTime();
+        double checksum = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            for (Aggregate minute : storage.getAggregates(1, signal, now - DAY, now, Resolution.MINUTE)) {
+                checksum += minute.getMin() + minute.getMax() + minute.getAverage();
+            }
+        }
+        sink = checksum;
+        return (System.nanoTime() - start) / 1e6 / QUERIES;
+    }
+
+    private static double rawMillis(DataStorage storage, String signal, long now) {
+        long start = System.nanoTime();
+        double checksum = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            List<PatientRecord> records = storage.getRecords(1, signal, now - DAY, now);
+            long bucket = Long.MIN_VALUE;
+            double min = 0;
+            double max = 0;
+            double sum = 0;
+            int count = 0;
+            for (PatientRecord record : records) {
+                long minute = Resolution.MINUTE.bucketStart(record.getTimestamp());
+                if (minute != bucket) {
+                    if (count > 0) {
+                        checksum += min + max + sum / count;
+                    }
+                    bucket = minute;
+                    min = Double.POSITIVE_INFINITY;
+                    max = Double.NEGATIVE_INFINITY;
+                    sum = 0;
+                    count = 0;
+                }
+                min = Math.min(min, record.getMeasurementValue());
+                max = Math.max(max, record.getMeasurementValue());
+                sum += record.getMeasurementValue();
+                count++;
+            }
+            checksum += min + max + sum / count;
+        }
+        sink = checksum;
+        return (System.nanoTime() - start) / 1e6 / QUERIES;
+    }
+}
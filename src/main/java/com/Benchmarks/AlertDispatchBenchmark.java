@@ -0,0 +1,54 @@
+package com.Benchmarks;
+
+import com.alerts.Alert;
+import com.alerts.AlertChannel;
+import com.alerts.AlertGateway;
+import com.alerts.DispatchPolicy;
+
+import java.util.Collections;
+
+/**
+ * Compares sending alerts to a gateway that takes 20 milliseconds per call
+ * on the raising thread, one call per alert, with offering them to an
+ * {@link AlertChannel} that batches them. Reports how long the raising thread
+ * is held up per alert, and the channel's batches and latency.
+ */
+public class AlertDispatchBenchmark {
+
+    private static final int ALERTS = 2000;
+    private static final long GATEWAY_MILLIS = 20;
+
+    public static void main(String[] args) throws Exception {
+        AlertGateway gateway = alerts -> {
+            try {
+                Thread.sleep(GATEWAY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        int synchronous = ALERTS / 20; // Enough to see the cost without waiting a minute
+        long start = System.nanoTime();
+        for (int i = 0; i < synchronous; i++) {
+            gateway.send(Collections.singletonList(new Alert("1", "SystolicPressure", i)));
+        }
+        double syncMicros = (System.nanoTime() - start) / 1e3 / synchronous;
+
+        AlertChannel channel = new AlertChannel("bench", gateway, new DispatchPolicy().capacity(ALERTS)
+                .batching(100, 50).overflow(DispatchPolicy.Overflow.BLOCK));
+        start = System.nanoTime();
+        for (int i = 0; i < ALERTS; i++) {
+            channel.offer(new Alert("1", "SystolicPressure", i));
+        }
+        double asyncMicros = (System.nanoTime() - start) / 1e3 / ALERTS;
+        channel.close();
+        double drainMillis = (System.nanoTime() - start) / 1e6;
+
+        System.out.printf("synchronous: %,10.1f us/alert on the raising thread, %,d gateway calls%n",
+                syncMicros, synchronous);
+        System.out.printf("channel:     %,10.1f us/alert on the raising thread, %,d gateway calls for %,d alerts%n",
+                asyncMicros, channel.getBatchCount(), channel.getSentCount());
+        System.out.printf("channel:     drained in %,.0f ms, latency mean %,.1f ms, max %,.1f ms%n",
+                drainMillis, channel.getAverageLatencyMillis(), channel.getMaxLatencyMillis());
+    }
+}
@@ -0,0 +1,109 @@
+package com.Benchmarks;
+
+import com.alerts.AlertProcessor;
+import com.data_management.ActiveAlerts;
+import com.data_management.DataStorage;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/**
+ * Measures the alerts printed for patients whose systolic pressure stays
+ * abnormal, with every alert reported and with only the transitions of each
+ * condition reported. Every patient receives one reading of each record type
+ * per second and alerts are evaluated every second, as the simulator does:
+ * incrementally over 10 minutes, and by full scans of the last minute over
+ * 50 seconds.
+ *
+ * Usage: {@code AlertVolumeBenchmark [patients]}, default 1000.
+ */
+public class AlertVolumeBenchmark {
+
+    private static final String[] SIGNALS = {"SystolicPressure", "DiastolicPressure", "Saturation", "ECG"};
+    private static final double[] VALUES = {200, 80, 97, 70};
+    private static final int INCREMENTAL_SECONDS = 10 * 60;
+    private static final int SCAN_SECONDS = 50;
+
+    public static void main(String[] args) {
+        int patients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        PrintStream out = System.out;
+        out.printf("%,d patients with sustained abnormal systolic pressure%n", patients);
+        out.printf("%-12s %-12s %12s %14s %10s%n", "evaluation", "reporting", "alerts", "bytes", "ms");
+        for (boolean incremental : new boolean[]{true, false}) {
+            long[] every = run(patients, incremental, false);
+            long[] transitions = run(patients, incremental, true);
+            String evaluation = incremental ? "incremental" : "full scan";
+            print(out, evaluation, "every alert", every);
+            print(out, evaluation, "transitions", transitions);
+            out.printf("%-12s %-12s %11.0fx %13.0fx%n", evaluation, "reduction",
+                    (double) every[0] / Math.max(1, transitions[0]), (double) every[1] / Math.max(1, transitions[1]));
+        }
+    }
+
+    private static void print(PrintStream out, String evaluation, String reporting, long[] result) {
+        out.printf("%-12s %-12s %,12d %,14d %,10d%n", evaluation, reporting, result[0], result[1], result[2]);
+    }
+
+    /**
+     * @return alerts printed, bytes printed and milliseconds taken
+     */
+    private static long[] run(int patients, boolean incremental, boolean transitionsOnly) {
+        DataStorage storage = new DataStorage();
+        ArrayList<Integer> ids = new ArrayList<>();
+        for (int patient = 1; patient <= patients; patient++) {
+            ids.add(patient);
+        }
+        AlertProcessor processor = new AlertProcessor(storage, new ActiveAlerts(ids));
+        processor.setTransitionsOnly(transitionsOnly);
+        if (incremental) {
+            processor.attach();
+        }
+        int seconds = incremental ? INCREMENTAL_SECONDS : SCAN_SECONDS;
+        // Full scans read the last minute of wall-clock time, so the readings end now
+        long start = System.currentTimeMillis() - seconds * 1000L;
+
+        PrintStream out = System.out;
+        CountingStream counter = new CountingStream();
+        System.setOut(new PrintStream(counter));
+        long begin = System.nanoTime();
+        try {
+            for (int second = 0; second < seconds; second++) {
+                long timestamp = start + second * 1000L;
+                for (int patient = 1; patient <= patients; patient++) {
+                    for (int s = 0; s < SIGNALS.length; s++) {
+                        storage.addPatientData(patient, VALUES[s], SIGNALS[s], timestamp);
+                    }
+                }
+                if (incremental) {
+                    processor.evaluatePending();
+                } else {
+                    processor.evaluateData();
+                }
+            }
+        } finally {
+            System.out.flush();
+            System.setOut(out);
+        }
+        return new long[]{counter.alerts, counter.bytes, (System.nanoTime() - begin) / 1_000_000};
+    }
+
+    /** Counts the bytes printed, and the alerts by their "Patient ID" lines. */
+    private static final class CountingStream extends OutputStream {
+        private static final byte[] MARK = "Patient ID:".getBytes();
+
+        long bytes;
+        long alerts;
+        private int matched;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+            matched = b == MARK[matched] ? matched + 1 : (b == MARK[0] ? 1 : 0);
+            if (matched == MARK.length) {
+                alerts++;
+                matched = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.Benchmarks;
+
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.SampleCursor;
+import com.data_management.SampleVisitor;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Measures the bytes allocated and the time per query for the last 10 minutes
+ * of a 1 Hz signal, read through {@link DataStorage#getRecords}, through
+ * {@link DataStorage#forEach} with a reused visitor and through a reused
+ * {@link SampleCursor}. Allocation is read from the JVM's per-thread counter,
+ * so the streaming queries should report close to 0 bytes.
+ */
+public class AllocationBenchmark {
+
+    private static final long WINDOW = 10 * 60 * 1000L;
+    private static final int QUERIES = 200_000;
+
+    private static double sum;
+    private static volatile double sink;
+
+    private static final SampleVisitor SUM = (timestamp, value) -> sum += value;
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long now = 1_700_000_000_000L;
+        DataStorage storage = new DataStorage();
+        for (long t = now - 60 * 60 * 1000L; t < now; t += 1000) {
+            storage.addPatientData(1, 90 + t / 1000 % 10, "Saturation", t);
+        }
+        SampleCursor cursor = new SampleCursor();
+
+        for (int round = 0; round < 3; round++) {
+            for (String mode : new String[]{"getRecords", "forEach", "cursor"}) {
+                long thread = Thread.currentThread().getId();
+                long bytes = threads.getThreadAllocatedBytes(thread);
+                long start = System.nanoTime();
+                for (int q = 0; q < QUERIES; q++) {
+                    run(mode, storage, cursor, now - q % 1000);
+                }
+                long nanos = System.nanoTime() - start;
+                bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+                System.out.printf("round %d, %-10s %10.1f B/query %8.2f us/query%n", round, mode,
+                        (double) bytes / QUERIES, nanos / 1e3 / QUERIES);
+            }
+        }
+        sink = sum;
+    }
+
+    private static void run(String mode, DataStorage storage, SampleCursor cursor, long now) {
+        switch (mode) {
+            case "getRecords":
+                List<PatientRecord> records = storage.getRecords(1, "Saturation", now - WINDOW, now);
+                for (PatientRecord record : records) {
+                    sum += record.getMeasurementValue();
+                }
+                break;
+            case "forEach":
+                storage.forEach(1, "Saturation", now - WINDOW, now, SUM);
+                break;
+            default:
+                storage.query(1, "Saturation", now - WINDOW, now, cursor);
+                while (cursor.next()) {
+                    sum += cursor.getValue();
+                }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.Benchmarks;
+
+import com.data_management.BulkLoader;
+import com.data_management.DataStorage;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares loading recorded output files with a {@link BulkLoader}, on one
+ * and on all processors, against the Scanner and regex loop DataParser used
+ * before. The files are written like the simulator's file output: one per
+ * label, lines of many patients interleaved.
+ *
+ * Usage: {@code BulkLoadBenchmark [linesPerFile] [directory]}, defaulting to
+ * 1000000 lines per file, four files, in a temporary directory.
+ */
+public class BulkLoadBenchmark {
+
+    private static final String[] SIGNALS = {"ECG", "Saturation", "SystolicPressure", "Cholesterol"};
+    private static final int PATIENTS = 100;
+    private static final int ROUNDS = 3;
+    // The pattern of the former DataParser
+    private static final Pattern DATA_PATTERN = Pattern.compile(
+            "Patient ID: (\\d*), Timestamp: (\\d*), Label: (\\w*), Data: (\\d*\\.\\d*)");
+
+    private static volatile long sink;
+
+    public static void main(String[] args) throws IOException {
+        int linesPerFile = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path directory = args.length > 1 ? Path.of(args[1]) : Files.createTempDirectory("bulk-load");
+        List<Path> files = write(directory, linesPerFile);
+        long bytes = 0;
+        for (Path file : files) {
+            bytes += Files.size(file);
+        }
+        System.out.printf("%,d files, %,d lines, %,.1f MB%n%n", files.size(), (long) files.size() * linesPerFile,
+                bytes / 1e6);
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%-26s %12s %14s%n", "Loader", "MB/s", "lines/s");
+        for (int round = 0; round < ROUNDS; round++) {
+            // The first round warms up; the others are reported
+            boolean report = round > 0;
+            long start = System.nanoTime();
+            sink = scannerRegex(new DataStorage(), files);
+            print(report, "Scanner + regex", bytes, (long) files.size() * linesPerFile, System.nanoTime() - start);
+            print(report, "BulkLoader, 1 worker", bytes, (long) files.size() * linesPerFile,
+                    bulk(files, 1));
+            if (processors > 1) {
+                print(report, "BulkLoader, " + processors + " workers", bytes,
+                        (long) files.size() * linesPerFile, bulk(files, processors));
+            }
+        }
+    }
+
+    private static long bulk(List<Path> files, int workers) throws IOException {
+        BulkLoader.Report report = new BulkLoader(new DataStorage(), workers, BulkLoader.DEFAULT_CHUNK_BYTES)
+                .load(files);
+        sink = report.getRecords();
+        return report.getNanos();
+    }
+
+    private static long scannerRegex(DataStorage storage, List<Path> files) throws IOException {
+        long records = 0;
+        for (Path path : files) {
+            try (Scanner scanner = new Scanner(new File(path.toString()))) {
+                while (scanner.hasNextLine()) {
+                    Matcher matcher = DATA_PATTERN.matcher(scanner.nextLine());
+                    if (matcher.find()) {
+                        storage.addPatientData(Integer.parseInt(matcher.group(1)),
+                                Double.parseDouble(matcher.group(4)), matcher.group(3),
+                                Long.parseLong(matcher.group(2)));
+                        records++;
+                    }
+                }
+            }
+        }
+        return records;
+    }
+
+    private static void print(boolean report, String loader, long bytes, long lines, long nanos) {
+        if (report) {
+            System.out.printf("%-26s %,12.1f %,14.0f%n", loader, bytes / 1e6 / (nanos / 1e9), lines / (nanos / 1e9));
+        }
+    }
+
+    private static List<Path> write(Path directory, int linesPerFile) throws IOException {
+        Random random = new Random(42);
+        List<Path> files = new ArrayList<>();
+        long start = 1_713_432_063_000L;
+        for (String signal : SIGNALS) {
+            Path file = directory.resolve(signal + ".txt");
+            files.add(file);
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                for (int i = 0; i < linesPerFile; i++) {
+                    double value;
+                    String suffix = "";
+                    switch (signal) {
+                        case "ECG":
+                            value = random.nextGaussian();
+                            break;
+                        case "Saturation":
+                            value = 90 + random.nextInt(11);
+                            suffix = "%";
+                            break;
+                        case "SystolicPressure":
+                            value = 100 + random.nextInt(40);
+                            break;
+                        default:
+                            value = 150 + random.nextDouble() * 50;
+                    }
+                    writer.write("Patient ID: " + (i % PATIENTS + 1) + ", Timestamp: " + (start + i / PATIENTS)
+                            + ", Label: " + signal + ", Data: " + value + suffix + "\n");
+                }
+            }
+        }
+        return files;
+    }
+}
@@ -0,0 +1,116 @@
+package com.Benchmarks;
+
+import com.data_management.SignalRegistry;
+import com.data_management.SignalSeries;
+
+import java.util.Random;
+
+/**
+ * Compares the memory of uncompressed series against series whose history
+ * outside a 10 minute hot window is compressed, for signals shaped like the
+ * simulator's generators: 1 Hz sampling with a few milliseconds of scheduling
+ * jitter, blood pressure and saturation random walks of whole numbers, and a
+ * noisy ECG waveform. Also measures how fast a query over the whole compressed
+ * history decodes.
+ *
+ * Usage: {@code CompressionBenchmark [hours]}, default 24.
+ */
+public class CompressionBenchmark {
+
+    private static final long HOT_WINDOW_MILLIS = 10 * 60 * 1000L;
+
+    private static volatile double sink;
+
+    public static void main(String[] args) {
+        int hours = args.length > 0 ? Integer.parseInt(args[0]) : 24;
+        int samples = hours * 3600;
+        System.out.printf("%-18s %12s %12s %8s %10s %14s%n",
+                "signal", "raw", "compressed", "ratio", "bits/smpl", "scan samples/s");
+        run("SystolicPressure", samples, new Walk(120, 2, 90, 180));
+        run("DiastolicPressure", samples, new Walk(80, 2, 60, 120));
+        run("Saturation", samples, new Walk(98, 1, 90, 100));
+        run("ECG", samples, new Ecg());
+    }
+
+    private static void run(String signal, int samples, ValueModel model) {
+        int signalId = SignalRegistry.idOf(signal);
+        SignalSeries raw = new SignalSeries(signalId);
+        SignalSeries compressed = new SignalSeries(signalId, Long.MAX_VALUE, Integer.MAX_VALUE, HOT_WINDOW_MILLIS);
+        Random jitter = new Random(1);
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < samples; i++) {
+            timestamp += 1000 + jitter.nextInt(5) - 2;
+            double value = model.next(timestamp);
+            raw.append(timestamp, value);
+            compressed.append(timestamp, value);
+        }
+
+        // Only the history outside the hot window is compressed, so compare that part
+        long hotBytes = hotBytes(signalId, timestamp, model);
+        long rawCold = raw.bytesUsed() - hotBytes;
+        long compressedCold = compressed.bytesUsed() - hotBytes;
+
+        double sum = 0;
+        long begin = System.nanoTime();
+        for (int round = 0; round < 3; round++) {
+            SignalSeries.Snapshot snapshot = compressed.snapshot();
+            for (int i = 0; i < snapshot.size(); i++) {
+                sum += snapshot.valueAt(i) + snapshot.timestampAt(i);
+            }
+        }
+        double scanRate = 3.0 * samples / (System.nanoTime() - begin) * 1e9;
+        sink = sum;
+        System.out.printf("%-18s %,12d %,12d %7.1fx %10.1f %,14.0f%n", signal, rawCold, compressedCold,
+                (double) rawCold / compressedCold, compressedCold * 8.0 / samples, scanRate);
+    }
+
+    /** Bytes of a series holding only the hot window, i.e. what is never compressed. */
+    private static long hotBytes(int signalId, long newest, ValueModel model) {
+        SignalSeries hot = new SignalSeries(signalId);
+        for (long timestamp = newest - HOT_WINDOW_MILLIS; timestamp <= newest; timestamp += 1000) {
+            hot.append(timestamp, model.next(timestamp));
+        }
+        return hot.bytesUsed();
+    }
+
+    private interface ValueModel {
+        double next(long timestamp);
+    }
+
+    /** Bounded random walk of whole numbers, as in the pressure and saturation generators. */
+    private static final class Walk implements ValueModel {
+        private final Random random = new Random(2);
+        private final int step;
+        private final int min;
+        private final int max;
+        private int value;
+
+        Walk(int start, int step, int min, int max) {
+            this.value = start;
+            this.step = step;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public double next(long timestamp) {
+            value = Math.min(Math.max(value + random.nextInt(2 * step + 1) - step, min), max);
+            return value;
+        }
+    }
+
+    /** Sum of sinusoids plus noise, as in the ECG generator. */
+    private static final class Ecg implements ValueModel {
+        private final Random random = new Random(3);
+
+        @Override
+        public double next(long timestamp) {
+            double frequency = (60.0 + random.nextDouble() * 20.0) / 60.0;
+            double t = timestamp / 1000.0;
+            return 0.1 * Math.sin(2 * Math.PI * frequency * t)
+                    + 0.5 * Math.sin(2 * Math.PI * 3 * frequency * t)
+                    + 0.2 * Math.sin(2 * Math.PI * 2 * frequency * t + Math.PI / 4)
+                    + random.nextDouble() * 0.05;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.Benchmarks;
+
+import com.alerts.AlertProcessor;
+import com.data_management.ActiveAlerts;
+import com.data_management.DataStorage;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/**
+ * Compares the alert evaluation cost of one simulated second, in which every
+ * patient receives one reading of each vital sign, for a growing number of
+ * patients. The full scan is {@link AlertProcessor#evaluateData()} called once
+ * per patient task, as the simulator did; it is timed once and multiplied by
+ * the number of patients. Incremental evaluation pushes each reading to the
+ * processor and evaluates it once with {@link AlertProcessor#evaluatePending()}.
+ *
+ * Usage: {@code IncrementalAlertBenchmark [maxPatients]}, default 10000.
+ */
+public class IncrementalAlertBenchmark {
+
+    private static final String[] SIGNALS = {"SystolicPressure", "DiastolicPressure", "Saturation", "ECG"};
+    private static final double[] VALUES = {120, 80, 97, 70};
+    private static final int HISTORY_SECONDS = 60;
+    private static final int TICKS = 5;
+
+    public static void main(String[] args) {
+        int maxPatients = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        PrintStream out = System.out;
+        System.out.printf("%10s %18s %18s %16s%n", "patients", "full scan ms/s", "incremental ms/s", "incr. ns/record");
+        for (int patients = 1000; patients <= maxPatients; patients *= 2) {
+            run(Math.min(patients, maxPatients), out);
+        }
+        if (Integer.bitCount(maxPatients / 1000) != 1) {
+            run(maxPatients, out);
+        }
+    }
+
+    private static void run(int patients, PrintStream out) {
+        DataStorage storage = new DataStorage();
+        ArrayList<Integer> ids = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int patient = 1; patient <= patients; patient++) {
+            ids.add(patient);
+            for (int second = HISTORY_SECONDS; second > 0; second--) {
+                tick(storage, patient, now - second * 1000L);
+            }
+        }
+        AlertProcessor processor = new AlertProcessor(storage, new ActiveAlerts(ids));
+
+        // Alerts are printed; discard them while measuring
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            processor.evaluateData(); // Warm up
+            long start = System.nanoTime();
+            processor.evaluateData();
+            double fullScanMillis = (System.nanoTime() - start) / 1e6 * patients;
+
+            processor.attach();
+            long incrementalNanos = 0;
+            for (int t = 0; t < TICKS; t++) {
+                now += 1000;
+                start = System.nanoTime();
+                for (int patient = 1; patient <= patients; patient++) {
+                    tick(storage, patient, now);
+                }
+                processor.evaluatePending();
+                incrementalNanos += System.nanoTime() - start;
+            }
+            processor.detach();
+
+            // Ingest alone, to subtract from the incremental figure
+            long ingestNanos = 0;
+            for (int t = 0; t < TICKS; t++) {
+                now += 1000;
+                start = System.nanoTime();
+                for (int patient = 1; patient <= patients; patient++) {
+                    tick(storage, patient, now);
+                }
+                ingestNanos += System.nanoTime() - start;
+            }
+            double alertNanos = Math.max(0, incrementalNanos - ingestNanos) / (double) TICKS;
+            out.printf("%,10d %,18.1f %,18.2f %,16.0f%n", patients, fullScanMillis, alertNanos / 1e6,
+                    alertNanos / (patients * SIGNALS.length));
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static void tick(DataStorage storage, int patient, long timestamp) {
+        for (int s = 0; s < SIGNALS.length; s++) {
+            storage.addPatientData(patient, VALUES[s] + (timestamp / 1000 + patient) % 3, SIGNALS[s], timestamp);
+        }
+    }
+}
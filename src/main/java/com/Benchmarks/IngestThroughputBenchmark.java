@@ -0,0 +1,85 @@
+package com.Benchmarks;
+
+import com.data_management.DataStorage;
+import com.data_management.SampleBatch;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures {@link DataStorage#addPatientData} throughput with 1 to N writer
+ * threads. Each thread streams samples for its own set of patients, the way
+ * the simulator schedules one task per patient. With a batch size, samples
+ * are also added through {@link DataStorage#addPatientDataBatch}, that many
+ * consecutive samples of a patient at a time, as the generators do.
+ *
+ * Usage: {@code IngestThroughputBenchmark [maxThreads] [samplesPerThread] [batchSize]},
+ * defaulting to the number of available processors, 2000000 and no batches.
+ */
+public class IngestThroughputBenchmark {
+
+    private static final String[] SIGNALS = {"ECG", "Saturation", "SystolicPressure", "DiastolicPressure"};
+    private static final int PATIENTS_PER_THREAD = 64;
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int samplesPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+
+        run(1, samplesPerThread, 0); // Warm-up
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double rate = run(threads, samplesPerThread, 0);
+            if (threads == 1) {
+                baseline = rate;
+            }
+            System.out.printf("%2d threads: %,12.0f samples/s  (%.2fx)%n", threads, rate, rate / baseline);
+        }
+        if (batchSize > 0) {
+            run(1, samplesPerThread, batchSize); // Warm-up
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                double rate = run(threads, samplesPerThread, batchSize);
+                System.out.printf("%2d threads, batches of %d: %,12.0f samples/s  (%.2fx)%n", threads, batchSize,
+                        rate, rate / baseline);
+            }
+        }
+    }
+
+    private static double run(int threads, int samplesPerThread, int batchSize) throws InterruptedException {
+        DataStorage storage = new DataStorage();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int firstPatient = t * PATIENTS_PER_THREAD;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (batchSize == 0) {
+                    for (int i = 0; i < samplesPerThread; i++) {
+                        storage.addPatientData(firstPatient + i % PATIENTS_PER_THREAD, i, SIGNALS[i & 3], i);
+                    }
+                    return;
+                }
+                SampleBatch batch = new SampleBatch(batchSize);
+                for (int i = 0; i < samplesPerThread; i++) {
+                    batch.add(firstPatient + i / batchSize % PATIENTS_PER_THREAD, i, SIGNALS[i & 3], i);
+                    if (batch.size() == batchSize) {
+                        storage.addPatientDataBatch(batch);
+                        batch.clear();
+                    }
+                }
+                storage.addPatientDataBatch(batch);
+            });
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        return (double) threads * samplesPerThread / elapsed * 1e9;
+    }
+}
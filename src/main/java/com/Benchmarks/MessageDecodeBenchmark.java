@@ -0,0 +1,79 @@
+package com.Benchmarks;
+
+import com.data_management.RecordDecoder;
+import com.data_management.SignalRegistry;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Measures decoding WebSocket reading messages on one thread: messages per
+ * second and bytes allocated per message, for the split-based parsing the
+ * endpoints used before and for a reused {@link RecordDecoder}. Only the
+ * decoding is timed, not storing the readings. Allocation is read from the
+ * JVM's per-thread counter, so the decoder should report close to 0 bytes.
+ *
+ * Usage: {@code MessageDecodeBenchmark [messages]}, defaulting to 5000000.
+ */
+public class MessageDecodeBenchmark {
+
+    private static final String[] SIGNALS = {"ECG", "Saturation", "SystolicPressure", "DiastolicPressure"};
+    private static final int DISTINCT_MESSAGES = 4096;
+    private static final int ROUNDS = 3;
+
+    private static volatile double sink;
+
+    public static void main(String[] args) {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        String[] inputs = messages();
+        RecordDecoder decoder = new RecordDecoder();
+
+        System.out.printf("%-8s %-16s %14s %12s%n", "Round", "Parser", "messages/s", "B/message");
+        for (int round = 0; round < ROUNDS; round++) {
+            for (String parser : new String[]{"split", "RecordDecoder"}) {
+                long thread = Thread.currentThread().getId();
+                long bytes = threads.getThreadAllocatedBytes(thread);
+                long start = System.nanoTime();
+                double checksum = 0;
+                for (int i = 0; i < messages; i++) {
+                    String message = inputs[i & (DISTINCT_MESSAGES - 1)];
+                    if (parser.equals("split")) {
+                        checksum += split(message);
+                    } else if (decoder.decode(message)) {
+                        checksum += decoder.getPatientId() + decoder.getTimestamp() + decoder.getSignalId()
+                                + decoder.getValue();
+                    }
+                }
+                long nanos = System.nanoTime() - start;
+                bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+                sink = checksum;
+                System.out.printf("%-8d %-16s %,14.0f %12.1f%n", round, parser, messages / (nanos / 1e9),
+                        (double) bytes / messages);
+            }
+        }
+    }
+
+    /** The parsing SimpleWebSocketServer and CustomWebSocketClient did, label lookup included. */
+    private static double split(String message) {
+        String[] parts = message.split(", ");
+        int patientId = Integer.parseInt(parts[0].split(": ")[1].trim());
+        long timestamp = Long.parseLong(parts[1].split(": ")[1].trim());
+        String label = parts[2].split(": ")[1].trim();
+        double data = Double.parseDouble(parts[3].split(": ")[1].trim());
+        return patientId + timestamp + SignalRegistry.idOf(label) + data;
+    }
+
+    private static String[] messages() {
+        Random random = new Random(42);
+        String[] messages = new String[DISTINCT_MESSAGES];
+        for (int i = 0; i < messages.length; i++) {
+            String signal = SIGNALS[i & 3];
+            double value = signal.equals("ECG") ? random.nextGaussian() : 60 + random.nextInt(80);
+            messages[i] = "Patient ID: " + (i % 100 + 1) + ", Timestamp: " + (1_700_000_000_000L + i)
+                    + ", Label: " + signal + ", Data: " + value;
+        }
+        return messages;
+    }
+}
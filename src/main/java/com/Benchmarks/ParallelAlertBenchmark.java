@@ -0,0 +1,82 @@
+package com.Benchmarks;
+
+import com.alerts.AlertProcessor;
+import com.data_management.ActiveAlerts;
+import com.data_management.DataStorage;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/**
+ * Measures one full {@link AlertProcessor#evaluateData()} pass over many
+ * simulated patients at parallelism 1, 2, 4 and so on up to a maximum, to
+ * size the cores needed for a patient count. Each patient has the last 30
+ * seconds of blood pressure, saturation and ECG at 1 Hz. The rules read the
+ * last minute of wall-clock time, so the data is regenerated for every level
+ * to keep the amount of work the same.
+ *
+ * Usage: {@code ParallelAlertBenchmark [patients] [maxParallelism]}, default
+ * 50000 and 32.
+ */
+public class ParallelAlertBenchmark {
+
+    private static final String[] SIGNALS = {"SystolicPressure", "DiastolicPressure", "Saturation", "ECG"};
+    private static final double[] VALUES = {120, 80, 97, 70};
+    private static final int HISTORY_SECONDS = 30;
+    private static final int PASSES = 3;
+
+    public static void main(String[] args) {
+        int patients = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int maxParallelism = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+
+        PrintStream out = System.out;
+        out.printf("%,d patients, %d available processors%n", patients, Runtime.getRuntime().availableProcessors());
+        out.printf("%12s %12s %16s %10s%n", "parallelism", "ms/pass", "patients/s", "speedup");
+        double baseline = 0;
+        // Level 0 only warms up
+        for (int parallelism = 1, level = 0; parallelism <= maxParallelism; level++) {
+            AlertProcessor processor = processor(patients);
+            processor.setParallelism(parallelism);
+            // Alerts are printed; discard them while measuring
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            long start;
+            try {
+                processor.evaluateData();
+                start = System.nanoTime();
+                for (int pass = 0; pass < PASSES; pass++) {
+                    processor.evaluateData();
+                }
+            } finally {
+                processor.setParallelism(1);
+                System.setOut(out);
+            }
+            double millis = (System.nanoTime() - start) / 1e6 / PASSES;
+            if (level == 0) {
+                continue;
+            }
+            if (parallelism == 1) {
+                baseline = millis;
+            }
+            out.printf("%12d %,12.0f %,16.0f %9.2fx%n", parallelism, millis, patients / millis * 1000,
+                    baseline / millis);
+            parallelism *= 2;
+        }
+    }
+
+    private static AlertProcessor processor(int patients) {
+        DataStorage storage = new DataStorage();
+        ArrayList<Integer> ids = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int patient = 1; patient <= patients; patient++) {
+            ids.add(patient);
+            for (int second = HISTORY_SECONDS; second > 0; second--) {
+                long timestamp = now - second * 1000L;
+                for (int s = 0; s < SIGNALS.length; s++) {
+                    storage.addPatientData(patient, VALUES[s] + (second + patient) % 3, SIGNALS[s], timestamp);
+                }
+            }
+        }
+        return new AlertProcessor(storage, new ActiveAlerts(ids));
+    }
+}
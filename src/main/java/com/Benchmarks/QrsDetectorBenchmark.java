@@ -0,0 +1,92 @@
+package com.Benchmarks;
+
+import com.data_management.DataStorage;
+import com.data_management.HeartRateDeriver;
+import com.data_management.QrsDetector;
+
+/**
+ * Measures whether R-peak detection keeps up with 10,000 patients whose ECG
+ * is sampled at 250 Hz, 2.5 million samples per second of data. First the
+ * detectors alone, one per patient, then the whole path: every sample added
+ * to a {@link DataStorage} with a {@link HeartRateDeriver} attached, which
+ * adds an RR interval and a heart rate per beat. Reports how many seconds of
+ * data one second of processing covers; above 1 keeps up.
+ *
+ * Usage: {@code QrsDetectorBenchmark [patients] [seconds]}, defaulting to
+ * 10000 and 20.
+ */
+public class QrsDetectorBenchmark {
+
+    private static final int RATE = 250;
+
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        int patients = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        double[] beat = beat(RATE * 60 / 72);
+        double required = (double) patients * RATE;
+
+        for (int round = 0; round < 3; round++) {
+            QrsDetector[] detectors = new QrsDetector[patients];
+            for (int p = 0; p < patients; p++) {
+                detectors[p] = new QrsDetector(RATE);
+            }
+            long beats = 0;
+            long start = System.nanoTime();
+            // Second by second, as the simulator delivers them
+            for (int second = 0; second < seconds; second++) {
+                for (int p = 0; p < patients; p++) {
+                    QrsDetector detector = detectors[p];
+                    for (int i = 0; i < RATE; i++) {
+                        int n = second * RATE + i;
+                        if (detector.add(n * 4L, beat[(n + p) % beat.length]) != Long.MIN_VALUE) {
+                            beats++;
+                        }
+                    }
+                }
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            sink = beats;
+            double rate = (double) patients * RATE * seconds / elapsed;
+            System.out.printf("round %d, detectors: %,6.1f ns/sample, %,12.0f samples/s, %5.1fx real time, %,d beats%n",
+                    round, 1e9 / rate, rate, rate / required, beats);
+        }
+
+        // Fewer seconds: the storage keeps every sample
+        int stored = Math.min(seconds, 5);
+        for (int round = 0; round < 2; round++) {
+            DataStorage storage = new DataStorage();
+            HeartRateDeriver deriver = new HeartRateDeriver(storage, RATE);
+            deriver.attach();
+            long start = System.nanoTime();
+            for (int second = 0; second < stored; second++) {
+                for (int p = 0; p < patients; p++) {
+                    for (int i = 0; i < RATE; i++) {
+                        int n = second * RATE + i;
+                        storage.addPatientData(p, beat[(n + p) % beat.length], "ECG", n * 4L);
+                    }
+                }
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            double rate = (double) patients * RATE * stored / elapsed;
+            System.out.printf("round %d, storage and deriver: %,6.1f ns/sample, %,12.0f samples/s, %5.1fx real time, %,d beats%n",
+                    round, 1e9 / rate, rate, rate / required, deriver.getBeatCount());
+        }
+    }
+
+    /** One cardiac cycle of a noiseless P-QRS-T waveform, sampled at {@code RATE}. */
+    private static double[] beat(int samples) {
+        double[][] waves = {{0.15, 0.20, 0.025}, {-0.10, 0.37, 0.008}, {1.20, 0.40, 0.010}, {-0.25, 0.43, 0.008},
+                {0.30, 0.70, 0.040}};
+        double[] cycle = new double[samples];
+        for (int i = 0; i < samples; i++) {
+            double phase = (double) i / samples;
+            for (double[] wave : waves) {
+                double distance = (phase - wave[1]) / wave[2];
+                cycle[i] += wave[0] * Math.exp(-0.5 * distance * distance);
+            }
+        }
+        return cycle;
+    }
+}
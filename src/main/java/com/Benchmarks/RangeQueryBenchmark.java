@@ -0,0 +1,53 @@
+package com.Benchmarks;
+
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+
+import java.util.List;
+
+/**
+ * Measures the cost of a "last 60 seconds" query against patients with a
+ * five-minute and a day-long history of one-second samples on four signals.
+ * With binary-searched ranges both queries should cost about the same.
+ */
+public class RangeQueryBenchmark {
+
+    private static final String[] SIGNALS = {"ECG", "Saturation", "SystolicPressure", "DiastolicPressure"};
+    private static final int QUERIES = 200_000;
+
+    public static void main(String[] args) {
+        long now = 1_700_000_000_000L;
+        DataStorage storage = new DataStorage();
+        fill(storage, 1, now, 5 * 60);
+        fill(storage, 2, now, 24 * 60 * 60);
+
+        for (int round = 0; round < 3; round++) {
+            double shortHistory = nanosPerQuery(storage, 1, now);
+            double longHistory = nanosPerQuery(storage, 2, now);
+            System.out.printf("round %d: 5-minute history %.0f ns/query, 24-hour history %.0f ns/query%n",
+                    round, shortHistory, longHistory);
+        }
+    }
+
+    private static void fill(DataStorage storage, int patientId, long now, int seconds) {
+        for (int s = seconds; s > 0; s--) {
+            for (String signal : SIGNALS) {
+                storage.addPatientData(patientId, s % 100, signal, now - s * 1000L);
+            }
+        }
+    }
+
+    private static double nanosPerQuery(DataStorage storage, int patientId, long now) {
+        double checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            List<PatientRecord> records = storage.getRecords(patientId, now - 60_000L, now);
+            checksum += records.get(records.size() - 1).getMeasurementValue();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (checksum == 42) {
+            System.out.println();
+        }
+        return (double) elapsed / QUERIES;
+    }
+}
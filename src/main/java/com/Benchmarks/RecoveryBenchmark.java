@@ -0,0 +1,93 @@
+package com.Benchmarks;
+
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+import com.data_management.SignalSeries;
+import com.data_management.StorageJournal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Measures the cost of journaling ingest and how long a restart takes to
+ * rebuild the storage from a snapshot plus the log written after it.
+ *
+ * <p>The benchmark ingests readings through a {@link StorageJournal}, takes a
+ * checkpoint after 90% of them so the rest are only in the log, closes the
+ * journal and then recovers everything into a fresh storage.
+ *
+ * Usage: {@code RecoveryBenchmark [readings] [directory]}, defaulting to
+ * 10000000 readings in a temporary directory. 50000000 readings need about
+ * 3 GB of heap.
+ */
+public class RecoveryBenchmark {
+
+    private static final String[] SIGNALS = {"ECG", "Saturation", "SystolicPressure", "DiastolicPressure"};
+    private static final int PATIENTS = 100;
+
+    public static void main(String[] args) throws IOException {
+        long readings = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000L;
+        Path directory = args.length > 1 ? Path.of(args[1]) : Files.createTempDirectory("storage-journal");
+        clear(directory);
+
+        DataStorage storage = new DataStorage();
+        long begin = System.nanoTime();
+        StorageJournal journal = StorageJournal.open(directory, storage,
+                StorageJournal.DEFAULT_FLUSH_INTERVAL_MILLIS, Long.MAX_VALUE);
+        long checkpointAt = readings / 10 * 9;
+        long checkpointNanos = 0;
+        for (long i = 0; i < readings; i++) {
+            if (i == checkpointAt) {
+                long start = System.nanoTime();
+                journal.checkpoint();
+                checkpointNanos = System.nanoTime() - start;
+            }
+            int patient = (int) (i % PATIENTS);
+            long timestamp = 1_700_000_000_000L + i / PATIENTS;
+            storage.addPatientData(patient, 60 + (i % 40) * 0.5, SIGNALS[(int) (i / PATIENTS & 3)], timestamp);
+        }
+        journal.close();
+        double ingestSeconds = (System.nanoTime() - begin) / 1e9;
+        System.out.printf("Ingested %,d readings with journaling in %.2f s (%,.0f readings/s)%n",
+                readings, ingestSeconds, readings / ingestSeconds);
+        System.out.printf("Checkpoint of %,d readings took %.2f s%n", checkpointAt, checkpointNanos / 1e9);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.sorted().forEach(file -> System.out.printf("  %-32s %,14d bytes%n",
+                    file.getFileName(), file.toFile().length()));
+        }
+
+        storage = null;
+        System.gc();
+        DataStorage recovered = new DataStorage();
+        begin = System.nanoTime();
+        StorageJournal.open(directory, recovered).close();
+        double recoverSeconds = (System.nanoTime() - begin) / 1e9;
+        long count = 0;
+        for (Patient patient : recovered.getAllPatients()) {
+            for (String signal : SIGNALS) {
+                SignalSeries series = patient.getSeries(signal);
+                count += series == null ? 0 : series.size();
+            }
+        }
+        System.out.printf("Recovered %,d readings in %.2f s (%,.0f readings/s)%n",
+                count, recoverSeconds, count / recoverSeconds);
+        if (args.length < 2) {
+            clear(directory);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static void clear(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
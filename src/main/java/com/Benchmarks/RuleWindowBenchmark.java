@@ -0,0 +1,97 @@
+package com.Benchmarks;
+
+import com.alerts.PatientWindows;
+import com.data_management.DataStorage;
+import com.data_management.HeartRateDeriver;
+import com.data_management.SampleCursor;
+import com.data_management.SignalRegistry;
+
+/**
+ * Compares checking the rapid-drop and irregular-beat rules of one patient
+ * against the patient's sliding windows with the rescan the processor does in
+ * {@code evaluateData}, which reads 10 minutes of saturation and 5 minutes of
+ * RR intervals from the storage on every check. The heart beats at 1 and at
+ * 3 beats per second, which the rescan pays for and the windows do not.
+ */
+public class RuleWindowBenchmark {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final int CHECKS = 20_000;
+
+    private static volatile boolean sink;
+
+    public static void main(String[] args) {
+        for (int round = 0; round < 3; round++) {
+            for (int beatsPerSecond : new int[]{1, 3}) {
+                run(round, beatsPerSecond);
+            }
+        }
+    }
+
+    private static void run(int round, int beatsPerSecond) {
+        long now = 1_700_000_000_000L;
+        DataStorage storage = new DataStorage();
+        PatientWindows windows = new PatientWindows();
+        int saturation = SignalRegistry.idOf("Saturation");
+        int rr = SignalRegistry.idOf(HeartRateDeriver.RR_INTERVAL);
+        windows.trackRapidSaturationDrop(saturation);
+        windows.trackIrregularBeat(rr);
+        long step = 1000 / beatsPerSecond;
+        for (long t = now - 10 * MINUTE; t <= now; t += step) {
+            double interval = step + t / step % 3;
+            storage.addPatientData(1, interval, HeartRateDeriver.RR_INTERVAL, t);
+            windows.add(rr, t, interval);
+            if (t % 1000 == 0) {
+                double value = 98 - t / 1000 % 2;
+                storage.addPatientData(1, value, "Saturation", t);
+                windows.add(saturation, t, value);
+            }
+        }
+
+        SampleCursor cursor = new SampleCursor();
+        boolean any = false;
+        long start = System.nanoTime();
+        for (int i = 0; i < CHECKS; i++) {
+            any |= rescanRapidDrop(storage, cursor, now) | rescanIrregularBeat(storage, cursor, now);
+        }
+        double rescanNanos = (System.nanoTime() - start) / (double) CHECKS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < CHECKS; i++) {
+            any |= windows.rapidSaturationDrop(saturation, now) | windows.irregularBeat(rr, now);
+        }
+        double windowNanos = (System.nanoTime() - start) / (double) CHECKS;
+        sink = any;
+        System.out.printf("round %d, %d beats/s: rescan %,10.0f ns/check, windows %,6.0f ns/check%n",
+                round, beatsPerSecond, rescanNanos, windowNanos);
+    }
+
+    /** The processor's rescan: first and latest saturation of the last 10 minutes. */
+    private static boolean rescanRapidDrop(DataStorage storage, SampleCursor cursor, long now) {
+        storage.query(1, "Saturation", now - 10 * MINUTE, now, cursor);
+        if (cursor.size() < 2) {
+            return false;
+        }
+        cursor.next();
+        double first = cursor.getValue();
+        cursor.seek(cursor.size() - 1);
+        cursor.next();
+        return (first - cursor.getValue()) / first * 100 >= 5;
+    }
+
+    /** The processor's rescan: consecutive RR intervals of the last 5 minutes. */
+    private static boolean rescanIrregularBeat(DataStorage storage, SampleCursor cursor, long now) {
+        storage.query(1, HeartRateDeriver.RR_INTERVAL, now - 5 * MINUTE, now, cursor);
+        if (!cursor.next()) {
+            return false;
+        }
+        double previous = cursor.getValue();
+        while (cursor.next()) {
+            if (Math.abs(previous - cursor.getValue()) > 0.2 * previous) {
+                return true;
+            }
+            previous = cursor.getValue();
+        }
+        return false;
+    }
+}
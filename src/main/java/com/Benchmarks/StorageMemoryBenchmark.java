@@ -0,0 +1,90 @@
+package com.Benchmarks;
+
+import com.data_management.Patient;
+import com.data_management.PatientRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the heap footprint of the columnar {@link Patient} store against the
+ * previous layout of one boxed {@link PatientRecord} per sample in an
+ * {@code ArrayList}.
+ *
+ * Usage: {@code StorageMemoryBenchmark [samples...]}, default 1000000.
+ * Sample counts that do not fit in the current heap are extrapolated from the
+ * measured bytes per sample.
+ */
+public class StorageMemoryBenchmark {
+
+    private static final String[] SIGNALS = {"ECG", "Saturation", "SystolicPressure", "DiastolicPressure"};
+
+    public static void main(String[] args) {
+        long[] sampleCounts = args.length == 0 ? new long[]{1_000_000L, 100_000_000L} : parse(args);
+
+        long measured = Math.min(sampleCounts[0], 1_000_000L);
+        double boxedPerSample = (double) measureBoxed((int) measured) / measured;
+        double columnarPerSample = (double) measureColumnar((int) measured) / measured;
+
+        System.out.printf("Measured on %,d samples: boxed %.1f B/sample, columnar %.1f B/sample%n",
+                measured, boxedPerSample, columnarPerSample);
+        System.out.printf("%15s %15s %15s %8s%n", "samples", "boxed", "columnar", "ratio");
+        for (long samples : sampleCounts) {
+            System.out.printf("%,15d %15s %15s %7.1fx%n", samples,
+                    humanBytes(boxedPerSample * samples), humanBytes(columnarPerSample * samples),
+                    boxedPerSample / columnarPerSample);
+        }
+    }
+
+    private static long measureBoxed(int samples) {
+        long before = usedHeap();
+        List<PatientRecord> records = new ArrayList<>();
+        for (int i = 0; i < samples; i++) {
+            records.add(new PatientRecord(1, i * 0.5, SIGNALS[i & 3], 1_700_000_000_000L + i));
+        }
+        long used = usedHeap() - before;
+        keepAlive(records);
+        return used;
+    }
+
+    private static long measureColumnar(int samples) {
+        long before = usedHeap();
+        Patient patient = new Patient(1);
+        for (int i = 0; i < samples; i++) {
+            patient.addRecord(i * 0.5, SIGNALS[i & 3], 1_700_000_000_000L + i);
+        }
+        long used = usedHeap() - before;
+        keepAlive(patient);
+        return used;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static volatile Object sink;
+
+    private static void keepAlive(Object object) {
+        sink = object;
+        sink = null;
+    }
+
+    private static String humanBytes(double bytes) {
+        if (bytes >= 1L << 30) {
+            return String.format("%.2f GiB", bytes / (1L << 30));
+        }
+        return String.format("%.1f MiB", bytes / (1L << 20));
+    }
+
+    private static long[] parse(String[] args) {
+        long[] counts = new long[args.length];
+        for (int i = 0; i < args.length; i++) {
+            counts[i] = Long.parseLong(args[i].replace("_", ""));
+        }
+        return counts;
+    }
+}
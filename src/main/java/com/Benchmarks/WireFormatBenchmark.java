@@ -0,0 +1,138 @@
+package com.Benchmarks;
+
+import com.data_management.FrameDecoder;
+import com.data_management.FrameEncoder;
+import com.data_management.RecordDecoder;
+import com.data_management.RecordListener;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Compares the two formats readings are streamed in, text messages of one
+ * reading and binary frames of {@link FrameEncoder}, on one thread: bytes on
+ * the wire per reading, and CPU time and bytes allocated per reading to
+ * encode and to decode. Encoding starts from the data as the generators
+ * produce it, a String, and ends with the bytes a socket would send; decoding
+ * starts from those bytes and ends with the reading's fields. The network,
+ * WebSocket framing and storing are left out.
+ *
+ * Usage: {@code WireFormatBenchmark [readings] [readingsPerFrame]}, defaulting
+ * to 2000000 and {@link com.data_management.FrameBatcher#DEFAULT_FRAME_READINGS}.
+ */
+public class WireFormatBenchmark {
+
+    private static final String[] SIGNALS = {"ECG", "Saturation", "SystolicPressure", "DiastolicPressure"};
+    private static final int DISTINCT_READINGS = 4096;
+    private static final int PATIENTS = 100;
+    private static final int ROUNDS = 3;
+
+    private static volatile double sink;
+    private static double checksum;
+
+    public static void main(String[] args) {
+        int readings = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int frameReadings = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long[] timestamps = new long[DISTINCT_READINGS];
+        String[] labels = new String[DISTINCT_READINGS];
+        String[] data = new String[DISTINCT_READINGS];
+        generate(timestamps, labels, data);
+
+        byte[][] messages = new byte[readings][];
+        byte[][] frames = new byte[readings / frameReadings + 1][];
+        RecordListener listener = (patientId, signalId, timestamp, value) ->
+                checksum += patientId + signalId + timestamp + value;
+
+        System.out.printf("%-8s %-8s %-8s %10s %12s %12s%n", "Round", "Format", "Step", "B/reading", "ns/reading",
+                "alloc B/rdg");
+        for (int round = 0; round < ROUNDS; round++) {
+            // Text: one message per reading
+            long bytes = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            long wireBytes = 0;
+            for (int i = 0; i < readings; i++) {
+                int k = i & (DISTINCT_READINGS - 1);
+                String message = (i % PATIENTS + 1) + "," + timestamps[k] + "," + labels[k] + "," + data[k];
+                messages[i] = message.getBytes(StandardCharsets.UTF_8);
+                wireBytes += messages[i].length;
+            }
+            print(round, "text", "encode", wireBytes, readings, System.nanoTime() - start,
+                    threads.getThreadAllocatedBytes(thread) - bytes);
+
+            RecordDecoder decoder = new RecordDecoder();
+            bytes = threads.getThreadAllocatedBytes(thread);
+            start = System.nanoTime();
+            for (int i = 0; i < readings; i++) {
+                // The WebSocket library hands text messages over as Strings
+                if (decoder.decode(new String(messages[i], StandardCharsets.UTF_8))) {
+                    listener.recordAdded(decoder.getPatientId(), decoder.getSignalId(), decoder.getTimestamp(),
+                            decoder.getValue());
+                }
+            }
+            print(round, "text", "decode", wireBytes, readings, System.nanoTime() - start,
+                    threads.getThreadAllocatedBytes(thread) - bytes);
+
+            // Binary: frames of many readings
+            FrameEncoder encoder = new FrameEncoder(frameReadings);
+            int frameCount = 0;
+            bytes = threads.getThreadAllocatedBytes(thread);
+            start = System.nanoTime();
+            wireBytes = 0;
+            for (int i = 0; i < readings; i++) {
+                int k = i & (DISTINCT_READINGS - 1);
+                double value = FrameEncoder.parseData(data[k]);
+                if (!encoder.add(i % PATIENTS + 1, timestamps[k], labels[k], value)) {
+                    frames[frameCount] = encoder.finish();
+                    wireBytes += frames[frameCount++].length;
+                    encoder.add(i % PATIENTS + 1, timestamps[k], labels[k], value);
+                }
+            }
+            frames[frameCount] = encoder.finish();
+            wireBytes += frames[frameCount++].length;
+            print(round, "binary", "encode", wireBytes, readings, System.nanoTime() - start,
+                    threads.getThreadAllocatedBytes(thread) - bytes);
+
+            FrameDecoder frameDecoder = new FrameDecoder();
+            bytes = threads.getThreadAllocatedBytes(thread);
+            start = System.nanoTime();
+            for (int i = 0; i < frameCount; i++) {
+                frameDecoder.decode(ByteBuffer.wrap(frames[i]), listener);
+            }
+            print(round, "binary", "decode", wireBytes, readings, System.nanoTime() - start,
+                    threads.getThreadAllocatedBytes(thread) - bytes);
+            sink = checksum;
+        }
+    }
+
+    private static void print(int round, String format, String step, long wireBytes, int readings, long nanos,
+                              long allocated) {
+        System.out.printf("%-8d %-8s %-8s %10.1f %12.1f %12.1f%n", round, format, step, (double) wireBytes / readings,
+                (double) nanos / readings, (double) allocated / readings);
+    }
+
+    /** Readings like the simulator's: timestamps a few milliseconds apart, data as the generators format it. */
+    private static void generate(long[] timestamps, String[] labels, String[] data) {
+        Random random = new Random(42);
+        long timestamp = 1_713_432_063_000L;
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamp += random.nextInt(4);
+            timestamps[i] = timestamp;
+            labels[i] = SIGNALS[i & 3];
+            switch (labels[i]) {
+                case "ECG":
+                    data[i] = Double.toString(random.nextGaussian());
+                    break;
+                case "Saturation":
+                    data[i] = (90 + random.nextInt(11)) + ".0%";
+                    break;
+                default:
+                    data[i] = Double.toString(60 + random.nextInt(80));
+            }
+        }
+    }
+}
@@ -1,19 +1,61 @@
 package com.Servers;
 
+import com.cardio_generator.outputs.WebSocketOutputStrategy;
 import com.data_management.DataStorage;
+import com.data_management.FrameDecoder;
+import com.data_management.IngestQueue;
+import com.data_management.RecordDecoder;
+import com.data_management.SampleBatch;
 import org.java_websocket.server.WebSocketServer;
 import org.java_websocket.WebSocket;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
 import org.java_websocket.handshake.ClientHandshake;
 
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class SimpleWebSocketServer extends WebSocketServer {
+    /**
+     * The start of the text message sent to a client whose readings the
+     * {@link IngestQueue} refused, followed by how many:
+     * {@code overloaded,<readings>}.
+     */
+    public static final String OVERLOADED = "overloaded";
+    private static final Logger logger = Logger.getLogger(SimpleWebSocketServer.class.getName());
+    // Messages are logged at FINE once in this many, per worker thread
+    private static final int LOG_EVERY = 1000;
 
-    private final DataStorage dataStorage;
+    private final DataStorage dataStorage; // Null when readings go through the queue
+    private final IngestQueue queue;
+    // Messages of a connection are handled on one worker thread at a time, so a decoder per thread
+    private final ThreadLocal<RecordDecoder> decoders = ThreadLocal.withInitial(RecordDecoder::new);
+    private final ThreadLocal<FrameDecoder> frameDecoders = ThreadLocal.withInitial(FrameDecoder::new);
+    private final ThreadLocal<SampleBatch> batches = ThreadLocal.withInitial(SampleBatch::new);
+    private final LongAdder rejected = new LongAdder();
 
+    /**
+     * Clients may send readings as text messages or, having asked for the
+     * {@link com.data_management.FrameEncoder#PROTOCOL} subprotocol, as binary
+     * frames.
+     */
     public SimpleWebSocketServer(int port, DataStorage dataStorage) {
-        super(new InetSocketAddress(port));
+        super(new InetSocketAddress(port), WebSocketOutputStrategy.drafts());
         this.dataStorage = dataStorage;
+        this.queue = null;
+    }
+
+    /**
+     * Creates a server that hands the readings it receives to a queue, so its
+     * connection threads do not wait for the storage. Clients whose readings
+     * the queue refuses are sent an {@link #OVERLOADED} message.
+     */
+    public SimpleWebSocketServer(int port, IngestQueue queue) {
+        super(new InetSocketAddress(port), WebSocketOutputStrategy.drafts());
+        this.dataStorage = null;
+        this.queue = queue;
     }
 
     @Override
@@ -28,19 +70,60 @@ public class SimpleWebSocketServer extends WebSocketServer {
 
     @Override
     public void onMessage(WebSocket conn, String message) {
-        System.out.println("Message from " + conn.getRemoteSocketAddress() + ": " + message);
-        // Forward the message to the DataStorage
-         parseAndStoreData(message);
+        RecordDecoder decoder = decoders.get();
+        if (decoder.decode(message)) {
+            // Forward the reading to the DataStorage
+            if (queue == null) {
+                dataStorage.addPatientData(decoder.getPatientId(), decoder.getValue(), decoder.getSignalId(),
+                        decoder.getTimestamp());
+            } else if (!queue.offer(decoder.getPatientId(), decoder.getSignalId(), decoder.getTimestamp(),
+                    decoder.getValue())) {
+                overloaded(conn, 1);
+            }
+            if (decoder.getDecodedCount() % LOG_EVERY == 1 && logger.isLoggable(Level.FINE)) {
+                logger.fine("Message from " + conn.getRemoteSocketAddress() + ": " + message);
+            }
+        } else {
+            rejected.increment();
+            if (decoder.getRejectedCount() % LOG_EVERY == 1 && logger.isLoggable(Level.FINE)) {
+                logger.fine("Ignored a message that is not a reading, from " + conn.getRemoteSocketAddress()
+                        + ": " + message);
+            }
+        }
     }
-    private void parseAndStoreData(String message) {
-        // Assuming the message format is the same as your file format
-        String[] parts = message.split(", ");
-        int patientId = Integer.parseInt(parts[0].split(": ")[1].trim());
-        long timestamp = Long.parseLong(parts[1].split(": ")[1].trim());
-        String label = parts[2].split(": ")[1].trim();
-        double data = Double.parseDouble(parts[3].split(": ")[1].trim());
-
-        dataStorage.addPatientData(patientId, data, label, timestamp);
+
+    @Override
+    public void onMessage(WebSocket conn, ByteBuffer frame) {
+        int size = frame.remaining();
+        SampleBatch batch = batches.get();
+        batch.clear();
+        if (frameDecoders.get().decode(frame, (patientId, signalId, timestamp, value) ->
+                batch.add(patientId, value, signalId, timestamp)) < 0) {
+            rejected.increment();
+            logger.fine(() -> "Ignored a malformed frame of " + size + " bytes, from " + conn.getRemoteSocketAddress());
+        } else if (queue == null) {
+            dataStorage.addPatientDataBatch(batch);
+        } else {
+            int refused = queue.offer(batch);
+            if (refused > 0) {
+                overloaded(conn, refused);
+            }
+        }
+    }
+
+    /** Tells a client that some of its readings were refused. */
+    private static void overloaded(WebSocket conn, int readings) {
+        logger.fine(() -> "Refused " + readings + " readings from " + conn.getRemoteSocketAddress());
+        try {
+            conn.send(OVERLOADED + "," + readings);
+        } catch (WebsocketNotConnectedException e) {
+            // Nobody left to tell
+        }
+    }
+
+    /** The number of messages and frames ignored because they were not readings. */
+    public long getRejectedCount() {
+        return rejected.sum();
     }
 
     @Override
@@ -54,12 +137,14 @@ public class SimpleWebSocketServer extends WebSocketServer {
     }
     public void sendData(int patientId, String ecgData, String bloodSaturationData, String bloodPressureData, String bloodLevelsData) {
         // Construct the message to send
-        String message = String.format("Patient ID: %d, ECG: %s, Saturation: %s, Pressure: %s, Levels: %s, Alerts: %s",
+        String message = String.format("Patient ID: %d, ECG: %s, Saturation: %s, Pressure: %s, Levels: %s",
                 patientId, ecgData, bloodSaturationData, bloodPressureData, bloodLevelsData);
 
-        // Broadcast the message to all connected clients
+        // Broadcast the message to the text clients; binary clients only take frames of readings
         for (WebSocket conn : getConnections()) {
-            conn.send(message);
+            if (!WebSocketOutputStrategy.isBinary(conn)) {
+                conn.send(message);
+            }
         }
     }
 
@@ -0,0 +1,95 @@
+package com.Testing;
+
+import com.data_management.ActiveAlerts;
+import com.data_management.Alert;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ActiveAlertsTest {
+
+    @Test
+    void testRegistersPatientsAsTheyAreSeen() {
+        ActiveAlerts alerts = new ActiveAlerts();
+        assertNull(alerts.getAlert(7));
+        assertTrue(alerts.trigger(7, 100));
+        assertFalse(alerts.trigger(7, 200));
+        assertTrue(alerts.getAlert(7).getActive());
+        assertEquals(100, alerts.getAlert(7).getTimestamp());
+        assertFalse(alerts.addPatient(7));
+        assertEquals(1, alerts.size());
+    }
+
+    @Test
+    void testChangeFeedHoldsOnlyRaisedAlerts() {
+        ActiveAlerts alerts = new ActiveAlerts();
+        for (int patientId = 0; patientId < 1000; patientId++) {
+            alerts.addPatient(patientId);
+        }
+        alerts.trigger(3, 10);
+        alerts.trigger(5, 20);
+        alerts.resolve(5, 30);
+        alerts.resolve(8, 40);
+
+        List<Alert> changes = new ArrayList<>();
+        assertEquals(2, alerts.drainChanges(changes));
+        assertTrue(alerts.acknowledge(changes.get(0)));
+        assertFalse(alerts.acknowledge(changes.get(0)));
+        assertFalse(alerts.getAlert(3).getUpdated());
+        assertTrue(alerts.getAlert(3).getActive());
+        // Resolved before it was handled
+        assertFalse(alerts.acknowledge(changes.get(1)));
+        assertNull(alerts.pollChange());
+    }
+
+    @Test
+    void testConcurrentTriggersRaiseOnce() throws InterruptedException {
+        ActiveAlerts alerts = new ActiveAlerts();
+        int threads = 8;
+        int rounds = 2000;
+        AtomicInteger raised = new AtomicInteger();
+        AtomicInteger resolved = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < rounds; i++) {
+                    if (alerts.trigger(1, i)) {
+                        raised.incrementAndGet();
+                    }
+                    if (alerts.resolve(1, i)) {
+                        resolved.incrementAndGet();
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // Every raise but the last is matched by exactly one resolve
+        boolean active = alerts.getAlert(1).getActive();
+        assertEquals(raised.get(), resolved.get() + (active ? 1 : 0));
+        int changes = 0;
+        while (alerts.pollChange() != null) {
+            changes++;
+        }
+        assertEquals(raised.get(), changes);
+    }
+}
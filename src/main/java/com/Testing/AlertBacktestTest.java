@@ -0,0 +1,70 @@
+package com.Testing;
+
+import com.alerts.AlertBacktest;
+import com.alerts.AlertState;
+import com.alerts.RuleSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AlertBacktestTest {
+
+    @TempDir
+    Path directory;
+
+    /** Writes a minute of diastolic pressure for a patient, out of order, high at the given times. */
+    private void writeDiastolic(int patientId, long... highTimes) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (long t = 60_000; t >= 1000; t -= 1000) {
+            double value = 80;
+            for (long high : highTimes) {
+                if (t == high) {
+                    value = 130;
+                }
+            }
+            lines.append("Patient ID: ").append(patientId).append(", Timestamp: ").append(t)
+                    .append(", Label: DiastolicPressure, Data: ").append(value).append('\n');
+        }
+        lines.append("not a record\n");
+        Files.write(directory.resolve("Diastolic" + patientId + ".txt"), lines.toString().getBytes());
+    }
+
+    @Test
+    void testCountsAlertsPerConditionAndPatientInEventTimeOrder() throws IOException {
+        writeDiastolic(1, 5000);
+        writeDiastolic(2, 5000, 50_000);
+        AlertBacktest backtest = new AlertBacktest();
+        assertEquals(120, backtest.load(directory));
+        assertEquals(2, backtest.getSkippedLines());
+
+        backtest.run(null, false, true, 1000, 0);
+        assertEquals(List.of("DiastolicPressure"), backtest.getConditions());
+        assertEquals(3, backtest.getAlertCount("DiastolicPressure", AlertState.RAISED));
+        assertEquals(2, backtest.getAlertCount("DiastolicPressure", AlertState.CLEARED));
+        assertEquals(1, backtest.getPatientAlertCount("1", AlertState.RAISED));
+        assertEquals(2, backtest.getPatientAlertCount("2", AlertState.RAISED));
+    }
+
+    @Test
+    void testRunsTheGivenRules() throws IOException {
+        writeDiastolic(1, 5000);
+        AlertBacktest backtest = new AlertBacktest();
+        backtest.load(directory);
+        Properties properties = new Properties();
+        properties.setProperty("low.type", "threshold");
+        properties.setProperty("low.signal", "DiastolicPressure");
+        properties.setProperty("low.below", "90");
+        properties.setProperty("low.condition", "Low diastolic pressure");
+
+        backtest.run(RuleSet.parse(properties), false, true, 1000, 0);
+        assertEquals(List.of("Low diastolic pressure"), backtest.getConditions());
+        assertEquals(1, backtest.getAlertCount("Low diastolic pressure", AlertState.RAISED));
+    }
+}
@@ -0,0 +1,155 @@
+package com.Testing;
+
+import com.alerts.Alert;
+import com.alerts.AlertChannel;
+import com.alerts.AlertGateway;
+import com.alerts.DispatchPolicy;
+import com.alerts.EmailAlertDecorator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlertChannelTest {
+
+    /** Records the batches it receives, failing the first calls if asked to. */
+    private static class StubGateway implements AlertGateway {
+        final List<List<Alert>> batches = Collections.synchronizedList(new ArrayList<>());
+        int failures;
+
+        @Override
+        public synchronized void send(List<Alert> alerts) throws IOException {
+            if (failures > 0) {
+                failures--;
+                throw new IOException("Gateway unavailable");
+            }
+            batches.add(new ArrayList<>(alerts));
+        }
+    }
+
+    @Test
+    void testBatchesAndRetries() {
+        StubGateway gateway = new StubGateway();
+        gateway.failures = 2;
+        AlertChannel channel = new AlertChannel("email", gateway,
+                new DispatchPolicy().batching(4, 200).retries(3, 1, 5));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(channel.offer(new Alert("1", "Condition " + i, i)));
+        }
+        channel.close();
+
+        assertEquals(10, channel.getSentCount());
+        assertEquals(2, channel.getRetryCount());
+        assertEquals(0, channel.getFailedCount());
+        assertEquals(channel.getBatchCount(), gateway.batches.size());
+        assertTrue(gateway.batches.size() <= 4);
+        int expected = 0;
+        for (List<Alert> batch : gateway.batches) {
+            assertTrue(batch.size() <= 4);
+            for (Alert alert : batch) {
+                assertEquals(expected++, alert.getTimestamp());
+            }
+        }
+        assertFalse(channel.offer(new Alert("1", "After close", 0)));
+    }
+
+    @Test
+    void testSlowGatewayDoesNotBlockCaller() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch sending = new CountDownLatch(1);
+        AlertGateway slow = alerts -> {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        AlertChannel channel = new AlertChannel("sms", slow, new DispatchPolicy().capacity(2).batching(1, 0)
+                .overflow(DispatchPolicy.Overflow.DROP_NEWEST));
+        channel.offer(new Alert("1", "Held by the gateway", 0));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+        assertTrue(channel.offer(new Alert("1", "Queued", 1)));
+        assertTrue(channel.offer(new Alert("1", "Queued", 2)));
+        assertFalse(channel.offer(new Alert("1", "Dropped", 3)));
+        assertEquals(2, channel.getQueueDepth());
+        assertEquals(1, channel.getDroppedCount());
+
+        release.countDown();
+        channel.close();
+        assertEquals(3, channel.getSentCount());
+        assertEquals(4, channel.getOfferedCount());
+    }
+
+    @Test
+    void testInterruptDuringBackoffRetriesBatch() throws InterruptedException {
+        StubGateway gateway = new StubGateway();
+        gateway.failures = 1;
+        AlertChannel channel = new AlertChannel("pager", gateway,
+                new DispatchPolicy().batching(1, 0).retries(3, 60_000, 60_000));
+        channel.offer(new Alert("1", "Condition", 0));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (channel.getRetryCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("alert-channel-pager")) {
+                thread.interrupt();
+            }
+        }
+        channel.close();
+
+        assertEquals(1, channel.getSentCount());
+        assertEquals(0, channel.getFailedCount());
+    }
+
+    @Test
+    void testBlockedOfferGivesUpWhenClosed() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch sending = new CountDownLatch(1);
+        AlertGateway slow = alerts -> {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        AlertChannel channel = new AlertChannel("sms", slow, new DispatchPolicy().capacity(1).batching(1, 0)
+                .overflow(DispatchPolicy.Overflow.BLOCK));
+        channel.offer(new Alert("1", "Held by the gateway", 0));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        channel.offer(new Alert("1", "Queued", 1));
+
+        Thread blocked = new Thread(() -> channel.offer(new Alert("1", "Waiting for room", 2)));
+        blocked.start();
+        Thread closer = new Thread(channel::close);
+        closer.start();
+        blocked.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse(blocked.isAlive());
+        release.countDown();
+        closer.join();
+        assertEquals(3, channel.getSentCount() + channel.getDroppedCount());
+    }
+
+    @Test
+    void testDecoratorSendsThroughChannel() {
+        StubGateway gateway = new StubGateway();
+        AlertChannel channel = new AlertChannel("email", gateway, new DispatchPolicy());
+        Alert alert = new Alert("7", "SystolicPressure", 42);
+        new EmailAlertDecorator(alert, channel).sendAlert();
+        channel.close();
+
+        assertEquals(1, gateway.batches.size());
+        assertEquals(alert, gateway.batches.get(0).get(0));
+    }
+}
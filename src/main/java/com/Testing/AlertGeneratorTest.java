@@ -1,6 +1,9 @@
 package com.Testing;
 
+import com.alerts.AlertChannel;
 import com.alerts.AlertProcessor;
+import com.alerts.DispatchPolicy;
+import com.alerts.RuleSet;
 import com.data_management.ActiveAlerts;
 import com.data_management.DataStorage;
 import org.junit.jupiter.api.AfterEach;
@@ -10,8 +13,11 @@ import org.junit.jupiter.api.Test;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AlertGeneratorTest {
@@ -65,6 +71,164 @@ public class AlertGeneratorTest {
         assertTrue(outContent.toString().contains("Hypotensive Hypoxemia detected"));
     }
 
+    @Test
+    public void testEvaluateData_MissingSignalDoesNotCountAsZero() {
+        // Low saturation but no systolic reading at all
+        dataStorage.addPatientData(1, 85, "Saturation", System.currentTimeMillis());
+
+        alertProcessor.evaluateData();
+
+        assertTrue(outContent.toString().contains("Condition: Saturation"));
+        assertFalse(outContent.toString().contains("Hypotensive Hypoxemia detected"));
+    }
+
+    @Test
+    public void testFlatPressureIsNoTrend() {
+        alertProcessor.attach();
+        long start = System.currentTimeMillis() - 3 * 60 * 1000;
+        for (long t = start; t < start + 3 * 60 * 1000; t += 10_000) {
+            dataStorage.addPatientData(1, 120, "SystolicPressure", t);
+            dataStorage.addPatientData(1, 80, "DiastolicPressure", t);
+            dataStorage.addPatientData(2, 120, "SystolicPressure", t);
+        }
+        alertProcessor.evaluatePending();
+        alertProcessor.detach();
+        new AlertProcessor(dataStorage, activeAlerts).evaluateData();
+
+        assertFalse(outContent.toString().contains("trend in blood pressure"));
+    }
+
+    @Test
+    public void testSilencedProcessorStillReachesChannels() {
+        List<String> conditions = Collections.synchronizedList(new ArrayList<>());
+        AlertChannel channel = new AlertChannel("test", batch -> batch.forEach(
+                alert -> conditions.add(alert.getCondition())), new DispatchPolicy());
+        alertProcessor.addChannel(channel);
+        alertProcessor.setPrintAlerts(false);
+        dataStorage.addPatientData(1, 200, "SystolicPressure", System.currentTimeMillis());
+        activeAlerts.trigger(2, System.currentTimeMillis());
+
+        alertProcessor.evaluateData();
+        channel.close();
+
+        assertEquals("", outContent.toString());
+        assertTrue(conditions.contains("SystolicPressure"), conditions.toString());
+    }
+
+    @Test
+    public void testEvaluatePending_EvaluatesEachRecordOnce() {
+        alertProcessor.attach();
+        long now = System.currentTimeMillis();
+        dataStorage.addPatientData(1, 200, "SystolicPressure", now - 2000);
+        dataStorage.addPatientData(1, 120, "SystolicPressure", now - 1000);
+        dataStorage.addPatientData(2, 130, "DiastolicPressure", now - 1000);
+        dataStorage.addPatientData(2, 120, "SystolicPressure", now - 1000);
+
+        assertEquals(2, alertProcessor.evaluatePending());
+        String output = outContent.toString();
+        assertEquals(1, count(output, "Condition: SystolicPressure"));
+        assertEquals(1, count(output, "Condition: DiastolicPressure"));
+
+        // Nothing new, so nothing is evaluated or triggered again
+        outContent.reset();
+        assertEquals(0, alertProcessor.evaluatePending());
+        assertEquals("", outContent.toString().trim());
+
+        // Only the new record is checked
+        dataStorage.addPatientData(1, 50, "DiastolicPressure", now);
+        assertEquals(1, alertProcessor.evaluatePending());
+        output = outContent.toString();
+        assertEquals(1, count(output, "Condition: DiastolicPressure"));
+        assertEquals(0, count(output, "Condition: SystolicPressure"));
+
+        // A record older than evaluated ones is checked right away
+        outContent.reset();
+        dataStorage.addPatientData(2, 190, "SystolicPressure", now - 5000);
+        assertEquals(1, count(outContent.toString(), "Condition: SystolicPressure"));
+        assertEquals(0, alertProcessor.evaluatePending());
+
+        // The condition is already raised, so it is not reported again
+        dataStorage.addPatientData(1, 190, "SystolicPressure", now - 5000);
+        assertEquals(1, count(outContent.toString(), "Condition: SystolicPressure"));
+
+        alertProcessor.detach();
+        dataStorage.addPatientData(1, 200, "SystolicPressure", now + 1000);
+        assertEquals(0, alertProcessor.evaluatePending());
+    }
+
+    @Test
+    public void testEvaluateData_ParallelMatchesSequential() {
+        long now = System.currentTimeMillis();
+        for (int patient = 1; patient <= 40; patient++) {
+            dataStorage.addPatientData(patient, 150 + patient * 2, "SystolicPressure", now - 2000);
+            dataStorage.addPatientData(patient, 100 - patient % 12, "Saturation", now - 1000);
+        }
+
+        alertProcessor.evaluateData();
+        String sequential = outContent.toString();
+        outContent.reset();
+        // A fresh processor, as this one has already reported the alerts
+        AlertProcessor parallel = new AlertProcessor(dataStorage, activeAlerts);
+        parallel.setParallelism(4);
+        try {
+            parallel.evaluateData();
+        } finally {
+            parallel.setParallelism(1);
+        }
+
+        assertTrue(sequential.contains("Alert Triggered:"));
+        assertEquals(sequential, outContent.toString());
+    }
+
+    @Test
+    public void testSustainedCondition_ReportsTransitionsOnly() {
+        alertProcessor.setRules(new RuleSet().timing(10_000, 60_000)
+                .threshold("DiastolicPressure", 60, 120, 5, "Low diastolic"));
+        alertProcessor.attach();
+        long start = System.currentTimeMillis() - 10 * 60 * 1000;
+        long t = start;
+        // Two minutes below the bound: raised once, then reminded every minute
+        for (; t <= start + 120_000; t += 1000) {
+            dataStorage.addPatientData(1, 50, "DiastolicPressure", t);
+            alertProcessor.evaluatePending();
+        }
+        // Back above the bound, but inside the band: still raised
+        for (; t <= start + 180_000; t += 1000) {
+            dataStorage.addPatientData(1, 62, "DiastolicPressure", t);
+            alertProcessor.evaluatePending();
+        }
+        String output = outContent.toString();
+        assertEquals(1, count(output, "Alert Triggered:"));
+        assertEquals(3, count(output, "Alert Sustained:"));
+        assertEquals(0, count(output, "Alert Cleared:"));
+
+        // Clear of the band, for the clear-after interval
+        for (; t <= start + 195_000; t += 1000) {
+            dataStorage.addPatientData(1, 80, "DiastolicPressure", t);
+            alertProcessor.evaluatePending();
+        }
+        output = outContent.toString();
+        assertEquals(1, count(output, "Alert Cleared:"));
+        assertEquals(1, count(output, "Alert Triggered:"));
+
+        // Every reading reports an alert without deduplication
+        outContent.reset();
+        alertProcessor.setTransitionsOnly(false);
+        for (int i = 0; i < 5; i++, t += 1000) {
+            dataStorage.addPatientData(1, 50, "DiastolicPressure", t);
+        }
+        alertProcessor.evaluatePending();
+        assertEquals(5, count(outContent.toString(), "Alert Triggered:"));
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
     // Add more test cases for other alert conditions
 
     @AfterEach
@@ -0,0 +1,92 @@
+package com.Testing;
+
+import com.alerts.Alert;
+import com.alerts.AlertChannel;
+import com.alerts.AlertReplay;
+import com.alerts.AlertState;
+import com.alerts.DispatchPolicy;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+import com.data_management.DataStorage;
+import com.data_management.StorageJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AlertReplayTest {
+
+    @TempDir
+    Path directory;
+
+    /** Replays a directory and returns the alerts, as "state condition timestamp". */
+    private static List<String> replay(Path directory) throws IOException {
+        List<String> alerts = Collections.synchronizedList(new ArrayList<>());
+        AlertReplay replay = new AlertReplay(false, 1000);
+        AlertChannel channel = new AlertChannel("test", batch -> {
+            for (Alert alert : batch) {
+                alerts.add(alert.getState() + " " + alert.getCondition() + " " + alert.getTimestamp());
+            }
+        }, new DispatchPolicy().overflow(DispatchPolicy.Overflow.BLOCK));
+        replay.getProcessor().addChannel(channel);
+        replay.replayDirectory(directory);
+        replay.finish();
+        channel.close();
+        return alerts;
+    }
+
+    @Test
+    void testReplaysTextFilesOnDataTime() throws IOException {
+        StringBuilder diastolic = new StringBuilder();
+        StringBuilder saturation = new StringBuilder();
+        for (long t = 1000; t <= 60_000; t += 1000) {
+            double value = t == 5000 ? 130 : 80;
+            diastolic.append("Patient ID: 1, Timestamp: ").append(t)
+                    .append(", Label: DiastolicPressure, Data: ").append(value).append('\n');
+            saturation.append("Patient ID: 1, Timestamp: ").append(t + 500)
+                    .append(", Label: Saturation, Data: 98.0%\n");
+        }
+        Files.write(directory.resolve("DiastolicPressure.txt"), diastolic.toString().getBytes());
+        Files.write(directory.resolve("Saturation.txt"), saturation.toString().getBytes());
+
+        List<String> alerts = replay(directory);
+        // Cleared once the readings have been normal for 30 seconds of data time, not wall time
+        assertEquals(List.of(AlertState.RAISED + " DiastolicPressure 5000",
+                AlertState.CLEARED + " DiastolicPressure 35000"), alerts);
+    }
+
+    @Test
+    void testReplaysJournalLikeText() throws IOException {
+        DataStorage storage = new DataStorage();
+        StorageJournal journal = StorageJournal.open(directory, storage);
+        for (long t = 1000; t <= 60_000; t += 1000) {
+            storage.addPatientData(1, t == 5000 ? 130 : 80, "DiastolicPressure", t);
+        }
+        journal.close();
+
+        assertEquals(List.of(AlertState.RAISED + " DiastolicPressure 5000",
+                AlertState.CLEARED + " DiastolicPressure 35000"), replay(directory));
+    }
+
+    @Test
+    void testGeneratorUsesInjectedClock() {
+        List<Long> timestamps = new ArrayList<>();
+        OutputStrategy output = (patientId, timestamp, label, data) -> timestamps.add(timestamp);
+        Clock fixed = Clock.fixed(Instant.ofEpochMilli(123_456), ZoneOffset.UTC);
+        DataStorage storage = new DataStorage();
+        new BloodPressureDataGenerator(2, storage, fixed).generate(1, output);
+
+        assertEquals(List.of(123_456L, 123_456L), timestamps);
+        assertEquals(2, storage.getRecords(1, 123_456L, 123_456L).size());
+    }
+}
@@ -0,0 +1,95 @@
+package com.Testing;
+
+import com.data_management.BulkLoader;
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BulkLoaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testSplitsChunksAtLineBoundariesAndCountsBadLines() throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (int t = 1; t <= 200; t++) {
+            lines.append("Patient ID: ").append(t % 3).append(", Timestamp: ").append(t)
+                    .append(", Label: Saturation, Data: ").append(90 + t % 10).append(".0%\n");
+            if (t == 50) {
+                lines.append("Patient ID: x, Timestamp: 50, Label: Saturation, Data: 95.0%\n");
+            } else if (t == 100) {
+                lines.append("\n");
+            } else if (t == 150) {
+                lines.append("Patient ID: 1, Timestamp: 150, Label: Saturation, Data: high\r\n");
+            }
+        }
+        lines.append("Patient ID: 1, Timestamp: 201, Label: Alert, Data: triggered"); // No line end
+        Path file = directory.resolve("Saturation.txt");
+        Files.write(file, lines.toString().getBytes());
+
+        // Chunks shorter than a line, parsed by three workers
+        DataStorage storage = new DataStorage();
+        BulkLoader.Report report = new BulkLoader(storage, 3, 37).load(file);
+        assertEquals(204, report.getLines());
+        assertEquals(201, report.getRecords());
+        assertEquals(2, report.getErrorCount());
+        assertEquals(1, report.getErrorCount(BulkLoader.LineError.PATIENT_ID));
+        assertEquals(1, report.getErrorCount(BulkLoader.LineError.DATA));
+        assertEquals(List.of(file + ":51: bad patient ID", file + ":153: bad data"), report.getErrorLines());
+
+        List<PatientRecord> records = storage.getRecords(1, "Saturation", 0, Long.MAX_VALUE);
+        assertEquals(67, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            long t = 1 + 3L * i;
+            assertEquals(t, records.get(i).getTimestamp());
+            assertEquals(90 + t % 10, records.get(i).getMeasurementValue());
+        }
+        assertEquals(1.0, storage.getRecords(1, "Alert", 0, Long.MAX_VALUE).get(0).getMeasurementValue());
+    }
+
+    @Test
+    void testParsesNumbersLikeDoubleParseDouble() throws IOException {
+        Random random = new Random(7);
+        double[] expected = new double[20_000];
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < expected.length; i++) {
+            double value;
+            switch (i % 4) {
+                case 0:
+                    value = random.nextGaussian();
+                    break;
+                case 1:
+                    value = random.nextDouble() * 200;
+                    break;
+                case 2:
+                    value = Math.round(random.nextDouble() * 1000) / 10.0;
+                    break;
+                default:
+                    value = random.nextDouble() * 1e-5; // Written with an exponent
+            }
+            expected[i] = value;
+            lines.append("Patient ID: 1, Timestamp: ").append(i).append(", Label: ECG, Data: ")
+                    .append(value).append('\n');
+        }
+        Path file = directory.resolve("ECG.txt");
+        Files.write(file, lines.toString().getBytes());
+
+        DataStorage storage = new DataStorage();
+        assertEquals(expected.length, new BulkLoader(storage).load(file).getRecords());
+        List<PatientRecord> records = storage.getRecords(1, "ECG", 0, Long.MAX_VALUE);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(Double.doubleToLongBits(expected[i]),
+                    Double.doubleToLongBits(records.get(i).getMeasurementValue()), "value " + expected[i]);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.Testing;
+
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Stress test for concurrent ingestion into {@link DataStorage}.
+ */
+class DataStorageConcurrencyTest {
+
+    private static final int WRITERS = 8;
+    private static final int READERS = 2;
+    private static final int PATIENTS = 4;
+    private static final int SAMPLES_PER_WRITER = 20_000;
+    private static final String[] SIGNALS = {"ECG", "Saturation"};
+
+    @Test
+    void testConcurrentWritersAndReaders() throws InterruptedException {
+        DataStorage storage = new DataStorage();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> writers = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            writers.add(new Thread(() -> {
+                await(start);
+                for (int i = 0; i < SAMPLES_PER_WRITER; i++) {
+                    // Writers interleave timestamps on shared series, forcing out-of-order inserts
+                    long timestamp = (long) i * WRITERS + (WRITERS - 1 - writer);
+                    storage.addPatientData(1 + i % PATIENTS, writer, SIGNALS[i & 1], timestamp);
+                }
+            }));
+        }
+        for (int r = 0; r < READERS; r++) {
+            readers.add(new Thread(() -> {
+                await(start);
+                int[] lastSizes = new int[PATIENTS + 1];
+                try {
+                    while (writing.get()) {
+                        for (int patientId = 1; patientId <= PATIENTS; patientId++) {
+                            List<PatientRecord> records = storage.getRecords(patientId, 0, Long.MAX_VALUE);
+                            if (records.size() < lastSizes[patientId]) {
+                                throw new AssertionError("Snapshot shrank for patient " + patientId);
+                            }
+                            lastSizes[patientId] = records.size();
+                            assertSorted(records);
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+        }
+
+        writers.forEach(Thread::start);
+        readers.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : writers) {
+            thread.join();
+        }
+        writing.set(false);
+        for (Thread thread : readers) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        int total = 0;
+        for (int patientId = 1; patientId <= PATIENTS; patientId++) {
+            List<PatientRecord> records = storage.getRecords(patientId, 0, Long.MAX_VALUE);
+            assertSorted(records);
+            total += records.size();
+        }
+        assertEquals(WRITERS * SAMPLES_PER_WRITER, total);
+        assertEquals(PATIENTS, storage.getAllPatients().size());
+    }
+
+    private static void assertSorted(List<PatientRecord> records) {
+        for (int i = 1; i < records.size(); i++) {
+            if (records.get(i - 1).getTimestamp() > records.get(i).getTimestamp()) {
+                throw new AssertionError("Records out of order at index " + i);
+            }
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
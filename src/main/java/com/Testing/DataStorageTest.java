@@ -5,7 +5,12 @@ import org.junit.jupiter.api.Test;
 
 import com.data_management.DataStorage;
 import com.data_management.PatientRecord;
+import com.data_management.RetentionPolicy;
+import com.data_management.SampleBatch;
+import com.data_management.SampleCursor;
+import com.data_management.SignalRegistry;
 
+import java.util.ArrayList;
 import java.util.List;
 
 class DataStorageTest {
@@ -22,4 +27,116 @@ class DataStorageTest {
         assertEquals(2, records.size()); // Check if two records are retrieved
         assertEquals(100.0, records.get(0).getMeasurementValue()); // Validate first record
     }
+
+    @Test
+    void testStreamingQueriesMatchRecords() {
+        DataStorage storage = new DataStorage(RetentionPolicy.unbounded().compressAfter(10 * 60 * 1000L));
+        long now = 1714376789050L;
+        // An hour at 1 Hz, so most of the history is compressed
+        for (long t = now - 60 * 60 * 1000L; t <= now; t += 1000) {
+            storage.addPatientData(1, 90 + t / 1000 % 10, "Saturation", t);
+        }
+
+        SampleCursor cursor = new SampleCursor();
+        for (long start = now - 61 * 60 * 1000L; start < now; start += 7 * 60 * 1000L + 333) {
+            long end = start + 20 * 60 * 1000L;
+            List<PatientRecord> expected = storage.getRecords(1, "Saturation", start, end);
+
+            List<Double> visited = new ArrayList<>();
+            assertEquals(expected.size(), storage.forEach(1, "Saturation", start, end,
+                    (timestamp, value) -> visited.add(value)));
+
+            storage.query(1, "Saturation", start, end, cursor);
+            assertEquals(expected.size(), cursor.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertTrue(cursor.next());
+                assertEquals(expected.get(i).getTimestamp(), cursor.getTimestamp());
+                assertEquals(expected.get(i).getMeasurementValue(), cursor.getValue());
+                assertEquals(expected.get(i).getMeasurementValue(), visited.get(i));
+            }
+            assertFalse(cursor.next());
+
+            cursor.seek(expected.size() - 1);
+            assertTrue(cursor.next());
+            assertEquals(expected.get(expected.size() - 1).getTimestamp(), cursor.getTimestamp());
+        }
+
+        assertEquals(0, storage.query(2, "Saturation", now - 1000, now, cursor).size());
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    void testNestedStreamingQueriesKeepTheirSamples() {
+        DataStorage storage = new DataStorage(RetentionPolicy.unbounded().compressAfter(10 * 60 * 1000L));
+        long now = 1714376789050L;
+        long start = now - 60 * 60 * 1000L;
+        for (long t = start; t <= now; t += 1000) {
+            storage.addPatientData(1, t / 1000 % 100, "Saturation", t);
+            storage.addPatientData(1, t / 1000 % 100 + 1000, "HeartRate", t);
+        }
+
+        // Each visit decodes compressed chunks of another series on the same thread, after a
+        // first call has left its buffer to the thread
+        storage.forEach(1, "Saturation", start, now, (timestamp, value) -> { });
+        List<Double> outer = new ArrayList<>();
+        List<Double> inner = new ArrayList<>();
+        storage.forEach(1, "Saturation", start, now, (timestamp, value) -> {
+            outer.add(value);
+            storage.forEach(1, "HeartRate", now - timestamp + start, now - timestamp + start,
+                    (innerTimestamp, innerValue) -> inner.add(innerValue));
+        });
+
+        List<PatientRecord> saturation = storage.getRecords(1, "Saturation", start, now);
+        List<PatientRecord> heartRate = storage.getRecords(1, "HeartRate", start, now);
+        assertEquals(saturation.size(), outer.size());
+        assertEquals(heartRate.size(), inner.size());
+        for (int i = 0; i < outer.size(); i++) {
+            assertEquals(saturation.get(i).getMeasurementValue(), outer.get(i));
+            assertEquals(heartRate.get(heartRate.size() - 1 - i).getMeasurementValue(), inner.get(i));
+        }
+    }
+
+    @Test
+    void testBatchesStoreLikeSingleAdds() {
+        DataStorage single = new DataStorage();
+        DataStorage batched = new DataStorage();
+        List<String> notified = new ArrayList<>();
+        batched.addRecordListener((patientId, signalId, timestamp, value) ->
+                notified.add(patientId + "," + SignalRegistry.nameOf(signalId) + "," + timestamp));
+        String[] types = {"SystolicPressure", "DiastolicPressure", "ECG"};
+        SampleBatch batch = new SampleBatch(2);
+        long now = 1714376789050L;
+        for (int round = 0; round < 3; round++) {
+            batch.clear();
+            // Patients and record types interleaved, one timestamp out of order
+            for (int i = 0; i < 50; i++) {
+                int patientId = 1 + i % 4;
+                String type = types[i % 3];
+                long timestamp = now + round * 100 + (i == 20 ? -500 : i);
+                single.addPatientData(patientId, i, type, timestamp);
+                batch.add(patientId, i, type, timestamp);
+            }
+            batched.addPatientDataBatch(batch);
+            assertEquals(50, batch.size());
+        }
+
+        for (int patientId = 1; patientId <= 4; patientId++) {
+            for (String type : types) {
+                assertEquals(toString(single.getRecords(patientId, type, 0, Long.MAX_VALUE)),
+                        toString(batched.getRecords(patientId, type, 0, Long.MAX_VALUE)));
+            }
+        }
+        assertEquals(150, notified.size());
+        // Patient 1 and the systolic pressure come first, in batch order
+        assertEquals("1,SystolicPressure," + now, notified.get(0));
+        assertEquals("1,SystolicPressure," + (now + 12), notified.get(1));
+    }
+
+    private static List<String> toString(List<PatientRecord> records) {
+        List<String> strings = new ArrayList<>();
+        for (PatientRecord record : records) {
+            strings.add(record.getTimestamp() + "=" + record.getMeasurementValue());
+        }
+        return strings;
+    }
 }
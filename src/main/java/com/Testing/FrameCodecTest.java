@@ -0,0 +1,113 @@
+package com.Testing;
+
+import com.data_management.FrameBatcher;
+import com.data_management.FrameDecoder;
+import com.data_management.FrameEncoder;
+import com.data_management.SignalRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameCodecTest {
+
+    private static final String[] LABELS = {"ECG", "Saturation", "SystolicPressure", "Alert"};
+
+    @Test
+    void testReadingsSurviveTheRoundTrip() {
+        Random random = new Random(5);
+        List<String> sent = new ArrayList<>();
+        List<byte[]> frames = new ArrayList<>();
+        try (FrameBatcher batcher = new FrameBatcher(100, 60_000, frames::add)) {
+            long timestamp = 1_700_000_000_000L;
+            for (int i = 0; i < 1000; i++) {
+                // Mostly increasing, sometimes back in time, sometimes far ahead
+                timestamp += i % 17 == 0 ? -random.nextInt(5000) : i % 101 == 0 ? 1L << 40 : random.nextInt(10);
+                int patientId = random.nextInt(Integer.MAX_VALUE);
+                String label = LABELS[random.nextInt(LABELS.length)];
+                double value = i % 50 == 0 ? Double.NaN : random.nextGaussian() * 100;
+                batcher.add(patientId, timestamp, label, value);
+                sent.add(patientId + "," + timestamp + "," + SignalRegistry.idOf(label) + "," + value);
+            }
+        }
+        assertEquals(10, frames.size());
+
+        List<String> received = new ArrayList<>();
+        FrameDecoder decoder = new FrameDecoder();
+        for (byte[] frame : frames) {
+            ByteBuffer buffer = ByteBuffer.wrap(frame);
+            assertEquals(100, decoder.decode(buffer, (patientId, signalId, timestamp, value) ->
+                    received.add(patientId + "," + timestamp + "," + signalId + "," + value)));
+            assertFalse(buffer.hasRemaining());
+        }
+        assertEquals(sent, received);
+        assertEquals(1000, decoder.getDecodedCount());
+    }
+
+    @Test
+    void testDecodesMoreLabelsThanItKeeps() {
+        // Registered locally, so the test does not use up what remote clients may register
+        String[] labels = new String[150];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = "FrameCacheTest" + i;
+            SignalRegistry.idOf(labels[i]);
+        }
+        FrameDecoder decoder = new FrameDecoder();
+        FrameEncoder encoder = new FrameEncoder(labels.length);
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < labels.length; i++) {
+                assertTrue(encoder.add(1, 1000 + i, labels[i], i));
+            }
+            List<Integer> signals = new ArrayList<>();
+            assertEquals(labels.length, decoder.decode(ByteBuffer.wrap(encoder.finish()),
+                    (patientId, signalId, timestamp, value) -> signals.add(signalId)));
+            for (int i = 0; i < labels.length; i++) {
+                assertEquals(SignalRegistry.find(labels[i]), signals.get(i));
+            }
+        }
+    }
+
+    @Test
+    void testRejectsTruncatedAndUnknownFramesWhole() {
+        FrameEncoder encoder = new FrameEncoder(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(encoder.add(1, 1000 + i, "ECG", i));
+        }
+        assertFalse(encoder.add(1, 1004, "ECG", 4));
+        byte[] frame = encoder.finish();
+        assertTrue(encoder.isEmpty());
+
+        FrameDecoder decoder = new FrameDecoder();
+        List<Double> received = new ArrayList<>();
+        for (int length = 0; length < frame.length; length++) {
+            assertEquals(-1, decoder.decode(ByteBuffer.wrap(frame, 0, length),
+                    (patientId, signalId, timestamp, value) -> received.add(value)));
+        }
+        byte[] longer = Arrays.copyOf(frame, frame.length + 1);
+        assertEquals(-1, decoder.decode(ByteBuffer.wrap(longer), (patientId, signalId, timestamp, value) -> received.add(value)));
+        byte[] nextVersion = frame.clone();
+        nextVersion[0] = FrameEncoder.VERSION + 1;
+        assertEquals(-1, decoder.decode(ByteBuffer.wrap(nextVersion), (patientId, signalId, timestamp, value) -> received.add(value)));
+        assertTrue(received.isEmpty());
+        assertEquals(frame.length + 2, decoder.getRejectedCount());
+
+        assertEquals(4, decoder.decode(ByteBuffer.wrap(frame), (patientId, signalId, timestamp, value) -> received.add(value)));
+        assertEquals(Arrays.asList(0.0, 1.0, 2.0, 3.0), received);
+    }
+
+    @Test
+    void testParsesGeneratorData() {
+        assertEquals(97.0, FrameEncoder.parseData("97.0%"));
+        assertEquals(-0.25, FrameEncoder.parseData("-0.25"));
+        assertEquals(1.0, FrameEncoder.parseData("triggered"));
+        assertEquals(0.0, FrameEncoder.parseData("resolved"));
+        assertTrue(Double.isNaN(FrameEncoder.parseData("unknown")));
+    }
+}
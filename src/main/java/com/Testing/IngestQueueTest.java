@@ -0,0 +1,138 @@
+package com.Testing;
+
+import com.data_management.DataStorage;
+import com.data_management.IngestQueue;
+import com.data_management.PatientRecord;
+import com.data_management.SignalRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestQueueTest {
+
+    private static final int ECG = SignalRegistry.idOf("ECG");
+
+    @Test
+    void testStoresEveryReadingInOrderPerPatient() throws InterruptedException {
+        DataStorage storage = new DataStorage();
+        IngestQueue queue = new IngestQueue(storage, 64, 2, IngestQueue.Overflow.BLOCK);
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; p++) {
+            int patientId = p + 1;
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    assertTrue(queue.offer(patientId, ECG, i, i));
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        queue.close();
+
+        assertEquals(80_000, queue.getStoredCount());
+        assertEquals(0, queue.getQueueDepth());
+        assertEquals(0, queue.getDroppedCount() + queue.getRejectedCount());
+        for (int patientId = 1; patientId <= producers.length; patientId++) {
+            List<PatientRecord> records = storage.getRecords(patientId, "ECG", 0, Long.MAX_VALUE);
+            assertEquals(20_000, records.size());
+            for (int i = 0; i < records.size(); i++) {
+                assertEquals(i, records.get(i).getMeasurementValue());
+            }
+        }
+        assertFalse(queue.offer(1, ECG, 0, 0), "closed");
+    }
+
+    @Test
+    void testFullQueueRejectsOrDropsOldest() throws InterruptedException {
+        for (IngestQueue.Overflow overflow : new IngestQueue.Overflow[]{
+                IngestQueue.Overflow.REJECT, IngestQueue.Overflow.DROP_OLDEST}) {
+            DataStorage storage = new DataStorage();
+            CountDownLatch storing = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            // Hold the consumer inside the storage while the queue fills
+            storage.addRecordListener((patientId, signalId, timestamp, value) -> {
+                storing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            IngestQueue queue = new IngestQueue(storage, 8, 1, overflow);
+            assertTrue(queue.offer(1, ECG, 0, 0));
+            assertTrue(storing.await(10, TimeUnit.SECONDS));
+            for (int i = 1; i <= 12; i++) {
+                assertEquals(i <= 8 || overflow == IngestQueue.Overflow.DROP_OLDEST, queue.offer(1, ECG, i, i));
+            }
+            assertEquals(8, queue.getQueueDepth());
+            assertTrue(queue.getLagMillis() >= 0);
+            release.countDown();
+            queue.close();
+
+            List<PatientRecord> records = storage.getRecords(1, "ECG", 0, Long.MAX_VALUE);
+            assertEquals(9, records.size());
+            // The reading being stored, then the first eight queued, or the last eight
+            double first = overflow == IngestQueue.Overflow.REJECT ? 1 : 5;
+            assertEquals(first, records.get(1).getMeasurementValue());
+            assertEquals(first + 7, records.get(8).getMeasurementValue());
+            assertEquals(overflow == IngestQueue.Overflow.REJECT ? 4 : 0, queue.getRejectedCount());
+            assertEquals(overflow == IngestQueue.Overflow.DROP_OLDEST ? 4 : 0, queue.getDroppedCount());
+            assertEquals(9, queue.getStoredCount());
+        }
+    }
+
+    @Test
+    void testCloseStoresEveryAcceptedReading() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            DataStorage storage = new DataStorage();
+            IngestQueue queue = new IngestQueue(storage, 1024, 2, IngestQueue.Overflow.BLOCK);
+            AtomicLong accepted = new AtomicLong();
+            Thread[] producers = new Thread[4];
+            for (int p = 0; p < producers.length; p++) {
+                int patientId = p + 1;
+                producers[p] = new Thread(() -> {
+                    for (int i = 0; queue.offer(patientId, ECG, i, i); i++) {
+                        accepted.incrementAndGet();
+                    }
+                });
+                producers[p].start();
+            }
+            Thread.sleep(2);
+            queue.close();
+            for (Thread producer : producers) {
+                producer.join();
+            }
+
+            assertEquals(accepted.get(), queue.getStoredCount());
+            assertEquals(accepted.get(), storage.getRecords(1, 0, Long.MAX_VALUE).size()
+                    + storage.getRecords(2, 0, Long.MAX_VALUE).size() + storage.getRecords(3, 0, Long.MAX_VALUE).size()
+                    + storage.getRecords(4, 0, Long.MAX_VALUE).size());
+        }
+    }
+
+    @Test
+    void testFailedBatchesAreNotCountedAsStored() {
+        DataStorage storage = new DataStorage();
+        storage.addRecordListener((patientId, signalId, timestamp, value) -> {
+            throw new IllegalStateException("Storage unavailable");
+        });
+        IngestQueue queue = new IngestQueue(storage);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(queue.offer(1, ECG, i, i));
+        }
+        queue.close();
+
+        assertEquals(100, queue.getFailedCount());
+        assertEquals(0, queue.getStoredCount());
+        assertEquals(0, queue.getBatchCount());
+    }
+}
@@ -2,6 +2,7 @@ package com.Testing;
 
 import com.data_management.Patient;
 import com.data_management.PatientRecord;
+import com.data_management.SignalRegistry;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -48,4 +49,43 @@ class PatientTest {
         // Check if no records are retrieved
         assertEquals(0, records.size());
     }
+
+    @Test
+    void testOutOfOrderRecordsAreReturnedSorted() {
+        Patient patient = new Patient(1);
+
+        // Add records out of timestamp order, across two record types
+        patient.addRecord(110.0, "HeartRate", 1609632000000L); // Jan 3, 2023
+        patient.addRecord(100.0, "HeartRate", 1609459200000L); // Jan 1, 2023
+        patient.addRecord(95.0, "Saturation", 1609545600000L); // Jan 2, 2023
+        patient.addRecord(105.0, "HeartRate", 1609545600001L);
+
+        List<PatientRecord> records = patient.getRecords(1609459200000L, 1609632000000L);
+
+        assertEquals(4, records.size());
+        assertEquals(100.0, records.get(0).getMeasurementValue());
+        assertEquals("Saturation", records.get(1).getRecordType());
+        assertEquals(105.0, records.get(2).getMeasurementValue());
+        assertEquals(110.0, records.get(3).getMeasurementValue());
+
+        List<PatientRecord> heartRates = patient.getRecords("HeartRate", 1609459200001L, 1609632000000L);
+        assertEquals(2, heartRates.size());
+        assertEquals(105.0, heartRates.get(0).getMeasurementValue());
+
+        // The result is a read-only view
+        assertThrows(UnsupportedOperationException.class, () -> records.add(records.get(0)));
+    }
+
+    @Test
+    void testQueryingUnknownTypeDoesNotRegisterIt() {
+        Patient patient = new Patient(1);
+        patient.addRecord(100.0, "HeartRate", 1609459200000L);
+        int signals = SignalRegistry.count();
+
+        assertTrue(patient.getRecords("NoSuchRecordType", 0, Long.MAX_VALUE).isEmpty());
+        assertNull(patient.getSeries("NoSuchRecordType"));
+        assertEquals(0, patient.getBytesUsed("NoSuchRecordType"));
+        assertEquals(-1, SignalRegistry.find("NoSuchRecordType"));
+        assertEquals(signals, SignalRegistry.count());
+    }
 }
@@ -0,0 +1,96 @@
+package com.Testing;
+
+import com.alerts.PatientWindows;
+import com.data_management.HeartRateDeriver;
+import com.data_management.SignalRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PatientWindowsTest {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final int RR_INTERVAL = SignalRegistry.idOf(HeartRateDeriver.RR_INTERVAL);
+    private static final int SYSTOLIC = SignalRegistry.idOf("SystolicPressure");
+    private static final int DIASTOLIC = SignalRegistry.idOf("DiastolicPressure");
+    private static final int SATURATION = SignalRegistry.idOf("Saturation");
+
+    @Test
+    void testIrregularBeatMatchesRescan() {
+        PatientWindows windows = new PatientWindows();
+        windows.trackIrregularBeat(RR_INTERVAL);
+        List<long[]> beats = new ArrayList<>(); // timestamp, RR interval
+        Random random = new Random(7);
+        long now = 1_700_000_000_000L;
+        for (int i = 0; i < 5000; i++) {
+            now += 500 + random.nextInt(10_000);
+            long interval = random.nextInt(50) == 0 ? 400 : 800 + random.nextInt(100);
+            windows.add(RR_INTERVAL, now, interval);
+            beats.add(new long[]{now, interval});
+
+            boolean expected = false;
+            for (int j = 1; j < beats.size(); j++) {
+                long[] previous = beats.get(j - 1);
+                long[] current = beats.get(j);
+                if (previous[0] >= now - 5 * MINUTE
+                        && Math.abs(current[1] - previous[1]) > 0.2 * previous[1]) {
+                    expected = true;
+                }
+            }
+            assertEquals(expected, windows.irregularBeat(RR_INTERVAL, now), "at beat " + i);
+        }
+    }
+
+    @Test
+    void testPressureTrendNeedsThreeMinutesOfChange() {
+        PatientWindows windows = new PatientWindows();
+        windows.trackBloodPressureTrend(SYSTOLIC, DIASTOLIC);
+        long start = 1_700_000_000_000L / MINUTE * MINUTE;
+        // Flat, normal pressure
+        for (int minute = 0; minute < 3; minute++) {
+            windows.add(SYSTOLIC, start + minute * MINUTE, 120);
+            windows.add(DIASTOLIC, start + minute * MINUTE, 80);
+        }
+        assertFalse(windows.bloodPressureTrend(SYSTOLIC, DIASTOLIC, start + 2 * MINUTE));
+
+        // Falling systolic pressure, with no diastolic readings
+        PatientWindows falling = new PatientWindows();
+        falling.trackBloodPressureTrend(SYSTOLIC, DIASTOLIC);
+        falling.add(SYSTOLIC, start, 150);
+        falling.add(SYSTOLIC, start + MINUTE, 135);
+        assertFalse(falling.bloodPressureTrend(SYSTOLIC, DIASTOLIC, start + MINUTE));
+        falling.add(SYSTOLIC, start + 2 * MINUTE, 120);
+        assertTrue(falling.bloodPressureTrend(SYSTOLIC, DIASTOLIC, start + 2 * MINUTE));
+        // A minute without readings breaks the trend
+        falling.add(SYSTOLIC, start + 4 * MINUTE, 105);
+        assertFalse(falling.bloodPressureTrend(SYSTOLIC, DIASTOLIC, start + 4 * MINUTE));
+    }
+
+    @Test
+    void testRapidDropAndLatestReadings() {
+        PatientWindows windows = new PatientWindows();
+        windows.trackRapidSaturationDrop(SATURATION);
+        long now = 1_700_000_000_000L;
+        for (int second = 0; second < 600; second++) {
+            windows.add(SATURATION, now + second * 1000L, 98);
+        }
+        long last = now + 600 * 1000L;
+        windows.add(SATURATION, last, 93);
+        assertTrue(windows.rapidSaturationDrop(SATURATION, last));
+        assertEquals(Long.MIN_VALUE, windows.latestTimestamp(SYSTOLIC));
+
+        windows.add(SYSTOLIC, last, 85);
+        windows.add(SATURATION, last + 1000, 91);
+        assertEquals(85, windows.latest(SYSTOLIC));
+        assertEquals(91, windows.latest(SATURATION));
+        assertEquals(last + 1000, windows.latestTimestamp(SATURATION));
+        // The 98% readings have left the window
+        assertFalse(windows.rapidSaturationDrop(SATURATION, last + 12 * MINUTE));
+    }
+}
@@ -0,0 +1,129 @@
+package com.Testing;
+
+import com.alerts.AlertChannel;
+import com.alerts.AlertProcessor;
+import com.alerts.AlertState;
+import com.alerts.DispatchPolicy;
+import com.alerts.ReplayClock;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.data_management.ActiveAlerts;
+import com.data_management.DataStorage;
+import com.data_management.HeartRateDeriver;
+import com.data_management.PatientRecord;
+import com.data_management.QrsDetector;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QrsDetectorTest {
+
+    private static final int RATE = 250;
+
+    /** A sharp R wave every {@code rrMillis}, on a slow baseline wander with T waves. */
+    private static double beat(long t, long rrMillis) {
+        double phase = (t % rrMillis) / (double) rrMillis;
+        double r = (phase - 0.4) * rrMillis / 12.0;
+        double tWave = (phase - 0.7) * rrMillis / 60.0;
+        return 1.2 * Math.exp(-0.5 * r * r) + 0.3 * Math.exp(-0.5 * tWave * tWave)
+                + 0.2 * Math.sin(2 * Math.PI * t / 5000.0);
+    }
+
+    @Test
+    void testFindsEveryBeatAtSteadyRate() {
+        QrsDetector detector = new QrsDetector(RATE);
+        List<Long> beats = new ArrayList<>();
+        for (long t = 0; t < 60_000; t += 1000 / RATE) {
+            long beat = detector.add(t, beat(t, 800));
+            if (beat != Long.MIN_VALUE) {
+                beats.add(beat);
+            }
+        }
+        // 75 per minute, less the learning phase
+        assertTrue(beats.size() >= 70 && beats.size() <= 73, "beats: " + beats.size());
+        for (int i = 1; i < beats.size(); i++) {
+            long rr = beats.get(i) - beats.get(i - 1);
+            assertTrue(Math.abs(rr - 800) <= 8, "RR " + rr + " at beat " + i);
+            // The R peak is 40% into each cycle
+            assertTrue(Math.abs(beats.get(i) % 800 - 320) <= 20, "beat at " + beats.get(i) % 800);
+        }
+    }
+
+    @Test
+    void testFollowsRateChangesAndSkipsGaps() {
+        QrsDetector detector = new QrsDetector(RATE);
+        List<Long> beats = new ArrayList<>();
+        for (long t = 0; t < 40_000; t += 1000 / RATE) {
+            if (t >= 20_000 && t < 25_000) {
+                continue; // Five seconds without data
+            }
+            long beat = detector.add(t, beat(t, t < 20_000 ? 1000 : 500));
+            if (beat != Long.MIN_VALUE) {
+                beats.add(beat);
+            }
+        }
+        for (int i = 1; i < beats.size(); i++) {
+            long rr = beats.get(i) - beats.get(i - 1);
+            if (beats.get(i) < 20_000) {
+                assertTrue(Math.abs(rr - 1000) <= 8, "RR " + rr);
+            } else if (beats.get(i - 1) >= 25_000) {
+                assertTrue(Math.abs(rr - 500) <= 8, "RR " + rr);
+            }
+        }
+        assertTrue(beats.stream().filter(beat -> beat >= 25_000).count() >= 22);
+        assertThrows(IllegalArgumentException.class, () -> new QrsDetector(50));
+    }
+
+    @Test
+    void testDerivesHeartRateFromGeneratedEcg() {
+        DataStorage storage = new DataStorage();
+        HeartRateDeriver deriver = new HeartRateDeriver(storage, RATE);
+        deriver.attach();
+        ReplayClock clock = new ReplayClock(1_000_000);
+        ECGDataGenerator generator = new ECGDataGenerator(1, storage, clock, RATE);
+        for (int second = 0; second < 60; second++) {
+            clock.advanceTo(clock.millis() + 1000);
+            generator.generate(1, (patientId, timestamp, label, data) -> { });
+        }
+
+        assertEquals(60 * RATE, storage.getRecords(1, "ECG", 0, Long.MAX_VALUE).size());
+        List<PatientRecord> rates = storage.getRecords(1, HeartRateDeriver.HEART_RATE, 0, Long.MAX_VALUE);
+        List<PatientRecord> intervals = storage.getRecords(1, HeartRateDeriver.RR_INTERVAL, 0, Long.MAX_VALUE);
+        // The generator keeps the rate within 55 to 90 beats per minute
+        assertTrue(rates.size() >= 50 && rates.size() <= 90, "beats: " + rates.size());
+        assertEquals(rates.size(), intervals.size());
+        for (PatientRecord rate : rates) {
+            assertTrue(rate.getMeasurementValue() >= 50 && rate.getMeasurementValue() <= 95,
+                    "heart rate " + rate.getMeasurementValue());
+        }
+    }
+
+    @Test
+    void testTachycardiaRaisesHeartRateAlert() {
+        DataStorage storage = new DataStorage();
+        new HeartRateDeriver(storage, RATE).attach();
+        AlertProcessor processor = new AlertProcessor(storage, new ActiveAlerts());
+        processor.attach();
+        List<String> conditions = Collections.synchronizedList(new ArrayList<>());
+        AlertChannel channel = new AlertChannel("test", batch -> batch.forEach(
+                alert -> conditions.add(alert.getState() + " " + alert.getCondition())), new DispatchPolicy());
+        processor.addChannel(channel);
+        processor.setPrintAlerts(false);
+        long start = System.currentTimeMillis() - 60_000;
+        for (long t = 0; t < 20_000; t += 1000 / RATE) {
+            storage.addPatientData(1, beat(t, 400), "ECG", start + t); // 150 beats per minute
+        }
+        processor.evaluatePending();
+        channel.close();
+
+        assertTrue(conditions.contains(AlertState.RAISED + " " + HeartRateDeriver.HEART_RATE), conditions.toString());
+        // The rhythm is fast but regular
+        assertFalse(conditions.contains(AlertState.RAISED + " Irregular heart beat detected"), conditions.toString());
+    }
+}
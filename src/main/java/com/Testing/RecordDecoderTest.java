@@ -0,0 +1,96 @@
+package com.Testing;
+
+import com.data_management.FrameEncoder;
+import com.data_management.RecordDecoder;
+import com.data_management.SignalRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordDecoderTest {
+
+    @Test
+    void testDecodesBothMessageForms() {
+        RecordDecoder decoder = new RecordDecoder();
+        assertTrue(decoder.decode("Patient ID: 12, Timestamp: 1700000000000, Label: Saturation, Data: 97.0%"));
+        assertEquals(12, decoder.getPatientId());
+        assertEquals(1700000000000L, decoder.getTimestamp());
+        assertEquals(SignalRegistry.idOf("Saturation"), decoder.getSignalId());
+        assertEquals(97.0, decoder.getValue());
+
+        assertTrue(decoder.decode("7,1700000000001,ECG,-0.58867437274479"));
+        assertEquals(7, decoder.getPatientId());
+        assertEquals(1700000000001L, decoder.getTimestamp());
+        assertEquals(SignalRegistry.idOf("ECG"), decoder.getSignalId());
+        assertEquals(-0.58867437274479, decoder.getValue());
+
+        assertTrue(decoder.decode("Patient ID: 3, Timestamp: 5, Label: Alert, Data: triggered"));
+        assertEquals(1.0, decoder.getValue());
+        assertTrue(decoder.decode("3,6,Alert,resolved"));
+        assertEquals(0.0, decoder.getValue());
+        assertEquals(4, decoder.getDecodedCount());
+    }
+
+    @Test
+    void testDecodesAlertsLikeTheOtherIngestPaths() {
+        RecordDecoder decoder = new RecordDecoder();
+        assertTrue(decoder.decode("3,5,Alert,triggered"));
+        assertEquals(SignalRegistry.idOf("Alert"), decoder.getSignalId());
+        assertEquals(FrameEncoder.parseData("triggered"), decoder.getValue());
+        assertTrue(decoder.decode("Patient ID: 3, Timestamp: 6, Label: Alert, Data: resolved"));
+        assertEquals(SignalRegistry.idOf("Alert"), decoder.getSignalId());
+        assertEquals(FrameEncoder.parseData("resolved"), decoder.getValue());
+        assertFalse(decoder.decode("3,7,Alert,Triggered"));
+        assertFalse(decoder.decode("3,7,Alert,1"));
+    }
+
+    @Test
+    void testDecodesMoreLabelsThanItKeeps() {
+        // Registered locally, so the test does not use up what remote clients may register
+        String[] labels = new String[150];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = "RecordCacheTest" + i;
+            SignalRegistry.idOf(labels[i]);
+        }
+        RecordDecoder decoder = new RecordDecoder();
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < labels.length; i++) {
+                assertTrue(decoder.decode("1," + i + "," + labels[i] + "," + i));
+                assertEquals(SignalRegistry.find(labels[i]), decoder.getSignalId());
+            }
+        }
+    }
+
+    @Test
+    void testRejectsMalformedMessagesWithoutChangingTheFields() {
+        RecordDecoder decoder = new RecordDecoder();
+        assertTrue(decoder.decode("1,1000,ECG,0.5"));
+        String[] malformed = {
+                "", "hello", "1,1000,ECG", "1,1000,ECG,0.5,extra", "x,1000,ECG,0.5", "1,,ECG,0.5",
+                "1,1000,,0.5", "1,1000,ECG,", "1,1000,ECG,abc", "99999999999,1000,ECG,0.5",
+                "1,1000,Alert,maybe", "Patient ID: 1, Timestamp: 10 00, Label: ECG, Data: 0.5"};
+        for (String message : malformed) {
+            assertFalse(decoder.decode(message), message);
+        }
+        assertEquals(malformed.length, decoder.getRejectedCount());
+        assertEquals(1, decoder.getPatientId());
+        assertEquals(0.5, decoder.getValue());
+    }
+
+    @Test
+    void testParsesNumbersLikeDoubleParseDouble() {
+        RecordDecoder decoder = new RecordDecoder();
+        Random random = new Random(11);
+        for (int i = 0; i < 100_000; i++) {
+            double value = i % 3 == 0 ? random.nextGaussian() : i % 3 == 1
+                    ? random.nextDouble() * 200 : random.nextDouble() * 1e-6;
+            assertTrue(decoder.decode("1," + i + ",ECG," + value));
+            assertEquals(Double.doubleToLongBits(value), Double.doubleToLongBits(decoder.getValue()),
+                    "value " + value);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.Testing;
+
+import com.alerts.AlertProcessor;
+import com.alerts.RuleSet;
+import com.data_management.ActiveAlerts;
+import com.data_management.DataStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuleSetTest {
+
+    private DataStorage dataStorage;
+    private AlertProcessor alertProcessor;
+
+    private final ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+    private final PrintStream originalOut = System.out;
+
+    @BeforeEach
+    void setUp() {
+        dataStorage = new DataStorage();
+        alertProcessor = new AlertProcessor(dataStorage, new ActiveAlerts(new ArrayList<>(Arrays.asList(1, 2))));
+        System.setOut(new PrintStream(outContent));
+    }
+
+    @AfterEach
+    void restoreSystemOut() {
+        System.setOut(originalOut);
+    }
+
+    @Test
+    void testDefaultRulesCheckSaturation() {
+        dataStorage.addPatientData(1, 91, "Saturation", System.currentTimeMillis());
+
+        alertProcessor.evaluateData();
+
+        assertTrue(outContent.toString().contains("Condition: Saturation"));
+    }
+
+    @Test
+    void testReloadedRulesApplyToNextPass() {
+        alertProcessor.attach();
+        long now = System.currentTimeMillis();
+        dataStorage.addPatientData(1, 38.5, "Temperature", now - 2000);
+        alertProcessor.evaluatePending();
+        assertFalse(outContent.toString().contains("Fever"));
+
+        Properties properties = new Properties();
+        properties.setProperty("fever.type", "threshold");
+        properties.setProperty("fever.signal", "Temperature");
+        properties.setProperty("fever.above", "38");
+        properties.setProperty("fever.condition", "Fever");
+        properties.setProperty("shock.type", "composite");
+        properties.setProperty("shock.when", "Temperature > 38 & HeartRate > 120");
+        properties.setProperty("shock.within", "60000");
+        properties.setProperty("shock.condition", "Possible shock");
+        alertProcessor.setRules(RuleSet.parse(properties));
+
+        dataStorage.addPatientData(1, 39.0, "Temperature", now - 1000);
+        alertProcessor.evaluatePending();
+        assertTrue(outContent.toString().contains("Condition: Fever"));
+        assertFalse(outContent.toString().contains("Possible shock"));
+
+        dataStorage.addPatientData(1, 130, "HeartRate", now);
+        alertProcessor.evaluatePending();
+        assertTrue(outContent.toString().contains("Condition: Possible shock"));
+    }
+
+    @Test
+    void testCompositeJoinsFreshReadingsOnGrid() {
+        Properties properties = new Properties();
+        properties.setProperty("shock.type", "composite");
+        properties.setProperty("shock.when", "SystolicPressure < 90 & Saturation < 92 & HeartRate > 120");
+        properties.setProperty("shock.within", "10000");
+        properties.setProperty("shock.grid", "1000");
+        properties.setProperty("shock.condition", "Possible shock");
+        alertProcessor.setRules(RuleSet.parse(properties));
+        alertProcessor.attach();
+        long start = System.currentTimeMillis() / 1000 * 1000 - 60_000;
+
+        // Patient 1: every reading within 10 seconds of the last one
+        dataStorage.addPatientData(1, 90, "Saturation", start);
+        dataStorage.addPatientData(1, 85, "SystolicPressure", start + 5000);
+        alertProcessor.evaluatePending();
+        assertFalse(outContent.toString().contains("Possible shock"));
+        // Recorded a moment before the systolic reading, in the same second
+        dataStorage.addPatientData(1, 130, "HeartRate", start + 10_900);
+        alertProcessor.evaluatePending();
+        assertTrue(outContent.toString().contains("Patient ID: 1\nCondition: Possible shock"));
+
+        // Patient 2: the saturation reading is stale by the time the heart rate arrives
+        dataStorage.addPatientData(2, 90, "Saturation", start);
+        dataStorage.addPatientData(2, 85, "SystolicPressure", start + 5000);
+        dataStorage.addPatientData(2, 130, "HeartRate", start + 11_000);
+        alertProcessor.evaluatePending();
+        assertFalse(outContent.toString().contains("Patient ID: 2\nCondition: Possible shock"));
+    }
+
+    @Test
+    void testCompositeAlertsMatchIncrementallyAndInFullScans() {
+        long start = System.currentTimeMillis() / 1000 * 1000 - 30_000;
+        // The second saturation reading is in the same second as the systolic one, but later
+        alertProcessor.attach();
+        dataStorage.addPatientData(1, 85, "Saturation", start);
+        dataStorage.addPatientData(1, 85, "SystolicPressure", start + 10_000);
+        dataStorage.addPatientData(1, 97, "Saturation", start + 10_500);
+        alertProcessor.evaluatePending();
+        String incremental = compositeAlerts(outContent.toString());
+
+        outContent.reset();
+        DataStorage scanned = new DataStorage();
+        scanned.addPatientData(1, 85, "Saturation", start);
+        scanned.addPatientData(1, 85, "SystolicPressure", start + 10_000);
+        scanned.addPatientData(1, 97, "Saturation", start + 10_500);
+        new AlertProcessor(scanned, new ActiveAlerts(new ArrayList<>(Arrays.asList(1)))).evaluateData();
+
+        assertTrue(incremental.contains("Timestamp: " + (start + 10_000)), incremental);
+        assertEquals(incremental, compositeAlerts(outContent.toString()));
+    }
+
+    /** The printed alerts of the default composite rule, one per line. */
+    private static String compositeAlerts(String output) {
+        StringBuilder alerts = new StringBuilder();
+        String[] lines = output.split("\n");
+        for (int i = 0; i + 3 < lines.length; i++) {
+            if (lines[i + 2].equals("Condition: Hypotensive Hypoxemia detected")) {
+                alerts.append(String.join(" ", lines[i], lines[i + 1], lines[i + 3])).append('\n');
+            }
+        }
+        return alerts.toString();
+    }
+
+    @Test
+    void testTrendReadsConfiguredRecordTypes() {
+        alertProcessor.attach();
+        alertProcessor.setRules(new RuleSet().trend("rapidSaturationDrop", new String[]{"CerebralSaturation"},
+                "Cerebral desaturation"));
+        long now = System.currentTimeMillis();
+        dataStorage.addPatientData(1, 98, "Saturation", now - 60_000);
+        dataStorage.addPatientData(1, 90, "Saturation", now - 1000);
+        alertProcessor.evaluatePending();
+        assertFalse(outContent.toString().contains("Cerebral desaturation"));
+
+        dataStorage.addPatientData(2, 75, "CerebralSaturation", now - 60_000);
+        dataStorage.addPatientData(2, 68, "CerebralSaturation", now - 1000);
+        alertProcessor.evaluatePending();
+        assertTrue(outContent.toString().contains("Patient ID: 2\nCondition: Cerebral desaturation"));
+
+        // The full scan runs the same rule
+        alertProcessor.detach();
+        dataStorage.addPatientData(1, 75, "CerebralSaturation", now - 50_000);
+        dataStorage.addPatientData(1, 68, "CerebralSaturation", now - 500);
+        alertProcessor.evaluateData();
+        assertTrue(outContent.toString().contains("Patient ID: 1\nCondition: Cerebral desaturation"));
+    }
+
+    @Test
+    void testMalformedRulesAreRejected() {
+        Properties properties = new Properties();
+        properties.setProperty("bad.type", "threshold");
+        assertThrows(IllegalArgumentException.class, () -> RuleSet.parse(properties));
+
+        properties.setProperty("bad.type", "strategy");
+        properties.setProperty("bad.signal", "ECG");
+        properties.setProperty("bad.class", "java.lang.String");
+        assertThrows(IllegalArgumentException.class, () -> RuleSet.parse(properties));
+
+        properties.setProperty("bad.type", "trend");
+        properties.setProperty("bad.check", "bloodPressureTrend");
+        properties.setProperty("bad.signals", "SystolicPressure");
+        assertThrows(IllegalArgumentException.class, () -> RuleSet.parse(properties));
+
+        properties.setProperty("bad.type", "composite");
+        properties.setProperty("bad.when", "ECG = 3");
+        assertThrows(IllegalArgumentException.class, () -> RuleSet.parse(properties));
+    }
+}
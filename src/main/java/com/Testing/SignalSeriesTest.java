@@ -0,0 +1,157 @@
+package com.Testing;
+
+import com.data_management.Aggregate;
+import com.data_management.Resolution;
+import com.data_management.SignalRegistry;
+import com.data_management.SignalSeries;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SignalSeriesTest {
+
+    @Test
+    void testRandomInsertsStaySorted() {
+        SignalSeries series = new SignalSeries(SignalRegistry.idOf("ECG"));
+        Random random = new Random(42);
+        long[] expected = new long[5000];
+        for (int i = 0; i < expected.length; i++) {
+            // Mostly in order, with frequent late samples spread over several chunks
+            long timestamp = random.nextInt(10) == 0 ? random.nextInt(i + 1) * 10L : i * 10L;
+            expected[i] = timestamp;
+            series.append(timestamp, timestamp / 10.0);
+        }
+        Arrays.sort(expected);
+
+        SignalSeries.Snapshot snapshot = series.snapshot();
+        assertEquals(expected.length, snapshot.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], snapshot.timestampAt(i));
+            assertEquals(expected[i] / 10.0, snapshot.valueAt(i));
+        }
+        for (long probe = 0; probe < 50_000L; probe += 777) {
+            assertEquals(countBelow(expected, probe), snapshot.lowerBound(probe));
+            assertEquals(countBelow(expected, probe + 1), snapshot.upperBound(probe));
+        }
+    }
+
+    @Test
+    void testRetentionBoundsHistoryAndMemory() {
+        // Keep one second, or at most 100 samples
+        SignalSeries series = new SignalSeries(SignalRegistry.idOf("ECG"), 1000L, 100);
+        for (int i = 0; i < 100_000; i++) {
+            series.append(i * 20L, i); // 50 Hz, so the time bound keeps 51 samples
+        }
+
+        SignalSeries.Snapshot snapshot = series.snapshot();
+        assertEquals(51, snapshot.size());
+        assertEquals(99_999 * 20L - 1000L, snapshot.timestampAt(0));
+        assertTrue(series.bytesUsed() <= SignalSeries.maxBytes(100));
+
+        long start = 2_000_000L;
+        for (int i = 0; i < 100_000; i++) {
+            series.append(start + i * 5L, i); // 200 Hz, so the sample bound kicks in
+        }
+        snapshot = series.snapshot();
+        assertEquals(100, snapshot.size());
+        assertEquals(start + 99_999 * 5L, snapshot.timestampAt(99));
+        assertTrue(series.bytesUsed() <= SignalSeries.maxBytes(100));
+
+        // A late sample outside the window is ignored
+        series.append(0L, -1);
+        assertEquals(100, series.snapshot().size());
+    }
+
+    @Test
+    void testCompressedHistoryMatchesRawHistory() {
+        SignalSeries raw = new SignalSeries(SignalRegistry.idOf("SystolicPressure"));
+        SignalSeries compressed = new SignalSeries(SignalRegistry.idOf("SystolicPressure"),
+                Long.MAX_VALUE, Integer.MAX_VALUE, 60_000L);
+        Random random = new Random(7);
+        long timestamp = 1_700_000_000_000L;
+        double value = 120;
+        for (int i = 0; i < 100_000; i++) {
+            timestamp += 1000 + random.nextInt(7) - 3; // 1 Hz with a few ms of jitter
+            value = Math.min(Math.max(value + random.nextInt(5) - 2, 90), 180);
+            long at = i % 500 == 0 ? timestamp - 3_600_000L : timestamp; // Some late samples into cold history
+            raw.append(at, value);
+            compressed.append(at, value);
+        }
+
+        SignalSeries.Snapshot expected = raw.snapshot();
+        SignalSeries.Snapshot actual = compressed.snapshot();
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.timestampAt(i), actual.timestampAt(i));
+            assertEquals(expected.valueAt(i), actual.valueAt(i));
+        }
+        for (long probe = timestamp - 100_000_000L; probe < timestamp; probe += 1_234_567L) {
+            assertEquals(expected.lowerBound(probe), actual.lowerBound(probe));
+            assertEquals(expected.upperBound(probe), actual.upperBound(probe));
+        }
+        assertTrue(compressed.bytesUsed() * 6 < raw.bytesUsed());
+    }
+
+    @Test
+    void testRollupsMatchRawSamples() {
+        SignalSeries series = new SignalSeries(SignalRegistry.idOf("ECG"));
+        Random random = new Random(11);
+        long[] timestamps = new long[50_000];
+        double[] values = new double[timestamps.length];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = random.nextInt(10) == 0 ? random.nextInt(i + 1) * 37L : i * 37L;
+            values[i] = random.nextInt(200) - 100;
+            series.append(timestamps[i], values[i]);
+        }
+
+        for (Resolution resolution : Resolution.values()) {
+            List<Aggregate> buckets = series.aggregates(0, Long.MAX_VALUE, resolution);
+            long total = 0;
+            for (Aggregate bucket : buckets) {
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                double sum = 0;
+                long count = 0;
+                long lastTimestamp = Long.MIN_VALUE;
+                double last = 0;
+                for (int i = 0; i < timestamps.length; i++) {
+                    if (timestamps[i] >= bucket.getStartTime() && timestamps[i] < bucket.getEndTime()) {
+                        min = Math.min(min, values[i]);
+                        max = Math.max(max, values[i]);
+                        sum += values[i];
+                        count++;
+                        if (timestamps[i] >= lastTimestamp) {
+                            lastTimestamp = timestamps[i];
+                            last = values[i];
+                        }
+                    }
+                }
+                assertEquals(count, bucket.getCount());
+                assertEquals(min, bucket.getMin());
+                assertEquals(max, bucket.getMax());
+                assertEquals(sum, bucket.getSum());
+                assertEquals(last, bucket.getLast());
+                total += count;
+            }
+            // Coarser resolutions keep the whole history, the per-second rollup only its newest buckets
+            if (resolution != Resolution.SECOND) {
+                assertEquals(timestamps.length, total);
+            } else {
+                assertEquals(Resolution.SECOND.getMaxBuckets(), buckets.size());
+            }
+        }
+    }
+
+    private static int countBelow(long[] sorted, long value) {
+        int count = 0;
+        while (count < sorted.length && sorted[count] < value) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,94 @@
+package com.Testing;
+
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.StorageJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StorageJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRecoversSnapshotAndLog() throws IOException {
+        DataStorage storage = new DataStorage();
+        StorageJournal journal = StorageJournal.open(directory, storage, 5, Long.MAX_VALUE);
+        for (int i = 0; i < 10_000; i++) {
+            storage.addPatientData(i % 3, i, i % 2 == 0 ? "ECG" : "Saturation", 1000L + i);
+        }
+        journal.checkpoint();
+        for (int i = 10_000; i < 15_000; i++) {
+            storage.addPatientData(i % 3, i, "HeartRate", 1000L + i);
+        }
+        journal.close();
+
+        DataStorage recovered = new DataStorage();
+        StorageJournal.open(directory, recovered).close();
+        for (int patientId = 0; patientId < 3; patientId++) {
+            List<PatientRecord> expected = storage.getRecords(patientId, 0, Long.MAX_VALUE);
+            List<PatientRecord> actual = recovered.getRecords(patientId, 0, Long.MAX_VALUE);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+                assertEquals(expected.get(i).getMeasurementValue(), actual.get(i).getMeasurementValue());
+                assertEquals(expected.get(i).getRecordType(), actual.get(i).getRecordType());
+            }
+        }
+    }
+
+    @Test
+    void testKeepsRepeatedSamplesLoggedAfterSnapshot() throws IOException {
+        DataStorage storage = new DataStorage();
+        StorageJournal journal = StorageJournal.open(directory, storage, 5, Long.MAX_VALUE);
+        for (int i = 0; i < 100; i++) {
+            storage.addPatientData(1, 98, "Saturation", 1000L + i);
+        }
+        journal.checkpoint();
+        // Two readings at the same time with the same value, both newer than the snapshot
+        storage.addPatientData(1, 97, "Saturation", 2000L);
+        storage.addPatientData(1, 97, "Saturation", 2000L);
+        journal.close();
+        assertEquals(102, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+
+        DataStorage recovered = new DataStorage();
+        StorageJournal.open(directory, recovered).close();
+        assertEquals(102, recovered.getRecords(1, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testIgnoresTornTail() throws IOException {
+        DataStorage storage = new DataStorage();
+        StorageJournal journal = StorageJournal.open(directory, storage);
+        for (int i = 0; i < 100; i++) {
+            storage.addPatientData(1, i, "ECG", i);
+        }
+        journal.sync();
+        storage.addPatientData(1, 100, "ECG", 100);
+        journal.close();
+
+        // Cut the last batch short, as if the process died while writing it
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.getFileName().toString().startsWith("wal-")).findFirst().get();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 4);
+        }
+
+        DataStorage recovered = new DataStorage();
+        StorageJournal.open(directory, recovered).close();
+        assertEquals(100, recovered.getRecords(1, 0, Long.MAX_VALUE).size());
+    }
+}
@@ -4,11 +4,17 @@ public class Alert implements AlertComponent {
     private String patientId;
     private String condition;
     private long timestamp;
+    private AlertState state;
 
     public Alert(String patientId, String condition, long timestamp) {
+        this(patientId, condition, timestamp, AlertState.RAISED);
+    }
+
+    public Alert(String patientId, String condition, long timestamp, AlertState state) {
         this.patientId = patientId;
         this.condition = condition;
         this.timestamp = timestamp;
+        this.state = state;
     }
 
     public String getPatientId() {
@@ -23,9 +29,18 @@ public class Alert implements AlertComponent {
         return timestamp;
     }
 
+    public AlertState getState() {
+        return state;
+    }
+
+    @Override
+    public Alert getAlert() {
+        return this;
+    }
+
     @Override
     public void sendAlert() {
-        System.out.println("Alert Triggered:");
+        System.out.println(state.getHeading());
         System.out.println("Patient ID: " + patientId);
         System.out.println("Condition: " + condition);
         System.out.println("Timestamp: " + timestamp);
@@ -0,0 +1,339 @@
+package com.alerts;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Backtests a rule set against recorded data: loads the text files the
+ * simulator writes with {@code --output file:<dir>} into memory, sorts every
+ * record by timestamp, and replays them through an {@link AlertReplay} with
+ * the given rules. Reports how many alerts each rule (condition) and each
+ * patient raised, how fast the records were evaluated, and the peak heap
+ * used while loading and while evaluating.
+ *
+ * <p>Unlike {@link AlertReplay}, which merges the files line by line, the
+ * whole recording is sorted, so records written slightly out of order by
+ * concurrent generators are still evaluated in event-time order, and the
+ * evaluation is timed apart from the parsing.
+ *
+ * <pre>
+ * java com.alerts.AlertBacktest [--rules file] [--scan] [--all] [--step millis] [--ecg-rate hz] [--top n] &lt;directory&gt;
+ * </pre>
+ *
+ * <ul>
+ *   <li>{@code --rules} evaluates the rules of a properties file, see
+ *       {@link RuleSet#load(Path)}, rather than the defaults</li>
+ *   <li>{@code --scan} evaluates with full scans of all patients rather than
+ *       incrementally</li>
+ *   <li>{@code --all} counts every alert rather than transitions only, see
+ *       {@link AlertProcessor#setTransitionsOnly(boolean)}</li>
+ *   <li>{@code --step} is the data time between passes, 1000 ms by default</li>
+ *   <li>{@code --ecg-rate} derives the heart rate from ECG recorded at that rate</li>
+ *   <li>{@code --top} is the number of patients listed, 20 by default</li>
+ * </ul>
+ */
+public class AlertBacktest {
+    private static final long DEFAULT_STEP_MILLIS = 1000;
+    private static final int DEFAULT_TOP = 20;
+    private static final int STATES = AlertState.values().length;
+
+    // The recording, in the order it was read; order holds the indexes sorted by timestamp
+    private int size;
+    private int[] patientIds = new int[1024];
+    private String[] labels = new String[1024];
+    private long[] timestamps = new long[1024];
+    private double[] values = new double[1024];
+    private int[] order = new int[0];
+    private long skippedLines;
+    private int files;
+
+    private final Map<String, long[]> conditionCounts = new TreeMap<>();
+    private final Map<String, long[]> patientCounts = new HashMap<>();
+    private long passes;
+    private long spanMillis;
+    private long loadNanos;
+    private long evaluateNanos;
+    private long loadPeakHeapBytes;
+    private long evaluatePeakHeapBytes;
+
+    /**
+     * Loads every {@code *.txt} file of a directory and sorts the records
+     * by timestamp; records with equal timestamps keep the order of the files,
+     * by name, and of their lines. Lines that cannot be parsed are skipped.
+     *
+     * @return the number of records loaded
+     * @throws IOException if the directory or a file cannot be read
+     */
+    public int load(Path directory) throws IOException {
+        resetPeakHeap();
+        long start = System.nanoTime();
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.txt")) {
+            stream.forEach(paths::add);
+        }
+        Collections.sort(paths);
+        int before = size;
+        for (Path path : paths) {
+            AlertReplay.TextSource source = new AlertReplay.TextSource(path);
+            try {
+                while (source.advance()) {
+                    append(source.patientId, source.label, source.timestamp, source.value);
+                }
+                skippedLines += source.skipped;
+            } finally {
+                source.close();
+            }
+            files++;
+        }
+        order = sortByTimestamp(timestamps, size);
+        loadNanos += System.nanoTime() - start;
+        loadPeakHeapBytes = Math.max(loadPeakHeapBytes, peakHeap());
+        return size - before;
+    }
+
+    private void append(int patientId, String label, long timestamp, double value) {
+        if (size == timestamps.length) {
+            int capacity = size * 2;
+            patientIds = Arrays.copyOf(patientIds, capacity);
+            labels = Arrays.copyOf(labels, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        patientIds[size] = patientId;
+        labels[size] = label;
+        timestamps[size] = timestamp;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Returns the indexes of the first {@code size} timestamps in timestamp
+     * order, with a stable bottom-up merge sort, so the records themselves
+     * are not moved or boxed.
+     */
+    static int[] sortByTimestamp(long[] timestamps, int size) {
+        int[] sorted = new int[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = i;
+        }
+        int[] buffer = new int[size];
+        for (int width = 1; width < size; width *= 2) {
+            for (int from = 0; from < size - width; from += 2 * width) {
+                int middle = from + width;
+                int to = Math.min(from + 2 * width, size);
+                if (timestamps[sorted[middle - 1]] <= timestamps[sorted[middle]]) {
+                    continue; // Already in order, as most runs of a recording are
+                }
+                int left = from;
+                int right = middle;
+                int out = from;
+                while (left < middle && right < to) {
+                    buffer[out++] = timestamps[sorted[right]] < timestamps[sorted[left]]
+                            ? sorted[right++] : sorted[left++];
+                }
+                while (left < middle) {
+                    buffer[out++] = sorted[left++];
+                }
+                while (right < to) {
+                    buffer[out++] = sorted[right++];
+                }
+                System.arraycopy(buffer, from, sorted, from, to - from);
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Evaluates the loaded records with a rule set, counting the alerts. The
+     * counts of earlier runs are replaced.
+     *
+     * @param rules           the rules, or null for the defaults
+     * @param fullScan        whether to evaluate with full scans rather than incrementally
+     * @param transitionsOnly false to count every alert, not only transitions
+     * @param stepMillis      the data time between passes, in milliseconds
+     * @param ecgSampleRate   the rate the ECG was recorded at, to derive the
+     *                        heart rate from, or 0 not to
+     */
+    public void run(RuleSet rules, boolean fullScan, boolean transitionsOnly, long stepMillis, int ecgSampleRate) {
+        conditionCounts.clear();
+        patientCounts.clear();
+        AlertReplay replay = new AlertReplay(fullScan, stepMillis);
+        if (rules != null) {
+            replay.getProcessor().setRules(rules);
+        }
+        replay.getProcessor().setTransitionsOnly(transitionsOnly);
+        replay.getProcessor().setPrintAlerts(false); // Only the counts are wanted
+        if (ecgSampleRate > 0) {
+            replay.deriveHeartRate(ecgSampleRate);
+        }
+        AlertChannel channel = new AlertChannel("backtest", this::count,
+                new DispatchPolicy().overflow(DispatchPolicy.Overflow.BLOCK));
+        replay.getProcessor().addChannel(channel);
+
+        resetPeakHeap();
+        long start = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            int record = order[i];
+            replay.replay(patientIds[record], labels[record], timestamps[record], values[record]);
+        }
+        replay.finish();
+        evaluateNanos = System.nanoTime() - start;
+        // Closing delivers the queued alerts and waits for the channel thread, so the counts are complete
+        channel.close();
+        evaluatePeakHeapBytes = peakHeap();
+        passes = replay.getPassCount();
+        spanMillis = replay.getSpanMillis();
+    }
+
+    // Called from the channel thread only
+    private void count(List<Alert> alerts) {
+        for (Alert alert : alerts) {
+            int state = alert.getState().ordinal();
+            conditionCounts.computeIfAbsent(alert.getCondition(), condition -> new long[STATES])[state]++;
+            patientCounts.computeIfAbsent(alert.getPatientId(), patient -> new long[STATES])[state]++;
+        }
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /** The sum of the peaks of the heap pools since they were reset, which may not all peak at once. */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid() && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /** The number of alerts a condition reported in a state by the last run. */
+    public long getAlertCount(String condition, AlertState state) {
+        long[] counts = conditionCounts.get(condition);
+        return counts == null ? 0 : counts[state.ordinal()];
+    }
+
+    /** The number of alerts a patient got in a state by the last run. */
+    public long getPatientAlertCount(String patientId, AlertState state) {
+        long[] counts = patientCounts.get(patientId);
+        return counts == null ? 0 : counts[state.ordinal()];
+    }
+
+    /** The conditions that reported alerts in the last run, in order. */
+    public List<String> getConditions() {
+        return new ArrayList<>(conditionCounts.keySet());
+    }
+
+    public int getRecordCount() {
+        return size;
+    }
+
+    public long getSkippedLines() {
+        return skippedLines;
+    }
+
+    public long getEvaluateNanos() {
+        return evaluateNanos;
+    }
+
+    public long getEvaluatePeakHeapBytes() {
+        return evaluatePeakHeapBytes;
+    }
+
+    private void report(PrintStream out, int top) {
+        out.printf("Loaded %,d records from %,d files in %,.3f s (%,d lines skipped), peak heap %,.1f MB%n",
+                size, files, loadNanos / 1e9, skippedLines, loadPeakHeapBytes / 1e6);
+        double seconds = evaluateNanos / 1e9;
+        out.printf("Evaluated %,d records spanning %,.1f s of data in %,.3f s: %,.0f records/s, "
+                        + "%,.0f x real time, %,d passes, peak heap %,.1f MB%n",
+                size, spanMillis / 1e3, seconds, size / seconds, spanMillis / 1e3 / seconds, passes,
+                evaluatePeakHeapBytes / 1e6);
+
+        out.printf("%n%-52s %10s %10s %10s%n", "Condition", "raised", "sustained", "cleared");
+        long[] totals = new long[STATES];
+        for (Map.Entry<String, long[]> entry : conditionCounts.entrySet()) {
+            long[] counts = entry.getValue();
+            out.printf("%-52s %,10d %,10d %,10d%n", entry.getKey(), counts[0], counts[1], counts[2]);
+            for (int state = 0; state < STATES; state++) {
+                totals[state] += counts[state];
+            }
+        }
+        out.printf("%-52s %,10d %,10d %,10d%n", "Total", totals[0], totals[1], totals[2]);
+
+        List<Map.Entry<String, long[]>> patients = new ArrayList<>(patientCounts.entrySet());
+        patients.sort((a, b) -> a.getValue()[0] != b.getValue()[0]
+                ? Long.compare(b.getValue()[0], a.getValue()[0])
+                : a.getKey().compareTo(b.getKey()));
+        out.printf("%n%-12s %10s %10s %10s   (%,d of %,d patients with alerts, by alerts raised)%n",
+                "Patient", "raised", "sustained", "cleared", Math.min(top, patients.size()), patients.size());
+        for (Map.Entry<String, long[]> entry : patients.subList(0, Math.min(top, patients.size()))) {
+            long[] counts = entry.getValue();
+            out.printf("%-12s %,10d %,10d %,10d%n", entry.getKey(), counts[0], counts[1], counts[2]);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path rulesFile = null;
+        boolean fullScan = false;
+        boolean transitionsOnly = true;
+        long step = DEFAULT_STEP_MILLIS;
+        int ecgRate = 0;
+        int top = DEFAULT_TOP;
+        Path directory = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--rules":
+                    rulesFile = Paths.get(args[++i]);
+                    break;
+                case "--scan":
+                    fullScan = true;
+                    break;
+                case "--all":
+                    transitionsOnly = false;
+                    break;
+                case "--step":
+                    step = Long.parseLong(args[++i]);
+                    break;
+                case "--ecg-rate":
+                    ecgRate = Integer.parseInt(args[++i]);
+                    break;
+                case "--top":
+                    top = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    directory = Paths.get(args[i]);
+            }
+        }
+        if (directory == null || !Files.isDirectory(directory)) {
+            System.err.println("Usage: AlertBacktest [--rules file] [--scan] [--all] [--step millis] "
+                    + "[--ecg-rate hz] [--top n] <directory>");
+            System.exit(1);
+        }
+        RuleSet rules = rulesFile == null ? null : RuleSet.load(rulesFile);
+
+        AlertBacktest backtest = new AlertBacktest();
+        backtest.load(directory);
+        backtest.run(rules, fullScan, transitionsOnly, step, ecgRate);
+        backtest.report(System.out, top);
+    }
+}
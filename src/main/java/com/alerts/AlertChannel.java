@@ -0,0 +1,282 @@
+package com.alerts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends alerts to an {@link AlertGateway} from a thread of its own, so a slow
+ * gateway does not hold up the thread that raised the alerts.
+ *
+ * <p>Alerts wait in a bounded queue and are sent in batches, one gateway call
+ * per batch; see {@link DispatchPolicy} for the queue size, batching, retries
+ * and what happens when the queue is full. A batch that still fails after the
+ * last attempt is logged and given up. The counters and latencies describe
+ * everything offered since the channel was created.
+ */
+public class AlertChannel implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(AlertChannel.class.getName());
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final String name;
+    private final AlertGateway gateway;
+    private final DispatchPolicy policy;
+    private final BlockingQueue<Queued> queue;
+    private final Thread worker;
+    private volatile boolean closed;
+
+    private final LongAdder offered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    /**
+     * Creates a channel and starts its thread.
+     *
+     * @param name    the name of the channel, such as "email", used in logs
+     * @param gateway delivers the batches
+     * @param policy  the queueing, batching and retry settings; the capacity
+     *                is fixed now, the rest is read as the channel runs
+     */
+    public AlertChannel(String name, AlertGateway gateway, DispatchPolicy policy) {
+        this.name = name;
+        this.gateway = gateway;
+        this.policy = policy;
+        this.queue = new ArrayBlockingQueue<>(policy.getCapacity());
+        this.worker = new Thread(this::run, "alert-channel-" + name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queues an alert to be sent. With {@link DispatchPolicy.Overflow#BLOCK}
+     * this waits for room in the queue; otherwise it never blocks.
+     *
+     * @param alert the alert
+     * @return false if the alert was dropped, because the queue is full and
+     *         the policy drops new alerts, or because the channel is closed
+     */
+    public boolean offer(Alert alert) {
+        offered.increment();
+        if (closed) {
+            dropped.increment();
+            return false;
+        }
+        Queued queued = new Queued(alert, System.nanoTime());
+        if (!enqueue(queued)) {
+            dropped.increment();
+            return false;
+        }
+        // The worker may have finished while this alert was being queued; then nothing would send it
+        if (closed && !worker.isAlive() && queue.remove(queued)) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean enqueue(Queued queued) {
+        switch (policy.getOverflow()) {
+            case BLOCK:
+                try {
+                    // Waits in steps, so a caller waiting for room notices that the channel closed
+                    while (!queue.offer(queued, IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        if (closed) {
+                            return false;
+                        }
+                    }
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            case DROP_OLDEST:
+                while (!queue.offer(queued)) {
+                    if (queue.poll() != null) {
+                        dropped.increment();
+                    }
+                }
+                return true;
+            default:
+                return queue.offer(queued);
+        }
+    }
+
+    /**
+     * Stops accepting alerts and waits until the queued ones have been sent
+     * or given up. Alerts queued by an {@link #offer} that raced with the
+     * worker finishing are counted as dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        while (queue.poll() != null) {
+            dropped.increment();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** The number of alerts waiting to be sent. */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /** The number of alerts offered, including dropped ones. */
+    public long getOfferedCount() {
+        return offered.sum();
+    }
+
+    /** The number of alerts dropped because the queue was full or the channel closed. */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /** The number of alerts the gateway accepted. */
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    /** The number of alerts given up after the last attempt failed. */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /** The number of batches the gateway accepted. */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /** The number of gateway calls that failed and were retried. */
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    /** The mean time from offering an alert to the gateway accepting it, in milliseconds. */
+    public double getAverageLatencyMillis() {
+        long count = sent.sum();
+        return count == 0 ? 0 : latencyNanos.sum() / 1e6 / count;
+    }
+
+    /** The longest time from offering an alert to the gateway accepting it, in milliseconds. */
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / 1e6;
+    }
+
+    private void run() {
+        List<Queued> batch = new ArrayList<>();
+        while (true) {
+            try {
+                Queued first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed && queue.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                fill(batch);
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                // Only close() ends the thread; an interrupt while idle holds no alerts
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Unexpected error in alert channel " + name, e);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Adds queued alerts to the batch until it is full or the linger time is
+     * up. An interrupt ends the wait early, keeping the alerts collected.
+     */
+    private void fill(List<Queued> batch) {
+        int batchSize = policy.getBatchSize();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(policy.getLingerMillis());
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || closed) {
+                queue.drainTo(batch, batchSize - batch.size());
+                return;
+            }
+            Queued next;
+            try {
+                next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Sends a batch, retrying as the policy says. An interrupt cuts the
+     * current backoff short rather than giving the batch up, so every batch
+     * ends up either sent or counted as failed.
+     */
+    private void dispatch(List<Queued> batch) {
+        List<Alert> alerts = new ArrayList<>(batch.size());
+        for (Queued queued : batch) {
+            alerts.add(queued.alert);
+        }
+        int maxAttempts = policy.getMaxAttempts();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                gateway.send(alerts);
+                break;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    failed.add(alerts.size());
+                    logger.log(Level.WARNING, "Giving up " + alerts.size() + " alerts on channel " + name
+                            + " after " + attempt + " attempts", e);
+                    return;
+                }
+                retries.increment();
+                try {
+                    Thread.sleep(policy.backoffMillis(attempt));
+                } catch (InterruptedException interrupted) {
+                    // Retry now
+                }
+            }
+        }
+        long now = System.nanoTime();
+        for (Queued queued : batch) {
+            long latency = now - queued.offeredAt;
+            latencyNanos.add(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        }
+        sent.add(alerts.size());
+        batches.increment();
+    }
+
+    private static final class Queued {
+        final Alert alert;
+        final long offeredAt;
+
+        Queued(Alert alert, long offeredAt) {
+            this.alert = alert;
+            this.offeredAt = offeredAt;
+        }
+    }
+}
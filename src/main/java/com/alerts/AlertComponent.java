@@ -2,5 +2,7 @@ package com.alerts;
 
 public interface AlertComponent {
     void sendAlert();
-}
 
+    /** Returns the alert this component sends, without its decorations. */
+    Alert getAlert();
+}
@@ -11,4 +11,9 @@ public abstract class AlertDecorator implements AlertComponent {
     public void sendAlert() {
         decoratedAlert.sendAlert();
     }
+
+    @Override
+    public Alert getAlert() {
+        return decoratedAlert.getAlert();
+    }
 }
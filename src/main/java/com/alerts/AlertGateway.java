@@ -0,0 +1,20 @@
+package com.alerts;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Delivers alerts to the outside world, such as an email or SMS service. An
+ * {@link AlertChannel} calls it from its own thread with batches of alerts, so
+ * an implementation may block on the network.
+ */
+public interface AlertGateway {
+
+    /**
+     * Delivers a batch of alerts in one call.
+     *
+     * @param alerts the alerts, in the order they were queued
+     * @throws IOException if the batch was not delivered; the channel retries it
+     */
+    void send(List<Alert> alerts) throws IOException;
+}
@@ -3,10 +3,21 @@ package com.alerts;
 import com.data_management.ActiveAlerts;
 import com.data_management.DataStorage;
 import com.data_management.Patient;
-import com.data_management.PatientRecord;
+import com.data_management.RecordListener;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -15,13 +26,47 @@ import java.util.logging.Logger;
  * and generating alerts when certain predefined conditions are met. This class
  * relies on a {@link DataStorage} instance to access patient data and evaluate
  * it against specific health criteria.
+ *
+ * <p>Data can be evaluated in two ways. {@link #evaluateData()} re-checks the
+ * last minute of every patient, reading the patient's records once per pass
+ * into an {@link EvaluationContext} that all its checks share. Once
+ * {@link #attach() attached} to the storage, the processor instead keeps a
+ * {@link PatientCursor} per patient and {@link #evaluatePending()} only
+ * evaluates the records added since the last pass, and only the rules those
+ * records can affect. Those rules are checked against the patient's
+ * {@link PatientWindows} instead of re-reading minutes of records.
+ *
+ * <p>Readings are checked against a {@link RuleSet}, which can be replaced at
+ * any time; each pass uses the rules that were current when it started.
+ *
+ * <p>With a {@link #setParallelism(int) parallelism} above 1, both kinds of
+ * evaluation are split into shards that run on a pool of that many workers.
+ * Each shard collects its alerts in its own buffer; the buffers are
+ * concatenated in shard order and triggered by the calling thread once all
+ * shards are done, so shards share no locks or output.
+ *
+ * <p>Both kinds of evaluation feed each patient's {@link AlertTracker}, and
+ * only report its transitions: a condition is reported when it is raised,
+ * again after its rule's re-notify interval while it keeps holding, and when
+ * it clears, rather than once for every reading, or every pass, in which it
+ * holds. {@link #setTransitionsOnly(boolean)} turns this off.
  */
 public class AlertProcessor {
 
-    private int IRREGULAR_BEAT_THRESHOLD = 5;
+    // More shards than workers, so that a shard of slow patients does not hold up the rest
+    private static final int SHARDS_PER_WORKER = 4;
     private static final Logger logger = Logger.getLogger(AlertProcessor.class.getName());
     private DataStorage dataStorage;
     private ActiveAlerts activeAlerts;
+    private final Clock clock;
+    private final Map<Integer, PatientCursor> cursors = new ConcurrentHashMap<>();
+    private final Queue<PatientCursor> pending = new ConcurrentLinkedQueue<>();
+    private final RecordListener listener = this::recordAdded;
+    private volatile RuleSet.Compiled rules = RuleSet.defaults().compile();
+    private volatile ForkJoinPool pool; // null to evaluate on the calling thread
+    private volatile boolean transitionsOnly = true;
+    private volatile boolean printAlerts = true;
+    private volatile AlertChannel[] channels = new AlertChannel[0]; // Copied on write
 
     /**
      * Constructs an {@code AlertGenerator} with a specified {@code DataStorage}.
@@ -32,9 +77,24 @@ public class AlertProcessor {
      *                    data
      */
     public AlertProcessor(DataStorage dataStorage, ActiveAlerts activeAlerts) {
+        this(dataStorage, activeAlerts, Clock.systemUTC());
+    }
+
+    /**
+     * Constructs an {@code AlertGenerator} that reads the current time from
+     * the given clock. Every pass reads it once, so all checks of a pass see
+     * the same time; a clock that follows recorded data replays it as fast as
+     * it can be evaluated.
+     *
+     * @param dataStorage  the data storage system that provides access to patient
+     *                     data
+     * @param activeAlerts the manually raised alerts
+     * @param clock        the source of the current time
+     */
+    public AlertProcessor(DataStorage dataStorage, ActiveAlerts activeAlerts, Clock clock) {
         this.dataStorage = dataStorage;
         this.activeAlerts = activeAlerts;
-
+        this.clock = clock;
     }
 
 
@@ -49,66 +109,28 @@ public class AlertProcessor {
         try {
 
             List<Patient> patients = dataStorage.getAllPatients();
-            long currentTime = System.currentTimeMillis();
-
-            for (Patient patient : patients) {
-                if (patient != null) {
-                    int patientId = patient.getId();
-
-                    // Get records for the patient within the last minute
-                    long startTime = currentTime - 60 * 1000; // 1 minute ago
-                    long endTime = currentTime; // Current time
-                    List<PatientRecord> records = dataStorage.getRecords(patientId, startTime, endTime);
-
-
-                    // Check if any records are available for the patient
-                    if (records != null && !records.isEmpty()) {
-                        for (PatientRecord record : records) {
-                            if (record != null) {
-                                // Check different alert conditions
-                                if (checkAlertCondition(record)) {
-                                    Alert alert = new Alert(String.valueOf(patientId), record.getRecordType(), record.getTimestamp());
-                                    triggerAlert(alert);
-                                }
-                                if (checkAlertConditionINCorDECTREND(record)) {
-                                    Alert alert = new Alert(String.valueOf(patientId), "Increasing or Decreasing trend in blood pressure found", record.getTimestamp());
-                                    triggerAlert(alert);
-                                }
-                                if (checkAlertConditionSaturationDROP(record)) {
-                                    Alert alert = new Alert(String.valueOf(patientId), "Rapid Saturation Drop detected", record.getTimestamp());
-                                    triggerAlert(alert);
-                                }
-                                if (checkAlertConditionHypotensiveHypoxemiaAlert(record)) {
-                                    Alert alert = new Alert(String.valueOf(patientId), "Hypotensive Hypoxemia detected", record.getTimestamp());
-                                    triggerAlert(alert);
-                                }
-                                if (checkAlertConditionIRREGULARHEARTBEAT(record)) {
-                                    Alert alert = new Alert(String.valueOf(patientId), "Irregular heart beat detected", record.getTimestamp());
-                                    triggerAlert(alert);
-                                }
-                            } else {
-                                logger.warning("Null record found for patient ID: " + patientId);
-                            }
-                        }
-                    } else {
-                        logger.warning("No records found for patient ID: " + patientId);
-                    }
-                } else {
-                    logger.warning("Patient object is null.");
+            long currentTime = clock.millis();
+            RuleSet.Compiled rules = this.rules;
+            ForkJoinPool workers = pool;
+
+            List<Alert> alerts;
+            if (workers == null) {
+                alerts = evaluateShard(patients, 0, patients.size(), rules, currentTime);
+            } else {
+                int shards = workers.getParallelism() * SHARDS_PER_WORKER;
+                List<Callable<List<Alert>>> tasks = new ArrayList<>(shards);
+                for (int shard = 0; shard < shards; shard++) {
+                    int from = (int) ((long) patients.size() * shard / shards);
+                    int to = (int) ((long) patients.size() * (shard + 1) / shards);
+                    tasks.add(() -> evaluateShard(patients, from, to, rules, currentTime));
                 }
-            }
-            for (com.data_management.Alert alert: activeAlerts.getReadOnlyAlertStatus().values()) {
-                // System.out.println(alert.toString());
-                if (alert.getActive() && alert.getUpdated()) {
-                    // System.out.println("[][][][][][][][][][][][][][][][][][][][][][][][][][][][][][][][][]");
-                    System.out.println("Manual Alert triggered: ");
-                    System.out.println("Timestamp: " + alert.getTimestamp());
-                    // sets the newly updated flag to false to prevent multiple trips
-                    activeAlerts.update(alert.getPatientId(), false, true, alert.getTimestamp());
-                } else {
-                    // System.out.println(alert.toString());
+                alerts = new ArrayList<>();
+                for (Future<List<Alert>> shard : workers.invokeAll(tasks)) {
+                    alerts.addAll(shard.get());
                 }
             }
+            triggerAll(alerts);
+            triggerManualAlerts();
         } catch (Exception e) {
             // Log any errors that occur during alert evaluation
             logger.log(Level.SEVERE, "An error occurred while evaluating patient data for alerts", e);
@@ -118,287 +140,461 @@ public class AlertProcessor {
 
 
     /**
-     * Triggers an alert for the monitoring system. This method can be extended to
-     * notify medical staff, log the alert, or perform other actions. The method
-     * currently assumes that the alert information is fully formed when passed as
-     * an argument.
+     * Evaluates the patients in {@code patients[from, to)}, checking the last
+     * minute of records of each.
      *
-     * @param alert the alert object containing details about the alert condition
+     * @return the alerts raised, in patient order
      */
-    private void triggerAlert(Alert alert) {
-        System.out.println("Alert Triggered:");
-        System.out.println("Patient ID: " + alert.getPatientId());
-        System.out.println("Condition: " + alert.getCondition());
-        System.out.println("Timestamp: " + alert.getTimestamp());
+    private List<Alert> evaluateShard(List<Patient> patients, int from, int to, RuleSet.Compiled rules,
+                                      long currentTime) {
+        List<Alert> alerts = new ArrayList<>();
+        // Reused by every patient below; shards run concurrently, so one per shard
+        EvaluationContext context = new EvaluationContext();
+        for (Patient patient : patients.subList(from, to)) {
+            if (patient != null) {
+                try {
+                    evaluatePatient(patient.getId(), rules, currentTime, context, alerts);
+                } catch (Exception e) {
+                    logger.log(Level.SEVERE, "An error occurred while evaluating data of patient " + patient.getId(), e);
+                }
+            } else {
+                logger.warning("Patient object is null.");
+            }
+        }
+        return alerts;
     }
 
-    /**
-     * Checks if an alert needs to be triggered based on the patient record.
-     *
-     * @param record the patient record to evaluate
-     * @return true if an alert needs to be triggered, false otherwise
-     */
-    private boolean checkAlertCondition(PatientRecord record) {
-        String recordType = record.getRecordType();
-        double measurementValue = record.getMeasurementValue();
-
-        // Evaluate blood pressure alerts
-        if (recordType.equals("SystolicPressure")) {
-            return checkBloodPressureSystolicAlertCondition(measurementValue);
+    private void evaluatePatient(int patientId, RuleSet.Compiled rules, long currentTime, EvaluationContext context,
+                                 List<Alert> alerts) {
+        // Check the records within the last minute
+        long startTime = currentTime - 60 * 1000; // 1 minute ago
+        long endTime = currentTime; // Current time
+        PatientCursor state = cursors.computeIfAbsent(patientId, PatientCursor::new);
+        boolean transitionsOnly = this.transitionsOnly;
+        long scannedUpTo;
+        synchronized (state) {
+            scannedUpTo = state.getScannedUpTo();
         }
-
-
-        if (recordType.equals("DiastolicPressure")) {
-            return checkBloodPressureDiastolicAlertCondition(measurementValue);
+        if (transitionsOnly && scannedUpTo >= startTime && !context.hasRecords(dataStorage, patientId,
+                scannedUpTo + 1, endTime)) {
+            return; // Every record of the last minute was observed by an earlier pass
         }
-        // Evaluate blood saturation alerts
-        if (recordType.equals("Saturation ")) {
-            return checkBloodSaturationAlertCondition(measurementValue);
+        // One read covers every check: 10 minutes for the saturation drop, and
+        // whole minutes up to the end of the current one for the trend
+        context.load(dataStorage, patientId, currentTime - 10 * 60 * 1000, endOfMinute(currentTime));
+        context.select(startTime, endTime);
+        long scanned = Long.MIN_VALUE;
+
+        // The history rules depend on the patient, not on the record, so each runs
+        // once, when the first record that has not been observed yet needs them
+        RuleSet.WindowRule[] windowRules = rules.windowRules;
+        boolean[] history = null;
+        double[] joined = context.joinBuffer(rules.maxJoinSize);
+
+        int signalId = context.next();
+        if (signalId < 0) {
+            logger.warning("No records found for patient ID: " + patientId);
         }
-
-        // Evaluate ECG alerts
-        if (recordType.equals("ECG")) {
-            return checkECGAlertCondition(measurementValue);
+        for (; signalId >= 0; signalId = context.next()) {
+            long timestamp = context.getTimestamp();
+            scanned = Math.max(scanned, timestamp);
+            synchronized (state) {
+                if (transitionsOnly && timestamp <= state.getScannedUpTo()) {
+                    continue; // Observed by an earlier pass
+                }
+                if (history == null) {
+                    history = checkHistory(rules, context, currentTime);
+                }
+                // Check different alert conditions
+                checkRecord(rules, state, signalId, timestamp, context.getValue(), alerts);
+                for (int i = 0; i < windowRules.length; i++) {
+                    observe(state, windowRules[i].condition, history[i], timestamp, windowRules[i].clearAfterMillis,
+                            windowRules[i].renotifyMillis, alerts);
+                }
+                for (RuleSet.JoinRule rule : rules.joinsForSignal(signalId)) {
+                    observe(state, rule.condition, rule.holds(context, timestamp, joined), timestamp,
+                            rule.clearAfterMillis, rule.renotifyMillis, alerts);
+                }
+            }
         }
+        synchronized (state) {
+            state.setScannedUpTo(scanned);
+        }
+    }
 
+    /**
+     * Checks the history rules at the current time, against windows filled
+     * from the loaded records of the record types the rules read.
+     *
+     * @return whether each rule of {@code rules.windowRules} holds
+     */
+    private static boolean[] checkHistory(RuleSet.Compiled rules, EvaluationContext context, long currentTime) {
+        PatientWindows windows = new PatientWindows();
+        rules.track(windows);
+        for (int signalId : rules.windowSignals) {
+            int count = context.upperBound(signalId, Long.MAX_VALUE);
+            for (int i = 0; i < count; i++) {
+                windows.add(signalId, context.timestampAt(signalId, i), context.valueAt(signalId, i));
+            }
+        }
+        boolean[] holds = new boolean[rules.windowRules.length];
+        for (int i = 0; i < holds.length; i++) {
+            holds[i] = rules.windowRules[i].test(windows, currentTime);
+        }
+        return holds;
+    }
 
-        // No alert condition met by default
-        return false;
+    private static long endOfMinute(long time) {
+        long minute = 60 * 1000;
+        return Math.floorDiv(time, minute) * minute + minute - 1;
+    }
 
+    /**
+     * Sets how many workers evaluate patients in parallel.
+     *
+     * @param parallelism the number of workers; 1 evaluates on the calling thread
+     * @throws IllegalArgumentException if parallelism is less than 1
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
         }
+        ForkJoinPool previous = pool;
+        pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+        if (previous != null) {
+            previous.shutdown(); // Lets evaluations already running on it finish
+        }
+    }
 
+    /**
+     * Returns how many workers evaluate patients in parallel.
+     *
+     * @return the number of workers
+     */
+    public int getParallelism() {
+        ForkJoinPool workers = pool;
+        return workers == null ? 1 : workers.getParallelism();
+    }
 
+    /**
+     * Sets whether only the transitions of each patient's conditions are
+     * reported, see {@link AlertTracker}. When off, every reading or pass in
+     * which a condition holds raises an alert of its own, and
+     * {@link #evaluateData()} re-checks the whole last minute every pass.
+     *
+     * @param transitionsOnly false to report every alert
+     */
+    public void setTransitionsOnly(boolean transitionsOnly) {
+        this.transitionsOnly = transitionsOnly;
+    }
 
+    /**
+     * Returns whether only the transitions of conditions are reported.
+     *
+     * @return true if alerts are deduplicated
+     */
+    public boolean isTransitionsOnly() {
+        return transitionsOnly;
+    }
 
+    /**
+     * Sets whether alerts and manual alerts are printed to standard output.
+     * Alerts still reach the channels, see {@link #addChannel}, so tools that
+     * only count them can turn printing off without redirecting
+     * {@code System.out} for the whole process.
+     *
+     * @param printAlerts false not to print alerts
+     */
+    public void setPrintAlerts(boolean printAlerts) {
+        this.printAlerts = printAlerts;
+    }
 
+    /**
+     * Returns whether alerts are printed to standard output.
+     *
+     * @return true if alerts are printed
+     */
+    public boolean isPrintAlerts() {
+        return printAlerts;
+    }
 
-    private boolean checkAlertConditionINCorDECTREND(PatientRecord record) {
-        if(increasingOrDecreasingBloodPressure(record.getPatientId(), System.currentTimeMillis())) {
-            return true;
-        }
-
-        return false;
+    /**
+     * Replaces the rules readings are checked against. Evaluations already
+     * running finish with the previous rules.
+     *
+     * @param ruleSet the new rules
+     */
+    public void setRules(RuleSet ruleSet) {
+        this.rules = ruleSet.compile();
     }
 
+    /**
+     * Replaces the rules with those in a properties file, see {@link RuleSet#load}.
+     *
+     * @param path the rules file
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if a rule is malformed; the current rules
+     *                                  are kept
+     */
+    public void reloadRules(Path path) throws IOException {
+        setRules(RuleSet.load(path));
+    }
 
-    private boolean checkAlertConditionSaturationDROP(PatientRecord record) {
-        if(checkRapidDropAlert(record.getPatientId(), System.currentTimeMillis())) {
-            return true;
-        }
+    /**
+     * Also sends every triggered alert through a channel, such as email or
+     * SMS. The channel delivers from its own thread, so a slow gateway does
+     * not hold up evaluation.
+     *
+     * @param channel the channel to add
+     */
+    public synchronized void addChannel(AlertChannel channel) {
+        AlertChannel[] updated = Arrays.copyOf(channels, channels.length + 1);
+        updated[channels.length] = channel;
+        channels = updated;
+    }
 
-        return false;
+    /**
+     * Stops sending alerts through a channel added with {@link #addChannel}.
+     * The channel itself keeps running until it is closed.
+     *
+     * @param channel the channel to remove
+     */
+    public synchronized void removeChannel(AlertChannel channel) {
+        List<AlertChannel> updated = new ArrayList<>(Arrays.asList(channels));
+        updated.remove(channel);
+        channels = updated.toArray(new AlertChannel[0]);
     }
-    private boolean checkAlertConditionHypotensiveHypoxemiaAlert(PatientRecord record) {
-        if(checkHypotensiveHypoxemia(record.getPatientId(), System.currentTimeMillis())) {
-            return true;
-        }
 
-        return false;
+    /**
+     * Starts incremental evaluation: from now on, every record added to the
+     * storage moves its patient onto the queue of {@link #evaluatePending()}.
+     */
+    public void attach() {
+        dataStorage.addRecordListener(listener);
     }
-    private boolean checkAlertConditionIRREGULARHEARTBEAT(PatientRecord record) {
-        if(checkIrregularBeatPattern(record.getPatientId(), System.currentTimeMillis())) {
-            return true;
-        }
 
-        return false;
+    /**
+     * Stops incremental evaluation started with {@link #attach()}.
+     */
+    public void detach() {
+        dataStorage.removeRecordListener(listener);
     }
 
-    private boolean checkBloodPressureSystolicAlertCondition(double measurementValue) {
-        // Check for critical thresholds
-        if (measurementValue > 180 || measurementValue < 90) {
-            return true; // Trigger critical threshold alert
+    /**
+     * Evaluates the records added since the last pass, for the patients that
+     * received any. Each new record is checked against the thresholds of its
+     * record type exactly once, and the trend and combined rules are only
+     * re-checked for patients that received a record type they depend on, so
+     * the cost follows the ingest rate rather than the number of patients.
+     * Manual alerts raised since the last pass are reported as well.
+     *
+     * @return the number of patients evaluated
+     */
+    public int evaluatePending() {
+        long currentTime = clock.millis();
+        RuleSet.Compiled rules = this.rules;
+        ForkJoinPool workers = pool;
+        if (workers == null) {
+            List<Alert> alerts = new ArrayList<>();
+            int evaluated = drainPending(rules, currentTime, alerts);
+            triggerAll(alerts);
+            triggerManualAlerts();
+            return evaluated;
         }
 
-
-        // No alert triggered
-        return false;
+        // Every worker drains the shared queue into a buffer of its own
+        int shards = workers.getParallelism();
+        List<List<Alert>> buffers = new ArrayList<>(shards);
+        List<Callable<Integer>> tasks = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            List<Alert> alerts = new ArrayList<>();
+            buffers.add(alerts);
+            tasks.add(() -> drainPending(rules, currentTime, alerts));
+        }
+        int evaluated = 0;
+        for (Future<Integer> shard : workers.invokeAll(tasks)) {
+            try {
+                evaluated += shard.get();
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "An error occurred while evaluating pending data", e);
+            }
+        }
+        for (List<Alert> alerts : buffers) {
+            triggerAll(alerts);
+        }
+        triggerManualAlerts();
+        return evaluated;
     }
 
-    private boolean checkBloodPressureDiastolicAlertCondition(double measurementValue) {
-        // Check for critical thresholds
-        if (measurementValue > 120 || measurementValue < 60) {
-            return true; // Trigger critical threshold alert
+    private int drainPending(RuleSet.Compiled rules, long currentTime, List<Alert> alerts) {
+        EvaluationContext records = new EvaluationContext();
+        int evaluated = 0;
+        PatientCursor cursor;
+        while ((cursor = pending.poll()) != null) {
+            try {
+                synchronized (cursor) {
+                    cursor.dequeue();
+                    evaluate(cursor, rules, currentTime, records, alerts);
+                }
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "An error occurred while evaluating data of patient " + cursor.getPatientId(), e);
+            }
+            evaluated++;
         }
-
-        // No alert triggered
-        return false;
+        return evaluated;
     }
 
-    private boolean checkBloodSaturationAlertCondition(double measurementValue) {
-        // Check for low saturation alert
-        if (measurementValue < 92) {
-            return true; // Trigger low saturation alert
+    private void recordAdded(int patientId, int signalId, long timestamp, double measurementValue) {
+        PatientCursor cursor = cursors.computeIfAbsent(patientId, PatientCursor::new);
+        boolean inOrder;
+        boolean enqueue = false;
+        synchronized (cursor) {
+            inOrder = cursor.markDirty(signalId, timestamp);
+            if (inOrder) {
+                enqueue = cursor.enqueue();
+            }
+        }
+        if (enqueue) {
+            pending.add(cursor);
+        } else if (!inOrder) {
+            // Behind the patient's cursor, so no pass will reach it; only its own rules apply
+            List<Alert> alerts = new ArrayList<>();
+            synchronized (cursor) {
+                checkRecord(rules, cursor, signalId, timestamp, measurementValue, alerts);
+            }
+            triggerAll(alerts);
         }
-
-        // No alert triggered
-        return false;
     }
 
-    private boolean checkECGAlertCondition(double measurementValue) {
-        // Check for abnormal heart rate alert
-        if (measurementValue < 50 || measurementValue > 100) {
-            return true; // Trigger abnormal heart rate alert
+    /**
+     * Checks a single reading against the rules of its record type. A rule
+     * whose condition is raised holds until the reading clears it.
+     */
+    private void checkRecord(RuleSet.Compiled rules, PatientCursor cursor, int signalId, long timestamp,
+                             double measurementValue, List<Alert> alerts) {
+        int patientId = cursor.getPatientId();
+        AlertTracker tracker = cursor.getAlerts();
+        for (RuleSet.RecordRule rule : rules.forSignal(signalId)) {
+            boolean holds = transitionsOnly && tracker.isRaised(rule.condition)
+                    ? !rule.clears(patientId, timestamp, measurementValue)
+                    : rule.test(patientId, timestamp, measurementValue);
+            observe(cursor, rule.condition, holds, timestamp, rule.clearAfterMillis, rule.renotifyMillis, alerts);
         }
-
-        // No alert triggered
-        return false;
     }
 
     /**
-     * Checks if there is an increasing trend in blood pressure readings for the
-     * specified patient over three consecutive timestamps, with a one-minute
-     * interval between each timestamp.
-     *
-     * @param patientId   the ID of the patient
-     * @param currentTime the current time
-     * @return true if there is an increasing trend in blood pressure, false otherwise
+     * Feeds one observation of a condition to the patient's tracker and adds
+     * the alert of the resulting transition, if any.
      */
-    private boolean increasingOrDecreasingBloodPressure(int patientId, long currentTime) {
-        // Start checking from the last minute
-        long endTime = currentTime;
-        long startTime = endTime - 60 * 1000; // One minute ago
-
-        // Retrieve blood pressure records for each timestamp
-        List<PatientRecord> records1 = dataStorage.getRecords(patientId, startTime, endTime);
-        startTime -= 60 * 1000;
-        List<PatientRecord> records2 = dataStorage.getRecords(patientId, startTime, endTime);
-        startTime -= 60 * 1000;
-        List<PatientRecord> records3 = dataStorage.getRecords(patientId, startTime, endTime);
-
-        // Check if there are records for each timestamp
-        if (!records1.isEmpty() && !records2.isEmpty() && !records3.isEmpty()) {
-            // Get systolic and diastolic blood pressure readings for each timestamp
-            double bp1 = getLatestSystolicBloodPressure(records1);
-            double bp2 = getLatestSystolicBloodPressure(records2);
-            double bp3 = getLatestSystolicBloodPressure(records3);
-            double bp4 = getLatestDiastolicBloodPressure(records1);
-            double bp5 = getLatestDiastolicBloodPressure(records2);
-            double bp6 = getLatestDiastolicBloodPressure(records3);
-
-            // Check for increasing or decreasing trend
-            if ((bp1 - bp2 > 10 && bp2 - bp3 > 10) || (bp2 - bp1 < 10 && bp3 - bp2 < 10) ||
-                    (bp4 - bp5 > 10 && bp5 - bp6 > 10) || (bp5 - bp4 < 10 && bp6 - bp5 < 10)) {
-                return true;
+    private void observe(PatientCursor cursor, String condition, boolean holds, long time, long clearAfterMillis,
+                         long renotifyMillis, List<Alert> alerts) {
+        String patientId = String.valueOf(cursor.getPatientId());
+        if (!transitionsOnly) {
+            if (holds) {
+                alerts.add(new Alert(patientId, condition, time));
             }
+            return;
+        }
+        AlertState transition = cursor.getAlerts().observe(condition, holds, time, clearAfterMillis, renotifyMillis);
+        if (transition != null) {
+            alerts.add(new Alert(patientId, condition, time, transition));
         }
-        return false;
     }
+
     /**
-     * Checks if a rapid drop alert needs to be triggered for a specific patient.
-     *
-     * @param patientId the unique identifier of the patient
-     * @param currentTime the current time in milliseconds
-     * @return true if a rapid drop alert needs to be triggered, false otherwise
+     * Evaluates the new records of one patient and moves its cursor past them.
+     * The records are read in timestamp order across record types, so the
+     * composite rules see the readings that were current at each of them.
      */
-    private boolean checkRapidDropAlert(int patientId, long currentTime) {
-        // Get records for the patient within the last 10 minutes
-        long startTime = currentTime - 10 * 60 * 1000; // 10 minutes ago
-        long endTime = currentTime; // Current time
-        List<PatientRecord> records = dataStorage.getRecords(patientId, startTime, endTime);
-
-        // Check if there are records within the specified time range
-        if (records.size() >= 2) {
-            // Get the blood saturation readings at the start and end of the interval
-            double startSaturation = getLatestBloodSaturation(records.subList(0, 1));
-            double endSaturation = getLatestBloodSaturation(records.subList(records.size() - 1, records.size()));
-
-            // Calculate the percentage drop
-            double percentageDrop = ((startSaturation - endSaturation) / startSaturation) * 100;
-
-            // Check if there is a drop of 5% or more within 10 minutes
-            if (percentageDrop >= 5) {
-                return true; // Trigger rapid drop alert
+    private void evaluate(PatientCursor cursor, RuleSet.Compiled rules, long currentTime, EvaluationContext records,
+                          List<Alert> alerts) {
+        int patientId = cursor.getPatientId();
+        PatientWindows windows = cursor.getWindows(rules);
+        long newest = Long.MIN_VALUE;
+
+        records.clear();
+        for (int signalId = 0; signalId < cursor.signalCount(); signalId++) {
+            if (!cursor.isDirty(signalId)) {
+                continue;
+            }
+            records.loadSignal(dataStorage, patientId, signalId, cursor.nextTimestamp(signalId),
+                    cursor.lastTimestamp(signalId));
+            newest = Math.max(newest, cursor.lastTimestamp(signalId));
+            cursor.advance(signalId);
+        }
+        records.select(Long.MIN_VALUE, Long.MAX_VALUE);
+        double[] joined = records.joinBuffer(rules.maxJoinSize);
+        for (int signalId = records.next(); signalId >= 0; signalId = records.next()) {
+            long timestamp = records.getTimestamp();
+            checkRecord(rules, cursor, signalId, timestamp, records.getValue(), alerts);
+            windows.add(signalId, timestamp, records.getValue());
+            for (RuleSet.JoinRule rule : rules.joinsForSignal(signalId)) {
+                observe(cursor, rule.condition, rule.holds(windows, timestamp, joined), timestamp,
+                        rule.clearAfterMillis, rule.renotifyMillis, alerts);
             }
         }
-        return false; // No alert triggered
-    }
-    private boolean checkHypotensiveHypoxemia(int patientId, long currentTime) {
-        long startTime = currentTime - 60 * 1000; // 1 minute ago
-        long endTime = currentTime; // Current time
-        List<PatientRecord> records = dataStorage.getRecords(patientId, startTime, endTime);
-
-        double sys = getLatestSystolicBloodPressure(records);
-        double sat = getLatestBloodSaturation(records);
 
-        if(sys< 90 && sat < 92){
-            return true;
+        // Only the history rules reading a record type that changed
+        for (RuleSet.WindowRule rule : rules.windowRules) {
+            if (readsDirty(rule, cursor)) {
+                observe(cursor, rule.condition, rule.test(windows, currentTime), newest, rule.clearAfterMillis,
+                        rule.renotifyMillis, alerts);
+            }
         }
-        return false; // No alert triggered
+        cursor.clean();
     }
-    private boolean checkIrregularBeatPattern(int patientId, long currentTime) {
-        // Calculate the time span of 5 minutes
-        long startTime = currentTime - 5 * 60 * 1000; // 5 minutes ago
-
-        // Retrieve ECG records for the patient within the last 5 minutes
-        List<PatientRecord> records = dataStorage.getRecords(patientId, startTime, currentTime);
-
-        // Extract heartbeat values from records
-        List<Double> heartbeats = getLatestHeartBeats(records);
-
-        // Check for irregular beat patterns
-        if (heartbeats.size() >= 2) {
-            for (int i = 1; i < heartbeats.size(); i++) {
-                double heartbeat1 = heartbeats.get(i - 1);
-                double heartbeat2 = heartbeats.get(i);
-                if (Math.abs(heartbeat1 - heartbeat2) > IRREGULAR_BEAT_THRESHOLD) {
-                    return true; // Trigger irregular beat alert
-                }
+
+    private static boolean readsDirty(RuleSet.WindowRule rule, PatientCursor cursor) {
+        for (int signalId : rule.signalIds) {
+            if (cursor.isDirty(signalId)) {
+                return true;
             }
         }
         return false;
     }
 
     /**
-     * Retrieves the latest systolic blood pressure reading from a list of patient
-     * records.
+     * Triggers an alert for the monitoring system. This method can be extended to
+     * notify medical staff, log the alert, or perform other actions. The method
+     * currently assumes that the alert information is fully formed when passed as
+     * an argument.
      *
-     * @param records the list of patient records
-     * @return the latest systolic blood pressure reading
+     * @param alert the alert object containing details about the alert condition
      */
-    private double getLatestSystolicBloodPressure(List<PatientRecord> records) {
-        for (int i = records.size() - 1; i >= 0; i--) {
-            PatientRecord record = records.get(i);
-            if (record.getRecordType().equals("SystolicPressure")) {
-                return record.getMeasurementValue();
-            }
-        }
-        return 0.0; // Default value if no systolic blood pressure record is found
-    }
-    private double getLatestDiastolicBloodPressure(List<PatientRecord> records) {
-        for (int i = records.size() - 1; i >= 0; i--) {
-            PatientRecord record = records.get(i);
-            if (record.getRecordType().equals("DiastolicPressure")) {
-                return record.getMeasurementValue();
-            }
-        }
-        return 0.0; // Default value if no systolic blood pressure record is found
+    private void triggerAlert(Alert alert) {
+        System.out.println(alert.getState().getHeading());
+        System.out.println("Patient ID: " + alert.getPatientId());
+        System.out.println("Condition: " + alert.getCondition());
+        System.out.println("Timestamp: " + alert.getTimestamp());
     }
+
     /**
-     * Retrieves the latest blood saturation reading from a list of patient records.
-     *
-     * @param records the list of patient records
-     * @return the latest blood saturation reading
+     * Reports the manual alerts raised since the last pass, from the change
+     * feed of {@link ActiveAlerts}, so the cost follows the number of alerts
+     * raised rather than the number of patients. An alert is reported once,
+     * and not at all if it was resolved or raised again before this pass.
      */
-    private double getLatestBloodSaturation(List<PatientRecord> records) {
-        for (int i = records.size() - 1; i >= 0; i--) {
-            PatientRecord record = records.get(i);
-            if (record.getRecordType().equals("Saturation")) {
-                return record.getMeasurementValue();
+    private void triggerManualAlerts() {
+        com.data_management.Alert alert;
+        while ((alert = activeAlerts.pollChange()) != null) {
+            // Clears the updated flag, so that only one pass reports the alert
+            if (activeAlerts.acknowledge(alert) && printAlerts) {
+                System.out.println("Manual Alert triggered: ");
+                System.out.println("Timestamp: " + alert.getTimestamp());
             }
         }
-        return 0.0; // Default value if no blood saturation record is found
     }
-    /**
-     * Extracts heartbeat values from ECG records.
-     *
-     * @param records the list of ECG records for the patient
-     * @return a list of heartbeat values
-     */
-    private List<Double> getLatestHeartBeats(List<PatientRecord> records) {
-        List<Double> heartbeats = new ArrayList<>();
-        for (PatientRecord record : records) {
-            heartbeats.add(record.getMeasurementValue());
+
+    private void triggerAll(List<Alert> alerts) {
+        AlertChannel[] channels = this.channels;
+        boolean printAlerts = this.printAlerts;
+        for (Alert alert : alerts) {
+            if (printAlerts) {
+                triggerAlert(alert);
+            }
+            for (AlertChannel channel : channels) {
+                channel.offer(alert);
+            }
         }
-        return heartbeats;
     }
-}
\ No newline at end of file
+}
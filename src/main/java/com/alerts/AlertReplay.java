@@ -0,0 +1,337 @@
+package com.alerts;
+
+import com.data_management.ActiveAlerts;
+import com.data_management.DataStorage;
+import com.data_management.HeartRateDeriver;
+import com.data_management.SignalRegistry;
+import com.data_management.StorageJournal;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Feeds recorded data through the whole alert pipeline as fast as it can be
+ * read: storage, incremental evaluation and an alert channel. The clock of
+ * the {@link AlertProcessor} follows the timestamps of the data, so the
+ * alerts come out as they did, or would have, while the data was recorded.
+ *
+ * <p>The data is read from either the text files the simulator writes with
+ * {@code --output file:<dir>}, merged by timestamp, or the write-ahead log of
+ * a {@link StorageJournal} directory. The alert stream goes to standard
+ * output and a summary, with the throughput, to standard error.
+ *
+ * <pre>
+ * java com.alerts.AlertReplay [--scan] [--step millis] [--ecg-rate hz] [--quiet] &lt;directory&gt;
+ * </pre>
+ *
+ * <ul>
+ *   <li>{@code --scan} evaluates with full scans of all patients rather than
+ *       incrementally</li>
+ *   <li>{@code --step} is the data time between passes, 1000 ms by default,
+ *       like the simulator's one-second schedule</li>
+ *   <li>{@code --ecg-rate} derives the heart rate from ECG recorded at that
+ *       rate, see {@link HeartRateDeriver}</li>
+ *   <li>{@code --quiet} prints only the summary</li>
+ * </ul>
+ */
+public class AlertReplay {
+    private static final long DEFAULT_STEP_MILLIS = 1000;
+    private static final String ALERT_LABEL = "Alert";
+
+    private final DataStorage storage = new DataStorage();
+    private final ActiveAlerts activeAlerts = new ActiveAlerts();
+    private final ReplayClock clock = new ReplayClock(0);
+    private final AlertProcessor processor = new AlertProcessor(storage, activeAlerts, clock);
+    private final boolean fullScan;
+    private final long stepMillis;
+    private long nextPass = Long.MIN_VALUE;
+    private long records;
+    private long passes;
+    private long firstTimestamp = Long.MAX_VALUE;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    /**
+     * Creates a replay into a fresh storage.
+     *
+     * @param fullScan   whether to evaluate with full scans rather than incrementally
+     * @param stepMillis the data time between passes, in milliseconds
+     */
+    public AlertReplay(boolean fullScan, long stepMillis) {
+        if (stepMillis <= 0) {
+            throw new IllegalArgumentException("The step must be positive: " + stepMillis);
+        }
+        this.fullScan = fullScan;
+        this.stepMillis = stepMillis;
+        if (!fullScan) {
+            processor.attach();
+        }
+    }
+
+    /**
+     * Derives the heart rate from the replayed ECG, as the simulator does when
+     * it samples the ECG at that rate.
+     *
+     * @param ecgSampleRate the rate the ECG was recorded at, in hertz
+     */
+    public void deriveHeartRate(int ecgSampleRate) {
+        new HeartRateDeriver(storage, ecgSampleRate).attach();
+    }
+
+    /** The processor the data is fed through, to add channels or rules to. */
+    public AlertProcessor getProcessor() {
+        return processor;
+    }
+
+    /** The storage the data is replayed into. */
+    public DataStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Replays one record. Records should come in timestamp order; a pass is
+     * run whenever the data time reaches the next step, before the record
+     * that reached it is stored. Records labeled "Alert" raise or resolve the
+     * manual alert of the patient instead of being stored.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param label     the record type
+     * @param timestamp the time of the record, in milliseconds since the Unix epoch
+     * @param value     the measured value; for alerts, 1 if triggered and 0 if resolved
+     */
+    public void replay(int patientId, String label, long timestamp, double value) {
+        if (nextPass == Long.MIN_VALUE) {
+            nextPass = timestamp + stepMillis;
+        }
+        while (timestamp >= nextPass) {
+            clock.advanceTo(nextPass);
+            pass();
+            nextPass += stepMillis;
+        }
+        clock.advanceTo(timestamp);
+        if (ALERT_LABEL.equals(label)) {
+            if (value != 0) {
+                activeAlerts.trigger(patientId, timestamp);
+            } else {
+                activeAlerts.resolve(patientId, timestamp);
+            }
+        } else {
+            storage.addPatientData(patientId, value, label, timestamp);
+        }
+        records++;
+        firstTimestamp = Math.min(firstTimestamp, timestamp);
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+    }
+
+    /** Runs a last pass at the time of the last record replayed. */
+    public void finish() {
+        pass();
+    }
+
+    private void pass() {
+        if (fullScan) {
+            processor.evaluateData();
+        } else {
+            processor.evaluatePending();
+        }
+        passes++;
+    }
+
+    /**
+     * Replays a directory: the write-ahead log if it holds one, the text
+     * files otherwise.
+     *
+     * @return the number of records replayed
+     * @throws IOException if the directory cannot be read
+     */
+    public long replayDirectory(Path directory) throws IOException {
+        long before = records;
+        if (hasLog(directory)) {
+            StorageJournal.readLog(directory, (patientId, signalId, timestamp, value) ->
+                    replay(patientId, SignalRegistry.nameOf(signalId), timestamp, value));
+        } else {
+            replayText(directory);
+        }
+        return records - before;
+    }
+
+    private static boolean hasLog(Path directory) throws IOException {
+        try (DirectoryStream<Path> logs = Files.newDirectoryStream(directory, "wal-*.log")) {
+            return logs.iterator().hasNext();
+        }
+    }
+
+    /** Merges the text files by timestamp, one buffered line per file. */
+    private void replayText(Path directory) throws IOException {
+        List<TextSource> sources = new ArrayList<>();
+        try {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.txt")) {
+                for (Path file : files) {
+                    TextSource source = new TextSource(file);
+                    if (source.advance()) {
+                        sources.add(source);
+                    } else {
+                        source.close();
+                    }
+                }
+            }
+            while (!sources.isEmpty()) {
+                int earliest = 0;
+                for (int i = 1; i < sources.size(); i++) {
+                    if (sources.get(i).timestamp < sources.get(earliest).timestamp) {
+                        earliest = i;
+                    }
+                }
+                TextSource source = sources.get(earliest);
+                replay(source.patientId, source.label, source.timestamp, source.value);
+                if (!source.advance()) {
+                    source.close();
+                    sources.remove(earliest);
+                }
+            }
+        } finally {
+            for (TextSource source : sources) {
+                source.close();
+            }
+        }
+    }
+
+    public long getRecordCount() {
+        return records;
+    }
+
+    public long getPassCount() {
+        return passes;
+    }
+
+    /** The data time between the first and last record replayed, in milliseconds. */
+    public long getSpanMillis() {
+        return records == 0 ? 0 : lastTimestamp - firstTimestamp;
+    }
+
+    /**
+     * The lines of one text file, parsed one at a time. Lines that cannot be
+     * parsed are counted and skipped. Shared with {@link AlertBacktest}.
+     */
+    static final class TextSource {
+        private final Path file;
+        private final BufferedReader reader;
+        int patientId;
+        long timestamp;
+        String label;
+        double value;
+        long skipped;
+
+        TextSource(Path file) throws IOException {
+            this.file = file;
+            this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        }
+
+        /** Reads the next record; returns false at the end of the file. */
+        boolean advance() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (parse(line)) {
+                    return true;
+                }
+                if (!line.trim().isEmpty()) {
+                    skipped++;
+                }
+            }
+            return false;
+        }
+
+        // Patient ID: 52, Timestamp: 1713432063502, Label: ECG, Data: -0.58
+        private boolean parse(String line) {
+            String[] fields = line.split(", ", 4);
+            if (fields.length != 4) {
+                return false;
+            }
+            try {
+                patientId = Integer.parseInt(field(fields[0], "Patient ID: "));
+                timestamp = Long.parseLong(field(fields[1], "Timestamp: "));
+                label = field(fields[2], "Label: ").intern();
+                String data = field(fields[3], "Data: ");
+                if (ALERT_LABEL.equals(label)) {
+                    value = "triggered".equals(data) ? 1 : 0;
+                } else {
+                    value = Double.parseDouble(data.endsWith("%") ? data.substring(0, data.length() - 1) : data);
+                }
+                return true;
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+
+        private static String field(String field, String name) {
+            if (!field.startsWith(name)) {
+                throw new IllegalArgumentException(field);
+            }
+            return field.substring(name.length()).trim();
+        }
+
+        void close() throws IOException {
+            if (skipped > 0) {
+                System.err.println("Skipped " + skipped + " unreadable lines in " + file);
+            }
+            reader.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean fullScan = false;
+        boolean quiet = false;
+        long step = DEFAULT_STEP_MILLIS;
+        int ecgRate = 0;
+        Path directory = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--scan":
+                    fullScan = true;
+                    break;
+                case "--quiet":
+                    quiet = true;
+                    break;
+                case "--step":
+                    step = Long.parseLong(args[++i]);
+                    break;
+                case "--ecg-rate":
+                    ecgRate = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    directory = Paths.get(args[i]);
+            }
+        }
+        if (directory == null || !Files.isDirectory(directory)) {
+            System.err.println("Usage: AlertReplay [--scan] [--step millis] [--ecg-rate hz] [--quiet] <directory>");
+            System.exit(1);
+        }
+
+        LongAdder alerts = new LongAdder();
+        AlertReplay replay = new AlertReplay(fullScan, step);
+        if (ecgRate > 0) {
+            replay.deriveHeartRate(ecgRate);
+        }
+        AlertChannel counter = new AlertChannel("replay", batch -> alerts.add(batch.size()),
+                new DispatchPolicy().overflow(DispatchPolicy.Overflow.BLOCK));
+        replay.getProcessor().addChannel(counter);
+        replay.getProcessor().setPrintAlerts(!quiet);
+
+        long start = System.nanoTime();
+        long count = replay.replayDirectory(directory);
+        replay.finish();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        counter.close();
+
+        System.err.printf("Replayed %,d records spanning %,.1f s of data in %,.3f s: %,.0f records/s%n",
+                count, replay.getSpanMillis() / 1e3, seconds, count / seconds);
+        System.err.printf("%,d passes, %,d alerts%n", replay.getPassCount(), alerts.sum());
+    }
+}
@@ -0,0 +1,29 @@
+package com.alerts;
+
+/**
+ * The transition of the alert state of a patient's condition that an
+ * {@link Alert} reports.
+ */
+public enum AlertState {
+    /** The condition started to hold. */
+    RAISED("Alert Triggered:"),
+    /** The condition still holds; sent again after the rule's re-notify interval. */
+    SUSTAINED("Alert Sustained:"),
+    /** The condition stopped holding. */
+    CLEARED("Alert Cleared:");
+
+    private final String heading;
+
+    AlertState(String heading) {
+        this.heading = heading;
+    }
+
+    /**
+     * Returns the first line printed for an alert in this state.
+     *
+     * @return the heading
+     */
+    public String getHeading() {
+        return heading;
+    }
+}
@@ -0,0 +1,71 @@
+package com.alerts;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The alert state of one patient, per condition, so that a condition that
+ * keeps holding raises one alert instead of one per reading.
+ *
+ * <p>A condition is raised by the first observation that it holds. While it
+ * keeps holding nothing is reported, except a reminder once the re-notify
+ * interval has passed since the last report. It is cleared once it has not
+ * held for the clear-after interval, so a reading that dips back into range
+ * for a moment does not clear and re-raise it. Times are those of the
+ * observed readings.
+ *
+ * <p>Not thread-safe: callers synchronize on the owning {@link PatientCursor}.
+ */
+final class AlertTracker {
+    // Only raised conditions have an entry
+    private final Map<String, Raised> raised = new HashMap<>();
+
+    boolean isRaised(String condition) {
+        return raised.containsKey(condition);
+    }
+
+    /**
+     * Feeds one observation of a condition.
+     *
+     * @param condition        the condition observed
+     * @param holds            whether it holds
+     * @param time             the time of the observation
+     * @param clearAfterMillis how long it must not hold before it is cleared
+     * @param renotifyMillis   how often a condition that keeps holding is
+     *                         reported again, or 0 for never
+     * @return the transition to report, or null if there is none
+     */
+    AlertState observe(String condition, boolean holds, long time, long clearAfterMillis, long renotifyMillis) {
+        Raised state = raised.get(condition);
+        if (state == null) {
+            if (!holds) {
+                return null;
+            }
+            raised.put(condition, new Raised(time));
+            return AlertState.RAISED;
+        }
+        if (holds) {
+            state.lastHeld = Math.max(state.lastHeld, time);
+            if (renotifyMillis > 0 && time - state.lastNotified >= renotifyMillis) {
+                state.lastNotified = time;
+                return AlertState.SUSTAINED;
+            }
+            return null;
+        }
+        if (time - state.lastHeld >= clearAfterMillis) {
+            raised.remove(condition);
+            return AlertState.CLEARED;
+        }
+        return null;
+    }
+
+    private static final class Raised {
+        long lastHeld;
+        long lastNotified;
+
+        Raised(long time) {
+            lastHeld = time;
+            lastNotified = time;
+        }
+    }
+}
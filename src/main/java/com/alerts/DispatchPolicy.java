@@ -0,0 +1,119 @@
+package com.alerts;
+
+/**
+ * Describes how an {@link AlertChannel} queues, batches and retries alerts.
+ * The defaults queue up to 1024 alerts, send up to 64 per gateway call after
+ * waiting at most 100 milliseconds for a batch to fill, and try a batch 5
+ * times, backing off from 100 milliseconds up to 10 seconds.
+ */
+public class DispatchPolicy {
+
+    /** What {@link AlertChannel#offer} does with an alert when the queue is full. */
+    public enum Overflow {
+        /** Waits for room, slowing down the caller. */
+        BLOCK,
+        /** Drops the new alert. */
+        DROP_NEWEST,
+        /** Drops the oldest queued alert to make room. */
+        DROP_OLDEST
+    }
+
+    private int capacity = 1024;
+    private int batchSize = 64;
+    private long lingerMillis = 100;
+    private int maxAttempts = 5;
+    private long initialBackoffMillis = 100;
+    private long maxBackoffMillis = 10 * 1000;
+    private Overflow overflow = Overflow.DROP_OLDEST;
+
+    /**
+     * Bounds the number of queued alerts.
+     *
+     * @param capacity the maximum number of alerts waiting to be sent
+     * @return this policy
+     */
+    public synchronized DispatchPolicy capacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        return this;
+    }
+
+    /**
+     * Sets how alerts are batched. A batch is sent once it is full, or once
+     * its first alert has waited for the linger time.
+     *
+     * @param batchSize    the maximum number of alerts per gateway call
+     * @param lingerMillis how long to wait for a batch to fill
+     * @return this policy
+     */
+    public synchronized DispatchPolicy batching(int batchSize, long lingerMillis) {
+        if (batchSize <= 0 || lingerMillis < 0) {
+            throw new IllegalArgumentException("Batch size must be positive and linger not negative");
+        }
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        return this;
+    }
+
+    /**
+     * Sets how a failed batch is retried. The wait before each retry doubles,
+     * up to the maximum.
+     *
+     * @param maxAttempts          how often a batch is tried before it is
+     *                             given up
+     * @param initialBackoffMillis the wait before the first retry
+     * @param maxBackoffMillis     the longest wait between retries
+     * @return this policy
+     */
+    public synchronized DispatchPolicy retries(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        if (maxAttempts <= 0 || initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("Malformed retry settings");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        return this;
+    }
+
+    /**
+     * Sets what happens to an alert offered to a full queue.
+     *
+     * @param overflow the overflow policy
+     * @return this policy
+     */
+    public synchronized DispatchPolicy overflow(Overflow overflow) {
+        if (overflow == null) {
+            throw new IllegalArgumentException("Overflow policy must not be null");
+        }
+        this.overflow = overflow;
+        return this;
+    }
+
+    synchronized int getCapacity() {
+        return capacity;
+    }
+
+    synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    synchronized long getLingerMillis() {
+        return lingerMillis;
+    }
+
+    synchronized int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /** The wait before retry number {@code retry}, counting from 1. */
+    synchronized long backoffMillis(int retry) {
+        long backoff = initialBackoffMillis << Math.min(retry - 1, 30);
+        return backoff < 0 ? maxBackoffMillis : Math.min(backoff, maxBackoffMillis);
+    }
+
+    synchronized Overflow getOverflow() {
+        return overflow;
+    }
+}
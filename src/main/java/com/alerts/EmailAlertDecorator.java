@@ -1,8 +1,22 @@
 package com.alerts;
 
 public class EmailAlertDecorator extends AlertDecorator {
+    private final AlertChannel channel;
+
     public EmailAlertDecorator(AlertComponent decoratedAlert) {
+        this(decoratedAlert, null);
+    }
+
+    /**
+     * Sends the email through a channel, which delivers it from its own thread,
+     * rather than on the calling thread.
+     *
+     * @param decoratedAlert the alert to decorate
+     * @param channel        the email channel, or null to send synchronously
+     */
+    public EmailAlertDecorator(AlertComponent decoratedAlert, AlertChannel channel) {
         super(decoratedAlert);
+        this.channel = channel;
     }
 
     @Override
@@ -12,6 +26,10 @@ public class EmailAlertDecorator extends AlertDecorator {
     }
 
     private void sendEmailAlert() {
+        if (channel != null) {
+            channel.offer(getAlert());
+            return;
+        }
         System.out.println("Sending email alert...");
     }
 }
@@ -0,0 +1,204 @@
+package com.alerts;
+
+import com.data_management.DataStorage;
+import com.data_management.SampleVisitor;
+import com.data_management.SignalRegistry;
+
+import java.util.Arrays;
+
+/**
+ * The records of one patient that a pass needs, read from the storage once
+ * and split by record type. Every check of the pass reads from here rather
+ * than querying the storage again, and {@link #next()} merges the types back
+ * into timestamp order.
+ *
+ * <p>The arrays are reused from patient to patient, so a shard keeps one
+ * context. Not thread-safe.
+ */
+final class EvaluationContext {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final SampleVisitor IGNORE = (timestamp, value) -> { };
+
+    private long[][] timestamps = new long[0][];
+    private double[][] values = new double[0][];
+    private int[] sizes = new int[0];
+    private int signals;
+    private int loading; // The signal the visitor appends to
+    private final SampleVisitor appender = this::append;
+    private int[] positions = new int[0]; // The selection of next(), per signal
+    private int[] ends = new int[0];
+    private int current;
+    private int currentIndex;
+    private double[] joined = new double[0];
+
+    /**
+     * Replaces the contents with the records of a patient within
+     * {@code [startTime, endTime]}.
+     *
+     * @return the number of records read
+     */
+    int load(DataStorage storage, int patientId, long startTime, long endTime) {
+        clear();
+        int total = 0;
+        for (int signalId = 0; signalId < signals; signalId++) {
+            total += loadSignal(storage, patientId, signalId, startTime, endTime);
+        }
+        return total;
+    }
+
+    /** Empties the context, for {@link #loadSignal} to fill record type by record type. */
+    void clear() {
+        signals = SignalRegistry.count();
+        if (signals > sizes.length) {
+            int length = sizes.length;
+            timestamps = Arrays.copyOf(timestamps, signals);
+            values = Arrays.copyOf(values, signals);
+            sizes = Arrays.copyOf(sizes, signals);
+            for (int signalId = length; signalId < signals; signalId++) {
+                timestamps[signalId] = new long[INITIAL_CAPACITY];
+                values[signalId] = new double[INITIAL_CAPACITY];
+            }
+        }
+        Arrays.fill(sizes, 0, signals, 0);
+    }
+
+    /**
+     * Replaces the records of one type with those of a patient within
+     * {@code [startTime, endTime]}.
+     *
+     * @return the number of records read
+     */
+    int loadSignal(DataStorage storage, int patientId, int signalId, long startTime, long endTime) {
+        loading = signalId;
+        sizes[signalId] = 0;
+        return storage.forEach(patientId, SignalRegistry.nameOf(signalId), startTime, endTime, appender);
+    }
+
+    /**
+     * Checks whether a patient has records within {@code [startTime, endTime]},
+     * without loading them.
+     */
+    boolean hasRecords(DataStorage storage, int patientId, long startTime, long endTime) {
+        for (int signalId = 0; signalId < SignalRegistry.count(); signalId++) {
+            if (storage.forEach(patientId, SignalRegistry.nameOf(signalId), startTime, endTime, IGNORE) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void append(long timestamp, double value) {
+        int size = sizes[loading];
+        if (size == timestamps[loading].length) {
+            timestamps[loading] = Arrays.copyOf(timestamps[loading], size * 2);
+            values[loading] = Arrays.copyOf(values[loading], size * 2);
+        }
+        timestamps[loading][size] = timestamp;
+        values[loading][size] = value;
+        sizes[loading] = size + 1;
+    }
+
+    /**
+     * Selects the records of every type within {@code [startTime, endTime]}
+     * for {@link #next()}.
+     */
+    void select(long startTime, long endTime) {
+        if (positions.length < signals) {
+            positions = new int[signals];
+            ends = new int[signals];
+        }
+        for (int signalId = 0; signalId < signals; signalId++) {
+            positions[signalId] = lowerBound(signalId, startTime);
+            ends[signalId] = upperBound(signalId, endTime);
+        }
+    }
+
+    /**
+     * Moves to the next selected record, in timestamp order across record
+     * types; records with equal timestamps come in signal ID order.
+     *
+     * @return the signal ID of the record, or -1 once all have been read
+     */
+    int next() {
+        int best = -1;
+        for (int signalId = 0; signalId < signals; signalId++) {
+            if (positions[signalId] < ends[signalId] && (best < 0
+                    || timestamps[signalId][positions[signalId]] < timestamps[best][positions[best]])) {
+                best = signalId;
+            }
+        }
+        if (best >= 0) {
+            current = best;
+            currentIndex = positions[best]++;
+        }
+        return best;
+    }
+
+    /** The timestamp of the record {@link #next()} moved to. */
+    long getTimestamp() {
+        return timestamps[current][currentIndex];
+    }
+
+    /** The value of the record {@link #next()} moved to. */
+    double getValue() {
+        return values[current][currentIndex];
+    }
+
+    long timestampAt(int signalId, int index) {
+        return timestamps[signalId][index];
+    }
+
+    double valueAt(int signalId, int index) {
+        return values[signalId][index];
+    }
+
+    /** The index of the first record of the type at or after the time. */
+    int lowerBound(int signalId, long time) {
+        return bound(signalId, time, false);
+    }
+
+    /** The index after the last record of the type at or before the time. */
+    int upperBound(int signalId, long time) {
+        return bound(signalId, time, true);
+    }
+
+    private int bound(int signalId, long time, boolean inclusive) {
+        if (signalId >= signals) {
+            return 0;
+        }
+        long[] times = timestamps[signalId];
+        int low = 0;
+        int high = sizes[signalId];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[middle] < time || inclusive && times[middle] == time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the latest record of a type that {@link #next()}
+     * has moved to or past: the records before the selection, and those
+     * selected and read so far, including the current one.
+     *
+     * @return the index, or -1 if there is none
+     */
+    int latestReadIndex(int signalId) {
+        return signalId < signals ? positions[signalId] - 1 : -1;
+    }
+
+    /**
+     * Returns a buffer of at least the given length for the values of a
+     * {@link SignalJoin}, reused from call to call.
+     */
+    double[] joinBuffer(int length) {
+        if (joined.length < length) {
+            joined = new double[length];
+        }
+        return joined;
+    }
+}
@@ -0,0 +1,124 @@
+package com.alerts;
+
+import java.util.Arrays;
+
+/**
+ * The first and last reading of each of the most recent minutes of one record
+ * type, plus the newest reading overall.
+ *
+ * <p>Minutes are mapped directly onto a small ring by their number since the
+ * epoch, so a reading for a new minute simply overwrites the slot of the
+ * minute that many minutes before it. Adding a reading and looking up a minute
+ * cost O(1), and old minutes expire without any bookkeeping.
+ *
+ * <p>Not thread-safe.
+ */
+final class MinuteBuckets {
+    static final long MINUTE = 60 * 1000;
+
+    private final long[] starts;
+    private final long[] firstTimestamps;
+    private final double[] firsts;
+    private final long[] lastTimestamps;
+    private final double[] lasts;
+    private final int[] counts;
+    private long latestTimestamp = Long.MIN_VALUE;
+    private double latest;
+
+    /**
+     * @param minutes how many of the most recent minutes to keep
+     */
+    MinuteBuckets(int minutes) {
+        starts = new long[minutes];
+        firstTimestamps = new long[minutes];
+        firsts = new double[minutes];
+        lastTimestamps = new long[minutes];
+        lasts = new double[minutes];
+        counts = new int[minutes];
+        Arrays.fill(starts, Long.MIN_VALUE);
+    }
+
+    /** The number of minutes kept. */
+    int minutes() {
+        return starts.length;
+    }
+
+    void add(long timestamp, double value) {
+        if (timestamp >= latestTimestamp) {
+            latestTimestamp = timestamp;
+            latest = value;
+        }
+        long minute = Math.floorDiv(timestamp, MINUTE);
+        int slot = (int) Math.floorMod(minute, (long) starts.length);
+        long start = minute * MINUTE;
+        if (starts[slot] != start) {
+            if (starts[slot] > start) {
+                return; // Older than every minute kept
+            }
+            starts[slot] = start;
+            counts[slot] = 0;
+        }
+        if (counts[slot] == 0 || timestamp < firstTimestamps[slot]) {
+            firstTimestamps[slot] = timestamp;
+            firsts[slot] = value;
+        }
+        if (counts[slot] == 0 || timestamp >= lastTimestamps[slot]) {
+            lastTimestamps[slot] = timestamp;
+            lasts[slot] = value;
+        }
+        counts[slot]++;
+    }
+
+    /**
+     * Returns the number of readings in the minutes overlapping a time range.
+     * The range must not span more minutes than are kept.
+     */
+    int count(long startTime, long endTime) {
+        int count = 0;
+        for (long start = bucketStart(startTime); start <= endTime; start += MINUTE) {
+            int slot = slot(start);
+            if (starts[slot] == start) {
+                count += counts[slot];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the first reading of the oldest minute with readings among those
+     * overlapping a time range.
+     *
+     * @return the reading, or NaN if there is none
+     */
+    double first(long startTime, long endTime) {
+        for (long start = bucketStart(startTime); start <= endTime; start += MINUTE) {
+            int slot = slot(start);
+            if (starts[slot] == start && counts[slot] > 0) {
+                return firsts[slot];
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Returns the last reading of the minute starting at the given time.
+     *
+     * @return the reading, or NaN if the minute has none or is no longer kept
+     */
+    double last(long minuteStart) {
+        int slot = slot(minuteStart);
+        return starts[slot] == minuteStart && counts[slot] > 0 ? lasts[slot] : Double.NaN;
+    }
+
+    double getLatest() {
+        return latest;
+    }
+
+    static long bucketStart(long timestamp) {
+        return Math.floorDiv(timestamp, MINUTE) * MINUTE;
+    }
+
+    private int slot(long start) {
+        return (int) Math.floorMod(Math.floorDiv(start, MINUTE), (long) starts.length);
+    }
+}
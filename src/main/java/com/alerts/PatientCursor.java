@@ -0,0 +1,135 @@
+package com.alerts;
+
+import java.util.Arrays;
+
+/**
+ * Tracks how far the records of one patient have been evaluated, per record
+ * type, for incremental evaluation in {@link AlertProcessor}.
+ *
+ * <p>Each record type has a cursor: the newest timestamp evaluated so far.
+ * A pass evaluates the records after the cursor up to the newest one the
+ * processor has been notified of, and moves the cursor there, so no record is
+ * evaluated twice, even if it is stored before its notification arrives. A
+ * record type is dirty when records arrived after its cursor since the last
+ * pass.
+ *
+ * <p>It also holds the patient's {@link AlertTracker}, shared by both kinds of
+ * evaluation, and how far {@link AlertProcessor#evaluateData()} has scanned.
+ *
+ * <p>Not thread-safe: callers synchronize on the instance.
+ */
+final class PatientCursor {
+    private final int patientId;
+    private long[] evaluatedUpTo = new long[0];
+    private long[] notifiedUpTo = new long[0];
+    private boolean[] dirty = new boolean[0];
+    private boolean queued;
+    private final PatientWindows windows = new PatientWindows();
+    private RuleSet.Compiled trackedRules; // The rules the windows were last set up for
+    private final AlertTracker alerts = new AlertTracker();
+    private long scannedUpTo = Long.MIN_VALUE;
+
+    PatientCursor(int patientId) {
+        this.patientId = patientId;
+    }
+
+    int getPatientId() {
+        return patientId;
+    }
+
+    /**
+     * Notes a new record of the given record type.
+     *
+     * @return false if the record is not after the cursor, so a pass would not
+     *         reach it
+     */
+    boolean markDirty(int signalId, long timestamp) {
+        if (signalId >= dirty.length) {
+            int length = dirty.length;
+            dirty = Arrays.copyOf(dirty, signalId + 1);
+            evaluatedUpTo = Arrays.copyOf(evaluatedUpTo, signalId + 1);
+            notifiedUpTo = Arrays.copyOf(notifiedUpTo, signalId + 1);
+            Arrays.fill(evaluatedUpTo, length, signalId + 1, Long.MIN_VALUE);
+            Arrays.fill(notifiedUpTo, length, signalId + 1, Long.MIN_VALUE);
+        }
+        if (timestamp <= evaluatedUpTo[signalId]) {
+            return false;
+        }
+        notifiedUpTo[signalId] = Math.max(notifiedUpTo[signalId], timestamp);
+        dirty[signalId] = true;
+        return true;
+    }
+
+    /**
+     * Marks the cursor as waiting for a pass.
+     *
+     * @return false if it already was
+     */
+    boolean enqueue() {
+        if (queued) {
+            return false;
+        }
+        queued = true;
+        return true;
+    }
+
+    void dequeue() {
+        queued = false;
+    }
+
+    int signalCount() {
+        return dirty.length;
+    }
+
+    boolean isDirty(int signalId) {
+        return signalId < dirty.length && dirty[signalId];
+    }
+
+    /** The first timestamp not yet evaluated for the record type. */
+    long nextTimestamp(int signalId) {
+        long last = evaluatedUpTo[signalId];
+        return last == Long.MIN_VALUE ? Long.MIN_VALUE : last + 1;
+    }
+
+    /** The last timestamp the next pass evaluates for the record type. */
+    long lastTimestamp(int signalId) {
+        return notifiedUpTo[signalId];
+    }
+
+    /** Moves the cursor of a record type to {@link #lastTimestamp}. */
+    void advance(int signalId) {
+        evaluatedUpTo[signalId] = notifiedUpTo[signalId];
+    }
+
+    /** Clears the dirty flags once a pass is done. */
+    void clean() {
+        Arrays.fill(dirty, false);
+    }
+
+    /**
+     * The sliding-window state of the records evaluated so far, keeping what
+     * the history rules of the given rule set read. Windows a new rule set
+     * asks for start empty.
+     */
+    PatientWindows getWindows(RuleSet.Compiled rules) {
+        if (rules != trackedRules) {
+            rules.track(windows);
+            trackedRules = rules;
+        }
+        return windows;
+    }
+
+    /** The raised conditions of the patient. */
+    AlertTracker getAlerts() {
+        return alerts;
+    }
+
+    /** The newest record timestamp a full scan has evaluated. */
+    long getScannedUpTo() {
+        return scannedUpTo;
+    }
+
+    void setScannedUpTo(long timestamp) {
+        scannedUpTo = Math.max(scannedUpTo, timestamp);
+    }
+}
@@ -0,0 +1,249 @@
+package com.alerts;
+
+import java.util.Arrays;
+
+import static com.alerts.MinuteBuckets.MINUTE;
+
+/**
+ * Sliding-window state of one patient for the alert rules that look back over
+ * several minutes, so that checking a rule does not re-read the records.
+ *
+ * <p>Readings are added as they are evaluated, in timestamp order per record
+ * type. Each check reads the record types its rule names, and only keeps
+ * windows for them once a {@code track} method asked for them, see
+ * {@link RuleSet#trend}; readings added before that are not in the windows.
+ * The blood pressure trend and the rapid drop read the first and last
+ * reading of each minute from {@link MinuteBuckets}; the irregular beat rule
+ * keeps the largest relative change between consecutive RR intervals,
+ * derived from the ECG by {@link com.data_management.HeartRateDeriver}, in a
+ * {@link SlidingMax}. The latest reading of every record type is kept for
+ * composite rules. Every check costs O(1), independent of the sampling rate
+ * and the window length. The rapid drop compares against the first reading
+ * of the oldest minute overlapping the window, so its window starts up to
+ * one minute before {@code currentTime} minus 10 minutes.
+ *
+ * <p>Not thread-safe.
+ */
+public final class PatientWindows {
+    private static final long RAPID_DROP_WINDOW = 10 * MINUTE;
+    private static final long IRREGULAR_BEAT_WINDOW = 5 * MINUTE;
+    private static final int TREND_MINUTES = 3;
+    // The largest change between consecutive RR intervals of a regular beat, relative to the earlier one
+    private static final double IRREGULAR_BEAT_THRESHOLD = 0.2;
+
+    // Indexed by signal ID, null for the record types no check tracks
+    private MinuteBuckets[] minutes = new MinuteBuckets[0];
+    // Relative changes between consecutive readings, at the time of the earlier reading
+    private SlidingMax[] changes = new SlidingMax[0];
+    private final double[] trend = new double[TREND_MINUTES];
+    private long[] latestTimestamps = new long[0]; // Indexed by signal ID
+    private double[] latestValues = new double[0];
+
+    /**
+     * Adds a reading to the latest readings and to the windows kept for its
+     * record type.
+     *
+     * @param signalId  the record type, see {@link com.data_management.SignalRegistry}
+     * @param timestamp the time of the reading, not before earlier readings of
+     *                  the same record type
+     * @param value     the measured value
+     */
+    public void add(int signalId, long timestamp, double value) {
+        ensureSignal(signalId);
+        if (changes[signalId] != null && latestTimestamps[signalId] != Long.MIN_VALUE) {
+            changes[signalId].add(latestTimestamps[signalId], rrChange(latestValues[signalId], value));
+        }
+        if (timestamp >= latestTimestamps[signalId]) {
+            latestTimestamps[signalId] = timestamp;
+            latestValues[signalId] = value;
+        }
+        if (minutes[signalId] != null) {
+            minutes[signalId].add(timestamp, value);
+        }
+    }
+
+    /**
+     * Keeps the windows {@link #bloodPressureTrend} reads.
+     *
+     * @param systolicId  the record type of the systolic pressure
+     * @param diastolicId the record type of the diastolic pressure
+     */
+    public void trackBloodPressureTrend(int systolicId, int diastolicId) {
+        keepMinutes(systolicId, TREND_MINUTES);
+        keepMinutes(diastolicId, TREND_MINUTES);
+    }
+
+    /**
+     * Checks for an increasing or decreasing blood pressure trend over the
+     * latest reading of the current minute and the two before it. Each
+     * pressure is only checked if it has readings in all three minutes.
+     *
+     * @param systolicId  the record type of the systolic pressure
+     * @param diastolicId the record type of the diastolic pressure
+     * @param currentTime the current time in milliseconds
+     * @return true if there is a trend
+     */
+    public boolean bloodPressureTrend(int systolicId, int diastolicId, long currentTime) {
+        MinuteBuckets systolic = minutes(systolicId);
+        MinuteBuckets diastolic = minutes(diastolicId);
+        if (systolic == null || diastolic == null) {
+            return false;
+        }
+        return lastPerMinute(systolic, currentTime) && isTrend(trend[0], trend[1], trend[2])
+                || lastPerMinute(diastolic, currentTime) && isTrend(trend[0], trend[1], trend[2]);
+    }
+
+    /**
+     * Keeps the window {@link #rapidSaturationDrop} reads.
+     *
+     * @param signalId the record type of the saturation
+     */
+    public void trackRapidSaturationDrop(int signalId) {
+        keepMinutes(signalId, (int) (RAPID_DROP_WINDOW / MINUTE) + 1);
+    }
+
+    /**
+     * Checks for a saturation drop of 5% or more within the last 10 minutes.
+     *
+     * @param signalId    the record type of the saturation
+     * @param currentTime the current time in milliseconds
+     * @return true if saturation dropped rapidly
+     */
+    public boolean rapidSaturationDrop(int signalId, long currentTime) {
+        MinuteBuckets saturation = minutes(signalId);
+        long startTime = currentTime - RAPID_DROP_WINDOW;
+        return saturation != null && saturation.count(startTime, currentTime) >= 2
+                && isRapidDrop(saturation.first(startTime, currentTime), saturation.getLatest());
+    }
+
+    /**
+     * Keeps the window {@link #irregularBeat} reads.
+     *
+     * @param signalId the record type of the RR intervals
+     */
+    public void trackIrregularBeat(int signalId) {
+        ensureSignal(signalId);
+        if (changes[signalId] == null) {
+            changes[signalId] = new SlidingMax();
+        }
+    }
+
+    /**
+     * Checks for consecutive RR intervals within the last 5 minutes that
+     * differ by more than the irregular beat threshold.
+     *
+     * @param signalId    the record type of the RR intervals
+     * @param currentTime the current time in milliseconds
+     * @return true if the beat is irregular
+     */
+    public boolean irregularBeat(int signalId, long currentTime) {
+        SlidingMax beatChanges = signalId < changes.length ? changes[signalId] : null;
+        if (beatChanges == null) {
+            return false;
+        }
+        beatChanges.expire(currentTime - IRREGULAR_BEAT_WINDOW);
+        return !beatChanges.isEmpty() && isIrregularBeat(beatChanges.max());
+    }
+
+    /**
+     * Returns the time of the latest reading of a record type.
+     *
+     * @param signalId the record type, see {@link com.data_management.SignalRegistry}
+     * @return the time, or {@code Long.MIN_VALUE} if there is no reading
+     */
+    public long latestTimestamp(int signalId) {
+        return signalId < latestTimestamps.length ? latestTimestamps[signalId] : Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the latest reading of a record type.
+     *
+     * @param signalId the record type, see {@link com.data_management.SignalRegistry}
+     * @return the reading, or 0.0 if there is none
+     */
+    public double latest(int signalId) {
+        return signalId < latestValues.length ? latestValues[signalId] : 0.0;
+    }
+
+    /**
+     * Keeps at least the given number of minutes of a record type. Growing
+     * the minutes kept starts them over.
+     */
+    private void keepMinutes(int signalId, int count) {
+        ensureSignal(signalId);
+        if (minutes[signalId] == null || minutes[signalId].minutes() < count) {
+            minutes[signalId] = new MinuteBuckets(count);
+        }
+    }
+
+    private MinuteBuckets minutes(int signalId) {
+        return signalId < minutes.length ? minutes[signalId] : null;
+    }
+
+    private void ensureSignal(int signalId) {
+        if (signalId >= latestTimestamps.length) {
+            int length = latestTimestamps.length;
+            latestTimestamps = Arrays.copyOf(latestTimestamps, signalId + 1);
+            latestValues = Arrays.copyOf(latestValues, signalId + 1);
+            minutes = Arrays.copyOf(minutes, signalId + 1);
+            changes = Arrays.copyOf(changes, signalId + 1);
+            Arrays.fill(latestTimestamps, length, signalId + 1, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Writes the last reading of each trend minute to {@code trend}, newest
+     * first.
+     *
+     * @return false if a minute has no readings
+     */
+    private boolean lastPerMinute(MinuteBuckets buckets, long currentTime) {
+        long start = MinuteBuckets.bucketStart(currentTime);
+        for (int minute = 0; minute < TREND_MINUTES; minute++, start -= MINUTE) {
+            double last = buckets.last(start);
+            if (Double.isNaN(last)) {
+                return false;
+            }
+            trend[minute] = last;
+        }
+        return true;
+    }
+
+    /**
+     * Checks three consecutive per-minute blood pressure readings for an
+     * increasing or decreasing trend, a change of more than 10 mmHg from each
+     * minute to the next in the same direction.
+     *
+     * @param bp1 the reading of the newest minute
+     * @param bp2 the reading of the minute before
+     * @param bp3 the reading of the oldest minute
+     * @return true if the readings form a trend
+     */
+    private static boolean isTrend(double bp1, double bp2, double bp3) {
+        return (bp1 - bp2 > 10 && bp2 - bp3 > 10) || (bp2 - bp1 > 10 && bp3 - bp2 > 10);
+    }
+
+    /**
+     * Checks whether saturation dropped by 5% or more.
+     *
+     * @param startSaturation the reading at the start of the interval
+     * @param endSaturation   the reading at the end of the interval
+     * @return true if the drop is rapid
+     */
+    private static boolean isRapidDrop(double startSaturation, double endSaturation) {
+        double percentageDrop = ((startSaturation - endSaturation) / startSaturation) * 100;
+        return percentageDrop >= 5;
+    }
+
+    /**
+     * Returns the change from one RR interval to the next, relative to the
+     * first.
+     */
+    private static double rrChange(double previousInterval, double interval) {
+        return Math.abs(interval - previousInterval) / previousInterval;
+    }
+
+    private static boolean isIrregularBeat(double rrChange) {
+        return rrChange > IRREGULAR_BEAT_THRESHOLD;
+    }
+}
@@ -0,0 +1,568 @@
+package com.alerts;
+
+import com.Strategies.AlertStrategy;
+import com.data_management.PatientRecord;
+import com.data_management.SignalRegistry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The alert rules an {@link AlertProcessor} evaluates, usually loaded from a
+ * properties file; see {@code alert-rules.properties} for the format and the
+ * default rules.
+ *
+ * <p>Rules either check a single reading, by threshold or by an
+ * {@link AlertStrategy}, or check the recent history of a patient, by one of
+ * the built-in trend checks, or combine several record types by a
+ * composite that joins their latest readings with a {@link SignalJoin}. A
+ * rule set is compiled into arrays of single-reading and composite rules
+ * indexed by signal ID, so a reading only touches the rules that read its
+ * record type, and a list of history rules that each name the record types
+ * they read.
+ *
+ * <p>Every rule also says how its alerts are deduplicated, see
+ * {@link AlertTracker}: how long its condition must stop holding before it is
+ * cleared, and how often a condition that keeps holding is reported again.
+ * Threshold rules can add a band, so a raised condition only clears once the
+ * reading is back inside the bounds by that margin.
+ */
+public class RuleSet {
+    private static final String DEFAULT_RESOURCE = "/alert-rules.properties";
+    /** How long a condition must stop holding before it clears, by default. */
+    public static final long DEFAULT_CLEAR_AFTER_MILLIS = 30 * 1000;
+    /** How often a condition that keeps holding is reported again, by default. */
+    public static final long DEFAULT_RENOTIFY_MILLIS = 5 * 60 * 1000;
+    private static final Pattern TERM = Pattern.compile("\\s*(\\S+)\\s*([<>])\\s*(\\S+)\\s*");
+
+    private final List<RecordRule> recordRules = new ArrayList<>();
+    private final List<WindowRule> windowRules = new ArrayList<>();
+    private final List<JoinRule> joinRules = new ArrayList<>();
+    private long clearAfterMillis = DEFAULT_CLEAR_AFTER_MILLIS;
+    private long renotifyMillis = DEFAULT_RENOTIFY_MILLIS;
+
+    /**
+     * Returns the default rules, loaded from {@code alert-rules.properties} on
+     * the class path.
+     *
+     * @return the default rule set
+     */
+    public static RuleSet defaults() {
+        try (InputStream in = RuleSet.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing " + DEFAULT_RESOURCE);
+            }
+            Properties properties = new Properties();
+            properties.load(in);
+            return parse(properties);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read " + DEFAULT_RESOURCE, e);
+        }
+    }
+
+    /**
+     * Loads rules from a properties file.
+     *
+     * @param path the file to read
+     * @return the rule set
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if a rule is malformed
+     */
+    public static RuleSet load(Path path) throws IOException {
+        try (Reader in = Files.newBufferedReader(path)) {
+            Properties properties = new Properties();
+            properties.load(in);
+            return parse(properties);
+        }
+    }
+
+    /**
+     * Builds rules from properties in the format of {@code alert-rules.properties}.
+     * Rules are added in the order of their names.
+     *
+     * @param properties the rule definitions
+     * @return the rule set
+     * @throws IllegalArgumentException if a rule is malformed
+     */
+    public static RuleSet parse(Properties properties) {
+        TreeSet<String> names = new TreeSet<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.endsWith(".type")) {
+                names.add(key.substring(0, key.length() - ".type".length()));
+            }
+        }
+        RuleSet rules = new RuleSet();
+        long clearAfter = (long) number(properties, "defaults", "clearAfter", DEFAULT_CLEAR_AFTER_MILLIS);
+        long renotify = (long) number(properties, "defaults", "renotify", DEFAULT_RENOTIFY_MILLIS);
+        for (String name : names) {
+            String type = properties.getProperty(name + ".type").trim();
+            String condition = properties.getProperty(name + ".condition");
+            rules.timing((long) number(properties, name, "clearAfter", clearAfter),
+                    (long) number(properties, name, "renotify", renotify));
+            switch (type) {
+                case "threshold": {
+                    String signal = required(properties, name, "signal");
+                    rules.threshold(signal, number(properties, name, "below", Double.NEGATIVE_INFINITY),
+                            number(properties, name, "above", Double.POSITIVE_INFINITY),
+                            number(properties, name, "band", 0), condition != null ? condition : signal);
+                    break;
+                }
+                case "strategy": {
+                    String signal = required(properties, name, "signal");
+                    rules.strategy(signal, instantiate(required(properties, name, "class"), name),
+                            condition != null ? condition : signal);
+                    break;
+                }
+                case "trend":
+                    rules.trend(required(properties, name, "check"),
+                            required(properties, name, "signals").split(","), condition(condition, name));
+                    break;
+                case "composite":
+                    rules.composite(required(properties, name, "when"),
+                            (long) number(properties, name, "within", Long.MAX_VALUE),
+                            (long) number(properties, name, "grid", 1), condition(condition, name));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown type '" + type + "' of rule " + name);
+            }
+        }
+        return rules.timing(clearAfter, renotify);
+    }
+
+    /**
+     * Sets how the alerts of the rules added after this call are
+     * deduplicated.
+     *
+     * @param clearAfterMillis how long a condition must stop holding before
+     *                         it is cleared
+     * @param renotifyMillis   how often a condition that keeps holding is
+     *                         reported again, or 0 for never
+     * @return this rule set
+     * @throws IllegalArgumentException if an interval is negative
+     */
+    public RuleSet timing(long clearAfterMillis, long renotifyMillis) {
+        if (clearAfterMillis < 0 || renotifyMillis < 0) {
+            throw new IllegalArgumentException("Alert intervals must not be negative");
+        }
+        this.clearAfterMillis = clearAfterMillis;
+        this.renotifyMillis = renotifyMillis;
+        return this;
+    }
+
+    /**
+     * Adds a rule that raises an alert for a reading below or above the given
+     * bounds.
+     *
+     * @param recordType the type of record the rule checks
+     * @param below      readings below this value raise an alert
+     * @param above      readings above this value raise an alert
+     * @param condition  the condition of the alerts raised
+     * @return this rule set
+     */
+    public RuleSet threshold(String recordType, double below, double above, String condition) {
+        return threshold(recordType, below, above, 0, condition);
+    }
+
+    /**
+     * Adds a rule that raises an alert for a reading below or above the given
+     * bounds, and only clears it once readings are back inside the bounds by
+     * at least {@code band}.
+     *
+     * @param recordType the type of record the rule checks
+     * @param below      readings below this value raise an alert
+     * @param above      readings above this value raise an alert
+     * @param band       the margin a reading must be inside the bounds by to
+     *                   clear a raised alert
+     * @param condition  the condition of the alerts raised
+     * @return this rule set
+     * @throws IllegalArgumentException if band is negative
+     */
+    public RuleSet threshold(String recordType, double below, double above, double band, String condition) {
+        if (band < 0) {
+            throw new IllegalArgumentException("Band of " + condition + " must not be negative");
+        }
+        recordRules.add(new RecordRule(SignalRegistry.idOf(recordType), condition) {
+            @Override
+            boolean test(int patientId, long timestamp, double value) {
+                return value < below || value > above;
+            }
+
+            @Override
+            boolean clears(int patientId, long timestamp, double value) {
+                return value >= below + band && value <= above - band;
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Adds a rule that raises an alert for each reading the strategy accepts.
+     *
+     * @param recordType the type of record the rule checks
+     * @param strategy   decides whether a reading raises an alert
+     * @param condition  the condition of the alerts raised
+     * @return this rule set
+     */
+    public RuleSet strategy(String recordType, AlertStrategy strategy, String condition) {
+        recordRules.add(new RecordRule(SignalRegistry.idOf(recordType), condition) {
+            @Override
+            boolean test(int patientId, long timestamp, double value) {
+                return strategy.checkAlertCondition(new PatientRecord(patientId, value, recordType, timestamp));
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Adds a rule that runs one of the built-in checks over the recent history
+     * of a patient whenever it receives one of the given record types.
+     *
+     * @param check       {@code bloodPressureTrend}, which reads the systolic
+     *                    and the diastolic pressure, or
+     *                    {@code rapidSaturationDrop} or {@code irregularBeat},
+     *                    which read the saturation and the RR intervals
+     * @param recordTypes the record types the check reads, in that order
+     * @param condition   the condition of the alerts raised
+     * @return this rule set
+     * @throws IllegalArgumentException if the check is unknown or reads a
+     *                                  different number of record types
+     */
+    public RuleSet trend(String check, String[] recordTypes, String condition) {
+        int[] signalIds = signalIds(recordTypes);
+        switch (check.trim()) {
+            case "bloodPressureTrend":
+                expectSignals(check, signalIds, 2);
+                windowRules.add(new WindowRule(signalIds, condition) {
+                    @Override
+                    void track(PatientWindows windows) {
+                        windows.trackBloodPressureTrend(signalIds[0], signalIds[1]);
+                    }
+
+                    @Override
+                    boolean test(PatientWindows windows, long currentTime) {
+                        return windows.bloodPressureTrend(signalIds[0], signalIds[1], currentTime);
+                    }
+                });
+                break;
+            case "rapidSaturationDrop":
+                expectSignals(check, signalIds, 1);
+                windowRules.add(new WindowRule(signalIds, condition) {
+                    @Override
+                    void track(PatientWindows windows) {
+                        windows.trackRapidSaturationDrop(signalIds[0]);
+                    }
+
+                    @Override
+                    boolean test(PatientWindows windows, long currentTime) {
+                        return windows.rapidSaturationDrop(signalIds[0], currentTime);
+                    }
+                });
+                break;
+            case "irregularBeat":
+                expectSignals(check, signalIds, 1);
+                windowRules.add(new WindowRule(signalIds, condition) {
+                    @Override
+                    void track(PatientWindows windows) {
+                        windows.trackIrregularBeat(signalIds[0]);
+                    }
+
+                    @Override
+                    boolean test(PatientWindows windows, long currentTime) {
+                        return windows.irregularBeat(signalIds[0], currentTime);
+                    }
+                });
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown trend check '" + check + "'");
+        }
+        return this;
+    }
+
+    private static void expectSignals(String check, int[] signalIds, int count) {
+        if (signalIds.length != count) {
+            throw new IllegalArgumentException("Trend check " + check.trim() + " reads " + count
+                    + (count == 1 ? " record type" : " record types") + ", not " + signalIds.length);
+        }
+    }
+
+    /**
+     * Adds a rule that raises an alert when the latest reading of each record
+     * type in the expression is recent enough and meets its bound, comparing
+     * exact times.
+     *
+     * @param expression  terms such as {@code SystolicPressure < 90} joined by
+     *                    {@code &}
+     * @param withinMillis how recent each reading must be
+     * @param condition   the condition of the alerts raised
+     * @return this rule set
+     */
+    public RuleSet composite(String expression, long withinMillis, String condition) {
+        return composite(expression, withinMillis, 1, condition);
+    }
+
+    /**
+     * Adds a rule that joins the record types in the expression, see
+     * {@link SignalJoin}, and raises an alert when every joined reading meets
+     * its bound. The rule is checked at every reading of any of the record
+     * types, at the time of that reading; while a record type has no reading
+     * within {@code withinMillis} before it, the rule does not hold.
+     *
+     * @param expression   terms such as {@code SystolicPressure < 90} joined
+     *                     by {@code &}, any number of them
+     * @param withinMillis how long a reading is carried forward
+     * @param gridMillis   the width of the cells of the common time grid
+     * @param condition    the condition of the alerts raised
+     * @return this rule set
+     * @throws IllegalArgumentException if a term is malformed, or an interval
+     *                                  is negative or the grid is not positive
+     */
+    public RuleSet composite(String expression, long withinMillis, long gridMillis, String condition) {
+        String[] terms = expression.split("&");
+        int[] signalIds = new int[terms.length];
+        boolean[] below = new boolean[terms.length];
+        double[] limits = new double[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            Matcher term = TERM.matcher(terms[i]);
+            if (!term.matches()) {
+                throw new IllegalArgumentException("Malformed term '" + terms[i].trim() + "' in " + expression);
+            }
+            signalIds[i] = SignalRegistry.idOf(term.group(1));
+            below[i] = term.group(2).equals("<");
+            limits[i] = parseNumber(term.group(3), expression);
+        }
+        joinRules.add(new JoinRule(new SignalJoin(signalIds, withinMillis, gridMillis), condition) {
+            @Override
+            boolean test(double[] values) {
+                for (int i = 0; i < limits.length; i++) {
+                    if (below[i] ? !(values[i] < limits[i]) : !(values[i] > limits[i])) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Compiles the rules for evaluation. Later changes to this rule set do not
+     * affect the result.
+     */
+    Compiled compile() {
+        int signals = SignalRegistry.count();
+        for (RecordRule rule : recordRules) {
+            signals = Math.max(signals, rule.signalId + 1);
+        }
+        for (WindowRule rule : windowRules) {
+            for (int signalId : rule.signalIds) {
+                signals = Math.max(signals, signalId + 1);
+            }
+        }
+        int maxJoinSize = 0;
+        for (JoinRule rule : joinRules) {
+            for (int signalId : rule.join.signalIds()) {
+                signals = Math.max(signals, signalId + 1);
+            }
+            maxJoinSize = Math.max(maxJoinSize, rule.join.size());
+        }
+        RecordRule[][] bySignal = new RecordRule[signals][];
+        JoinRule[][] joinsBySignal = new JoinRule[signals][];
+        for (int signalId = 0; signalId < signals; signalId++) {
+            List<RecordRule> matching = new ArrayList<>();
+            for (RecordRule rule : recordRules) {
+                if (rule.signalId == signalId) {
+                    matching.add(rule);
+                }
+            }
+            bySignal[signalId] = matching.toArray(new RecordRule[0]);
+            List<JoinRule> joining = new ArrayList<>();
+            for (JoinRule rule : joinRules) {
+                for (int joined : rule.join.signalIds()) {
+                    if (joined == signalId) {
+                        joining.add(rule);
+                        break;
+                    }
+                }
+            }
+            joinsBySignal[signalId] = joining.toArray(new JoinRule[0]);
+        }
+        TreeSet<Integer> windowSignals = new TreeSet<>();
+        for (WindowRule rule : windowRules) {
+            for (int signalId : rule.signalIds) {
+                windowSignals.add(signalId);
+            }
+        }
+        return new Compiled(bySignal, joinsBySignal, maxJoinSize, windowRules.toArray(new WindowRule[0]),
+                windowSignals.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static String required(Properties properties, String name, String field) {
+        String value = properties.getProperty(name + "." + field);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Rule " + name + " needs " + name + "." + field);
+        }
+        return value.trim();
+    }
+
+    private static double number(Properties properties, String name, String field, double defaultValue) {
+        String value = properties.getProperty(name + "." + field);
+        return value == null ? defaultValue : parseNumber(value.trim(), name + "." + field);
+    }
+
+    private static double parseNumber(String value, String context) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed number '" + value + "' in " + context, e);
+        }
+    }
+
+    private static String condition(String condition, String name) {
+        return condition != null ? condition : name;
+    }
+
+    private static AlertStrategy instantiate(String className, String name) {
+        try {
+            return Class.forName(className).asSubclass(AlertStrategy.class).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Cannot create strategy " + className + " of rule " + name, e);
+        }
+    }
+
+    private static int[] signalIds(String[] recordTypes) {
+        int[] signalIds = new int[recordTypes.length];
+        for (int i = 0; i < recordTypes.length; i++) {
+            signalIds[i] = SignalRegistry.idOf(recordTypes[i].trim());
+        }
+        return signalIds;
+    }
+
+    /** A rule with the deduplication settings current when it was added. */
+    abstract class Rule {
+        final String condition;
+        final long clearAfterMillis = RuleSet.this.clearAfterMillis;
+        final long renotifyMillis = RuleSet.this.renotifyMillis;
+
+        Rule(String condition) {
+            this.condition = condition;
+        }
+    }
+
+    /** A rule that checks a single reading of one record type. */
+    abstract class RecordRule extends Rule {
+        final int signalId;
+
+        RecordRule(int signalId, String condition) {
+            super(condition);
+            this.signalId = signalId;
+        }
+
+        abstract boolean test(int patientId, long timestamp, double value);
+
+        /** Whether a reading clears the raised condition of this rule. */
+        boolean clears(int patientId, long timestamp, double value) {
+            return !test(patientId, timestamp, value);
+        }
+    }
+
+    /** A rule that checks the recent history of a patient. */
+    abstract class WindowRule extends Rule {
+        final int[] signalIds;
+
+        WindowRule(int[] signalIds, String condition) {
+            super(condition);
+            this.signalIds = signalIds;
+        }
+
+        /** Makes the windows keep what {@link #test} reads. */
+        abstract void track(PatientWindows windows);
+
+        abstract boolean test(PatientWindows windows, long currentTime);
+    }
+
+    /** A rule that checks the joined readings of several record types. */
+    abstract class JoinRule extends Rule {
+        final SignalJoin join;
+
+        JoinRule(SignalJoin join, String condition) {
+            super(condition);
+            this.join = join;
+        }
+
+        /**
+         * Checks the joined readings.
+         *
+         * @param values the reading of each record type, in join order
+         */
+        abstract boolean test(double[] values);
+
+        /**
+         * Checks the rule at a time, against the latest readings of the
+         * windows; false while the join is incomplete.
+         *
+         * @param values a buffer of at least {@code join.size()} values
+         */
+        boolean holds(PatientWindows windows, long time, double[] values) {
+            return join.align(windows, time, values) && test(values);
+        }
+
+        /**
+         * Checks the rule at a time, against the records loaded in a
+         * context; false while the join is incomplete.
+         *
+         * @param values a buffer of at least {@code join.size()} values
+         */
+        boolean holds(EvaluationContext context, long time, double[] values) {
+            return join.align(context, time, values) && test(values);
+        }
+    }
+
+    /** An immutable, compiled rule set. */
+    static final class Compiled {
+        private static final RecordRule[] NONE = new RecordRule[0];
+        private static final JoinRule[] NO_JOINS = new JoinRule[0];
+
+        private final RecordRule[][] bySignal;
+        private final JoinRule[][] joinsBySignal;
+        /** The most record types any composite rule joins. */
+        final int maxJoinSize;
+        final WindowRule[] windowRules;
+        /** The record types any history rule reads, each once. */
+        final int[] windowSignals;
+
+        private Compiled(RecordRule[][] bySignal, JoinRule[][] joinsBySignal, int maxJoinSize,
+                         WindowRule[] windowRules, int[] windowSignals) {
+            this.bySignal = bySignal;
+            this.joinsBySignal = joinsBySignal;
+            this.maxJoinSize = maxJoinSize;
+            this.windowRules = windowRules;
+            this.windowSignals = windowSignals;
+        }
+
+        /** Returns the single-reading rules of a record type. */
+        RecordRule[] forSignal(int signalId) {
+            return signalId < bySignal.length ? bySignal[signalId] : NONE;
+        }
+
+        /** Makes the windows keep what the history rules read. */
+        void track(PatientWindows windows) {
+            for (WindowRule rule : windowRules) {
+                rule.track(windows);
+            }
+        }
+
+        /** Returns the composite rules that join a record type. */
+        JoinRule[] joinsForSignal(int signalId) {
+            return signalId < joinsBySignal.length ? joinsBySignal[signalId] : NO_JOINS;
+        }
+    }
+}
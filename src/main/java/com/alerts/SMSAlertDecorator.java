@@ -1,7 +1,21 @@
 package com.alerts;
 public class SMSAlertDecorator extends AlertDecorator {
+    private final AlertChannel channel;
+
     public SMSAlertDecorator(AlertComponent decoratedAlert) {
+        this(decoratedAlert, null);
+    }
+
+    /**
+     * Sends the SMS through a channel, which delivers it from its own thread,
+     * rather than on the calling thread.
+     *
+     * @param decoratedAlert the alert to decorate
+     * @param channel        the SMS channel, or null to send synchronously
+     */
+    public SMSAlertDecorator(AlertComponent decoratedAlert, AlertChannel channel) {
         super(decoratedAlert);
+        this.channel = channel;
     }
 
     @Override
@@ -11,6 +25,10 @@ public class SMSAlertDecorator extends AlertDecorator {
     }
 
     private void sendSMSAlert() {
+        if (channel != null) {
+            channel.offer(getAlert());
+            return;
+        }
         System.out.println("Sending SMS alert...");
     }
 }
@@ -0,0 +1,126 @@
+package com.alerts;
+
+import java.util.Arrays;
+
+/**
+ * Aligns the readings of several record types of one patient at a point in
+ * time, so rules can combine them: each record type contributes its latest
+ * reading at or before that time, carried forward for at most its maximum
+ * staleness. A record type without such a reading leaves the join
+ * incomplete, rather than contributing a made-up value.
+ *
+ * <p>Times are compared on a grid: readings in the same grid cell count as
+ * simultaneous, so record types sampled a few milliseconds apart line up,
+ * and staleness is measured between cells. A grid of 1 compares exact times.
+ * Only readings up to the time of the join count, never later ones of the
+ * same cell, so a join gives the same result whether it is checked as each
+ * reading arrives or in a later pass over the records.
+ *
+ * <p>The join reads state that is already kept per patient, the latest
+ * readings in {@link PatientWindows} or the loaded records of an
+ * {@link EvaluationContext}, so aligning costs O(N) for N record types,
+ * however long the history.
+ */
+final class SignalJoin {
+    private final int[] signalIds;
+    private final long[] maxStalenessMillis;
+    private final long gridMillis;
+
+    /**
+     * @param signalIds          the record types to join
+     * @param maxStalenessMillis how long the reading of each record type is
+     *                           carried forward
+     * @param gridMillis         the width of a grid cell
+     * @throws IllegalArgumentException if the arrays differ in length, a
+     *                                  staleness is negative or the grid is
+     *                                  not positive
+     */
+    SignalJoin(int[] signalIds, long[] maxStalenessMillis, long gridMillis) {
+        if (signalIds.length != maxStalenessMillis.length) {
+            throw new IllegalArgumentException("Every record type of a join needs a maximum staleness");
+        }
+        for (long staleness : maxStalenessMillis) {
+            if (staleness < 0) {
+                throw new IllegalArgumentException("The maximum staleness must not be negative");
+            }
+        }
+        if (gridMillis <= 0) {
+            throw new IllegalArgumentException("The grid must be positive: " + gridMillis);
+        }
+        this.signalIds = signalIds.clone();
+        this.maxStalenessMillis = maxStalenessMillis.clone();
+        this.gridMillis = gridMillis;
+    }
+
+    /** A join that carries every record type forward for the same time. */
+    SignalJoin(int[] signalIds, long maxStalenessMillis, long gridMillis) {
+        this(signalIds, filled(signalIds.length, maxStalenessMillis), gridMillis);
+    }
+
+    private static long[] filled(int length, long value) {
+        long[] array = new long[length];
+        Arrays.fill(array, value);
+        return array;
+    }
+
+    /** The number of record types joined. */
+    int size() {
+        return signalIds.length;
+    }
+
+    /** The record types joined, in the order of the aligned values. */
+    int[] signalIds() {
+        return signalIds.clone();
+    }
+
+    /**
+     * Aligns the latest readings kept by the windows of a patient. The
+     * windows must hold no reading after {@code time}, so readings are added
+     * and joins aligned in timestamp order.
+     *
+     * @param time   the time to align at
+     * @param values receives the value of each record type, in join order
+     * @return false if a record type has no fresh enough reading
+     */
+    boolean align(PatientWindows windows, long time, double[] values) {
+        for (int i = 0; i < signalIds.length; i++) {
+            if (!fresh(i, windows.latestTimestamp(signalIds[i]), time)) {
+                return false;
+            }
+            values[i] = windows.latest(signalIds[i]);
+        }
+        return true;
+    }
+
+    /**
+     * Aligns the records of a context that {@link EvaluationContext#next()}
+     * has read up to the current one, so a pass over the loaded records sees
+     * the same readings as windows that were given them one by one.
+     *
+     * @param time   the time to align at, that of the current record
+     * @param values receives the value of each record type, in join order
+     * @return false if a record type has no fresh enough reading
+     */
+    boolean align(EvaluationContext context, long time, double[] values) {
+        for (int i = 0; i < signalIds.length; i++) {
+            int index = context.latestReadIndex(signalIds[i]);
+            if (index < 0 || !fresh(i, context.timestampAt(signalIds[i], index), time)) {
+                return false;
+            }
+            values[i] = context.valueAt(signalIds[i], index);
+        }
+        return true;
+    }
+
+    private boolean fresh(int input, long readingTime, long time) {
+        if (readingTime == Long.MIN_VALUE) {
+            return false;
+        }
+        long age = cell(time) - cell(readingTime);
+        return age >= 0 && age <= maxStalenessMillis[input];
+    }
+
+    private long cell(long time) {
+        return Math.floorDiv(time, gridMillis) * gridMillis;
+    }
+}
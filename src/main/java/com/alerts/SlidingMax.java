@@ -0,0 +1,61 @@
+package com.alerts;
+
+/**
+ * The maximum of the values added within a sliding time window, kept in a
+ * monotonic deque: each value evicts the smaller values before it, since those
+ * can no longer be the maximum, so the oldest entry is always the maximum.
+ * Adding and expiring cost amortized O(1) and reading the maximum O(1).
+ *
+ * <p>Values must be added in timestamp order. Not thread-safe.
+ */
+final class SlidingMax {
+    private long[] timestamps = new long[8];
+    private double[] values = new double[8];
+    private int head;
+    private int size;
+
+    void add(long timestamp, double value) {
+        while (size > 0 && values[slot(size - 1)] <= value) {
+            size--;
+        }
+        if (size == values.length) {
+            grow();
+        }
+        int slot = slot(size++);
+        timestamps[slot] = timestamp;
+        values[slot] = value;
+    }
+
+    /** Drops the values added with a timestamp before the cutoff. */
+    void expire(long cutoff) {
+        while (size > 0 && timestamps[head] < cutoff) {
+            head = slot(1);
+            size--;
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Returns the maximum of the values in the window, which must not be empty. */
+    double max() {
+        return values[head];
+    }
+
+    private int slot(int index) {
+        return (head + index) & (values.length - 1);
+    }
+
+    private void grow() {
+        long[] grownTimestamps = new long[values.length * 2];
+        double[] grownValues = new double[values.length * 2];
+        for (int i = 0; i < size; i++) {
+            grownTimestamps[i] = timestamps[slot(i)];
+            grownValues[i] = values[slot(i)];
+        }
+        timestamps = grownTimestamps;
+        values = grownValues;
+        head = 0;
+    }
+}
@@ -2,6 +2,7 @@ package com.cardio_generator;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.time.Clock;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -16,6 +17,10 @@ import com.cardio_generator.outputs.ConsoleOutputStrategy;
 import com.cardio_generator.outputs.OutputStrategy;
 import com.data_management.ActiveAlerts;
 import com.data_management.DataStorage;
+import com.data_management.HeartRateDeriver;
+import com.data_management.IngestQueue;
+import com.data_management.QrsDetector;
+import com.data_management.RetentionPolicy;
 
 import java.util.Collections;
 import java.util.List;
@@ -28,14 +33,19 @@ import java.util.Random;
 public class HealthDataSimulator {
 
     private static final Logger LOGGER = Logger.getLogger(HealthDataSimulator.class.getName());
+    /** The ECG samples per second by default, enough for the heart rate to be derived. */
+    public static final int DEFAULT_ECG_SAMPLE_RATE = 250;
 
     private static int patientCount = 50; // Default number of patients
     private static ScheduledExecutorService scheduler;
     private static final Random random = new Random();
 
+    private final Clock clock;
+    private final int ecgSampleRate; // 0 for one ECG value per second
     private DataStorage storage;
     private ActiveAlerts activeAlerts;
     private SimpleWebSocketServer webSocketServer;
+    private IngestQueue ingestQueue;
 
     private static OutputStrategy strategy;
 
@@ -46,14 +56,67 @@ public class HealthDataSimulator {
      * @throws IOException If an I/O error occurs.
      */
     public static void main(String[] args) throws IOException, URISyntaxException, InterruptedException {
-        HealthDataSimulator simulator = new HealthDataSimulator();
+        int ecgSampleRate = DEFAULT_ECG_SAMPLE_RATE;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--ecg-rate") && i + 1 < args.length) {
+                ecgSampleRate = Integer.parseInt(args[++i]);
+            }
+        }
+        HealthDataSimulator simulator = new HealthDataSimulator(Clock.systemUTC(), ecgSampleRate);
         strategy = new ConsoleOutputStrategy();
         simulator.startSimulation();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                simulator.stopSimulation();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "simulator-shutdown"));
+    }
+
+    /**
+     * Creates a simulator that timestamps its data with the system clock.
+     */
+    public HealthDataSimulator() {
+        this(Clock.systemUTC());
+    }
+
+    /**
+     * Creates a simulator whose generators and alert processor read the time
+     * from the given clock, sampling the ECG at
+     * {@link #DEFAULT_ECG_SAMPLE_RATE}.
+     *
+     * @param clock the source of the current time
+     */
+    public HealthDataSimulator(Clock clock) {
+        this(clock, DEFAULT_ECG_SAMPLE_RATE);
+    }
+
+    /**
+     * Creates a simulator that samples the ECG at the given rate. From
+     * {@link QrsDetector#MIN_SAMPLE_RATE} up, the heart rate and RR intervals
+     * the alert rules read are derived from it.
+     *
+     * @param clock         the source of the current time
+     * @param ecgSampleRate the ECG samples per second, a divisor of 1000, or 0
+     *                      for one value per second
+     */
+    public HealthDataSimulator(Clock clock, int ecgSampleRate) {
+        this.clock = clock;
+        this.ecgSampleRate = ecgSampleRate;
     }
 
     public void startSimulation() throws IOException, URISyntaxException, InterruptedException {
-        storage = new DataStorage();
-        webSocketServer = new SimpleWebSocketServer(8080,storage); // Specify the port for the WebSocket server
+        storage = new DataStorage(RetentionPolicy.defaults());
+        // Readings from clients reach the storage through a queue, off the connection threads
+        ingestQueue = new IngestQueue(storage);
+        webSocketServer = new SimpleWebSocketServer(8080, ingestQueue); // Specify the port for the WebSocket server
+        if (ecgSampleRate >= QrsDetector.MIN_SAMPLE_RATE) {
+            new HeartRateDeriver(storage, ecgSampleRate).attach();
+        } else {
+            LOGGER.warning("ECG sampled at " + ecgSampleRate + " Hz, below the " + QrsDetector.MIN_SAMPLE_RATE
+                    + " Hz heart rate detection needs; the heart rate and irregular beat rules will not fire");
+        }
 
         scheduler = Executors.newScheduledThreadPool(patientCount * 4);
 
@@ -66,6 +129,24 @@ public class HealthDataSimulator {
         scheduleTasksForPatients(patientIds, 5); // Adjust the number of runs as needed
     }
 
+    /**
+     * Stops generating data and the WebSocket server, then waits until the
+     * readings the server queued have been stored.
+     *
+     * @throws InterruptedException if interrupted while waiting for the server
+     */
+    public void stopSimulation() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        if (webSocketServer != null) {
+            webSocketServer.stop();
+        }
+        if (ingestQueue != null) {
+            ingestQueue.close();
+        }
+    }
+
     /**
      * Initializes the list of patient IDs.
      *
@@ -88,11 +169,12 @@ public class HealthDataSimulator {
      */
     private void scheduleTasksForPatients(List<Integer> patientIds, int maxRuns) {
         // Create instances of data generators and the alert generator
-        ECGDataGenerator ecgDataGenerator = new ECGDataGenerator(patientCount, storage);
-        BloodSaturationDataGenerator bloodSaturationDataGenerator = new BloodSaturationDataGenerator(patientCount, storage);
-        BloodPressureDataGenerator bloodPressureDataGenerator = new BloodPressureDataGenerator(patientCount, storage);
-        BloodLevelsDataGenerator bloodLevelsDataGenerator = new BloodLevelsDataGenerator(patientCount, storage);
-        AlertProcessor alertProcessor = new AlertProcessor(storage, activeAlerts);
+        ECGDataGenerator ecgDataGenerator = new ECGDataGenerator(patientCount, storage, clock, ecgSampleRate);
+        BloodSaturationDataGenerator bloodSaturationDataGenerator = new BloodSaturationDataGenerator(patientCount, storage, clock);
+        BloodPressureDataGenerator bloodPressureDataGenerator = new BloodPressureDataGenerator(patientCount, storage, clock);
+        BloodLevelsDataGenerator bloodLevelsDataGenerator = new BloodLevelsDataGenerator(patientCount, storage, clock);
+        AlertProcessor alertProcessor = new AlertProcessor(storage, activeAlerts, clock);
+        alertProcessor.attach(); // Evaluate only the records added since the last pass
 
         AtomicInteger runs = new AtomicInteger(); // Counter to track the number of runs
 
@@ -103,7 +185,7 @@ public class HealthDataSimulator {
                 String bloodSaturationData = bloodSaturationDataGenerator.generate(patientId, strategy);
                 String bloodPressureData = bloodPressureDataGenerator.generate(patientId, strategy);
                 String bloodLevelsData = bloodLevelsDataGenerator.generate(patientId, strategy);
-                alertProcessor.evaluateData();
+                alertProcessor.evaluatePending();
 
                 // Send the data to the WebSocket server
                 webSocketServer.sendData(patientId, ecgData, bloodSaturationData, bloodPressureData, bloodLevelsData);
@@ -1,5 +1,6 @@
 package com.cardio_generator.generators;
 
+import java.time.Clock;
 import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -19,6 +20,7 @@ public class AlertGenerator implements PatientDataGenerator {
     private DataStorage storage;
 
     private ActiveAlerts activeAlerts;
+    private final Clock clock;
 
     /**
      * Constructs an AlertGenerator object with the specified number of patients.
@@ -26,6 +28,17 @@ public class AlertGenerator implements PatientDataGenerator {
      * @param activeAlerts The alerts Container in which alerts will be generated.
      */
     public AlertGenerator(DataStorage storage, ActiveAlerts activeAlerts) {
+        this(storage, activeAlerts, Clock.systemUTC());
+    }
+
+    /**
+     * Constructs an AlertGenerator object with the specified number of patients.
+     *
+     * @param activeAlerts The alerts Container in which alerts will be generated.
+     * @param clock        The clock that timestamps the generated alert data.
+     */
+    public AlertGenerator(DataStorage storage, ActiveAlerts activeAlerts, Clock clock) {
+        this.clock = clock;
         this.storage = storage;
         this.activeAlerts = activeAlerts;
     }
@@ -40,13 +53,16 @@ public class AlertGenerator implements PatientDataGenerator {
     @Override
     public String generate(int patientId, OutputStrategy outputStrategy) {
         try {
+            long timestamp = clock.millis(); // One timestamp for everything generated in this call
             // Check if the patient has an active alert
-            if (activeAlerts.getAlert(patientId).getActive()) {
+            com.data_management.Alert alert = activeAlerts.getAlert(patientId);
+            if (alert != null && alert.getActive()) {
                 // If the patient has an active alert, there's a 90% chance to resolve it
                 if (RANDOM_GENERATOR.nextDouble() < 0.9) {
-                    activeAlerts.update(patientId, false, false, System.currentTimeMillis()); // Resolve the alert
-                    // Output the resolved alert
-                    outputStrategy.output(patientId, System.currentTimeMillis(), "Alert", "resolved");
+                    // Resolve the alert, unless another thread changed it first
+                    if (activeAlerts.resolve(patientId, timestamp)) {
+                        outputStrategy.output(patientId, timestamp, "Alert", "resolved");
+                    }
                 }
             } else {
                 // If the patient doesn't have an active alert, calculate the probability of triggering an alert
@@ -54,12 +70,11 @@ public class AlertGenerator implements PatientDataGenerator {
                 double p = -Math.expm1(-lambda); // Probability of at least one alert in the period
                 boolean alertTriggered = RANDOM_GENERATOR.nextDouble() < p;
 
-                if (alertTriggered) {
-                    activeAlerts.update(patientId, true, true, System.currentTimeMillis()); // Trigger the alert
+                if (alertTriggered && activeAlerts.trigger(patientId, timestamp)) {
                     // Output the triggered alert
                     // System.out.println("][][][][][][][][][][][][][][][][][][] GENERATED [][][][][][][][][][][][][]" + activeAlerts.getAlert(patientId).toString());
                     // System.out.println(activeAlerts.getAlert(patientId).toString());
-                    outputStrategy.output(patientId, System.currentTimeMillis(), "Alert", "triggered");
+                    outputStrategy.output(patientId, timestamp, "Alert", "triggered");
                 }
             }
         } catch (Exception e) {
@@ -1,11 +1,13 @@
 package com.cardio_generator.generators;
 
+import java.time.Clock;
 import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.cardio_generator.outputs.OutputStrategy;
 import com.data_management.DataStorage;
+import com.data_management.SampleBatch;
 
 /**
  * Generates simulated blood levels data for patients.
@@ -19,6 +21,9 @@ public class BloodLevelsDataGenerator implements PatientDataGenerator {
     private final double[] baselineRedCells;
     private static final Logger logger = Logger.getLogger(BloodLevelsDataGenerator.class.getName());
     private DataStorage dataStorage;
+    private final Clock clock;
+    // Generators are called for many patients at once, so a batch per thread
+    private final ThreadLocal<SampleBatch> batches = ThreadLocal.withInitial(SampleBatch::new);
 
     /**
      * Constructs a BloodLevelsDataGenerator object with the specified number of patients.
@@ -27,6 +32,18 @@ public class BloodLevelsDataGenerator implements PatientDataGenerator {
      * @param dataStorage  The data storage to store the generated data.
      */
     public BloodLevelsDataGenerator(int patientCount, DataStorage dataStorage) {
+        this(patientCount, dataStorage, Clock.systemUTC());
+    }
+
+    /**
+     * Constructs a BloodLevelsDataGenerator object with the specified number of patients.
+     *
+     * @param patientCount The number of patients for which blood levels data will be generated.
+     * @param dataStorage  The data storage to store the generated data.
+     * @param clock        The clock that timestamps the generated blood levels data.
+     */
+    public BloodLevelsDataGenerator(int patientCount, DataStorage dataStorage, Clock clock) {
+        this.clock = clock;
         this.dataStorage = dataStorage;
 
         // Initialize arrays to store baseline values for each patient
@@ -52,20 +69,24 @@ public class BloodLevelsDataGenerator implements PatientDataGenerator {
     @Override
     public String generate(int patientId, OutputStrategy outputStrategy) {
         try {
+            long timestamp = clock.millis(); // One timestamp for everything generated in this call
             // Generate values around the baseline for realism
             double cholesterol = baselineCholesterol[patientId] + (random.nextDouble() - 0.5) * 10; // Small variation
             double whiteCells = baselineWhiteCells[patientId] + (random.nextDouble() - 0.5) * 1; // Small variation
             double redCells = baselineRedCells[patientId] + (random.nextDouble() - 0.5) * 0.2; // Small variation
 
-            // Store the generated values in the DataStorage
-            dataStorage.addPatientData(patientId, cholesterol, "Cholesterol", System.currentTimeMillis());
-            dataStorage.addPatientData(patientId, whiteCells, "WhiteBloodCells", System.currentTimeMillis());
-            dataStorage.addPatientData(patientId, redCells, "RedBloodCells", System.currentTimeMillis());
+            // Store the generated values in the DataStorage, together
+            SampleBatch batch = batches.get();
+            batch.clear();
+            batch.add(patientId, cholesterol, "Cholesterol", timestamp);
+            batch.add(patientId, whiteCells, "WhiteBloodCells", timestamp);
+            batch.add(patientId, redCells, "RedBloodCells", timestamp);
+            dataStorage.addPatientDataBatch(batch);
 
             // Output the generated values using the specified OutputStrategy
-            outputStrategy.output(patientId, System.currentTimeMillis(), "Cholesterol", Double.toString(cholesterol));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "WhiteBloodCells", Double.toString(whiteCells));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "RedBloodCells", Double.toString(redCells));
+            outputStrategy.output(patientId, timestamp, "Cholesterol", Double.toString(cholesterol));
+            outputStrategy.output(patientId, timestamp, "WhiteBloodCells", Double.toString(whiteCells));
+            outputStrategy.output(patientId, timestamp, "RedBloodCells", Double.toString(redCells));
         } catch (Exception e) {
             // Log any errors that occur during blood levels data generation
             logger.log(Level.SEVERE, "An error occurred while generating blood levels data for patient " + patientId, e);
@@ -1,11 +1,13 @@
 package com.cardio_generator.generators;
 
+import java.time.Clock;
 import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.cardio_generator.outputs.OutputStrategy;
 import com.data_management.DataStorage;
+import com.data_management.SampleBatch;
 
 /**
  * Generates simulated blood pressure data for patients.
@@ -18,6 +20,9 @@ public class BloodPressureDataGenerator implements PatientDataGenerator {
     private int[] lastDiastolicValues;
     private static final Logger logger = Logger.getLogger(BloodPressureDataGenerator.class.getName());
     private DataStorage dataStorage;
+    private final Clock clock;
+    // Generators are called for many patients at once, so a batch per thread
+    private final ThreadLocal<SampleBatch> batches = ThreadLocal.withInitial(SampleBatch::new);
 
     /**
      * Constructs a BloodPressureDataGenerator object with the specified number of patients.
@@ -26,6 +31,18 @@ public class BloodPressureDataGenerator implements PatientDataGenerator {
      * @param dataStorage  The data storage to store the generated data.
      */
     public BloodPressureDataGenerator(int patientCount, DataStorage dataStorage) {
+        this(patientCount, dataStorage, Clock.systemUTC());
+    }
+
+    /**
+     * Constructs a BloodPressureDataGenerator object with the specified number of patients.
+     *
+     * @param patientCount The number of patients for which blood pressure data will be generated.
+     * @param dataStorage  The data storage to store the generated data.
+     * @param clock        The clock that timestamps the generated blood pressure data.
+     */
+    public BloodPressureDataGenerator(int patientCount, DataStorage dataStorage, Clock clock) {
+        this.clock = clock;
         this.dataStorage = dataStorage;
 
         lastSystolicValues = new int[patientCount + 1];
@@ -48,6 +65,7 @@ public class BloodPressureDataGenerator implements PatientDataGenerator {
     @Override
     public String generate(int patientId, OutputStrategy outputStrategy) {
         try {
+            long timestamp = clock.millis(); // One timestamp for everything generated in this call
             int systolicVariation = random.nextInt(5) - 2; // -2, -1, 0, 1, or 2
             int diastolicVariation = random.nextInt(5) - 2;
             int newSystolicValue = lastSystolicValues[patientId] + systolicVariation;
@@ -58,13 +76,16 @@ public class BloodPressureDataGenerator implements PatientDataGenerator {
             lastSystolicValues[patientId] = newSystolicValue;
             lastDiastolicValues[patientId] = newDiastolicValue;
 
-            // Store the generated values in the DataStorage
-            dataStorage.addPatientData(patientId, newSystolicValue, "SystolicPressure", System.currentTimeMillis());
-            dataStorage.addPatientData(patientId, newDiastolicValue, "DiastolicPressure", System.currentTimeMillis());
+            // Store the generated values in the DataStorage, together
+            SampleBatch batch = batches.get();
+            batch.clear();
+            batch.add(patientId, newSystolicValue, "SystolicPressure", timestamp);
+            batch.add(patientId, newDiastolicValue, "DiastolicPressure", timestamp);
+            dataStorage.addPatientDataBatch(batch);
 
-            outputStrategy.output(patientId, System.currentTimeMillis(), "SystolicPressure",
+            outputStrategy.output(patientId, timestamp, "SystolicPressure",
                     Double.toString(newSystolicValue));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "DiastolicPressure",
+            outputStrategy.output(patientId, timestamp, "DiastolicPressure",
                     Double.toString(newDiastolicValue));
         } catch (Exception e) {
             // Log any errors that occur during blood pressure data generation
@@ -1,5 +1,6 @@
 package com.cardio_generator.generators;
 
+import java.time.Clock;
 import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -17,6 +18,7 @@ public class BloodSaturationDataGenerator implements PatientDataGenerator {
     private int[] lastSaturationValues;
     private static final Logger logger = Logger.getLogger(BloodSaturationDataGenerator.class.getName());
     private DataStorage dataStorage;
+    private final Clock clock;
 
     /**
      * Constructs a BloodSaturationDataGenerator object with the specified number of patients.
@@ -25,6 +27,18 @@ public class BloodSaturationDataGenerator implements PatientDataGenerator {
      * @param dataStorage  The data storage to store the generated data.
      */
     public BloodSaturationDataGenerator(int patientCount, DataStorage dataStorage) {
+        this(patientCount, dataStorage, Clock.systemUTC());
+    }
+
+    /**
+     * Constructs a BloodSaturationDataGenerator object with the specified number of patients.
+     *
+     * @param patientCount The number of patients for which blood saturation data will be generated.
+     * @param dataStorage  The data storage to store the generated data.
+     * @param clock        The clock that timestamps the generated blood saturation data.
+     */
+    public BloodSaturationDataGenerator(int patientCount, DataStorage dataStorage, Clock clock) {
+        this.clock = clock;
         this.dataStorage = dataStorage;
 
         lastSaturationValues = new int[patientCount + 1];
@@ -46,6 +60,7 @@ public class BloodSaturationDataGenerator implements PatientDataGenerator {
     @Override
     public String generate(int patientId, OutputStrategy outputStrategy) throws IllegalArgumentException {
         try {
+            long timestamp = clock.millis(); // One timestamp for everything generated in this call
             // Simulate blood saturation values
             int variation = random.nextInt(3) - 1; // -1, 0, or 1 to simulate small fluctuations
             int newSaturationValue = lastSaturationValues[patientId] + variation;
@@ -55,9 +70,9 @@ public class BloodSaturationDataGenerator implements PatientDataGenerator {
             lastSaturationValues[patientId] = newSaturationValue;
 
             // Store the generated value in the DataStorage
-            dataStorage.addPatientData(patientId, newSaturationValue, "Saturation", System.currentTimeMillis());
+            dataStorage.addPatientData(patientId, newSaturationValue, "Saturation", timestamp);
 
-            outputStrategy.output(patientId, System.currentTimeMillis(), "Saturation",
+            outputStrategy.output(patientId, timestamp, "Saturation",
                     Double.toString(newSaturationValue) + "%");
         } catch (ArrayIndexOutOfBoundsException e) {
             // Log and rethrow if the patientId is invalid
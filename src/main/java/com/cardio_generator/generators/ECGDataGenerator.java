@@ -1,15 +1,23 @@
 package com.cardio_generator.generators;
 
+import java.time.Clock;
 import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.cardio_generator.outputs.OutputStrategy;
 import com.data_management.DataStorage;
+import com.data_management.SampleBatch;
 
 /**
  * Generates simulated ECG (Electrocardiogram) data for patients.
  * This class simulates the generation of ECG data for a specified number of patients.
+ *
+ * <p>By default every call generates one value of a sum of sinusoids. With a
+ * sampling rate, every call instead generates the waveform since the previous
+ * call at that rate, up to the current time, beat by beat: P, Q, R, S and T
+ * waves as Gaussian bumps over each cardiac cycle, with a heart rate that
+ * drifts from beat to beat.
  */
 public class ECGDataGenerator implements PatientDataGenerator {
 
@@ -18,6 +26,19 @@ public class ECGDataGenerator implements PatientDataGenerator {
     private static final double PI = Math.PI;
     private static final Logger logger = Logger.getLogger(ECGDataGenerator.class.getName());
     private DataStorage dataStorage;
+    private final Clock clock;
+    private final int sampleRate; // 0 for one sinusoid value per call
+    // Generators are called for many patients at once, so a batch per thread
+    private final ThreadLocal<SampleBatch> batches = ThreadLocal.withInitial(SampleBatch::new);
+    // Per patient, for a sampling rate: the time of the next sample, the phase in the cardiac cycle and the rate
+    private long[] nextSampleTimes;
+    private double[] phases;
+    private double[] heartRates;
+    private static final long MAX_BACKFILL_MILLIS = 5000;
+    // Amplitude, center (as a fraction of the cycle) and width of the P, Q, R, S and T waves
+    private static final double[][] WAVES = {
+            {0.15, 0.20, 0.025}, {-0.10, 0.37, 0.008}, {1.20, 0.40, 0.010}, {-0.25, 0.43, 0.008},
+            {0.30, 0.70, 0.040}};
 
     /**
      * Constructs an ECGDataGenerator object with the specified number of patients.
@@ -26,7 +47,47 @@ public class ECGDataGenerator implements PatientDataGenerator {
      * @param dataStorage  The data storage to store the generated data.
      */
     public ECGDataGenerator(int patientCount, DataStorage dataStorage) {
+        this(patientCount, dataStorage, Clock.systemUTC());
+    }
+
+    /**
+     * Constructs an ECGDataGenerator object with the specified number of patients.
+     *
+     * @param patientCount The number of patients for which ECG data will be generated.
+     * @param dataStorage  The data storage to store the generated data.
+     * @param clock        The clock that timestamps the generated ECG data.
+     */
+    public ECGDataGenerator(int patientCount, DataStorage dataStorage, Clock clock) {
+        this(patientCount, dataStorage, clock, 0);
+    }
+
+    /**
+     * Constructs an ECGDataGenerator object that samples a beat-by-beat
+     * waveform at the given rate.
+     *
+     * @param patientCount The number of patients for which ECG data will be generated.
+     * @param dataStorage  The data storage to store the generated data.
+     * @param clock        The clock that timestamps the generated ECG data.
+     * @param sampleRate   The samples per second, a divisor of 1000 such as 250, or 0 for
+     *                     one sinusoid value per call.
+     */
+    public ECGDataGenerator(int patientCount, DataStorage dataStorage, Clock clock, int sampleRate) {
+        if (sampleRate < 0 || sampleRate > 0 && 1000 % sampleRate != 0) {
+            throw new IllegalArgumentException("Sample rate must divide 1000 Hz: " + sampleRate);
+        }
+        this.clock = clock;
         this.dataStorage = dataStorage;
+        this.sampleRate = sampleRate;
+        if (sampleRate > 0) {
+            nextSampleTimes = new long[patientCount + 1];
+            phases = new double[patientCount + 1];
+            heartRates = new double[patientCount + 1];
+            for (int i = 1; i <= patientCount; i++) {
+                nextSampleTimes[i] = Long.MIN_VALUE;
+                phases[i] = random.nextDouble();
+                heartRates[i] = 60.0 + random.nextDouble() * 20.0;
+            }
+        }
 
         lastEcgValues = new double[patientCount + 1];
         // Initialize the last ECG value for each patient
@@ -46,12 +107,17 @@ public class ECGDataGenerator implements PatientDataGenerator {
     @Override
     public String generate(int patientId, OutputStrategy outputStrategy) throws IllegalArgumentException {
         try {
-            double ecgValue = simulateEcgWaveform(patientId, lastEcgValues[patientId]);
-            outputStrategy.output(patientId, System.currentTimeMillis(), "ECG", Double.toString(ecgValue));
+            long timestamp = clock.millis(); // One timestamp for everything generated in this call
+            if (sampleRate > 0) {
+                generateSamples(patientId, timestamp, outputStrategy);
+                return null;
+            }
+            double ecgValue = simulateEcgWaveform(patientId, lastEcgValues[patientId], timestamp);
+            outputStrategy.output(patientId, timestamp, "ECG", Double.toString(ecgValue));
             lastEcgValues[patientId] = ecgValue;
 
             // Store the generated ECG value in the DataStorage
-            dataStorage.addPatientData(patientId, ecgValue, "ECG", System.currentTimeMillis());
+            dataStorage.addPatientData(patientId, ecgValue, "ECG", timestamp);
         } catch (ArrayIndexOutOfBoundsException e) {
             // Log and rethrow if the patientId is invalid
             logger.log(Level.SEVERE, "Invalid patientId: " + patientId, e);
@@ -63,17 +129,60 @@ public class ECGDataGenerator implements PatientDataGenerator {
         return null;
     }
 
+    /**
+     * Generates the samples of a patient from the previous call up to the
+     * given time, at most {@code MAX_BACKFILL_MILLIS} of them.
+     */
+    private void generateSamples(int patientId, long timestamp, OutputStrategy outputStrategy) {
+        long step = 1000 / sampleRate;
+        long next = Math.max(nextSampleTimes[patientId], timestamp - MAX_BACKFILL_MILLIS);
+        if (nextSampleTimes[patientId] == Long.MIN_VALUE) {
+            next = timestamp - 1000 + step; // One second on the first call
+        }
+        SampleBatch batch = batches.get();
+        batch.clear();
+        for (; next <= timestamp; next += step) {
+            double value = simulateBeatWaveform(patientId, step / 1000.0);
+            outputStrategy.output(patientId, next, "ECG", Double.toString(value));
+            batch.add(patientId, value, "ECG", next);
+        }
+        nextSampleTimes[patientId] = next;
+        dataStorage.addPatientDataBatch(batch);
+    }
+
+    /**
+     * Advances the cardiac cycle of a patient by one sample and returns the
+     * value of the waveform there. The heart rate takes a small random step
+     * at the start of every beat.
+     */
+    private double simulateBeatWaveform(int patientId, double seconds) {
+        double phase = phases[patientId] + seconds * heartRates[patientId] / 60.0;
+        if (phase >= 1) {
+            phase -= 1;
+            double rate = heartRates[patientId] + (random.nextDouble() - 0.5) * 4;
+            heartRates[patientId] = Math.min(Math.max(rate, 55), 90);
+        }
+        phases[patientId] = phase;
+        double value = 0;
+        for (double[] wave : WAVES) {
+            double distance = (phase - wave[1]) / wave[2];
+            value += wave[0] * Math.exp(-0.5 * distance * distance);
+        }
+        return value + (random.nextDouble() - 0.5) * 0.05; // Add small noise
+    }
+
     /**
      * Simulates the ECG waveform for the specified patient.
      *
      * @param patientId     The ID of the patient for which the ECG waveform is simulated.
      * @param lastEcgValue  The last ECG value for the specified patient.
+     * @param timestamp     The time of the simulated value.
      * @return              The simulated ECG value for the specified patient.
      */
-    private double simulateEcgWaveform(int patientId, double lastEcgValue) {
+    private double simulateEcgWaveform(int patientId, double lastEcgValue, long timestamp) {
         // Simplified ECG waveform generation based on sinusoids
         double hr = 60.0 + random.nextDouble() * 20.0; // Simulate heart rate variability between 60 and 80 bpm
-        double t = System.currentTimeMillis() / 1000.0; // Use system time to simulate continuous time
+        double t = timestamp / 1000.0; // Use the clock to simulate continuous time
         double ecgFrequency = hr / 60.0; // Convert heart rate to Hz
 
         // Simulate different components of the ECG signal
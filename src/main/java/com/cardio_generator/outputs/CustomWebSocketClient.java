@@ -1,29 +1,91 @@
 package com.cardio_generator.outputs;
 
+import com.Servers.SimpleWebSocketServer;
 import com.data_management.DataReader;
 import com.data_management.DataStorage;
+import com.data_management.FrameDecoder;
+import com.data_management.FrameEncoder;
+import com.data_management.IngestQueue;
+import com.data_management.RecordDecoder;
+import com.data_management.RecordListener;
+import com.data_management.SampleBatch;
 import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft_6455;
 import org.java_websocket.handshake.ServerHandshake;
+import org.java_websocket.protocols.Protocol;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Custom WebSocket client implementation that also acts as a DataReader.
  */
 public class CustomWebSocketClient extends WebSocketClient implements DataReader {
 
-    private final DataStorage dataStorage;
+    private static final Logger logger = Logger.getLogger(CustomWebSocketClient.class.getName());
+    // Messages are logged at FINE once in this many
+    private static final int LOG_EVERY = 1000;
+
+    private final DataStorage dataStorage; // Null when readings go through the queue
+    private final IngestQueue queue;
+    // Messages arrive on the single read thread of the client
+    private final RecordDecoder decoder = new RecordDecoder();
+    private final FrameDecoder frameDecoder = new FrameDecoder();
+    private final SampleBatch batch = new SampleBatch();
+    private final RecordListener store = (patientId, signalId, timestamp, value) ->
+            batch.add(patientId, value, signalId, timestamp);
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder overloaded = new LongAdder();
 
     /**
-     * Constructs a new CustomWebSocketClient.
+     * Constructs a new CustomWebSocketClient that receives readings as text.
      *
      * @param serverUri   the URI of the WebSocket server
      * @param dataStorage the data storage to store received data
      */
     public CustomWebSocketClient(URI serverUri, DataStorage dataStorage) {
-        super(serverUri);
+        this(serverUri, dataStorage, false);
+    }
+
+    /**
+     * Constructs a new CustomWebSocketClient.
+     *
+     * @param serverUri   the URI of the WebSocket server
+     * @param dataStorage the data storage to store received data
+     * @param binary      whether to ask for readings in binary frames, see
+     *                    {@link FrameEncoder}; servers that do not offer them
+     *                    send text
+     */
+    public CustomWebSocketClient(URI serverUri, DataStorage dataStorage, boolean binary) {
+        this(serverUri, dataStorage, null, binary);
+    }
+
+    /**
+     * Constructs a new CustomWebSocketClient that hands the readings it
+     * receives to a queue, so its read thread does not wait for the storage.
+     *
+     * @param serverUri the URI of the WebSocket server
+     * @param queue     the queue to the data storage
+     * @param binary    whether to ask for readings in binary frames
+     */
+    public CustomWebSocketClient(URI serverUri, IngestQueue queue, boolean binary) {
+        this(serverUri, null, queue, binary);
+    }
+
+    private CustomWebSocketClient(URI serverUri, DataStorage dataStorage, IngestQueue queue, boolean binary) {
+        super(serverUri, binary
+                ? new Draft_6455(Collections.emptyList(),
+                        Arrays.asList(new Protocol(FrameEncoder.PROTOCOL), new Protocol("")))
+                : new Draft_6455());
         this.dataStorage = dataStorage;
+        this.queue = queue;
     }
 
     @Override
@@ -33,14 +95,58 @@ public class CustomWebSocketClient extends WebSocketClient implements DataReader
 
     @Override
     public void onMessage(String message) {
-        try {
-            parseAndStoreData(message);
-        } catch (Exception e) {
-            System.err.println("Failed to process message: " + message);
-            e.printStackTrace();
+        if (decoder.decode(message)) {
+            if (queue == null) {
+                dataStorage.addPatientData(decoder.getPatientId(), decoder.getValue(), decoder.getSignalId(),
+                        decoder.getTimestamp());
+            } else if (!queue.offer(decoder.getPatientId(), decoder.getSignalId(), decoder.getTimestamp(),
+                    decoder.getValue())) {
+                refused.increment();
+            }
+            if (decoder.getDecodedCount() % LOG_EVERY == 1 && logger.isLoggable(Level.FINE)) {
+                logger.fine("Message: " + message);
+            }
+        } else if (message.startsWith(SimpleWebSocketServer.OVERLOADED)) {
+            // The server refused readings this client sent
+            overloaded.increment();
+            logger.warning("Server overloaded: " + message);
+        } else {
+            rejected.increment();
+            if (decoder.getRejectedCount() % LOG_EVERY == 1 && logger.isLoggable(Level.FINE)) {
+                logger.fine("Ignored a message that is not a reading: " + message);
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(ByteBuffer frame) {
+        int size = frame.remaining();
+        batch.clear();
+        if (frameDecoder.decode(frame, store) < 0) {
+            rejected.increment();
+            logger.fine(() -> "Ignored a malformed frame of " + size + " bytes");
+        } else if (queue == null) {
+            dataStorage.addPatientDataBatch(batch);
+        } else {
+            refused.add(queue.offer(batch));
         }
     }
 
+    /** The number of readings the queue refused. */
+    public long getRefusedCount() {
+        return refused.sum();
+    }
+
+    /** The number of {@link SimpleWebSocketServer#OVERLOADED} notices from the server. */
+    public long getOverloadedCount() {
+        return overloaded.sum();
+    }
+
+    /** The number of messages and frames ignored because they were not readings. */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
     @Override
     public void onClose(int code, String reason, boolean remote) {
         System.out.println("Closed connection with exit code " + code + " additional info: " + reason);
@@ -52,17 +158,6 @@ public class CustomWebSocketClient extends WebSocketClient implements DataReader
         ex.printStackTrace();
     }
 
-    private void parseAndStoreData(String message) {
-        // Assuming the message format is the same as your file format
-        String[] parts = message.split(", ");
-        int patientId = Integer.parseInt(parts[0].split(": ")[1].trim());
-        long timestamp = Long.parseLong(parts[1].split(": ")[1].trim());
-        String label = parts[2].split(": ")[1].trim();
-        double data = Double.parseDouble(parts[3].split(": ")[1].trim());
-
-        dataStorage.addPatientData(patientId, data, label, timestamp);
-    }
-
     @Override
     public void connect(String websocketUrl) {
         try {
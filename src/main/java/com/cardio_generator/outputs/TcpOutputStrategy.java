@@ -1,9 +1,18 @@
 package com.cardio_generator.outputs;
 
+import com.data_management.FrameBatcher;
+import com.data_management.FrameEncoder;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -14,14 +23,23 @@ import java.util.logging.Logger;
  * TCP provides reliable, ordered, and error-checked delivery of data between applications, while IP handles the routing of packets across networks.
  * Combined, TCP/IP forms the basis for most internet communication, including web browsing, email, and file transfer.
  * The TcpOutputStrategy class utilizes TCP/IP to establish connections and transmit data between the server and clients.
+ *
+ * <p>By default a reading is sent as a line of text, {@code patientId,timestamp,label,data}. A client whose first
+ * line, within {@value #HELLO_TIMEOUT_MILLIS} ms of connecting, is {@link FrameEncoder#PROTOCOL} gets the readings
+ * batched into binary frames instead, see {@link FrameEncoder}, each preceded by its length as a big-endian int.
  */
 public class TcpOutputStrategy implements OutputStrategy {
 
     private static final Logger LOGGER = Logger.getLogger(TcpOutputStrategy.class.getName());
 
+    /** How long a client has to ask for binary frames. */
+    public static final int HELLO_TIMEOUT_MILLIS = 500;
+
     private ServerSocket serverSocket;
     private Socket clientSocket;
-    private PrintWriter out;
+    private volatile PrintWriter out;
+    private volatile FrameBatcher batcher;
+    private DataOutputStream frames;
 
     /**
      * Constructs a TcpOutputStrategy object that listens for client connections on the specified port.
@@ -37,8 +55,14 @@ public class TcpOutputStrategy implements OutputStrategy {
             Executors.newSingleThreadExecutor().submit(() -> {
                 try {
                     clientSocket = serverSocket.accept();
-                    out = new PrintWriter(clientSocket.getOutputStream(), true);
-                    LOGGER.info("Client connected: " + clientSocket.getInetAddress());
+                    if (requestsFrames(clientSocket)) {
+                        frames = new DataOutputStream(new BufferedOutputStream(clientSocket.getOutputStream()));
+                        batcher = new FrameBatcher(this::writeFrame);
+                    } else {
+                        out = new PrintWriter(clientSocket.getOutputStream(), true);
+                    }
+                    LOGGER.info("Client connected: " + clientSocket.getInetAddress()
+                            + (batcher != null ? ", binary" : ", text"));
                 } catch (IOException e) {
                     LOGGER.log(Level.SEVERE, "Error accepting client connection", e);
                 }
@@ -58,11 +82,39 @@ public class TcpOutputStrategy implements OutputStrategy {
      */
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        if (out != null) {
-            String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-            out.println(message);
+        FrameBatcher batcher = this.batcher;
+        PrintWriter out = this.out;
+        if (batcher != null) {
+            batcher.add(patientId, timestamp, label, FrameEncoder.parseData(data));
+        } else if (out != null) {
+            out.println(patientId + "," + timestamp + "," + label + "," + data);
         } else {
             LOGGER.warning("TCP connection not established, data not sent");
         }
     }
+
+    /** Reads the first line of a client, if it sends one in time, and returns whether it asks for frames. */
+    private static boolean requestsFrames(Socket socket) throws IOException {
+        socket.setSoTimeout(HELLO_TIMEOUT_MILLIS);
+        try {
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            return FrameEncoder.PROTOCOL.equals(in.readLine());
+        } catch (SocketTimeoutException e) {
+            return false;
+        } finally {
+            socket.setSoTimeout(0);
+        }
+    }
+
+    /** Writes a frame with its length; called by the batcher, one frame at a time. */
+    private void writeFrame(byte[] frame) {
+        try {
+            frames.writeInt(frame.length);
+            frames.write(frame);
+            frames.flush();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error sending a frame, " + frame.length + " bytes", e);
+        }
+    }
 }
@@ -1,8 +1,18 @@
 package com.cardio_generator.outputs;
 
+import com.data_management.FrameBatcher;
+import com.data_management.FrameEncoder;
 import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
 import org.java_websocket.server.WebSocketServer;
 import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,12 +32,18 @@ import java.util.logging.Logger;
  live updates, multiplayer gaming, collaborative editing, and more.
  They provide low-latency communication and reduce overhead compared to other techniques
  like long polling or server-sent events.
+
+ Each client chooses its format when it connects. Clients that ask for the
+ {@link FrameEncoder#PROTOCOL} subprotocol get the readings batched into binary
+ frames, see {@link FrameEncoder}; the others get one text message per reading,
+ {@code patientId,timestamp,label,data}.
  */
 public class WebSocketOutputStrategy implements OutputStrategy {
 
     private static final Logger LOGGER = Logger.getLogger(WebSocketOutputStrategy.class.getName());
 
     private WebSocketServer server;
+    private final FrameBatcher batcher = new FrameBatcher(this::broadcastFrame);
 
     /**
      * Constructs a WebSocketOutputStrategy object that listens for WebSocket connections on the specified port.
@@ -36,7 +52,7 @@ public class WebSocketOutputStrategy implements OutputStrategy {
      */
     public WebSocketOutputStrategy(int port) {
         try {
-            server = new SimpleWebSocketServer(new InetSocketAddress(port));
+            server = new SimpleWebSocketServer(new InetSocketAddress(port), drafts());
             LOGGER.info("WebSocket server created on port: " + port + ", listening for connections...");
             server.start();
         } catch (Exception e) {
@@ -54,25 +70,76 @@ public class WebSocketOutputStrategy implements OutputStrategy {
      */
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-        // Broadcast the message to all connected clients
+        String message = null;
+        boolean binaryClients = false;
+        // Broadcast the message to all text clients
+        for (WebSocket conn : server.getConnections()) {
+            if (isBinary(conn)) {
+                binaryClients = true;
+            } else {
+                if (message == null) {
+                    message = patientId + "," + timestamp + "," + label + "," + data;
+                }
+                send(conn, message);
+            }
+        }
+        if (binaryClients) {
+            batcher.add(patientId, timestamp, label, FrameEncoder.parseData(data));
+        }
+    }
+
+    private void broadcastFrame(byte[] frame) {
         for (WebSocket conn : server.getConnections()) {
+            if (isBinary(conn)) {
+                send(conn, frame);
+            }
+        }
+    }
+
+    private static void send(WebSocket conn, String message) {
+        try {
             conn.send(message);
+        } catch (WebsocketNotConnectedException e) {
+            // Closed since getConnections(); onClose logs it
         }
     }
 
+    private static void send(WebSocket conn, byte[] frame) {
+        try {
+            conn.send(frame);
+        } catch (WebsocketNotConnectedException e) {
+            // Closed since getConnections(); onClose logs it
+        }
+    }
+
+    /**
+     * Returns the drafts of a server that sends binary frames to the clients
+     * asking for the {@link FrameEncoder#PROTOCOL} subprotocol, and accepts
+     * clients asking for none.
+     */
+    public static List<Draft> drafts() {
+        return Collections.singletonList(new Draft_6455(Collections.emptyList(),
+                Arrays.asList(new Protocol(FrameEncoder.PROTOCOL), new Protocol(""))));
+    }
+
+    /** Returns whether a connection negotiated binary frames, see {@link #drafts()}. */
+    public static boolean isBinary(WebSocket conn) {
+        IProtocol protocol = conn.getProtocol();
+        return protocol != null && FrameEncoder.PROTOCOL.equals(protocol.getProvidedProtocol());
+    }
+
     /**
      * A simple WebSocketServer implementation for handling WebSocket connections.
      */
     private static class SimpleWebSocketServer extends WebSocketServer {
 
-        public SimpleWebSocketServer(InetSocketAddress address) {
-            super(address);
+        public SimpleWebSocketServer(InetSocketAddress address, List<Draft> drafts) {
+            super(address, drafts);
         }
 
         @Override
         public void onOpen(WebSocket conn, org.java_websocket.handshake.ClientHandshake handshake) {
-            LOGGER.info("New connection: " + conn.getRemoteSocketAddress());
+            LOGGER.info("New connection: " + conn.getRemoteSocketAddress() + (isBinary(conn) ? ", binary" : ", text"));
         }
 
         @Override
@@ -1,38 +1,170 @@
 package com.data_management;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * The manually raised alert of every patient, safe to update from many
+ * threads without locks. Patients are registered as they are first seen.
+ *
+ * <p>Each state is an immutable {@link Alert} replaced by compare-and-set, so
+ * a transition only happens if the state it started from is still current.
+ * Every alert that becomes active and updated is also put on a change feed,
+ * so consumers handle only the alerts that changed rather than scanning all
+ * patients; see {@link #pollChange()}.
+ */
 public class ActiveAlerts {
-    private HashMap<Integer, Alert> alertStatus;
+    private final ConcurrentHashMap<Integer, AtomicReference<Alert>> alertStatus = new ConcurrentHashMap<>();
+    private final Queue<Alert> changes = new ConcurrentLinkedQueue<>();
+
+    // Constructor that starts without patients; they are registered as they are updated
+    public ActiveAlerts() {
+    }
 
     // Constructor that initializes the HashMap with patient IDs and sets their default value to False
     public ActiveAlerts(ArrayList<Integer> patientIds) {
-        alertStatus = new HashMap<>();
         for (Integer id : patientIds) {
-            alertStatus.put(id, new Alert(id, false, false, 0L)); // Initialize with False as default value
+            addPatient(id);
         }
     }
 
-    // Method to update the value at a specific patientID in the internal HashMap
+    /**
+     * Registers a patient without an alert, if it is not known yet.
+     *
+     * @return true if the patient was not known
+     */
+    public boolean addPatient(int patientId) {
+        return alertStatus.putIfAbsent(patientId, new AtomicReference<>(inactive(patientId))) == null;
+    }
+
+    private AtomicReference<Alert> state(int patientId) {
+        return alertStatus.computeIfAbsent(patientId, id -> new AtomicReference<>(inactive(id)));
+    }
+
+    private static Alert inactive(int patientId) {
+        return new Alert(patientId, false, false, 0L);
+    }
+
+    // Method to update the value at a specific patientID, registering the patient if needed
     public void update(int patientId, boolean updated, boolean newValue, long timestamp) {
-        if (alertStatus.containsKey(patientId)) {
-            alertStatus.put(patientId, new Alert(patientId, updated, newValue, timestamp)); // Update the value
-        } else {
-            System.out.println("Error: Patient ID " + patientId + " not found in the error status map.");
+        Alert alert = new Alert(patientId, updated, newValue, timestamp);
+        state(patientId).set(alert);
+        publish(alert);
+    }
+
+    /**
+     * Replaces the state of a patient only if it is still {@code expected}.
+     *
+     * @param expected the state the caller read, from {@link #getAlert(int)}
+     * @param next     the new state
+     * @return false if another thread changed the state first
+     */
+    public boolean compareAndSet(int patientId, Alert expected, Alert next) {
+        if (!state(patientId).compareAndSet(expected, next)) {
+            return false;
+        }
+        publish(next);
+        return true;
+    }
+
+    /**
+     * Raises the alert of a patient unless it is already active.
+     *
+     * @return true if this call raised it
+     */
+    public boolean trigger(int patientId, long timestamp) {
+        return transition(patientId, true, timestamp);
+    }
+
+    /**
+     * Resolves the alert of a patient if it is active.
+     *
+     * @return true if this call resolved it
+     */
+    public boolean resolve(int patientId, long timestamp) {
+        return transition(patientId, false, timestamp);
+    }
+
+    private boolean transition(int patientId, boolean active, long timestamp) {
+        AtomicReference<Alert> state = state(patientId);
+        Alert next = new Alert(patientId, active, active, timestamp);
+        while (true) {
+            Alert current = state.get();
+            if (current.getActive() == active) {
+                return false;
+            }
+            if (state.compareAndSet(current, next)) {
+                publish(next);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Marks an alert taken from the change feed as handled, so the state
+     * stays active but is no longer updated. Does nothing if the state has
+     * changed since.
+     *
+     * @return true if the alert was still current and active
+     */
+    public boolean acknowledge(Alert alert) {
+        AtomicReference<Alert> state = alertStatus.get(alert.getPatientId());
+        return alert.getActive() && state != null
+                && state.compareAndSet(alert, new Alert(alert.getPatientId(), false, true, alert.getTimestamp()));
+    }
+
+    private void publish(Alert alert) {
+        if (alert.getActive() && alert.getUpdated()) {
+            changes.offer(alert);
+        }
+    }
+
+    /**
+     * Takes the oldest alert that became active and updated. An alert that
+     * was resolved or replaced after it was queued still comes out; pass it
+     * to {@link #acknowledge(Alert)}, which only succeeds for the current
+     * state, to handle each raised alert once.
+     *
+     * @return the alert, or null if there are no changes
+     */
+    public Alert pollChange() {
+        return changes.poll();
+    }
+
+    /**
+     * Moves all queued changes into a collection, oldest first.
+     *
+     * @return the number of alerts moved
+     */
+    public int drainChanges(Collection<? super Alert> sink) {
+        int count = 0;
+        Alert alert;
+        while ((alert = changes.poll()) != null) {
+            sink.add(alert);
+            count++;
         }
+        return count;
     }
 
     public Alert getAlert(int patientID) {
-        return alertStatus.get(patientID);
+        AtomicReference<Alert> state = alertStatus.get(patientID);
+        return state == null ? null : state.get();
     }
 
     public int size() {
         return alertStatus.size();
     }
 
+    // A copy of the current state of every patient; prefer the change feed to scanning this
     public Map<Integer, Alert> getReadOnlyAlertStatus() {
-        return Collections.unmodifiableMap(alertStatus);
+        Map<Integer, Alert> copy = new HashMap<>();
+        alertStatus.forEach((id, state) -> copy.put(id, state.get()));
+        return Collections.unmodifiableMap(copy);
     }
-}
\ No newline at end of file
+}
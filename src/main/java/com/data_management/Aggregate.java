@@ -0,0 +1,75 @@
+package com.data_management;
+
+/**
+ * Summary of the samples of one record type of one patient that fall in a
+ * time bucket, as returned by
+ * {@link DataStorage#getAggregates(int, String, long, long, Resolution)}.
+ */
+public class Aggregate {
+    private final long startTime;
+    private final long endTime;
+    private final double min;
+    private final double max;
+    private final double sum;
+    private final long count;
+    private final double last;
+
+    /**
+     * Constructs a new aggregate.
+     *
+     * @param startTime the start of the bucket, inclusive, in milliseconds since
+     *                  the Unix epoch
+     * @param endTime   the end of the bucket, exclusive
+     * @param min       the smallest value in the bucket
+     * @param max       the largest value in the bucket
+     * @param sum       the sum of the values in the bucket
+     * @param count     the number of samples in the bucket
+     * @param last      the value of the sample with the latest timestamp
+     */
+    public Aggregate(long startTime, long endTime, double min, double max, double sum, long count, double last) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.count = count;
+        this.last = last;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getLast() {
+        return last;
+    }
+
+    /**
+     * Returns the mean of the values in the bucket.
+     *
+     * @return the average value
+     */
+    public double getAverage() {
+        return sum / count;
+    }
+}
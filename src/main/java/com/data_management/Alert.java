@@ -1,10 +1,14 @@
 package com.data_management;
 
+/**
+ * The manually raised alert of a patient at one point in time. Immutable;
+ * {@link ActiveAlerts} replaces it as a whole.
+ */
 public class Alert {
-    private int patientId;
-    private boolean updated;
-    private long timestamp;
-    private boolean active;
+    private final int patientId;
+    private final boolean updated;
+    private final long timestamp;
+    private final boolean active;
 
     public Alert(int patientId, boolean updated, boolean active, long timestamp) {
         this.patientId = patientId;
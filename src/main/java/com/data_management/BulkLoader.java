@@ -0,0 +1,673 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Loads the text files the simulator writes with {@code --output file:<dir>}
+ * into a {@link DataStorage}, as fast as the disk allows.
+ *
+ * <p>Each file is memory-mapped and cut into chunks of a few megabytes at
+ * line boundaries, which a pool of workers parse in parallel. A worker copies
+ * its chunk out of the mapping in one go, into a buffer it reuses, and parses
+ * the bytes, so no String is made per line or per field: numbers are
+ * accumulated digit by digit, and labels are matched against the ones
+ * already seen. The records of a chunk are grouped by
+ * patient and record type and appended to the storage in bulk, chunk after
+ * chunk in file order, so every series still receives its samples in the
+ * order they were written.
+ *
+ * <p>A line that cannot be parsed does not fail the load: it is counted by
+ * {@link LineError} and the first few are reported with their line numbers
+ * in the {@link Report}. Only errors reading the files themselves are
+ * thrown.
+ *
+ * <pre>
+ * Patient ID: 52, Timestamp: 1713432063502, Label: ECG, Data: -0.58
+ * Patient ID: 34, Timestamp: 1713432063405, Label: Saturation, Data: 100.0%
+ * Patient ID: 83, Timestamp: 1713432063376, Label: Alert, Data: triggered
+ * </pre>
+ *
+ * Alerts are stored under the label "Alert", as 1 when triggered and 0 when
+ * resolved.
+ */
+public class BulkLoader {
+    /** The size chunks are cut at, before moving to the end of the line. */
+    public static final int DEFAULT_CHUNK_BYTES = 4 << 20;
+    /** Lines that run longer than this past the end of their chunk are reported as malformed. */
+    static final int MAX_LINE_BYTES = 4096;
+    private static final int MAX_REPORTED_LINES = 10;
+    // Chunks parsed ahead of the one being appended, per worker, bounding the memory held
+    private static final int CHUNKS_AHEAD_PER_WORKER = 4;
+
+    private static final byte[] PATIENT_ID = bytes("Patient ID: ");
+    private static final byte[] TIMESTAMP = bytes(", Timestamp: ");
+    private static final byte[] LABEL = bytes(", Label: ");
+    private static final byte[] DATA = bytes(", Data: ");
+    private static final byte[] ALERT = bytes("Alert");
+    private static final byte[] TRIGGERED = bytes("triggered");
+    private static final byte[] RESOLVED = bytes("resolved");
+    private static final byte[] NAN = bytes("NaN");
+    // The bytes of the chunk being parsed, per worker
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[0]);
+    /** Why a line was not loaded. */
+    public enum LineError {
+        /** The line does not have the fields of a record, or is too long. */
+        MALFORMED("malformed line"),
+        /** The patient ID is not a non-negative int. */
+        PATIENT_ID("bad patient ID"),
+        /** The timestamp is not a non-negative long. */
+        TIMESTAMP("bad timestamp"),
+        /** The data is not a number, nor an alert state. */
+        DATA("bad data");
+
+        private final String description;
+
+        LineError(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final DataStorage storage;
+    private final int parallelism;
+    private final int chunkBytes;
+
+    /**
+     * Creates a loader with a worker per available processor.
+     *
+     * @param storage the storage to load into
+     */
+    public BulkLoader(DataStorage storage) {
+        this(storage, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * @param storage     the storage to load into
+     * @param parallelism the number of workers; 1 loads on the calling thread
+     * @param chunkBytes  the size files are cut into chunks at
+     * @throws IllegalArgumentException if parallelism or the chunk size is
+     *                                  not positive
+     */
+    public BulkLoader(DataStorage storage, int parallelism, int chunkBytes) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        if (chunkBytes < 1) {
+            throw new IllegalArgumentException("The chunk size must be positive: " + chunkBytes);
+        }
+        this.storage = storage;
+        this.parallelism = parallelism;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Loads every {@code *.txt} file of a directory, in name order.
+     *
+     * @return what was loaded
+     * @throws IOException if the directory or a file cannot be read
+     */
+    public Report loadDirectory(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.txt")) {
+            stream.forEach(files::add);
+        }
+        Collections.sort(files);
+        return load(files);
+    }
+
+    /**
+     * Loads files; chunks of different files are parsed and appended at the
+     * same time.
+     *
+     * @return what was loaded
+     * @throws IOException if a file cannot be read
+     */
+    public Report load(List<Path> files) throws IOException {
+        long start = System.nanoTime();
+        Report report = new Report();
+        ExecutorService pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+        Semaphore ahead = new Semaphore(parallelism * CHUNKS_AHEAD_PER_WORKER);
+        List<FileChannel> channels = new ArrayList<>();
+        List<CompletableFuture<Void>> tails = new ArrayList<>();
+        try {
+            for (Path path : files) {
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                channels.add(channel);
+                long size = channel.size();
+                FileProgress progress = new FileProgress(path, report);
+                report.files++;
+                report.bytes += size;
+                CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+                for (long from = 0; from < size; from += chunkBytes) {
+                    long chunkStart = from;
+                    long chunkEnd = Math.min(size, from + chunkBytes);
+                    if (pool == null) {
+                        progress.append(parse(channel, size, chunkStart, chunkEnd));
+                        continue;
+                    }
+                    acquire(ahead);
+                    // Parsed in parallel, appended in file order
+                    CompletableFuture<Chunk> parsed = CompletableFuture.supplyAsync(
+                            () -> parseUnchecked(channel, size, chunkStart, chunkEnd), pool);
+                    tail = parsed.thenAcceptBothAsync(tail, (chunk, previous) -> progress.append(chunk), pool);
+                    tail.whenComplete((ignored, failure) -> ahead.release());
+                }
+                tails.add(tail);
+            }
+            for (CompletableFuture<Void> tail : tails) {
+                tail.join();
+            }
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        }
+        report.nanos = System.nanoTime() - start;
+        return report;
+    }
+
+    /**
+     * Loads one file.
+     *
+     * @return what was loaded
+     * @throws IOException if the file cannot be read
+     */
+    public Report load(Path file) throws IOException {
+        return load(Collections.singletonList(file));
+    }
+
+    private static void acquire(Semaphore semaphore) throws InterruptedIOException {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading");
+        }
+    }
+
+    private static Chunk parseUnchecked(FileChannel channel, long size, long from, long to) {
+        try {
+            return parse(channel, size, from, to);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses the lines that start within {@code [from, to)}. The mapping
+     * starts a byte early, to tell whether {@code from} starts a line, and
+     * runs up to a maximum line length past {@code to}, to finish the last
+     * line.
+     */
+    static Chunk parse(FileChannel channel, long size, long from, long to) throws IOException {
+        long mapFrom = Math.max(0, from - 1);
+        long mapTo = Math.min(size, to + MAX_LINE_BYTES);
+        int length = (int) (mapTo - mapFrom);
+        MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, mapFrom, length);
+        // One bulk copy out of the mapping makes every later read a plain array access
+        byte[] bytes = BUFFERS.get();
+        if (bytes.length < length) {
+            bytes = new byte[length];
+            BUFFERS.set(bytes);
+        }
+        mapping.get(bytes, 0, length);
+        Chunk chunk = new Chunk();
+        chunk.parse(bytes, (int) (from - mapFrom), (int) (to - mapFrom), length, mapTo == size);
+        return chunk;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Appends the chunks of one file in order, numbering their lines. */
+    private final class FileProgress {
+        private final Path path;
+        private final Report report;
+        private long lines;
+
+        FileProgress(Path path, Report report) {
+            this.path = path;
+            this.report = report;
+        }
+
+        void append(Chunk chunk) {
+            for (int i = 0; i < chunk.runCount; i++) {
+                Run run = chunk.runs[i];
+                storage.addSamples(run.patientId, run.signalId, run.timestamps, run.values, 0, run.size);
+            }
+            synchronized (report) {
+                report.lines += chunk.lines;
+                report.records += chunk.records;
+                for (int error = 0; error < chunk.errors.length; error++) {
+                    report.errors[error] += chunk.errors[error];
+                }
+                for (int i = 0; i < chunk.reportedCount; i++) {
+                    if (report.errorLines.size() < MAX_REPORTED_LINES) {
+                        report.errorLines.add(path + ":" + (lines + chunk.reportedLines[i] + 1) + ": "
+                                + chunk.reportedErrors[i].getDescription());
+                    }
+                }
+            }
+            lines += chunk.lines;
+        }
+    }
+
+    /** The samples of one patient and record type found in a chunk. */
+    private static final class Run {
+        final int patientId;
+        final int signalId;
+        long[] timestamps = new long[16];
+        double[] values = new double[16];
+        int size;
+
+        Run(int patientId, int signalId) {
+            this.patientId = patientId;
+            this.signalId = signalId;
+        }
+
+        void add(long timestamp, double value) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            timestamps[size] = timestamp;
+            values[size] = value;
+            size++;
+        }
+    }
+
+    /**
+     * The records parsed from a chunk, grouped into runs by patient and
+     * record type with an open-addressing table, so no key is boxed.
+     */
+    static final class Chunk {
+        private long[] keys = new long[64];
+        private Run[] table = new Run[64];
+        Run[] runs = new Run[16]; // In the order they were first seen
+        int runCount;
+        int lines;
+        int records;
+        final int[] errors = new int[LineError.values().length];
+        final int[] reportedLines = new int[MAX_REPORTED_LINES];
+        final LineError[] reportedErrors = new LineError[MAX_REPORTED_LINES];
+        int reportedCount;
+
+        // The labels seen in this chunk; files usually hold a single one
+        private byte[][] labels = new byte[4][];
+        private int[] labelIds = new int[4];
+        private boolean[] alerts = new boolean[4];
+        private int labelCount;
+        private int lastLabel = -1;
+
+        // The fields of the line being parsed
+        private int patientId;
+        private long timestamp;
+        private int signalId;
+        private double value;
+        private int lineEnd; // The index of the line end, or of the end of the mapping
+        private boolean blank;
+
+        void parse(byte[] buffer, int from, int to, int limit, boolean endOfFile) {
+            int position = from;
+            if (from > 0 && buffer[from - 1] != '\n') {
+                // The line started in the previous chunk
+                while (position < to && buffer[position] != '\n') {
+                    position++;
+                }
+                position++;
+            }
+            while (position < to) {
+                LineError error = parseLine(buffer, position, limit);
+                if (lineEnd == limit && !endOfFile) {
+                    // No line end within the mapping, so no other line starts in this chunk either
+                    error(LineError.MALFORMED);
+                    lines++;
+                    return;
+                }
+                if (error != null) {
+                    error(error);
+                } else if (!blank) {
+                    runFor(patientId, signalId).add(timestamp, value);
+                    records++;
+                }
+                lines++;
+                position = lineEnd + 1;
+            }
+        }
+
+        private void error(LineError error) {
+            errors[error.ordinal()]++;
+            if (reportedCount < MAX_REPORTED_LINES) {
+                reportedLines[reportedCount] = lines;
+                reportedErrors[reportedCount] = error;
+                reportedCount++;
+            }
+        }
+
+        /**
+         * Parses the line at a position into the fields, in a single pass,
+         * and finds its end; or returns why it cannot be parsed.
+         */
+        private LineError parseLine(byte[] buffer, int position, int limit) {
+            int lineStart = position;
+            blank = false;
+            if (!matches(buffer, position, limit, PATIENT_ID)) {
+                return skip(buffer, lineStart, position, limit, LineError.MALFORMED);
+            }
+            position += PATIENT_ID.length;
+            int digits = position;
+            long id = 0;
+            while (position < limit && isDigit(buffer[position]) && id <= Integer.MAX_VALUE) {
+                id = id * 10 + (buffer[position++] - '0');
+            }
+            if (position == digits || id > Integer.MAX_VALUE) {
+                return skip(buffer, lineStart, position, limit, LineError.PATIENT_ID);
+            }
+            if (!matches(buffer, position, limit, TIMESTAMP)) {
+                return skip(buffer, lineStart, position, limit, LineError.MALFORMED);
+            }
+            position += TIMESTAMP.length;
+            digits = position;
+            long time = 0;
+            while (position < limit && isDigit(buffer[position]) && position - digits < 18) {
+                time = time * 10 + (buffer[position++] - '0');
+            }
+            if (position == digits || position < limit && isDigit(buffer[position])) {
+                return skip(buffer, lineStart, position, limit, LineError.TIMESTAMP);
+            }
+            if (!matches(buffer, position, limit, LABEL)) {
+                return skip(buffer, lineStart, position, limit, LineError.MALFORMED);
+            }
+            position += LABEL.length;
+            int labelStart = position;
+            while (position < limit && buffer[position] != ',' && buffer[position] != '\n') {
+                position++;
+            }
+            if (position == labelStart || !matches(buffer, position, limit, DATA)) {
+                return skip(buffer, lineStart, position, limit, LineError.MALFORMED);
+            }
+            int label = label(buffer, labelStart, position);
+            position += DATA.length;
+            int end = position;
+            while (end < limit && buffer[end] != '\n') {
+                end++;
+            }
+            lineEnd = end;
+            while (end > position && (buffer[end - 1] == '\r' || buffer[end - 1] == ' ')) {
+                end--;
+            }
+            double data;
+            if (alerts[label]) {
+                if (contentEquals(buffer, position, end, TRIGGERED)) {
+                    data = 1;
+                } else if (contentEquals(buffer, position, end, RESOLVED)) {
+                    data = 0;
+                } else {
+                    return LineError.DATA;
+                }
+            } else {
+                if (end > position && buffer[end - 1] == '%') {
+                    end--;
+                }
+                data = parseDouble(buffer, position, end);
+                if (Double.isNaN(data) && !contentEquals(buffer, position, end, NAN)) {
+                    return LineError.DATA;
+                }
+            }
+            patientId = (int) id;
+            timestamp = time;
+            signalId = labelIds[label];
+            value = data;
+            return null;
+        }
+
+        /**
+         * Moves past a line that cannot be parsed, to its end. A line of only
+         * white space is blank rather than malformed.
+         */
+        private LineError skip(byte[] buffer, int lineStart, int position, int limit, LineError error) {
+            while (position < limit && buffer[position] != '\n') {
+                position++;
+            }
+            lineEnd = position;
+            if (error == LineError.MALFORMED) {
+                int i = lineStart;
+                while (i < position && (buffer[i] == ' ' || buffer[i] == '\r')) {
+                    i++;
+                }
+                if (i == position) {
+                    blank = true;
+                    return null;
+                }
+            }
+            return error;
+        }
+
+        /** Returns the index of a label among those seen, registering it if it is new. */
+        private int label(byte[] buffer, int from, int to) {
+            if (lastLabel >= 0 && contentEquals(buffer, from, to, labels[lastLabel])) {
+                return lastLabel;
+            }
+            for (int i = 0; i < labelCount; i++) {
+                if (contentEquals(buffer, from, to, labels[i])) {
+                    return lastLabel = i;
+                }
+            }
+            byte[] label = Arrays.copyOfRange(buffer, from, to);
+            if (labelCount == labels.length) {
+                labels = Arrays.copyOf(labels, labelCount * 2);
+                labelIds = Arrays.copyOf(labelIds, labelCount * 2);
+                alerts = Arrays.copyOf(alerts, labelCount * 2);
+            }
+            labels[labelCount] = label;
+            alerts[labelCount] = Arrays.equals(label, ALERT);
+            labelIds[labelCount] = SignalRegistry.idOf(new String(label, StandardCharsets.UTF_8));
+            return lastLabel = labelCount++;
+        }
+
+        private Run runFor(int patientId, int signalId) {
+            long key = (long) patientId << 32 | signalId;
+            int mask = table.length - 1;
+            int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+            while (table[slot] != null) {
+                if (keys[slot] == key) {
+                    return table[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            Run run = new Run(patientId, signalId);
+            keys[slot] = key;
+            table[slot] = run;
+            if (runCount == runs.length) {
+                runs = Arrays.copyOf(runs, runCount * 2);
+            }
+            runs[runCount++] = run;
+            if (runCount * 2 > table.length) {
+                rehash();
+            }
+            return run;
+        }
+
+        private void rehash() {
+            long[] grownKeys = new long[keys.length * 2];
+            Run[] grown = new Run[table.length * 2];
+            int mask = grown.length - 1;
+            for (int i = 0; i < runCount; i++) {
+                Run run = runs[i];
+                long key = (long) run.patientId << 32 | run.signalId;
+                int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+                while (grown[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                grownKeys[slot] = key;
+                grown[slot] = run;
+            }
+            keys = grownKeys;
+            table = grown;
+        }
+    }
+
+    /**
+     * Parses a decimal number from bytes. Numbers with up to 18 significant
+     * digits and no exponent, as the generators write them, are converted
+     * without a String by {@link RecordDecoder#toDouble}; anything else goes
+     * through {@link Double#parseDouble}.
+     *
+     * @return the number, or NaN if the bytes are not one
+     */
+    static double parseDouble(byte[] buffer, int from, int to) {
+        int position = from;
+        boolean negative = position < to && buffer[position] == '-';
+        if (negative) {
+            position++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+        int start = position;
+        for (; position < to; position++) {
+            byte b = buffer[position];
+            if (isDigit(b)) {
+                if (digits == 18) {
+                    return slowParse(buffer, from, to);
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+                if (fraction >= 0) {
+                    fraction++;
+                }
+            } else if (b == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                return slowParse(buffer, from, to);
+            }
+        }
+        int integerDigits = position - start - (fraction < 0 ? 0 : fraction + 1);
+        if (integerDigits + Math.max(fraction, 0) == 0 || fraction > RecordDecoder.MAX_FRACTION_DIGITS) {
+            return slowParse(buffer, from, to);
+        }
+        double result = RecordDecoder.toDouble(mantissa, Math.max(fraction, 0));
+        return negative ? -result : result;
+    }
+
+    private static double slowParse(byte[] buffer, int from, int to) {
+        try {
+            return Double.parseDouble(new String(buffer, from, to - from, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean matches(byte[] buffer, int position, int end, byte[] text) {
+        if (end - position < text.length) {
+            return false;
+        }
+        for (int i = 0; i < text.length; i++) {
+            if (buffer[position + i] != text[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contentEquals(byte[] buffer, int from, int to, byte[] text) {
+        return to - from == text.length && matches(buffer, from, to, text);
+    }
+
+    /** What a load read, and the lines it could not. */
+    public static final class Report {
+        private int files;
+        private long bytes;
+        private long lines;
+        private long records;
+        private final long[] errors = new long[LineError.values().length];
+        private final List<String> errorLines = new ArrayList<>();
+        private long nanos;
+
+        public int getFiles() {
+            return files;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /** The number of lines read, including blank ones. */
+        public long getLines() {
+            return lines;
+        }
+
+        /** The number of records added to the storage. */
+        public long getRecords() {
+            return records;
+        }
+
+        /** The number of lines that could not be loaded. */
+        public long getErrorCount() {
+            long total = 0;
+            for (long count : errors) {
+                total += count;
+            }
+            return total;
+        }
+
+        /** The number of lines that could not be loaded for a reason. */
+        public long getErrorCount(LineError error) {
+            return errors[error.ordinal()];
+        }
+
+        /** The first lines that could not be loaded, as "file:line: reason". */
+        public List<String> getErrorLines() {
+            return Collections.unmodifiableList(errorLines);
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        /** The bytes read per second of the load. */
+        public double getBytesPerSecond() {
+            return nanos == 0 ? 0 : bytes * 1e9 / nanos;
+        }
+    }
+}
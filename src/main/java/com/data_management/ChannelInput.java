@@ -0,0 +1,88 @@
+package com.data_management;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Buffered, big-endian reader over a file channel, used to load journal and
+ * snapshot files without going through a stream per primitive.
+ */
+final class ChannelInput {
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+
+    ChannelInput(FileChannel channel) {
+        this.channel = channel;
+        buffer.flip();
+    }
+
+    /**
+     * Makes sure at least {@code bytes} bytes are buffered.
+     *
+     * @return false if the file ends first
+     */
+    boolean request(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    ByteBuffer require(int bytes) throws IOException {
+        if (!request(bytes)) {
+            throw new EOFException("Unexpected end of file");
+        }
+        return buffer;
+    }
+
+    byte readByte() throws IOException {
+        return require(1).get();
+    }
+
+    short readShort() throws IOException {
+        return require(2).getShort();
+    }
+
+    int readInt() throws IOException {
+        return require(4).getInt();
+    }
+
+    long readLong() throws IOException {
+        return require(8).getLong();
+    }
+
+    double readDouble() throws IOException {
+        return require(8).getDouble();
+    }
+
+    /** Reads a zig-zag encoded variable-length long written by {@link ChannelOutput#writeVarLong}. */
+    long readVarLong() throws IOException {
+        long raw = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = buffer.hasRemaining() ? buffer.get() : readByte();
+            raw |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return (raw >>> 1) ^ -(raw & 1);
+            }
+        }
+        throw new IOException("Malformed variable-length number");
+    }
+
+    byte[] readBytes(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        require(length).get(bytes);
+        return bytes;
+    }
+}
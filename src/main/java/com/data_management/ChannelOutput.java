@@ -0,0 +1,75 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Buffered, big-endian writer over a file channel; the counterpart of
+ * {@link ChannelInput}.
+ */
+final class ChannelOutput {
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+
+    ChannelOutput(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    private ByteBuffer room(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+        return buffer;
+    }
+
+    void writeByte(int value) throws IOException {
+        room(1).put((byte) value);
+    }
+
+    void writeShort(int value) throws IOException {
+        room(2).putShort((short) value);
+    }
+
+    void writeInt(int value) throws IOException {
+        room(4).putInt(value);
+    }
+
+    void writeLong(long value) throws IOException {
+        room(8).putLong(value);
+    }
+
+    void writeDouble(double value) throws IOException {
+        room(8).putDouble(value);
+    }
+
+    /** Writes a zig-zag encoded variable-length long, 1 byte for small deltas. */
+    void writeVarLong(long value) throws IOException {
+        ByteBuffer out = room(10);
+        long raw = (value << 1) ^ (value >> 63);
+        while ((raw & ~0x7FL) != 0) {
+            out.put((byte) ((raw & 0x7F) | 0x80));
+            raw >>>= 7;
+        }
+        out.put((byte) raw);
+    }
+
+    void writeBytes(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.capacity()) {
+            flush();
+            channel.write(ByteBuffer.wrap(bytes));
+            return;
+        }
+        room(bytes.length).put(bytes);
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,19 @@
+package com.data_management;
+
+/**
+ * A block of consecutive samples of one series, either held as raw arrays
+ * ({@link SampleChunk}) or sealed into a compressed form ({@link SealedChunk}).
+ */
+abstract class Chunk {
+
+    abstract long firstTimestamp();
+
+    /** Returns the timestamp of the last of the first {@code size} samples. */
+    abstract long lastTimestamp(int size);
+
+    /** Returns the samples as raw arrays, decoding them if the chunk is sealed. */
+    abstract SampleChunk samples();
+
+    /** Returns an estimate of the heap memory used by the chunk. */
+    abstract long bytes();
+}
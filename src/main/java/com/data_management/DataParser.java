@@ -1,37 +1,28 @@
 package com.data_management;
-import java.io.File;
 import java.io.IOException;
-import java.util.Scanner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Logger;
 
 public class DataParser {
-    // Regex pattern to match the lines in the file
-    private static final Pattern dataPattern = Pattern.compile(
-            "Patient ID: (\\d*), Timestamp: (\\d*), Label: (\\w*), Data: (\\d*\\.\\d*)"
-    );
+    private static final Logger logger = Logger.getLogger(DataParser.class.getName());
 
-    public void readData(DataStorage storage, String inLabel) throws IOException {
+    /**
+     * Loads the records of one label from {@code output/<label>.txt} with a
+     * {@link BulkLoader}. Lines that cannot be parsed are skipped and logged
+     * rather than failing the whole file.
+     *
+     * @return what was loaded
+     * @throws IOException if the file cannot be read
+     */
+    public BulkLoader.Report readData(DataStorage storage, String inLabel) throws IOException {
         // File containing the data
-        File file = new File("output/" + inLabel + ".txt");
-
-        try (Scanner scanner = new Scanner(file)) {
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                Matcher matcher = dataPattern.matcher(line);
-                if (matcher.find()) {
-                    // Extracting data using the regex groups
-                    int patientId = Integer.parseInt(matcher.group(1));
-                    long timestamp = Long.parseLong(matcher.group(2));
-                    String label = matcher.group(3);
-                    double data = Double.parseDouble(matcher.group(4));
-
-                    // Call the method in DataStorage with extracted values
-                    storage.addPatientData(patientId, data, label, timestamp);
-                }
-            }
-        } catch (Exception e) {
-            throw new IOException();
+        Path file = Paths.get("output", inLabel + ".txt");
+        BulkLoader.Report report = new BulkLoader(storage).load(file);
+        if (report.getErrorCount() > 0) {
+            logger.warning("Skipped " + report.getErrorCount() + " of " + report.getLines() + " lines of "
+                    + file + ", first: " + report.getErrorLines());
         }
+        return report;
     }
-}
\ No newline at end of file
+}
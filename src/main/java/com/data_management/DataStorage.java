@@ -1,9 +1,12 @@
 package com.data_management;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import com.alerts.AlertProcessor;
 
 /**
@@ -11,16 +14,40 @@ import com.alerts.AlertProcessor;
  * system.
  * This class serves as a repository for all patient records, organized by
  * patient IDs.
+ * It is safe to add and query data from many threads at once: patients are
+ * looked up in a concurrent map, each signal series has its own writer lock,
+ * and queries read immutable snapshots without blocking writers.
+ * Memory is bounded by the {@link RetentionPolicy} the storage is created with.
+ * Data can be made durable by opening a {@link StorageJournal} on the storage.
+ * Every added record is passed on to the registered {@link RecordListener}s.
  */
 public class DataStorage {
+    private static final int MAX_INDEXED_ID = 1 << 16;
+
     private Map<Integer, Patient> patientMap; // Stores patient objects indexed by their unique patient ID.
+    // Patients with small IDs, looked up without boxing the ID
+    private volatile AtomicReferenceArray<Patient> patientIndex = new AtomicReferenceArray<>(16);
+    private final RetentionPolicy retentionPolicy;
+    private volatile StorageJournal journal;
+    private volatile RecordListener[] listeners = new RecordListener[0];
 
     /**
-     * Constructs a new instance of DataStorage, initializing the underlying storage
-     * structure.
+     * Constructs a new instance of DataStorage that keeps all data it is given,
+     * initializing the underlying storage structure.
      */
     public DataStorage() {
-        this.patientMap = new HashMap<>();
+        this(RetentionPolicy.unbounded());
+    }
+
+    /**
+     * Constructs a new instance of DataStorage that keeps as much history per
+     * record type as the given policy allows.
+     *
+     * @param retentionPolicy how much history to keep per record type
+     */
+    public DataStorage(RetentionPolicy retentionPolicy) {
+        this.patientMap = new ConcurrentHashMap<>();
+        this.retentionPolicy = retentionPolicy;
     }
 
     /**
@@ -28,6 +55,7 @@ public class DataStorage {
      * If the patient does not exist, a new Patient object is created and added to
      * the storage.
      * Otherwise, the new data is added to the existing patient's records.
+     * Registered record listeners are notified once the record is stored.
      *
      * @param patientId        the unique identifier of the patient
      * @param measurementValue the value of the health metric being recorded
@@ -37,12 +65,148 @@ public class DataStorage {
      *                         milliseconds since the Unix epoch
      */
     public void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
-        Patient patient = patientMap.get(patientId);
-        if (patient == null) {
-            patient = new Patient(patientId);
-            patientMap.put(patientId, patient);
+        addPatientData(patientId, measurementValue, SignalRegistry.idOf(recordType), timestamp);
+    }
+
+    /**
+     * Adds patient data of a record type already interned to a signal ID,
+     * such as one decoded by a {@link RecordDecoder}, skipping the label lookup.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric being recorded
+     * @param signalId         the record type, see {@link SignalRegistry}
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     * @throws IllegalArgumentException if no record type has the signal ID
+     */
+    public void addPatientData(int patientId, double measurementValue, int signalId, long timestamp) {
+        if (signalId < 0 || signalId >= SignalRegistry.count()) {
+            throw new IllegalArgumentException("Unknown signal ID: " + signalId);
+        }
+        Patient patient = patient(patientId);
+        StorageJournal current = journal;
+        if (current == null) {
+            patient.seriesFor(signalId).append(timestamp, measurementValue);
+        } else {
+            StorageJournal.Segment segment = current.append(patientId, signalId, timestamp, measurementValue);
+            try {
+                patient.seriesFor(signalId).append(timestamp, measurementValue);
+            } finally {
+                segment.applied.increment();
+            }
+        }
+        for (RecordListener listener : listeners) {
+            listener.recordAdded(patientId, signalId, timestamp, measurementValue);
+        }
+    }
+
+    /**
+     * Adds a batch of samples, like as many calls to {@link #addPatientData}
+     * but grouped by patient and record type: each group costs one patient
+     * lookup and is appended to its series under a single lock acquisition.
+     * Within a group samples are added, and listeners notified, in batch
+     * order; groups are added in the order their first samples appear. The
+     * batch is left as it is, to be cleared and reused by the caller.
+     *
+     * @param batch the samples to add
+     */
+    public void addPatientDataBatch(SampleBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int groups = batch.group();
+        long[] timestamps = batch.groupedTimestamps();
+        double[] values = batch.groupedValues();
+        for (int group = 0; group < groups; group++) {
+            addSamples(batch.groupPatient(group), batch.groupSignal(group), timestamps, values,
+                    batch.groupStart(group), batch.groupLength(group));
+        }
+    }
+
+    /**
+     * Adds a run of samples of one record type of a patient, like as many
+     * calls to {@link #addPatientData}, but appended to the series in bulk
+     * under a single lock acquisition. Samples in timestamp order are copied
+     * in one go; the journal, if any, logs every sample before it is applied,
+     * and listeners are notified of each afterwards.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param signalId   the record type, see {@link SignalRegistry}
+     * @param timestamps the times of the samples, in milliseconds since the Unix epoch
+     * @param values     the measured values
+     * @param offset     the index of the first sample to add
+     * @param length     the number of samples to add
+     */
+    void addSamples(int patientId, int signalId, long[] timestamps, double[] values, int offset, int length) {
+        if (length == 0) {
+            return;
+        }
+        SignalSeries series = patient(patientId).seriesFor(signalId);
+        int end = offset + length;
+        StorageJournal current = journal;
+        if (current == null) {
+            series.appendAll(timestamps, values, offset, length);
+        } else {
+            // Apply in runs logged to the same segment, so each segment counts what it logged
+            StorageJournal.Segment segment = null;
+            int runStart = offset;
+            for (int i = offset; i < end; i++) {
+                StorageJournal.Segment logged = current.append(patientId, signalId, timestamps[i], values[i]);
+                if (segment != null && logged != segment) {
+                    apply(series, segment, timestamps, values, runStart, i - runStart);
+                    runStart = i;
+                }
+                segment = logged;
+            }
+            apply(series, segment, timestamps, values, runStart, end - runStart);
+        }
+        RecordListener[] registered = listeners;
+        if (registered.length > 0) {
+            for (int i = offset; i < end; i++) {
+                for (RecordListener listener : registered) {
+                    listener.recordAdded(patientId, signalId, timestamps[i], values[i]);
+                }
+            }
+        }
+    }
+
+    private static void apply(SignalSeries series, StorageJournal.Segment segment, long[] timestamps,
+                              double[] values, int offset, int length) {
+        try {
+            series.appendAll(timestamps, values, offset, length);
+        } finally {
+            segment.applied.add(length);
+        }
+    }
+
+    /**
+     * Registers a listener to be notified of every record added from now on.
+     *
+     * @param listener the listener to add
+     */
+    public synchronized void addRecordListener(RecordListener listener) {
+        RecordListener[] current = listeners;
+        RecordListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        listeners = updated;
+    }
+
+    /**
+     * Unregisters a listener added with {@link #addRecordListener}.
+     *
+     * @param listener the listener to remove
+     */
+    public synchronized void removeRecordListener(RecordListener listener) {
+        RecordListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                RecordListener[] updated = new RecordListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                listeners = updated;
+                return;
+            }
         }
-        patient.addRecord(measurementValue, recordType, timestamp);
     }
 
     /**
@@ -55,17 +219,134 @@ public class DataStorage {
      *                  epoch
      * @param endTime   the end of the time range, in milliseconds since the Unix
      *                  epoch
-     * @return a list of PatientRecord objects that fall within the specified time
-     *         range
+     * @return a read-only list of PatientRecord objects that fall within the
+     *         specified time range, ordered by timestamp
      */
     public List<PatientRecord> getRecords(int patientId, long startTime, long endTime) {
+        Patient patient = find(patientId);
+        if (patient == null) {
+            return Collections.emptyList(); // return an empty list if no patient is found
+        }
+        return patient.getRecords(startTime, endTime);
+    }
 
-        try {
-            Patient patient = patientMap.get(patientId);
-            return patient.getRecords(startTime, endTime);
-        } catch (NullPointerException e) {}
+    /**
+     * Retrieves the records of a single record type for a specific patient,
+     * filtered by a time range.
+     *
+     * @param patientId  the unique identifier of the patient whose records are to
+     *                   be retrieved
+     * @param recordType the type of record, e.g., "ECG"
+     * @param startTime  the start of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @return a read-only list of matching records, ordered by timestamp
+     */
+    public List<PatientRecord> getRecords(int patientId, String recordType, long startTime, long endTime) {
+        Patient patient = find(patientId);
+        if (patient == null) {
+            return Collections.emptyList();
+        }
+        return patient.getRecords(recordType, startTime, endTime);
+    }
 
-        return new ArrayList<>(); // return an empty list if no patient is found
+    /**
+     * Passes the records of one record type for a specific patient within a time
+     * range to the visitor as primitive timestamp and value pairs, in timestamp
+     * order. Unlike {@link #getRecords}, no list or record objects are created.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "Saturation"
+     * @param startTime  the start of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param visitor    receives each record's timestamp and value
+     * @return the number of records visited
+     */
+    public int forEach(int patientId, String recordType, long startTime, long endTime, SampleVisitor visitor) {
+        Patient patient = find(patientId);
+        SignalSeries series = patient == null ? null : patient.getSeries(recordType);
+        return series == null ? 0 : series.forEach(startTime, endTime, visitor);
+    }
+
+    /**
+     * Positions a reusable cursor on the records of one record type for a
+     * specific patient within a time range. Positioning and iterating the cursor
+     * do not allocate.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "Saturation"
+     * @param startTime  the start of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param cursor     the cursor to position
+     * @return the cursor, empty if no matching records are found
+     */
+    public SampleCursor query(int patientId, String recordType, long startTime, long endTime, SampleCursor cursor) {
+        Patient patient = find(patientId);
+        SignalSeries series = patient == null ? null : patient.getSeries(recordType);
+        if (series == null) {
+            cursor.clear();
+        } else {
+            series.seek(cursor, startTime, endTime);
+        }
+        return cursor;
+    }
+
+    /**
+     * Retrieves per-bucket minimum, maximum, sum, count and last value of one
+     * record type for a specific patient. The buckets are maintained as data is
+     * added, so the cost depends on the number of buckets in the range rather
+     * than the number of records.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "SystolicPressure"
+     * @param startTime  the start of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param resolution the bucket width
+     * @return the buckets overlapping the time range, in time order, or an empty
+     *         list if no patient is found
+     */
+    public List<Aggregate> getAggregates(int patientId, String recordType, long startTime, long endTime,
+                                         Resolution resolution) {
+        Patient patient = find(patientId);
+        if (patient == null) {
+            return Collections.emptyList();
+        }
+        return patient.getAggregates(recordType, startTime, endTime, resolution);
+    }
+
+    /**
+     * Returns an estimate of the heap memory used by a patient's records.
+     *
+     * @param patientId the unique identifier of the patient
+     * @return the number of bytes used, or 0 if no patient is found
+     */
+    public long getBytesUsed(int patientId) {
+        Patient patient = find(patientId);
+        return patient == null ? 0 : patient.getBytesUsed();
+    }
+
+    /**
+     * Returns an estimate of the heap memory used by a patient's records of one
+     * record type.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "ECG"
+     * @return the number of bytes used, or 0 if there are no such records
+     */
+    public long getBytesUsed(int patientId, String recordType) {
+        Patient patient = find(patientId);
+        return patient == null ? 0 : patient.getBytesUsed(recordType);
+    }
+
+    public RetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
     }
 
     /**
@@ -74,14 +355,59 @@ public class DataStorage {
      * @return a list of all patients
      */
     public List<Patient> getAllPatients() {
-        ArrayList<Patient> outList = new ArrayList<Patient>();
+        return new ArrayList<>(patientMap.values());
+    }
 
-        for (Patient value : patientMap.values()) {
-            outList.add(value);
+    Patient patient(int patientId) {
+        Patient patient = find(patientId);
+        if (patient == null) {
+            patient = patientMap.computeIfAbsent(patientId, id -> new Patient(id, retentionPolicy));
+            if (patientId >= 0 && patientId < MAX_INDEXED_ID) {
+                index(patient);
+            }
+        }
+        return patient;
+    }
+
+    private Patient find(int patientId) {
+        AtomicReferenceArray<Patient> index = patientIndex;
+        if (patientId >= 0 && patientId < index.length()) {
+            Patient patient = index.get(patientId);
+            if (patient != null) {
+                return patient;
+            }
+        }
+        return patientMap.get(patientId);
+    }
+
+    private synchronized void index(Patient patient) {
+        AtomicReferenceArray<Patient> index = patientIndex;
+        int id = patient.getId();
+        if (id >= index.length()) {
+            // Grow by copying; lookups that miss the new array fall back to the map meanwhile
+            AtomicReferenceArray<Patient> grown = new AtomicReferenceArray<>(
+                    Math.min(MAX_INDEXED_ID, Integer.highestOneBit(id) * 2));
+            for (int i = 0; i < index.length(); i++) {
+                grown.set(i, index.get(i));
+            }
+            index = grown;
+            patientIndex = grown;
+        }
+        index.set(id, patient);
+    }
+
+    void attachJournal(StorageJournal journal) {
+        if (this.journal != null) {
+            throw new IllegalStateException("Storage already has a journal");
         }
-        return outList;
+        this.journal = journal;
     }
 
+    void detachJournal(StorageJournal journal) {
+        if (this.journal == journal) {
+            this.journal = null;
+        }
+    }
 
 
     /**
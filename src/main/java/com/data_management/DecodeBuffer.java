@@ -0,0 +1,25 @@
+package com.data_management;
+
+/**
+ * A reusable buffer that sealed chunks are decoded into, so scans over
+ * compressed history do not allocate a new chunk per sealed chunk they read.
+ * Holds the most recently decoded chunk until a different one is needed.
+ * Not thread-safe.
+ */
+final class DecodeBuffer implements SignalSeries.Decoder {
+    private final SampleChunk scratch = new SampleChunk(SampleChunk.MAX_SAMPLES);
+    private Chunk decoded;
+
+    @Override
+    public SampleChunk samples(SignalSeries.ChunkList list, int chunk) {
+        Chunk block = list.chunks[chunk];
+        if (block instanceof SampleChunk) {
+            return (SampleChunk) block;
+        }
+        if (block != decoded) {
+            ((SealedChunk) block).decodeInto(scratch);
+            decoded = block;
+        }
+        return scratch;
+    }
+}
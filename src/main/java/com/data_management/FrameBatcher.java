@@ -0,0 +1,89 @@
+package com.data_management;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects readings from many threads into binary frames, see
+ * {@link FrameEncoder}. A frame is handed to the sink once it is full, or at
+ * most {@code lingerMillis} after its first reading, so a slow stream is not
+ * held back waiting for readings that do not come.
+ *
+ * <p>Frames reach the sink one at a time, in order, on the thread that
+ * completed them: a thread adding a reading or the linger thread. The sink
+ * should not throw, or the linger thread stops.
+ */
+public final class FrameBatcher implements AutoCloseable {
+    /** The readings per frame by default, about 3.5 KB. */
+    public static final int DEFAULT_FRAME_READINGS = 256;
+    /** How long a reading waits for its frame to fill by default. */
+    public static final long DEFAULT_LINGER_MILLIS = 20;
+
+    private final FrameEncoder encoder;
+    private final Consumer<byte[]> sink;
+    private final ScheduledExecutorService scheduler;
+    private long frames;
+
+    /**
+     * @param frameReadings the most readings per frame
+     * @param lingerMillis  how long a reading may wait before its frame is
+     *                      sent unfilled
+     * @param sink          receives each frame
+     */
+    public FrameBatcher(int frameReadings, long lingerMillis, Consumer<byte[]> sink) {
+        this.encoder = new FrameEncoder(frameReadings);
+        this.sink = sink;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "frame-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, lingerMillis, lingerMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Creates a batcher with the default frame size and linger. */
+    public FrameBatcher(Consumer<byte[]> sink) {
+        this(DEFAULT_FRAME_READINGS, DEFAULT_LINGER_MILLIS, sink);
+    }
+
+    /**
+     * Adds a reading, sending the frame if this fills it.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param timestamp the time of the reading, in milliseconds since the Unix epoch
+     * @param label     the record type
+     * @param value     the measured value
+     */
+    public synchronized void add(int patientId, long timestamp, String label, double value) {
+        if (!encoder.add(patientId, timestamp, label, value)) {
+            send();
+            encoder.add(patientId, timestamp, label, value);
+        }
+    }
+
+    /** Sends the readings added so far, if there are any. */
+    public synchronized void flush() {
+        if (!encoder.isEmpty()) {
+            send();
+        }
+    }
+
+    private void send() {
+        frames++;
+        sink.accept(encoder.finish());
+    }
+
+    /** The number of frames sent. */
+    public synchronized long getFrameCount() {
+        return frames;
+    }
+
+    /** Sends the readings added so far and stops the linger thread. */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        flush();
+    }
+}
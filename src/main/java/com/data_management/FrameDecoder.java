@@ -0,0 +1,197 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Decodes the binary frames of {@link FrameEncoder} without allocating once
+ * warm: the label table of a frame is matched against the labels already
+ * seen, byte for byte, and the readings are parsed into reused arrays. A
+ * frame is checked whole before any of its readings is delivered, so a
+ * truncated or corrupt frame delivers none, and neither does a frame with a
+ * new label once remote clients have registered
+ * {@link SignalRegistry#MAX_REMOTE_SIGNALS} record types.
+ *
+ * <p>Not thread-safe; each thread needs a decoder of its own.
+ */
+public final class FrameDecoder {
+
+    /** The most labels a decoder keeps to match label tables against. */
+    static final int MAX_CACHED_LABELS = 64;
+
+    // The labels seen most recently, encoded, with their signal IDs
+    private byte[][] labels = new byte[8][];
+    private int[] labelIds = new int[8];
+    private int labelCount;
+    private int replacedLabel; // The next label to replace once MAX_CACHED_LABELS are kept
+
+    // The signal IDs of the label table of the frame being decoded
+    private final int[] frameSignals = new int[FrameEncoder.MAX_LABELS];
+
+    private int[] patientIds = new int[256];
+    private long[] timestamps = new long[256];
+    private int[] signalIds = new int[256];
+    private double[] values = new double[256];
+
+    private long decodedCount;
+    private long rejectedCount;
+
+    /**
+     * Decodes a frame and hands its readings to a listener, in frame order.
+     *
+     * @param frame the frame, from its position to its limit, which is
+     *              consumed if the frame is valid
+     * @param sink  receives the readings
+     * @return the number of readings, or -1 if the frame is malformed or of
+     * an unsupported version
+     */
+    public int decode(ByteBuffer frame, RecordListener sink) {
+        int count = parse(frame.duplicate());
+        if (count < 0) {
+            rejectedCount++;
+            return -1;
+        }
+        frame.position(frame.limit());
+        for (int i = 0; i < count; i++) {
+            sink.recordAdded(patientIds[i], signalIds[i], timestamps[i], values[i]);
+        }
+        decodedCount += count;
+        return count;
+    }
+
+    /** Parses a frame into the arrays, returning the number of readings or -1. */
+    private int parse(ByteBuffer in) {
+        if (in.remaining() < 2 || in.get() != FrameEncoder.VERSION) {
+            return -1;
+        }
+        int tableSize = in.get() & 0xFF;
+        for (int i = 0; i < tableSize; i++) {
+            if (!in.hasRemaining()) {
+                return -1;
+            }
+            int length = in.get() & 0xFF;
+            if (length == 0 || in.remaining() < length) {
+                return -1;
+            }
+            frameSignals[i] = signalId(in, length);
+            if (frameSignals[i] < 0) {
+                return -1;
+            }
+            in.position(in.position() + length);
+        }
+        long count = getVarint(in);
+        // Each reading takes at least 14 bytes
+        if (count < 0 || in.remaining() < 8 || (in.remaining() - 8) / 14 < count) {
+            return -1;
+        }
+        ensureCapacity((int) count);
+        long timestamp = in.getLong();
+        for (int i = 0; i < count; i++) {
+            if (in.remaining() < 4) {
+                return -1;
+            }
+            patientIds[i] = in.getInt();
+            long zigzag = getVarint(in);
+            if (zigzag == -1 || in.remaining() < 9) {
+                return -1;
+            }
+            timestamp += (zigzag >>> 1) ^ -(zigzag & 1);
+            int label = in.get() & 0xFF;
+            if (label >= tableSize) {
+                return -1;
+            }
+            timestamps[i] = timestamp;
+            signalIds[i] = frameSignals[label];
+            values[i] = in.getDouble();
+        }
+        return in.hasRemaining() ? -1 : (int) count;
+    }
+
+    /**
+     * Returns the signal ID of the label at the buffer's position, registering
+     * it if it is new, or -1 if it may not be registered, see
+     * {@link SignalRegistry#MAX_REMOTE_SIGNALS}. Once
+     * {@link #MAX_CACHED_LABELS} are kept, a new label replaces the oldest.
+     */
+    private int signalId(ByteBuffer in, int length) {
+        int start = in.position();
+        for (int i = 0; i < labelCount; i++) {
+            byte[] label = labels[i];
+            if (label.length == length && contentEquals(in, start, label)) {
+                return labelIds[i];
+            }
+        }
+        byte[] label = new byte[length];
+        for (int i = 0; i < length; i++) {
+            label[i] = in.get(start + i);
+        }
+        int signalId = SignalRegistry.remoteIdOf(new String(label, StandardCharsets.UTF_8));
+        if (signalId < 0) {
+            return -1;
+        }
+        int index;
+        if (labelCount < MAX_CACHED_LABELS) {
+            if (labelCount == labels.length) {
+                labels = Arrays.copyOf(labels, labelCount * 2);
+                labelIds = Arrays.copyOf(labelIds, labelCount * 2);
+            }
+            index = labelCount++;
+        } else {
+            index = replacedLabel;
+            replacedLabel = (replacedLabel + 1) % MAX_CACHED_LABELS;
+        }
+        labels[index] = label;
+        labelIds[index] = signalId;
+        return signalId;
+    }
+
+    private static boolean contentEquals(ByteBuffer in, int start, byte[] label) {
+        for (int i = 0; i < label.length; i++) {
+            if (in.get(start + i) != label[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a varint of up to ten bytes.
+     *
+     * @return the value, or -1 if the buffer ends within it or it is longer
+     */
+    private static long getVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            if (!in.hasRemaining()) {
+                return -1;
+            }
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    private void ensureCapacity(int count) {
+        if (count > patientIds.length) {
+            int capacity = Math.max(count, patientIds.length * 2);
+            patientIds = Arrays.copyOf(patientIds, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            signalIds = Arrays.copyOf(signalIds, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    /** The number of readings this decoder delivered. */
+    public long getDecodedCount() {
+        return decodedCount;
+    }
+
+    /** The number of frames this decoder rejected. */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+}
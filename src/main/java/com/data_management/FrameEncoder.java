@@ -0,0 +1,199 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Packs readings into binary frames, the compact alternative to one text
+ * message per reading on the WebSocket and TCP streams. A frame, version 1:
+ *
+ * <pre>
+ * u8      version (1)
+ * u8      label count L
+ * L times u8 length, UTF-8 label
+ * varint  reading count N
+ * i64     base timestamp
+ * N times i32     patient ID
+ *         varint  timestamp minus that of the previous reading (the base
+ *                 for the first), zigzag encoded, as readings of many
+ *                 patients are not always in timestamp order
+ *         u8      index of the label in the table
+ *         f64     value
+ * </pre>
+ *
+ * All fixed-width numbers are big-endian. A reading takes 14 bytes when its
+ * timestamp is within 63 ms of the previous one, against about 38 as text.
+ * Every frame carries its own label table, so frames can be sent to any
+ * connection, in any order, without per-connection state; see
+ * {@link FrameDecoder}.
+ *
+ * <p>An encoder is reused frame after frame. Not thread-safe; see
+ * {@link FrameBatcher} to share one.
+ */
+public final class FrameEncoder {
+    /** The version of the frames written. */
+    public static final int VERSION = 1;
+    /**
+     * The name that selects binary frames for a connection: the WebSocket
+     * subprotocol, or the first line a TCP client sends.
+     */
+    public static final String PROTOCOL = "readings.v1";
+    /** The most distinct labels a frame can hold. */
+    public static final int MAX_LABELS = 255;
+    private static final int MAX_READING_BYTES = 4 + 10 + 1 + 8;
+
+    private final int capacity;
+    private final ByteBuffer body;
+    private String[] labels = new String[8];
+    private byte[][] encodedLabels = new byte[8][];
+    private int labelCount;
+    private int labelBytes;
+    private int count;
+    private long baseTimestamp;
+    private long previousTimestamp;
+
+    /**
+     * @param capacity the most readings per frame
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public FrameEncoder(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The frame capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.body = ByteBuffer.allocate(capacity * MAX_READING_BYTES);
+    }
+
+    /**
+     * Adds a reading to the frame being built.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param timestamp the time of the reading, in milliseconds since the Unix epoch
+     * @param label     the record type
+     * @param value     the measured value
+     * @return false if the frame is full; {@link #finish()} it and add again
+     * @throws IllegalArgumentException if the label is longer than 255 bytes
+     */
+    public boolean add(int patientId, long timestamp, String label, double value) {
+        if (count == capacity) {
+            return false;
+        }
+        int index = labelIndex(label);
+        if (index < 0) {
+            return false;
+        }
+        if (count == 0) {
+            baseTimestamp = timestamp;
+            previousTimestamp = timestamp;
+        }
+        long delta = timestamp - previousTimestamp;
+        previousTimestamp = timestamp;
+        body.putInt(patientId);
+        putVarint(body, (delta << 1) ^ (delta >> 63));
+        body.put((byte) index);
+        body.putDouble(value);
+        count++;
+        return true;
+    }
+
+    /** Returns the index of a label in the table, adding it if there is room, or -1. */
+    private int labelIndex(String label) {
+        for (int i = 0; i < labelCount; i++) {
+            if (labels[i] == label) {
+                return i; // Labels are mostly the same constants
+            }
+        }
+        for (int i = 0; i < labelCount; i++) {
+            if (labels[i].equals(label)) {
+                return i;
+            }
+        }
+        if (labelCount == MAX_LABELS) {
+            return -1;
+        }
+        byte[] encoded = label.getBytes(StandardCharsets.UTF_8);
+        if (encoded.length > 255) {
+            throw new IllegalArgumentException("Labels must fit in 255 bytes: " + label);
+        }
+        if (labelCount == labels.length) {
+            labels = Arrays.copyOf(labels, labelCount * 2);
+            encodedLabels = Arrays.copyOf(encodedLabels, labelCount * 2);
+        }
+        labels[labelCount] = label;
+        encodedLabels[labelCount] = encoded;
+        labelBytes += 1 + encoded.length;
+        return labelCount++;
+    }
+
+    /** The number of readings in the frame being built. */
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Completes the frame and starts the next one.
+     *
+     * @return the frame, in an array of its own that the caller may keep
+     */
+    public byte[] finish() {
+        byte[] frame = new byte[2 + labelBytes + varintLength(count) + 8 + body.position()];
+        ByteBuffer out = ByteBuffer.wrap(frame);
+        out.put((byte) VERSION);
+        out.put((byte) labelCount);
+        for (int i = 0; i < labelCount; i++) {
+            out.put((byte) encodedLabels[i].length);
+            out.put(encodedLabels[i]);
+        }
+        putVarint(out, count);
+        out.putLong(baseTimestamp);
+        out.put(body.array(), 0, body.position());
+        body.clear();
+        count = 0;
+        labelCount = 0;
+        labelBytes = 0;
+        return frame;
+    }
+
+    static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int varintLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Converts the data of a text reading, as the generators produce it, to
+     * the value a frame carries: a number, optionally ending in "%", or the
+     * alert states "triggered" and "resolved", as 1 and 0.
+     *
+     * @return the value, or NaN if the data is none of these
+     */
+    public static double parseData(String data) {
+        if ("triggered".equals(data)) {
+            return 1;
+        }
+        if ("resolved".equals(data)) {
+            return 0;
+        }
+        int end = data.length();
+        if (end > 0 && data.charAt(end - 1) == '%') {
+            end--;
+        }
+        return RecordDecoder.parseDouble(data, 0, end);
+    }
+}
@@ -0,0 +1,87 @@
+package com.data_management;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Derives the heart rate from the raw ECG samples added to a
+ * {@link DataStorage}. Every ECG sample goes through the {@link QrsDetector}
+ * of its patient; for every beat found after the first, the interval since
+ * the previous beat is added to the storage as an {@value #RR_INTERVAL}
+ * record, in milliseconds, and the instantaneous rate as a
+ * {@value #HEART_RATE} record, in beats per minute, both at the time of the
+ * beat. Rules read those rather than the waveform.
+ *
+ * <p>Intervals outside {@code [MIN_RR_MILLIS, MAX_RR_MILLIS]} are dropped as
+ * detection errors or gaps in the data. The samples of one patient must come
+ * in timestamp order, from any thread but not from two at once.
+ */
+public class HeartRateDeriver implements RecordListener {
+    /** The record type of the derived beat-to-beat intervals. */
+    public static final String RR_INTERVAL = "RRInterval";
+    /** The record type of the derived instantaneous heart rate. */
+    public static final String HEART_RATE = "HeartRate";
+    static final long MIN_RR_MILLIS = 200;  // 300 bpm
+    static final long MAX_RR_MILLIS = 3000; // 20 bpm
+
+    private final DataStorage storage;
+    private final int sampleRate;
+    private final int ecg = SignalRegistry.idOf("ECG");
+    private final ConcurrentHashMap<Integer, Beats> patients = new ConcurrentHashMap<>();
+    private final LongAdder beats = new LongAdder();
+
+    /**
+     * @param storage    the storage to watch and to add the derived records to
+     * @param sampleRate the sampling rate of the ECG, in hertz
+     * @throws IllegalArgumentException if the rate is too low to find beats in
+     */
+    public HeartRateDeriver(DataStorage storage, int sampleRate) {
+        new QrsDetector(sampleRate); // Fails early on a rate the detector cannot handle
+        this.storage = storage;
+        this.sampleRate = sampleRate;
+    }
+
+    /** Starts deriving from the ECG samples added from now on. */
+    public void attach() {
+        storage.addRecordListener(this);
+    }
+
+    /** Stops deriving. */
+    public void detach() {
+        storage.removeRecordListener(this);
+    }
+
+    /** The number of beats found so far, over all patients. */
+    public long getBeatCount() {
+        return beats.sum();
+    }
+
+    @Override
+    public void recordAdded(int patientId, int signalId, long timestamp, double measurementValue) {
+        if (signalId != ecg) {
+            return;
+        }
+        Beats state = patients.computeIfAbsent(patientId, id -> new Beats(sampleRate));
+        long beat = state.detector.add(timestamp, measurementValue);
+        if (beat == Long.MIN_VALUE) {
+            return;
+        }
+        beats.increment();
+        long previous = state.lastBeat;
+        state.lastBeat = beat;
+        long rr = beat - previous;
+        if (previous != Long.MIN_VALUE && rr >= MIN_RR_MILLIS && rr <= MAX_RR_MILLIS) {
+            storage.addPatientData(patientId, rr, RR_INTERVAL, beat);
+            storage.addPatientData(patientId, 60_000.0 / rr, HEART_RATE, beat);
+        }
+    }
+
+    private static final class Beats {
+        final QrsDetector detector;
+        long lastBeat = Long.MIN_VALUE;
+
+        Beats(int sampleRate) {
+            detector = new QrsDetector(sampleRate);
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.data_management;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands readings from network threads to a {@link DataStorage} through
+ * bounded queues, so a slow storage, or slow alert evaluation in its
+ * listeners, does not stall the threads that read the connections.
+ *
+ * <p>Each consumer thread drains a lock-free ring of its own, in batches added
+ * with {@link DataStorage#addPatientDataBatch}. Readings are spread over the
+ * rings by patient, so the readings of a patient are stored in the order they
+ * were offered. The rings hold primitive slots, claimed with a compare-and-set
+ * on the ring's tail, so offering a reading neither locks nor allocates.
+ * What happens to a reading offered to a full ring is set by the
+ * {@link Overflow} policy. The counters and latencies describe everything
+ * offered since the queue was created.
+ *
+ * <p>{@link #close()} stores every reading an {@link #offer} accepted: each
+ * ring counts the producers writing to it, and its consumer only stops once
+ * the queue is closed, no producer is still writing and the ring is empty.
+ */
+public class IngestQueue implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(IngestQueue.class.getName());
+    /** The queued readings by default, over all consumers. */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    /** The most readings a consumer adds to the storage at once. */
+    public static final int MAX_BATCH = 512;
+    // Idle consumers and blocked producers wait from this long up to the maximum
+    private static final long MIN_PARK_NANOS = 10_000;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+
+    /** What {@link #offer} does with a reading when its ring is full. */
+    public enum Overflow {
+        /** Waits for room, slowing down the caller. */
+        BLOCK,
+        /** Drops the oldest queued reading to make room. */
+        DROP_OLDEST,
+        /** Refuses the new reading, so the caller can tell its source. */
+        REJECT
+    }
+
+    private final DataStorage storage;
+    private final Overflow overflow;
+    private final Ring[] rings;
+    private final Thread[] consumers;
+    private volatile boolean closed;
+
+    private final LongAdder offered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    /**
+     * Creates a queue with {@link #DEFAULT_CAPACITY} and one consumer that
+     * blocks producers when it is full.
+     *
+     * @param storage the storage to add the readings to
+     */
+    public IngestQueue(DataStorage storage) {
+        this(storage, DEFAULT_CAPACITY, 1, Overflow.BLOCK);
+    }
+
+    /**
+     * Creates a queue and starts its consumer threads.
+     *
+     * @param storage   the storage to add the readings to
+     * @param capacity  the most readings queued, split over the consumers,
+     *                  each ring rounded up to a power of two
+     * @param consumers the number of consumer threads
+     * @param overflow  what happens to readings offered to a full ring
+     * @throws IllegalArgumentException if the capacity or the number of
+     *                                  consumers is not positive
+     */
+    public IngestQueue(DataStorage storage, int capacity, int consumers, Overflow overflow) {
+        if (capacity <= 0 || consumers <= 0) {
+            throw new IllegalArgumentException("Capacity and consumers must be positive");
+        }
+        if (overflow == null) {
+            throw new IllegalArgumentException("Overflow policy must not be null");
+        }
+        this.storage = storage;
+        this.overflow = overflow;
+        int perRing = (capacity + consumers - 1) / consumers;
+        int ringCapacity = perRing <= 2 ? 2 : Integer.highestOneBit(perRing - 1) << 1;
+        this.rings = new Ring[consumers];
+        this.consumers = new Thread[consumers];
+        for (int i = 0; i < consumers; i++) {
+            Ring ring = new Ring(ringCapacity);
+            rings[i] = ring;
+            this.consumers[i] = new Thread(() -> run(ring), "ingest-" + i);
+            this.consumers[i].setDaemon(true);
+            this.consumers[i].start();
+        }
+    }
+
+    /**
+     * Queues a reading to be stored. With {@link Overflow#BLOCK} this waits
+     * for room; otherwise it never blocks.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param signalId         the record type, see {@link SignalRegistry}
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     * @param measurementValue the measured value
+     * @return false if the reading was refused, because the ring is full and
+     *         the policy rejects new readings, or because the queue is closed
+     * @throws IllegalArgumentException if no record type has the signal ID
+     */
+    public boolean offer(int patientId, int signalId, long timestamp, double measurementValue) {
+        if (signalId < 0 || signalId >= SignalRegistry.count()) {
+            throw new IllegalArgumentException("Unknown signal ID: " + signalId);
+        }
+        offered.increment();
+        Ring ring = rings[Math.floorMod(patientId, rings.length)];
+        // Announced before reading closed, so the consumer either waits for this write or it is refused
+        ring.writers.incrementAndGet();
+        try {
+            if (closed) {
+                rejected.increment();
+                return false;
+            }
+            long now = System.nanoTime();
+            long park = MIN_PARK_NANOS;
+            while (!ring.offer(patientId, signalId, timestamp, measurementValue, now)) {
+                switch (overflow) {
+                    case BLOCK:
+                        if (closed || Thread.currentThread().isInterrupted()) {
+                            rejected.increment();
+                            return false;
+                        }
+                        LockSupport.parkNanos(park);
+                        park = Math.min(park * 2, MAX_PARK_NANOS);
+                        break;
+                    case DROP_OLDEST:
+                        if (ring.discard()) {
+                            dropped.increment();
+                        }
+                        break;
+                    default:
+                        rejected.increment();
+                        return false;
+                }
+            }
+            return true;
+        } finally {
+            ring.writers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Queues every reading of a batch, in batch order, as by {@link #offer}.
+     *
+     * @param batch the readings, left as they are
+     * @return the number of readings refused
+     */
+    public int offer(SampleBatch batch) {
+        int refused = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (!offer(batch.patientIdAt(i), batch.signalIdAt(i), batch.timestampAt(i), batch.valueAt(i))) {
+                refused++;
+            }
+        }
+        return refused;
+    }
+
+    /**
+     * Stops accepting readings and waits until the queued ones have been
+     * stored.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread consumer : consumers) {
+            LockSupport.unpark(consumer);
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /** The number of readings waiting to be stored. */
+    public int getQueueDepth() {
+        long depth = 0;
+        for (Ring ring : rings) {
+            depth += ring.size();
+        }
+        return (int) depth;
+    }
+
+    /** How long the oldest reading still queued has waited, in milliseconds, or 0. */
+    public double getLagMillis() {
+        long now = System.nanoTime();
+        long lag = 0;
+        for (Ring ring : rings) {
+            lag = Math.max(lag, ring.age(now));
+        }
+        return lag / 1e6;
+    }
+
+    /** The number of readings offered, including dropped and refused ones. */
+    public long getOfferedCount() {
+        return offered.sum();
+    }
+
+    /** The number of queued readings dropped to make room for newer ones. */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /** The number of readings refused because a ring was full or the queue closed. */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /** The number of readings added to the storage. */
+    public long getStoredCount() {
+        return stored.sum();
+    }
+
+    /** The number of readings lost because the storage failed to add their batch. */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /** The number of batches added to the storage. */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /** The mean time from offering a reading to its being stored, in milliseconds. */
+    public double getAverageLatencyMillis() {
+        long count = stored.sum();
+        return count == 0 ? 0 : latencyNanos.sum() / 1e6 / count;
+    }
+
+    /** The longest time from offering a reading to its being stored, in milliseconds. */
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / 1e6;
+    }
+
+    private void run(Ring ring) {
+        SampleBatch batch = new SampleBatch(MAX_BATCH);
+        long[] offeredAt = new long[MAX_BATCH];
+        long park = MIN_PARK_NANOS;
+        while (true) {
+            int count = 0;
+            while (count < MAX_BATCH && ring.poll(batch, offeredAt, count)) {
+                count++;
+            }
+            if (count == 0) {
+                // Read in the opposite order to offer(): closed, then the writers, then the ring
+                if (closed && ring.writers.get() == 0 && ring.size() == 0) {
+                    return;
+                }
+                LockSupport.parkNanos(park);
+                park = Math.min(park * 2, MAX_PARK_NANOS);
+                continue;
+            }
+            park = MIN_PARK_NANOS;
+            try {
+                storage.addPatientDataBatch(batch);
+            } catch (RuntimeException e) {
+                failed.add(count);
+                batch.clear();
+                logger.log(Level.SEVERE, "Unexpected error storing " + count + " readings", e);
+                continue;
+            }
+            long now = System.nanoTime();
+            long total = 0;
+            for (int i = 0; i < count; i++) {
+                total += now - offeredAt[i];
+            }
+            latencyNanos.add(total);
+            maxLatencyNanos.accumulateAndGet(now - offeredAt[0], Math::max);
+            stored.add(count);
+            batches.increment();
+            batch.clear();
+        }
+    }
+
+    /**
+     * A bounded ring of readings, after Dmitry Vyukov's bounded queue. Each
+     * slot has a sequence number telling whose turn it is: a slot at position
+     * p is free to write while its sequence is p, and holds a reading to take
+     * while it is p + 1. Writers claim positions by moving the tail; the
+     * consumer, and writers dropping the oldest reading, claim them by moving
+     * the head, and free the slot for the next lap.
+     */
+    private static final class Ring {
+        final int mask;
+        final AtomicLongArray sequences;
+        final int[] patientIds;
+        final int[] signalIds;
+        final long[] timestamps;
+        final double[] values;
+        final long[] offeredAt;
+        final AtomicLong tail = new AtomicLong();
+        final AtomicLong head = new AtomicLong();
+        final AtomicInteger writers = new AtomicInteger(); // Producers inside offer()
+
+        Ring(int capacity) {
+            mask = capacity - 1;
+            sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+            patientIds = new int[capacity];
+            signalIds = new int[capacity];
+            timestamps = new long[capacity];
+            values = new double[capacity];
+            offeredAt = new long[capacity];
+        }
+
+        /** Writes a reading, or returns false if the ring is full. */
+        boolean offer(int patientId, int signalId, long timestamp, double value, long now) {
+            long position = tail.get();
+            while (true) {
+                int slot = (int) position & mask;
+                long turn = sequences.get(slot) - position;
+                if (turn == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        patientIds[slot] = patientId;
+                        signalIds[slot] = signalId;
+                        timestamps[slot] = timestamp;
+                        values[slot] = value;
+                        offeredAt[slot] = now;
+                        sequences.set(slot, position + 1); // Publishes the reading
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (turn < 0) {
+                    return false; // The slot still holds the reading of the previous lap
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        /** Takes the oldest reading into a batch, or returns false if the ring is empty. */
+        boolean poll(SampleBatch batch, long[] offeredAtOut, int index) {
+            long position = claimHead();
+            if (position < 0) {
+                return false;
+            }
+            int slot = (int) position & mask;
+            batch.add(patientIds[slot], values[slot], signalIds[slot], timestamps[slot]);
+            offeredAtOut[index] = offeredAt[slot];
+            sequences.set(slot, position + mask + 1);
+            return true;
+        }
+
+        /** Drops the oldest reading, or returns false if the ring is empty. */
+        boolean discard() {
+            long position = claimHead();
+            if (position < 0) {
+                return false;
+            }
+            sequences.set((int) position & mask, position + mask + 1);
+            return true;
+        }
+
+        /** Moves the head past a published reading, returning its position, or -1 if there is none. */
+        private long claimHead() {
+            long position = head.get();
+            while (true) {
+                int slot = (int) position & mask;
+                long turn = sequences.get(slot) - (position + 1);
+                if (turn == 0) {
+                    if (head.compareAndSet(position, position + 1)) {
+                        return position;
+                    }
+                    position = head.get();
+                } else if (turn < 0) {
+                    return -1;
+                } else {
+                    position = head.get();
+                }
+            }
+        }
+
+        long size() {
+            return Math.max(0, tail.get() - head.get());
+        }
+
+        /** How long the reading at the head has waited, or 0; a racy read, good enough for a gauge. */
+        long age(long now) {
+            long position = head.get();
+            int slot = (int) position & mask;
+            if (sequences.get(slot) != position + 1) {
+                return 0;
+            }
+            return Math.max(0, now - offeredAt[slot]);
+        }
+    }
+}
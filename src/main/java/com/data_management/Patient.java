@@ -1,6 +1,7 @@
 package com.data_management;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -8,26 +9,43 @@ import java.util.List;
  * This class stores patient-specific data, allowing for the addition and
  * retrieval
  * of medical records based on specified criteria.
+ * Records are stored column-wise, one {@link SignalSeries} per record type,
+ * and are only materialized as {@link PatientRecord} objects when queried.
+ * Records may be added and queried from several threads at once.
+ * How much history is kept for each record type is set by the patient's
+ * {@link RetentionPolicy}.
  */
 public class Patient {
     private int patientId;
-    private List<PatientRecord> patientRecords;
+    private final RetentionPolicy retentionPolicy;
+    private volatile SignalSeries[] series; // Indexed by signal ID, see SignalRegistry
 
     /**
-     * Constructs a new Patient with a specified ID.
-     * Initializes an empty list of patient records.
+     * Constructs a new Patient with a specified ID that keeps all of its records.
+     * Initializes an empty set of signal series.
      *
      * @param patientId the unique identifier for the patient
      */
     public Patient(int patientId) {
+        this(patientId, RetentionPolicy.unbounded());
+    }
+
+    /**
+     * Constructs a new Patient with a specified ID and retention policy.
+     * Initializes an empty set of signal series.
+     *
+     * @param patientId       the unique identifier for the patient
+     * @param retentionPolicy how much history to keep per record type
+     */
+    public Patient(int patientId, RetentionPolicy retentionPolicy) {
         this.patientId = patientId;
-        this.patientRecords = new ArrayList<>();
+        this.retentionPolicy = retentionPolicy;
+        this.series = new SignalSeries[0];
     }
 
     /**
-     * Adds a new record to this patient's list of medical records.
-     * The record is created with the specified measurement value, record type, and
-     * timestamp.
+     * Adds a new record to this patient's medical records.
+     * The sample is appended to the series of the given record type.
      *
      * @param measurementValue the measurement value to store in the record
      * @param recordType       the type of record, e.g., "HeartRate",
@@ -36,8 +54,7 @@ public class Patient {
      *                         milliseconds since UNIX epoch
      */
     public void addRecord(double measurementValue, String recordType, long timestamp) {
-        PatientRecord record = new PatientRecord(this.patientId, measurementValue, recordType, timestamp);
-        this.patientRecords.add(record);
+        seriesFor(SignalRegistry.idOf(recordType)).append(timestamp, measurementValue);
     }
 
     /**
@@ -48,18 +65,138 @@ public class Patient {
      * @param startTime the start of the time range, in milliseconds since UNIX
      *                  epoch
      * @param endTime   the end of the time range, in milliseconds since UNIX epoch
-     * @return a list of PatientRecord objects that fall within the specified time
-     *         range
+     * @return a read-only list of PatientRecord objects that fall within the
+     *         specified time range, ordered by timestamp
      */
     public List<PatientRecord> getRecords(long startTime, long endTime) {
-        List<PatientRecord> filteredRecords = new ArrayList<>();
-        for (PatientRecord record : patientRecords) {
-            if (record.getTimestamp() >= startTime && record.getTimestamp() <= endTime) {
-                filteredRecords.add(record);
+        SignalSeries[] current = series;
+        SignalSeries.Snapshot[] matching = new SignalSeries.Snapshot[current.length];
+        int[] from = new int[current.length];
+        int[] to = new int[current.length];
+        int count = 0;
+        for (SignalSeries signal : current) {
+            if (signal != null) {
+                SignalSeries.Snapshot snapshot = signal.snapshot();
+                int first = snapshot.lowerBound(startTime);
+                int last = snapshot.upperBound(endTime);
+                if (first < last) {
+                    matching[count] = snapshot;
+                    from[count] = first;
+                    to[count] = last;
+                    count++;
+                }
+            }
+        }
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        return new RecordRangeView(patientId, Arrays.copyOf(matching, count),
+                Arrays.copyOf(from, count), Arrays.copyOf(to, count));
+    }
+
+    /**
+     * Retrieves the records of a single record type that fall within a specified
+     * time range.
+     *
+     * @param recordType the type of record, e.g., "ECG"
+     * @param startTime  the start of the time range, in milliseconds since UNIX
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @return a read-only list of matching records, ordered by timestamp
+     */
+    public List<PatientRecord> getRecords(String recordType, long startTime, long endTime) {
+        SignalSeries signal = getSeries(recordType);
+        if (signal == null) {
+            return Collections.emptyList();
+        }
+        return signal.view(patientId, startTime, endTime);
+    }
+
+    /**
+     * Retrieves pre-aggregated buckets of one record type that overlap a
+     * specified time range, without reading the raw samples.
+     *
+     * @param recordType the type of record, e.g., "SystolicPressure"
+     * @param startTime  the start of the time range, in milliseconds since UNIX
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @param resolution the bucket width
+     * @return the buckets in time order
+     */
+    public List<Aggregate> getAggregates(String recordType, long startTime, long endTime, Resolution resolution) {
+        SignalSeries signal = getSeries(recordType);
+        if (signal == null) {
+            return Collections.emptyList();
+        }
+        return signal.aggregates(startTime, endTime, resolution);
+    }
+
+    /**
+     * Returns the series holding this patient's samples of the given record type.
+     *
+     * @param recordType the type of record
+     * @return the series, or {@code null} if no sample of that type was recorded
+     */
+    public SignalSeries getSeries(String recordType) {
+        int signalId = SignalRegistry.find(recordType);
+        SignalSeries[] current = series;
+        return signalId >= 0 && signalId < current.length ? current[signalId] : null;
+    }
+
+    /**
+     * Returns an estimate of the heap memory used by this patient's records.
+     *
+     * @return the number of bytes used across all record types
+     */
+    public long getBytesUsed() {
+        long bytes = 0;
+        for (SignalSeries signal : series) {
+            if (signal != null) {
+                bytes += signal.bytesUsed();
             }
         }
-        return filteredRecords;
+        return bytes;
+    }
+
+    /**
+     * Returns an estimate of the heap memory used by this patient's records of
+     * one record type.
+     *
+     * @param recordType the type of record
+     * @return the number of bytes used, or 0 if no record of that type exists
+     */
+    public long getBytesUsed(String recordType) {
+        SignalSeries signal = getSeries(recordType);
+        return signal == null ? 0 : signal.bytesUsed();
     }
 
     public int getId() { return patientId; }
+
+    /**
+     * Returns all series of this patient, indexed by signal ID. Slots of record
+     * types without data are {@code null}.
+     */
+    SignalSeries[] allSeries() {
+        return series;
+    }
+
+    SignalSeries seriesFor(int signalId) {
+        SignalSeries[] current = series;
+        if (signalId < current.length && current[signalId] != null) {
+            return current[signalId];
+        }
+        synchronized (this) {
+            current = series;
+            if (signalId < current.length && current[signalId] != null) {
+                return current[signalId];
+            }
+            // Copy on write, so readers iterating the old array are unaffected
+            SignalSeries[] updated = Arrays.copyOf(current, Math.max(current.length, signalId + 1));
+            SignalSeries signal = new SignalSeries(signalId, retentionPolicy.retentionMillis(signalId),
+                    retentionPolicy.maxSamples(signalId), retentionPolicy.compressAfterMillis());
+            updated[signalId] = signal;
+            series = updated;
+            return signal;
+        }
+    }
 }
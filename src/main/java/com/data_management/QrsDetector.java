@@ -0,0 +1,280 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Finds heart beats (R peaks) in the ECG samples of one patient as they
+ * arrive, with a Pan–Tompkins filter chain:
+ *
+ * <ol>
+ *   <li>a 5–15 Hz band-pass, as a high-pass and a low-pass biquad, which
+ *       keeps the QRS complex and drops baseline wander, P and T waves;</li>
+ *   <li>a five-point derivative, which stresses the steep QRS slopes;</li>
+ *   <li>squaring, which makes every slope positive and favors large ones;</li>
+ *   <li>a 150 ms moving-window integral, which merges the slopes of one QRS
+ *       into a single hump;</li>
+ *   <li>adaptive thresholds between running estimates of the signal and the
+ *       noise peaks of the integral, learned over the first two seconds,
+ *       with a 200 ms refractory period, a T-wave test that takes a hump
+ *       within 360 ms of the last beat (or the first hump after learning)
+ *       for a T wave if its steepest slope is less than half that of the
+ *       last beat, and a search back for a beat missed when none is found
+ *       within 166% of the average RR interval.</li>
+ * </ol>
+ *
+ * <p>Each sample costs O(1) and the state is a few dozen numbers, so one
+ * detector per patient scales to many patients at a few hundred hertz. The
+ * filters assume the samples are evenly spaced at the given rate; all
+ * intervals are measured on the sample timestamps. A gap of more than two
+ * seconds restarts the learning phase.
+ *
+ * <p>Not thread-safe.
+ */
+public final class QrsDetector {
+    /** The lowest sampling rate the filters work at. */
+    public static final int MIN_SAMPLE_RATE = 100;
+    /** No beat is reported until this long after the start or a gap. */
+    static final long LEARNING_MILLIS = 2000;
+    private static final long REFRACTORY_MILLIS = 200;
+    private static final long T_WAVE_MILLIS = 360;
+    private static final long MAX_GAP_MILLIS = 2000;
+    private static final int RR_AVERAGE_BEATS = 8;
+
+    private final int sampleRate;
+    // Band-pass biquads, direct form I
+    private final double[] highPass;
+    private final double[] lowPass;
+    private double hx1, hx2, hy1, hy2;
+    private double lx1, lx2, ly1, ly2;
+    // The last four band-passed samples, for the derivative
+    private double d1, d2, d3, d4;
+    // Moving-window integral over the squared derivative
+    private final double[] window;
+    private int windowIndex;
+    private double windowSum;
+    private final long delayMillis;
+
+    private long lastTimestamp = Long.MIN_VALUE;
+    private long learningUntil;
+    private double learningMax;
+    private double learningSum;
+    private long learningCount;
+    private double learningSlope;
+
+    private double signalLevel; // SPKI
+    private double noiseLevel;  // NPKI
+    // The hump of the integral being climbed, or just passed, and the time of its R peak
+    private double peak;
+    private long peakTime;
+    private double rPeak;
+    private long rPeakTime;
+    private double humpSlope; // The steepest slope of the hump
+    private double beatSlope; // The steepest slope of the last beat
+    // The largest hump since the last beat that was taken for noise, for the search back
+    private double missed;
+    private long missedTime = Long.MIN_VALUE;
+
+    private long lastBeat = Long.MIN_VALUE;
+    private final long[] rrIntervals = new long[RR_AVERAGE_BEATS];
+    private int rrCount;
+    private int rrNext;
+    private long rrSum;
+
+    /**
+     * @param sampleRate the sampling rate of the ECG, in hertz
+     * @throws IllegalArgumentException if the rate is below {@link #MIN_SAMPLE_RATE}
+     */
+    public QrsDetector(int sampleRate) {
+        if (sampleRate < MIN_SAMPLE_RATE) {
+            throw new IllegalArgumentException("QRS detection needs at least " + MIN_SAMPLE_RATE
+                    + " Hz, not " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+        this.highPass = biquad(5, sampleRate, true);
+        this.lowPass = biquad(15, sampleRate, false);
+        this.window = new double[Math.max(1, Math.round(0.150f * sampleRate))];
+        // The band-pass delays the R peak by its group delay at the heart of the QRS band
+        this.delayMillis = Math.round(groupDelaySamples(10) * 1000 / sampleRate);
+        restart(Long.MIN_VALUE);
+    }
+
+    /** Butterworth biquad coefficients {b0, b1, b2, a1, a2}, normalized by a0. */
+    private static double[] biquad(double cutoff, int sampleRate, boolean highPass) {
+        double w = 2 * Math.PI * cutoff / sampleRate;
+        double alpha = Math.sin(w) / (2 * Math.sqrt(0.5));
+        double cos = Math.cos(w);
+        double a0 = 1 + alpha;
+        double b1 = highPass ? -(1 + cos) : 1 - cos;
+        double b0 = highPass ? (1 + cos) / 2 : (1 - cos) / 2;
+        return new double[] {b0 / a0, b1 / a0, b0 / a0, -2 * cos / a0, (1 - alpha) / a0};
+    }
+
+    /** The group delay of the band-pass at a frequency, in samples, from the slope of its phase. */
+    private double groupDelaySamples(double frequency) {
+        double w = 2 * Math.PI * frequency / sampleRate;
+        double dw = 1e-4;
+        return -(phase(w + dw) - phase(w - dw)) / (2 * dw);
+    }
+
+    private double phase(double w) {
+        return phase(highPass, w) + phase(lowPass, w);
+    }
+
+    private static double phase(double[] c, double w) {
+        double numerator = Math.atan2(-c[1] * Math.sin(w) - c[2] * Math.sin(2 * w),
+                c[0] + c[1] * Math.cos(w) + c[2] * Math.cos(2 * w));
+        double denominator = Math.atan2(-c[3] * Math.sin(w) - c[4] * Math.sin(2 * w),
+                1 + c[3] * Math.cos(w) + c[4] * Math.cos(2 * w));
+        return numerator - denominator;
+    }
+
+    private void restart(long timestamp) {
+        hx1 = hx2 = hy1 = hy2 = lx1 = lx2 = ly1 = ly2 = 0;
+        d1 = d2 = d3 = d4 = 0;
+        Arrays.fill(window, 0);
+        windowSum = 0;
+        learningUntil = timestamp == Long.MIN_VALUE ? Long.MIN_VALUE : timestamp + LEARNING_MILLIS;
+        learningMax = learningSum = learningSlope = 0;
+        learningCount = 0;
+        peak = 0;
+        missed = 0;
+        missedTime = Long.MIN_VALUE;
+        lastBeat = Long.MIN_VALUE;
+        rrCount = 0;
+        rrNext = 0;
+        rrSum = 0;
+    }
+
+    /**
+     * Feeds the next sample.
+     *
+     * @param timestamp the time of the sample, in milliseconds since the Unix
+     *                  epoch; samples not after the previous one are ignored
+     * @param value     the ECG value
+     * @return the time of the R peak of a beat found with this sample, or
+     *         {@code Long.MIN_VALUE} if none was
+     */
+    public long add(long timestamp, double value) {
+        if (lastTimestamp != Long.MIN_VALUE && timestamp <= lastTimestamp) {
+            return Long.MIN_VALUE;
+        }
+        if (lastTimestamp == Long.MIN_VALUE || timestamp - lastTimestamp > MAX_GAP_MILLIS) {
+            restart(timestamp);
+        }
+        lastTimestamp = timestamp;
+
+        double[] h = highPass;
+        double high = h[0] * value + h[1] * hx1 + h[2] * hx2 - h[3] * hy1 - h[4] * hy2;
+        hx2 = hx1;
+        hx1 = value;
+        hy2 = hy1;
+        hy1 = high;
+        double[] l = lowPass;
+        double band = l[0] * high + l[1] * lx1 + l[2] * lx2 - l[3] * ly1 - l[4] * ly2;
+        lx2 = lx1;
+        lx1 = high;
+        ly2 = ly1;
+        ly1 = band;
+
+        double slope = (2 * band + d1 - d3 - 2 * d4) * sampleRate / 8;
+        d4 = d3;
+        d3 = d2;
+        d2 = d1;
+        d1 = band;
+
+        double squared = slope * slope;
+        windowSum += squared - window[windowIndex];
+        window[windowIndex] = squared;
+        if (++windowIndex == window.length) {
+            windowIndex = 0;
+            windowSum = 0; // Once per window, so rounding errors do not add up
+            for (double term : window) {
+                windowSum += term;
+            }
+        }
+        double integral = Math.max(windowSum, 0) / window.length;
+
+        boolean learning = timestamp < learningUntil;
+        if (learning) {
+            learningMax = Math.max(learningMax, integral);
+            learningSum += integral;
+            learningSlope = Math.max(learningSlope, Math.abs(slope));
+            learningCount++;
+        } else if (learningCount > 0) {
+            signalLevel = learningMax / 3;
+            noiseLevel = learningSum / learningCount / 2;
+            beatSlope = learningSlope;
+            learningCount = 0;
+        }
+        humpSlope = Math.max(humpSlope, Math.abs(slope));
+
+        if (integral > peak) {
+            // Climbing a hump: the R peak is the largest band-passed sample on the way up
+            if (peak == 0) {
+                humpSlope = Math.abs(slope);
+            }
+            if (peak == 0 || Math.abs(band) > rPeak) {
+                rPeak = Math.abs(band);
+                rPeakTime = timestamp;
+            }
+            peak = integral;
+            peakTime = rPeakTime;
+            return Long.MIN_VALUE;
+        }
+        long beat = Long.MIN_VALUE;
+        if (learning) {
+            if (integral < peak / 2) {
+                peak = 0; // Humps are only followed, so the first one after learning starts at its foot
+            }
+        } else if (peak > 0 && integral < peak / 2) {
+            // Past a hump: a beat if it clears the threshold and the refractory period
+            double threshold = noiseLevel + 0.25 * (signalLevel - noiseLevel);
+            boolean refractory = lastBeat != Long.MIN_VALUE && peakTime - lastBeat < REFRACTORY_MILLIS;
+            boolean tWave = (lastBeat == Long.MIN_VALUE || peakTime - lastBeat < T_WAVE_MILLIS)
+                    && humpSlope < beatSlope / 2;
+            if (peak > threshold && !refractory && !tWave) {
+                signalLevel = 0.125 * peak + 0.875 * signalLevel;
+                beatSlope = humpSlope;
+                beat = beat(peakTime);
+            } else {
+                noiseLevel = 0.125 * peak + 0.875 * noiseLevel;
+                if (!refractory && !tWave && peak > missed) {
+                    missed = peak;
+                    missedTime = peakTime;
+                }
+            }
+            peak = 0;
+        }
+        if (beat == Long.MIN_VALUE && rrCount > 0 && missedTime != Long.MIN_VALUE
+                && timestamp - lastBeat > rrSum * 166 / (100 * rrCount)) {
+            // No beat for too long: take the largest hump since the last one at half the threshold
+            double threshold = noiseLevel + 0.25 * (signalLevel - noiseLevel);
+            if (missed > threshold / 2) {
+                signalLevel = 0.25 * missed + 0.75 * signalLevel;
+                beat = beat(missedTime);
+            } else {
+                missed = 0;
+                missedTime = Long.MIN_VALUE;
+            }
+        }
+        return beat;
+    }
+
+    private long beat(long peakTime) {
+        if (lastBeat != Long.MIN_VALUE) {
+            long rr = peakTime - lastBeat;
+            if (rrCount == RR_AVERAGE_BEATS) {
+                rrSum -= rrIntervals[rrNext];
+            } else {
+                rrCount++;
+            }
+            rrIntervals[rrNext] = rr;
+            rrSum += rr;
+            rrNext = (rrNext + 1) % RR_AVERAGE_BEATS;
+        }
+        lastBeat = peakTime;
+        missed = 0;
+        missedTime = Long.MIN_VALUE;
+        return peakTime - delayMillis;
+    }
+}
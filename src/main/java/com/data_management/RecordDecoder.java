@@ -0,0 +1,334 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Decodes one reading from a text message, as the WebSocket endpoints
+ * receive them, without allocating: the message is scanned once, numbers are
+ * parsed in place and the label is matched against the labels already seen,
+ * so a known label costs no String either. Both message forms are accepted,
+ * with or without field names:
+ *
+ * <pre>
+ * Patient ID: 1, Timestamp: 1700000000000, Label: ECG, Data: 0.58
+ * 1,1700000000000,ECG,0.58
+ * </pre>
+ *
+ * The fields must come in this order; their names are not checked. Data may
+ * end in "%", and the data of alerts is "triggered" or "resolved", decoded as
+ * 1 and 0 under the label "Alert", as {@link BulkLoader} and
+ * {@link FrameEncoder#parseData} store them. Earlier servers rejected alert
+ * messages, as their data is not a number. A message whose label is new is
+ * rejected once remote clients have registered
+ * {@link SignalRegistry#MAX_REMOTE_SIGNALS} record types.
+ *
+ * <p>A decoder keeps the fields of the last message it decoded, so each
+ * thread needs one of its own. Not thread-safe.
+ */
+public final class RecordDecoder {
+    /** The most fraction digits {@link #toDouble} converts. */
+    static final int MAX_FRACTION_DIGITS = 22;
+    /** The most labels a decoder keeps to match messages against. */
+    static final int MAX_CACHED_LABELS = 64;
+    private static final String ALERT = "Alert";
+    // Powers of ten that are exact doubles
+    private static final double[] POWERS_OF_TEN = new double[MAX_FRACTION_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private int patientId;
+    private long timestamp;
+    private int signalId;
+    private double value;
+
+    // The labels seen so far, with their signal IDs
+    private String[] labels = new String[8];
+    private int[] labelIds = new int[8];
+    private int labelCount;
+    private int replacedLabel; // The next label to replace once MAX_CACHED_LABELS are kept
+    private int lastLabel = -1;
+
+    private int position; // The scan position within the message being decoded
+    private long decodedCount;
+    private long rejectedCount;
+
+    /**
+     * Decodes a message. The fields are only replaced if it is well formed.
+     *
+     * @param message the message
+     * @return false if the message is not a reading
+     */
+    public boolean decode(String message) {
+        if (decodeFields(message)) {
+            decodedCount++;
+            return true;
+        }
+        rejectedCount++;
+        return false;
+    }
+
+    private boolean decodeFields(String message) {
+        int end = message.length();
+        position = 0;
+
+        int fieldEnd = fieldStart(message, end);
+        long id = parseDigits(message, fieldEnd, 10);
+        if (id < 0 || id > Integer.MAX_VALUE || position != fieldEnd) {
+            return false;
+        }
+        position = fieldEnd + 1;
+
+        fieldEnd = fieldStart(message, end);
+        long time = parseDigits(message, fieldEnd, 18);
+        if (time < 0 || position != fieldEnd) {
+            return false;
+        }
+        position = fieldEnd + 1;
+
+        fieldEnd = fieldStart(message, end);
+        int labelEnd = trimEnd(message, position, fieldEnd);
+        if (labelEnd == position || fieldEnd == end) {
+            return false;
+        }
+        int label = label(message, position, labelEnd);
+        if (label < 0) {
+            return false;
+        }
+        position = fieldEnd + 1;
+
+        fieldEnd = fieldStart(message, end);
+        if (fieldEnd != end) {
+            return false; // More than four fields
+        }
+        int dataEnd = trimEnd(message, position, end);
+        double data;
+        if (labels[label].equals(ALERT)) {
+            if (message.startsWith("triggered", position) && dataEnd - position == 9) {
+                data = 1;
+            } else if (message.startsWith("resolved", position) && dataEnd - position == 8) {
+                data = 0;
+            } else {
+                return false;
+            }
+        } else {
+            if (dataEnd > position && message.charAt(dataEnd - 1) == '%') {
+                dataEnd--;
+            }
+            data = parseDouble(message, position, dataEnd);
+            if (Double.isNaN(data) && !message.startsWith("NaN", position)) {
+                return false;
+            }
+        }
+
+        patientId = (int) id;
+        timestamp = time;
+        signalId = labelIds[label];
+        value = data;
+        return true;
+    }
+
+    /**
+     * Moves the position past the name of the field that starts there, if it
+     * has one, and past spaces.
+     *
+     * @return the index of the comma that ends the field, or the message end
+     */
+    private int fieldStart(String message, int end) {
+        int fieldEnd = position;
+        int valueStart = position;
+        while (fieldEnd < end) {
+            char c = message.charAt(fieldEnd);
+            if (c == ',') {
+                break;
+            }
+            if (c == ':') {
+                valueStart = fieldEnd + 1;
+            }
+            fieldEnd++;
+        }
+        position = valueStart;
+        while (position < fieldEnd && message.charAt(position) == ' ') {
+            position++;
+        }
+        return fieldEnd;
+    }
+
+    private static int trimEnd(String message, int start, int end) {
+        while (end > start && message.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Parses up to {@code maxDigits} digits at the position, and moves the
+     * position past them and any spaces after them.
+     *
+     * @return the number, or -1 if there are no digits or too many
+     */
+    private long parseDigits(String message, int end, int maxDigits) {
+        int start = position;
+        long number = 0;
+        while (position < end) {
+            char c = message.charAt(position);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if (position - start == maxDigits) {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+            position++;
+        }
+        if (position == start) {
+            return -1;
+        }
+        while (position < end && message.charAt(position) == ' ') {
+            position++;
+        }
+        return number;
+    }
+
+    /**
+     * Returns the index of a label among those kept, registering it if it is
+     * new, or -1 if it may not be registered, see
+     * {@link SignalRegistry#MAX_REMOTE_SIGNALS}. Once
+     * {@link #MAX_CACHED_LABELS} are kept, a new label replaces the oldest.
+     */
+    private int label(String message, int from, int to) {
+        int length = to - from;
+        if (lastLabel >= 0 && labels[lastLabel].length() == length
+                && message.regionMatches(from, labels[lastLabel], 0, length)) {
+            return lastLabel;
+        }
+        for (int i = 0; i < labelCount; i++) {
+            if (labels[i].length() == length && message.regionMatches(from, labels[i], 0, length)) {
+                return lastLabel = i;
+            }
+        }
+        String label = message.substring(from, to);
+        int signalId = SignalRegistry.remoteIdOf(label);
+        if (signalId < 0) {
+            return -1;
+        }
+        int index;
+        if (labelCount < MAX_CACHED_LABELS) {
+            if (labelCount == labels.length) {
+                labels = Arrays.copyOf(labels, labelCount * 2);
+                labelIds = Arrays.copyOf(labelIds, labelCount * 2);
+            }
+            index = labelCount++;
+        } else {
+            index = replacedLabel;
+            replacedLabel = (replacedLabel + 1) % MAX_CACHED_LABELS;
+        }
+        labels[index] = label;
+        labelIds[index] = signalId;
+        return lastLabel = index;
+    }
+
+    /**
+     * Parses a decimal number in place; anything but plain decimals of up to
+     * 18 significant digits goes through {@link Double#parseDouble}.
+     *
+     * @return the number, or NaN if the text is not one
+     */
+    static double parseDouble(String message, int from, int to) {
+        int index = from;
+        boolean negative = index < to && message.charAt(index) == '-';
+        if (negative) {
+            index++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+        int start = index;
+        for (; index < to; index++) {
+            char c = message.charAt(index);
+            if (c >= '0' && c <= '9') {
+                if (digits == 18) {
+                    return slowParse(message, from, to);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+                if (fraction >= 0) {
+                    fraction++;
+                }
+            } else if (c == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                return slowParse(message, from, to);
+            }
+        }
+        if (index - start - (fraction < 0 ? 0 : 1) == 0 || fraction > MAX_FRACTION_DIGITS) {
+            return slowParse(message, from, to);
+        }
+        double result = toDouble(mantissa, Math.max(fraction, 0));
+        return negative ? -result : result;
+    }
+
+    private static double slowParse(String message, int from, int to) {
+        try {
+            return Double.parseDouble(message.substring(from, to));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Converts {@code mantissa / 10^fractionDigits} to the nearest double,
+     * for a mantissa below 10^18 and up to 22 fraction digits. The digits
+     * are divided by the power of ten, both exact below 2^53 so the quotient
+     * is correctly rounded; larger mantissas correct the quotient by the
+     * remainder, which rounds like {@link Double#parseDouble} except possibly
+     * within a hair of a halfway case.
+     */
+    static double toDouble(long mantissa, int fractionDigits) {
+        if (fractionDigits == 0) {
+            return mantissa;
+        }
+        double divisor = POWERS_OF_TEN[fractionDigits];
+        if (mantissa < 1L << 53) {
+            return mantissa / divisor;
+        }
+        double high = mantissa;
+        long low = mantissa - (long) high;
+        double quotient = high / divisor;
+        double remainder = Math.fma(-quotient, divisor, high);
+        return quotient + (remainder + low) / divisor;
+    }
+
+    /** The number of messages this decoder decoded. */
+    public long getDecodedCount() {
+        return decodedCount;
+    }
+
+    /** The number of messages this decoder rejected as not readings, or of a record type it may not register. */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /** The record type, see {@link SignalRegistry}. */
+    public int getSignalId() {
+        return signalId;
+    }
+
+    public double getValue() {
+        return value;
+    }
+}
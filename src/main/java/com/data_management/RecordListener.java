@@ -0,0 +1,23 @@
+package com.data_management;
+
+/**
+ * Receives every record added to a {@link DataStorage} through
+ * {@link DataStorage#addPatientData}, right after it has been stored.
+ *
+ * <p>Listeners are called on the thread that added the record, possibly from
+ * many threads at once, so they should be thread-safe and return quickly.
+ */
+@FunctionalInterface
+public interface RecordListener {
+
+    /**
+     * Called after a record has been stored.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param signalId         the record type, see {@link SignalRegistry}
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     * @param measurementValue the measured value
+     */
+    void recordAdded(int patientId, int signalId, long timestamp, double measurementValue);
+}
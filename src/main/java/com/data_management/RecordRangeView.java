@@ -0,0 +1,100 @@
+package com.data_management;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only list of {@link PatientRecord} objects backed directly by the
+ * columnar samples of one or more {@link SignalSeries.Snapshot}s.
+ * Records are created on access rather than copied up front. When the view
+ * spans several series, the records are merged by timestamp; the merge order is
+ * computed the first time the view is indexed.
+ * Since snapshots never change, samples added to the series after the view
+ * was created do not show up in it.
+ */
+public class RecordRangeView extends AbstractList<PatientRecord> implements RandomAccess {
+    private final int patientId;
+    private final SignalSeries.Snapshot[] series;
+    private final String[] recordTypes;
+    private final int[] from;
+    private final int[] to;
+    private final int size;
+
+    // Lazily built merge order {series, index}, only used when the view spans several series
+    private volatile int[][] merged;
+
+    /**
+     * Constructs a view over the ranges {@code [from[i], to[i])} of each snapshot.
+     *
+     * @param patientId the patient the series belong to
+     * @param series    the series snapshots to view
+     * @param from      the first index of each series range, inclusive
+     * @param to        the last index of each series range, exclusive
+     */
+    RecordRangeView(int patientId, SignalSeries.Snapshot[] series, int[] from, int[] to) {
+        this.patientId = patientId;
+        this.series = series;
+        this.recordTypes = new String[series.length];
+        this.from = from;
+        this.to = to;
+        int total = 0;
+        for (int i = 0; i < series.length; i++) {
+            recordTypes[i] = SignalRegistry.nameOf(series[i].getSignalId());
+            total += to[i] - from[i];
+        }
+        this.size = total;
+    }
+
+    @Override
+    public PatientRecord get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int slot;
+        int position;
+        if (from.length == 1) {
+            slot = 0;
+            position = from[0] + index;
+        } else {
+            int[][] order = merged;
+            if (order == null) {
+                order = merge();
+                merged = order;
+            }
+            slot = order[0][index];
+            position = order[1][index];
+        }
+        SignalSeries.Snapshot snapshot = series[slot];
+        return new PatientRecord(patientId, snapshot.valueAt(position), recordTypes[slot],
+                snapshot.timestampAt(position));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private int[][] merge() {
+        int[] order = new int[size];
+        int[] positions = new int[size];
+        int[] cursor = from.clone();
+        long[] heads = new long[from.length];
+        for (int i = 0; i < from.length; i++) {
+            heads[i] = cursor[i] < to[i] ? series[i].timestampAt(cursor[i]) : Long.MAX_VALUE;
+        }
+        for (int out = 0; out < size; out++) {
+            int best = -1;
+            for (int i = 0; i < cursor.length; i++) {
+                if (cursor[i] < to[i] && (best < 0 || heads[i] < heads[best])) {
+                    best = i;
+                }
+            }
+            order[out] = best;
+            positions[out] = cursor[best]++;
+            if (cursor[best] < to[best]) {
+                heads[best] = series[best].timestampAt(cursor[best]);
+            }
+        }
+        return new int[][]{order, positions};
+    }
+}
@@ -0,0 +1,53 @@
+package com.data_management;
+
+/**
+ * The bucket widths at which {@link DataStorage} keeps pre-aggregated
+ * {@link Aggregate rollups} of every series. Each resolution keeps a bounded
+ * number of buckets, so finer rollups cover a shorter span of history; none
+ * outlive the retention of their series.
+ */
+public enum Resolution {
+    /** One-second buckets, kept for up to five minutes. */
+    SECOND(1000L, 5 * 60),
+    /** One-minute buckets, kept for up to a day. */
+    MINUTE(60 * 1000L, 24 * 60),
+    /** One-hour buckets, kept for up to 30 days. */
+    HOUR(60 * 60 * 1000L, 30 * 24);
+
+    private final long millis;
+    private final int maxBuckets;
+
+    Resolution(long millis, int maxBuckets) {
+        this.millis = millis;
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * Returns the width of a bucket.
+     *
+     * @return the width, in milliseconds
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Returns how many buckets of this resolution a series keeps at most.
+     *
+     * @return the bucket bound
+     */
+    public int getMaxBuckets() {
+        return maxBuckets;
+    }
+
+    /**
+     * Returns the start of the bucket holding the given time. Buckets are
+     * aligned to the Unix epoch.
+     *
+     * @param timestamp a time, in milliseconds since the Unix epoch
+     * @return the start of its bucket
+     */
+    public long bucketStart(long timestamp) {
+        return Math.floorDiv(timestamp, millis) * millis;
+    }
+}
@@ -0,0 +1,158 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Describes how much history {@link DataStorage} keeps for each record type.
+ * Every record type is bounded twice: by age, relative to the newest sample of
+ * the series, and by a maximum number of samples. The sample bound fixes the
+ * memory a patient can use for a signal, so the footprint of a patient is known
+ * when it is admitted; see {@link #maxBytesPerSeries(String)}.
+ * Samples older than the hot window of {@link #compressAfter(long)} are kept
+ * compressed.
+ */
+public class RetentionPolicy {
+    /** Samples that fit the sample bound of a series that is never trimmed. */
+    public static final int UNBOUNDED_SAMPLES = Integer.MAX_VALUE;
+
+    private static final long SECOND = 1000L;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long HOUR = 60 * MINUTE;
+
+    private long defaultRetentionMillis;
+    private int defaultMaxSamples;
+    private long[] retentionMillis = new long[0]; // Indexed by signal ID, 0 means "use the default"
+    private int[] maxSamples = new int[0];
+    private long compressAfterMillis = Long.MAX_VALUE;
+
+    /**
+     * Constructs a policy that applies the given bounds to every record type
+     * without a bound of its own.
+     *
+     * @param defaultRetentionMillis how long samples are kept, in milliseconds
+     * @param defaultMaxSamples      the maximum number of samples kept per series
+     */
+    public RetentionPolicy(long defaultRetentionMillis, int defaultMaxSamples) {
+        this.defaultRetentionMillis = defaultRetentionMillis;
+        this.defaultMaxSamples = defaultMaxSamples;
+    }
+
+    /**
+     * Returns a policy that never drops data.
+     *
+     * @return an unbounded retention policy
+     */
+    public static RetentionPolicy unbounded() {
+        return new RetentionPolicy(Long.MAX_VALUE, UNBOUNDED_SAMPLES);
+    }
+
+    /**
+     * Returns the policy for a long-running monitor, as the simulator's
+     * storage uses; {@link DataStorage#DataStorage()} keeps everything
+     * instead, see {@link #unbounded()}. It keeps 15 minutes of raw ECG at up
+     * to 250 Hz, an hour of blood pressure and saturation, and 24 hours of
+     * everything else at up to 1 Hz, which covers the 1-10 minute windows of
+     * the alert rules. History older than those 10 minutes is compressed.
+     *
+     * @return the default retention policy
+     */
+    public static RetentionPolicy defaults() {
+        return new RetentionPolicy(24 * HOUR, 24 * 60 * 60)
+                .retain("ECG", 15 * MINUTE, 250 * 15 * 60)
+                .retain("SystolicPressure", HOUR, 60 * 60)
+                .retain("DiastolicPressure", HOUR, 60 * 60)
+                .retain("Saturation", HOUR, 60 * 60)
+                .compressAfter(10 * MINUTE);
+    }
+
+    /**
+     * Compresses samples once they are older than the given age, relative to the
+     * newest sample of their series. Queries over compressed history decode it
+     * on the fly, so the window should cover what alert rules read on every
+     * evaluation.
+     *
+     * @param millis the age after which samples are compressed
+     * @return this policy
+     */
+    public synchronized RetentionPolicy compressAfter(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Compression window must be positive");
+        }
+        this.compressAfterMillis = millis;
+        return this;
+    }
+
+    /**
+     * Returns how old samples must be before they are compressed.
+     *
+     * @return the age in milliseconds, or {@code Long.MAX_VALUE} if samples are
+     *         never compressed
+     */
+    public synchronized long compressAfterMillis() {
+        return compressAfterMillis;
+    }
+
+    /**
+     * Sets the bounds for one record type.
+     *
+     * @param recordType      the type of record, e.g., "ECG"
+     * @param retentionMillis how long samples are kept, in milliseconds
+     * @param maxSamples      the maximum number of samples kept per patient
+     * @return this policy
+     */
+    public synchronized RetentionPolicy retain(String recordType, long retentionMillis, int maxSamples) {
+        if (retentionMillis <= 0 || maxSamples <= 0) {
+            throw new IllegalArgumentException("Retention bounds must be positive for " + recordType);
+        }
+        int signalId = SignalRegistry.idOf(recordType);
+        if (signalId >= this.retentionMillis.length) {
+            this.retentionMillis = Arrays.copyOf(this.retentionMillis, signalId + 1);
+            this.maxSamples = Arrays.copyOf(this.maxSamples, signalId + 1);
+        }
+        this.retentionMillis[signalId] = retentionMillis;
+        this.maxSamples[signalId] = maxSamples;
+        return this;
+    }
+
+    /**
+     * Returns how long samples of the given signal are kept.
+     *
+     * @param signalId the signal ID
+     * @return the retention, in milliseconds
+     */
+    public synchronized long retentionMillis(int signalId) {
+        if (signalId < retentionMillis.length && retentionMillis[signalId] != 0) {
+            return retentionMillis[signalId];
+        }
+        return defaultRetentionMillis;
+    }
+
+    /**
+     * Returns how many samples of the given signal are kept per patient.
+     *
+     * @param signalId the signal ID, or -1 for a record type that is not
+     *                 registered, which has the default bound
+     * @return the maximum number of samples
+     */
+    public synchronized int maxSamples(int signalId) {
+        if (signalId >= 0 && signalId < maxSamples.length && maxSamples[signalId] != 0) {
+            return maxSamples[signalId];
+        }
+        return defaultMaxSamples;
+    }
+
+    /**
+     * Returns the most memory one patient's series of the given record type can
+     * use under this policy.
+     *
+     * @param recordType the type of record
+     * @return the bound in bytes, or {@code Long.MAX_VALUE} if the type is unbounded
+     */
+    public long maxBytesPerSeries(String recordType) {
+        int samples = maxSamples(SignalRegistry.find(recordType));
+        if (samples == UNBOUNDED_SAMPLES) {
+            return Long.MAX_VALUE;
+        }
+        return SignalSeries.maxBytes(samples);
+    }
+}
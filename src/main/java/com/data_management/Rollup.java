@@ -0,0 +1,213 @@
+package com.data_management;
+
+import java.util.List;
+
+/**
+ * Incrementally maintained min, max, sum, count and last value per time bucket
+ * of one series at one {@link Resolution}.
+ *
+ * <p>Buckets are kept in parallel arrays used as a ring, oldest first. The ring
+ * grows up to a fixed number of buckets, after which the oldest bucket is
+ * dropped for each new one. Buckets entirely outside the retention window of
+ * the series are dropped as well.
+ *
+ * <p>Not thread-safe: the owning {@link SignalSeries} updates and reads it
+ * while holding its own lock.
+ */
+final class Rollup {
+    private static final int INITIAL_CAPACITY = 4;
+    // Object header, fields and seven array headers, rounded up
+    private static final long OBJECT_BYTES = 48 + 7 * 16;
+    // start, min, max, sum, last, last timestamp and count
+    private static final long BUCKET_BYTES = 6 * 8 + 4;
+
+    private final long width;
+    private final int maxBuckets;
+    private long[] starts;
+    private double[] mins;
+    private double[] maxes;
+    private double[] sums;
+    private double[] lasts;
+    private long[] lastTimestamps;
+    private int[] counts;
+    private int head;
+    private int size;
+
+    Rollup(Resolution resolution, int maxBuckets) {
+        this.width = resolution.getMillis();
+        this.maxBuckets = maxBuckets;
+        allocate(Math.min(INITIAL_CAPACITY, maxBuckets));
+    }
+
+    /**
+     * Adds a sample to its bucket.
+     *
+     * @param cutoff buckets ending at or before this time are dropped
+     */
+    void add(long timestamp, double value, long cutoff) {
+        long start = Math.floorDiv(timestamp, width) * width;
+        int index;
+        if (size > 0 && starts[slot(size - 1)] == start) {
+            index = size - 1; // The common case: the newest bucket
+        } else if (size == 0 || starts[slot(size - 1)] < start) {
+            expire(cutoff);
+            if (size == maxBuckets) {
+                drop(1);
+            }
+            index = insert(size, start);
+        } else {
+            index = search(start);
+            if (index < 0) {
+                index = -index - 1;
+                if (index == 0 && size == maxBuckets) {
+                    return; // Older than everything kept
+                }
+                if (start + width <= cutoff) {
+                    return;
+                }
+                if (size == maxBuckets) {
+                    drop(1);
+                    index--;
+                }
+                index = insert(index, start);
+            }
+        }
+
+        int slot = slot(index);
+        if (counts[slot] == 0) {
+            mins[slot] = value;
+            maxes[slot] = value;
+            lasts[slot] = value;
+            lastTimestamps[slot] = timestamp;
+        } else {
+            mins[slot] = Math.min(mins[slot], value);
+            maxes[slot] = Math.max(maxes[slot], value);
+            if (timestamp >= lastTimestamps[slot]) {
+                lasts[slot] = value;
+                lastTimestamps[slot] = timestamp;
+            }
+        }
+        sums[slot] += value;
+        counts[slot]++;
+    }
+
+    /**
+     * Adds the buckets overlapping {@code [startTime, endTime]} to the list, in
+     * time order.
+     */
+    void collect(long startTime, long endTime, List<Aggregate> out) {
+        int index = search(Math.floorDiv(startTime, width) * width);
+        for (int i = index < 0 ? -index - 1 : index; i < size; i++) {
+            int slot = slot(i);
+            if (starts[slot] > endTime) {
+                break;
+            }
+            out.add(new Aggregate(starts[slot], starts[slot] + width, mins[slot], maxes[slot], sums[slot],
+                    counts[slot], lasts[slot]));
+        }
+    }
+
+    long bytes() {
+        return bytesFor(starts.length);
+    }
+
+    static long bytesFor(int capacity) {
+        return OBJECT_BYTES + BUCKET_BYTES * capacity;
+    }
+
+    private int slot(int index) {
+        int slot = head + index;
+        return slot < starts.length ? slot : slot - starts.length;
+    }
+
+    /** Binary search by bucket start; returns {@code -(insertion point) - 1} if absent. */
+    private int search(long start) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midStart = starts[slot(mid)];
+            if (midStart < start) {
+                low = mid + 1;
+            } else if (midStart > start) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -low - 1;
+    }
+
+    private void expire(long cutoff) {
+        int expired = 0;
+        while (expired < size && starts[slot(expired)] + width <= cutoff) {
+            expired++;
+        }
+        drop(expired);
+    }
+
+    private void drop(int count) {
+        for (int i = 0; i < count; i++) {
+            counts[slot(i)] = 0;
+        }
+        head = slot(count);
+        size -= count;
+    }
+
+    /** Opens an empty bucket at the given position, shifting newer buckets up. */
+    private int insert(int index, long start) {
+        if (size == starts.length) {
+            grow();
+        }
+        for (int i = size; i > index; i--) {
+            int to = slot(i);
+            int from = slot(i - 1);
+            starts[to] = starts[from];
+            mins[to] = mins[from];
+            maxes[to] = maxes[from];
+            sums[to] = sums[from];
+            lasts[to] = lasts[from];
+            lastTimestamps[to] = lastTimestamps[from];
+            counts[to] = counts[from];
+        }
+        size++;
+        int slot = slot(index);
+        starts[slot] = start;
+        sums[slot] = 0;
+        counts[slot] = 0;
+        return index;
+    }
+
+    private void grow() {
+        long[] oldStarts = starts;
+        double[] oldMins = mins;
+        double[] oldMaxes = maxes;
+        double[] oldSums = sums;
+        double[] oldLasts = lasts;
+        long[] oldLastTimestamps = lastTimestamps;
+        int[] oldCounts = counts;
+        int oldHead = head;
+        allocate(Math.min(oldStarts.length * 2, maxBuckets));
+        for (int i = 0; i < size; i++) {
+            int from = (oldHead + i) % oldStarts.length;
+            starts[i] = oldStarts[from];
+            mins[i] = oldMins[from];
+            maxes[i] = oldMaxes[from];
+            sums[i] = oldSums[from];
+            lasts[i] = oldLasts[from];
+            lastTimestamps[i] = oldLastTimestamps[from];
+            counts[i] = oldCounts[from];
+        }
+    }
+
+    private void allocate(int capacity) {
+        starts = new long[capacity];
+        mins = new double[capacity];
+        maxes = new double[capacity];
+        sums = new double[capacity];
+        lasts = new double[capacity];
+        lastTimestamps = new long[capacity];
+        counts = new int[capacity];
+        head = 0;
+    }
+}
@@ -0,0 +1,214 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * A reusable batch of samples, of any patients and record types, to add to a
+ * {@link DataStorage} in one call to {@link DataStorage#addPatientDataBatch}.
+ * The samples are kept in primitive arrays that grow as needed and are kept
+ * across {@link #clear()}, so a batch reused by one thread stops allocating
+ * once it has held its largest batch.
+ *
+ * <p>Not thread-safe; each thread needs a batch of its own.
+ */
+public final class SampleBatch {
+
+    private int[] patientIds;
+    private int[] signalIds;
+    private long[] timestamps;
+    private double[] values;
+    private int size;
+
+    // The samples grouped by patient and record type, see group()
+    private long[] groupedTimestamps = new long[0];
+    private double[] groupedValues = new double[0];
+    private int[] groupOf = new int[0];
+    private int[] groupStarts = new int[1];
+    private int[] groupPatients = new int[0];
+    private int[] groupSignals = new int[0];
+    private int groupCount;
+    private long[] slotKeys = new long[0];
+    private int[] slotGroups = new int[0];
+
+    /** Creates a batch with room for 16 samples before it grows. */
+    public SampleBatch() {
+        this(16);
+    }
+
+    /**
+     * @param capacity the number of samples the batch holds before it grows
+     */
+    public SampleBatch(int capacity) {
+        capacity = Math.max(capacity, 1);
+        patientIds = new int[capacity];
+        signalIds = new int[capacity];
+        timestamps = new long[capacity];
+        values = new double[capacity];
+    }
+
+    /**
+     * Adds a sample.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric being recorded
+     * @param signalId         the record type, see {@link SignalRegistry}
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     * @throws IllegalArgumentException if no record type has the signal ID
+     */
+    public void add(int patientId, double measurementValue, int signalId, long timestamp) {
+        if (signalId < 0 || signalId >= SignalRegistry.count()) {
+            throw new IllegalArgumentException("Unknown signal ID: " + signalId);
+        }
+        if (size == patientIds.length) {
+            int capacity = size * 2;
+            patientIds = Arrays.copyOf(patientIds, capacity);
+            signalIds = Arrays.copyOf(signalIds, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        patientIds[size] = patientId;
+        signalIds[size] = signalId;
+        timestamps[size] = timestamp;
+        values[size] = measurementValue;
+        size++;
+    }
+
+    /**
+     * Adds a sample of a record type given by its label.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric being recorded
+     * @param recordType       the type of record, e.g., "HeartRate"
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     */
+    public void add(int patientId, double measurementValue, String recordType, long timestamp) {
+        add(patientId, measurementValue, SignalRegistry.idOf(recordType), timestamp);
+    }
+
+    /** The number of samples in the batch. */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Removes all samples, keeping the arrays for the next batch. */
+    public void clear() {
+        size = 0;
+    }
+
+    int patientIdAt(int index) {
+        return patientIds[index];
+    }
+
+    int signalIdAt(int index) {
+        return signalIds[index];
+    }
+
+    long timestampAt(int index) {
+        return timestamps[index];
+    }
+
+    double valueAt(int index) {
+        return values[index];
+    }
+
+    /**
+     * Groups the samples by patient and record type into the grouped arrays,
+     * a counting sort that keeps the order of the samples within a group.
+     *
+     * @return the number of groups
+     */
+    int group() {
+        if (groupedTimestamps.length < size) {
+            groupedTimestamps = new long[patientIds.length];
+            groupedValues = new double[patientIds.length];
+            groupOf = new int[patientIds.length];
+        }
+        int slots = Integer.highestOneBit(Math.max(size, 2) * 2);
+        if (slotKeys.length < slots) {
+            slotKeys = new long[slots];
+            slotGroups = new int[slots];
+        }
+        Arrays.fill(slotGroups, 0, slots, -1);
+        groupCount = 0;
+        // Consecutive samples are mostly of the same group, so check the last one first
+        long lastKey = 0;
+        int lastGroup = -1;
+        for (int i = 0; i < size; i++) {
+            long key = (long) patientIds[i] << 32 | signalIds[i];
+            if (lastGroup < 0 || key != lastKey) {
+                lastGroup = groupIndex(key, slots, i);
+                lastKey = key;
+            }
+            groupOf[i] = lastGroup;
+            groupStarts[lastGroup + 1]++;
+        }
+        for (int g = 0; g < groupCount; g++) {
+            groupStarts[g + 1] += groupStarts[g];
+        }
+        // Scatter, moving each group's start forward as it fills, then shift the starts back
+        for (int i = 0; i < size; i++) {
+            int at = groupStarts[groupOf[i]]++;
+            groupedTimestamps[at] = timestamps[i];
+            groupedValues[at] = values[i];
+        }
+        for (int g = groupCount; g > 0; g--) {
+            groupStarts[g] = groupStarts[g - 1];
+        }
+        groupStarts[0] = 0;
+        return groupCount;
+    }
+
+    /** Returns the group of a patient and record type, creating it from sample {@code i} if it is new. */
+    private int groupIndex(long key, int slots, int i) {
+        int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & (slots - 1);
+        while (slotGroups[slot] >= 0) {
+            if (slotKeys[slot] == key) {
+                return slotGroups[slot];
+            }
+            slot = (slot + 1) & (slots - 1);
+        }
+        int group = groupCount++;
+        if (group == groupPatients.length) {
+            int capacity = Math.max(4, group * 2);
+            groupPatients = Arrays.copyOf(groupPatients, capacity);
+            groupSignals = Arrays.copyOf(groupSignals, capacity);
+            groupStarts = Arrays.copyOf(groupStarts, capacity + 1);
+        }
+        groupPatients[group] = patientIds[i];
+        groupSignals[group] = signalIds[i];
+        groupStarts[group + 1] = 0;
+        slotKeys[slot] = key;
+        slotGroups[slot] = group;
+        return group;
+    }
+
+    int groupPatient(int group) {
+        return groupPatients[group];
+    }
+
+    int groupSignal(int group) {
+        return groupSignals[group];
+    }
+
+    int groupStart(int group) {
+        return groupStarts[group];
+    }
+
+    int groupLength(int group) {
+        return groupStarts[group + 1] - groupStarts[group];
+    }
+
+    long[] groupedTimestamps() {
+        return groupedTimestamps;
+    }
+
+    double[] groupedValues() {
+        return groupedValues;
+    }
+}
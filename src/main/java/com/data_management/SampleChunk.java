@@ -0,0 +1,103 @@
+package com.data_management;
+
+/**
+ * A block of consecutive samples of one series, stored as parallel timestamp
+ * and value arrays. The newest chunk of a series is always a sample chunk.
+ * Samples below {@link #size} are never modified once published; the series
+ * writer only writes past the end and then bumps the size, or replaces the
+ * chunk with a modified copy.
+ */
+final class SampleChunk extends Chunk {
+    /** Number of samples a chunk holds once fully grown. */
+    static final int MAX_SAMPLES = 1024;
+
+    // Object header, two array references and the size, rounded up
+    private static final long OBJECT_BYTES = 24;
+    private static final long ARRAY_HEADER_BYTES = 16;
+
+    final long[] timestamps;
+    final double[] values;
+    volatile int size;
+    boolean keepRaw; // Set by the series writer once sealing is found not to pay off
+
+    SampleChunk(int capacity) {
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+    }
+
+    int capacity() {
+        return timestamps.length;
+    }
+
+    @Override
+    long firstTimestamp() {
+        return timestamps[0];
+    }
+
+    @Override
+    long lastTimestamp(int size) {
+        return timestamps[size - 1];
+    }
+
+    @Override
+    SampleChunk samples() {
+        return this;
+    }
+
+    /**
+     * Returns a copy of the first {@code count} samples in a chunk of the given
+     * capacity.
+     */
+    SampleChunk copy(int count, int capacity) {
+        SampleChunk copy = new SampleChunk(capacity);
+        System.arraycopy(timestamps, 0, copy.timestamps, 0, count);
+        System.arraycopy(values, 0, copy.values, 0, count);
+        copy.size = count;
+        return copy;
+    }
+
+    /**
+     * Returns the index of the first of the first {@code count} samples with a
+     * timestamp not before the given time, or {@code count} if there is none.
+     */
+    int lowerBound(long timestamp, int count) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first of the first {@code count} samples with a
+     * timestamp after the given time, or {@code count} if there is none.
+     */
+    int upperBound(long timestamp, int count) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    long bytes() {
+        return bytesFor(capacity());
+    }
+
+    static long bytesFor(int capacity) {
+        return OBJECT_BYTES + 2 * (ARRAY_HEADER_BYTES + 8L * capacity);
+    }
+}
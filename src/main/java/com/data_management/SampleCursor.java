@@ -0,0 +1,120 @@
+package com.data_management;
+
+/**
+ * A reusable, forward-moving cursor over the samples of one record type of one
+ * patient within a time range, yielding primitive timestamps and values.
+ * Position it with
+ * {@link DataStorage#query(int, String, long, long, SampleCursor)}; neither
+ * positioning nor iterating allocates, so one cursor can serve any number of
+ * queries. Like a snapshot, the cursor sees the samples that were published
+ * when it was positioned.
+ *
+ * <pre>{@code
+ * SampleCursor cursor = new SampleCursor();
+ * storage.query(patientId, "Saturation", start, end, cursor);
+ * while (cursor.next()) {
+ *     process(cursor.getTimestamp(), cursor.getValue());
+ * }
+ * }</pre>
+ *
+ * <p>A cursor is not thread-safe; use one per thread.
+ */
+public final class SampleCursor {
+    private final DecodeBuffer buffer = new DecodeBuffer();
+    private SignalSeries.ChunkList list;
+    private int tailSize;
+    private int from;
+    private int end;
+    private int position;
+    private int chunkStart;
+    private int chunkEnd;
+    private SampleChunk samples;
+    private long timestamp;
+    private double value;
+
+    /**
+     * Constructs an empty cursor.
+     */
+    public SampleCursor() {
+    }
+
+    /**
+     * Moves to the next sample.
+     *
+     * @return false if there are no more samples in the range
+     */
+    public boolean next() {
+        if (position >= end) {
+            return false;
+        }
+        if (samples == null || position < chunkStart || position >= chunkEnd) {
+            int chunk = list.chunkOf(position);
+            chunkStart = list.starts[chunk];
+            chunkEnd = chunkStart + list.chunkSize(chunk, tailSize);
+            samples = buffer.samples(list, chunk);
+        }
+        int index = position - chunkStart;
+        timestamp = samples.timestamps[index];
+        value = samples.values[index];
+        position++;
+        return true;
+    }
+
+    /**
+     * Positions the cursor so that the next call to {@link #next()} returns the
+     * sample with the given index within the range.
+     *
+     * @param index the index, from 0 to {@link #size()}
+     * @throws IndexOutOfBoundsException if the index is outside the range
+     */
+    public void seek(int index) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " outside range of size " + size());
+        }
+        position = from + index;
+    }
+
+    /**
+     * Returns the number of samples in the range.
+     *
+     * @return the number of samples
+     */
+    public int size() {
+        return end - from;
+    }
+
+    /**
+     * Returns the timestamp of the current sample.
+     *
+     * @return the time of the sample, in milliseconds since the Unix epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the value of the current sample.
+     *
+     * @return the measured value
+     */
+    public double getValue() {
+        return value;
+    }
+
+    void reset(SignalSeries.ChunkList list, int tailSize, int from, int end) {
+        this.list = list;
+        this.tailSize = tailSize;
+        this.from = from;
+        this.end = Math.max(from, end);
+        this.position = from;
+        this.samples = null;
+    }
+
+    void clear() {
+        reset(null, 0, 0, 0);
+    }
+
+    DecodeBuffer buffer() {
+        return buffer;
+    }
+}
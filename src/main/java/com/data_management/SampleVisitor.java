@@ -0,0 +1,18 @@
+package com.data_management;
+
+/**
+ * Receives the samples of a query one at a time as primitive values, see
+ * {@link DataStorage#forEach(int, String, long, long, SampleVisitor)}.
+ */
+@FunctionalInterface
+public interface SampleVisitor {
+
+    /**
+     * Called for each sample, in timestamp order.
+     *
+     * @param timestamp the time of the sample, in milliseconds since the Unix
+     *                  epoch
+     * @param value     the measured value
+     */
+    void accept(long timestamp, double value);
+}
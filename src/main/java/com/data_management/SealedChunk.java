@@ -0,0 +1,274 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * An immutable chunk whose samples are compressed into a bit stream, in the
+ * style of Facebook's Gorilla time-series store.
+ *
+ * <p>Timestamps are stored as the difference between consecutive deltas
+ * (delta-of-delta), which is 0 or close to it for samples taken at a steady
+ * rate: one bit per sample when the interval is exact, seven when it jitters by
+ * a few milliseconds. Values are XORed with the previous value; repeats cost one
+ * bit and slowly changing values only store their differing middle bits.
+ * Most signals, such as blood pressure and saturation, only ever hold whole
+ * numbers, for which the XOR of two nearby values still spans a dozen mantissa
+ * bits. A chunk whose values are all integral therefore stores the integer
+ * difference to the previous value instead, which costs a few bits.
+ *
+ * <p>Samples are decoded back into a {@link SampleChunk} only when a query
+ * reaches into the chunk; the chunk itself keeps no decoded copy.
+ */
+final class SealedChunk extends Chunk {
+    // Object header, the bit stream reference, size and first and last timestamps, rounded up
+    private static final long OBJECT_BYTES = 40;
+    private static final long ARRAY_HEADER_BYTES = 16;
+    // Bit widths of the small, medium and large buckets of a delta; larger deltas take 64 bits
+    private static final int[] TIMESTAMP_WIDTHS = {5, 9, 12};
+    private static final int[] INTEGER_WIDTHS = {4, 10, 20};
+
+    private final long[] bits;
+    private final int size;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+
+    private SealedChunk(long[] bits, int size, long firstTimestamp, long lastTimestamp) {
+        this.bits = bits;
+        this.size = size;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    /**
+     * Compresses the first {@code size} samples of a chunk.
+     *
+     * @return the sealed chunk, or {@code null} if it would not be smaller than
+     *         the raw chunk
+     */
+    static SealedChunk seal(SampleChunk chunk, int size) {
+        long[] timestamps = chunk.timestamps;
+        double[] values = chunk.values;
+        // Worst case per sample: 68 bits of timestamp and 77 bits of value
+        BitWriter out = new BitWriter(new long[(int) ((size * 145L + 128) / 64) + 1]);
+        boolean integral = isIntegral(values, size);
+        out.write(integral ? 1 : 0, 1);
+        out.write(timestamps[0], 64);
+        long previousBits = Double.doubleToRawLongBits(values[0]);
+        out.write(previousBits, 64);
+
+        long previousTimestamp = timestamps[0];
+        long previousDelta = 0;
+        int leading = -1;
+        int trailing = 0;
+        for (int i = 1; i < size; i++) {
+            long delta = timestamps[i] - previousTimestamp;
+            long deltaOfDelta = delta - previousDelta;
+            previousTimestamp = timestamps[i];
+            previousDelta = delta;
+            writeDelta(out, deltaOfDelta, TIMESTAMP_WIDTHS);
+
+            if (integral) {
+                writeDelta(out, (long) values[i] - (long) values[i - 1], INTEGER_WIDTHS);
+                continue;
+            }
+            long valueBits = Double.doubleToRawLongBits(values[i]);
+            long xor = valueBits ^ previousBits;
+            previousBits = valueBits;
+            if (xor == 0) {
+                out.write(0, 1);
+                continue;
+            }
+            int xorLeading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int xorTrailing = Long.numberOfTrailingZeros(xor);
+            if (leading >= 0 && xorLeading >= leading && xorTrailing >= trailing) {
+                // Fits the window of meaningful bits of the previous value
+                out.write(0b10, 2);
+                out.write(xor >>> trailing, 64 - leading - trailing);
+            } else {
+                int meaningful = 64 - xorLeading - xorTrailing;
+                out.write(0b11, 2);
+                out.write(xorLeading, 5);
+                out.write(meaningful - 1, 6);
+                out.write(xor >>> xorTrailing, meaningful);
+                leading = xorLeading;
+                trailing = xorTrailing;
+            }
+        }
+
+        int words = (out.position + 63) >>> 6;
+        if (OBJECT_BYTES + ARRAY_HEADER_BYTES + 8L * words >= SampleChunk.bytesFor(size)) {
+            return null;
+        }
+        return new SealedChunk(Arrays.copyOf(out.words, words), size, timestamps[0], timestamps[size - 1]);
+    }
+
+    int size() {
+        return size;
+    }
+
+    @Override
+    long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    @Override
+    long lastTimestamp(int size) {
+        return lastTimestamp;
+    }
+
+    /**
+     * Decodes the samples into a new raw chunk of exactly {@link #size()}
+     * samples.
+     */
+    @Override
+    SampleChunk samples() {
+        return decodeInto(new SampleChunk(size));
+    }
+
+    /**
+     * Decodes the samples into the given chunk, which must have room for
+     * {@link #size()} samples, and returns it.
+     */
+    SampleChunk decodeInto(SampleChunk chunk) {
+        long[] timestamps = chunk.timestamps;
+        double[] values = chunk.values;
+        BitReader in = new BitReader(bits);
+        boolean integral = in.read(1) != 0;
+        long timestamp = in.read(64);
+        long valueBits = in.read(64);
+        timestamps[0] = timestamp;
+        values[0] = Double.longBitsToDouble(valueBits);
+
+        long delta = 0;
+        int leading = 0;
+        int trailing = 0;
+        long integer = (long) values[0];
+        for (int i = 1; i < size; i++) {
+            delta += readDelta(in, TIMESTAMP_WIDTHS);
+            timestamp += delta;
+            timestamps[i] = timestamp;
+
+            if (integral) {
+                integer += readDelta(in, INTEGER_WIDTHS);
+                values[i] = integer;
+                continue;
+            }
+            if (in.read(1) != 0) {
+                if (in.read(1) != 0) {
+                    leading = (int) in.read(5);
+                    trailing = 64 - leading - ((int) in.read(6) + 1);
+                }
+                valueBits ^= in.read(64 - leading - trailing) << trailing;
+            }
+            values[i] = Double.longBitsToDouble(valueBits);
+        }
+        chunk.size = size;
+        return chunk;
+    }
+
+    /**
+     * Returns whether every value is a whole number that survives a round trip
+     * through {@code long}, which excludes NaN, infinities and negative zero.
+     */
+    private static boolean isIntegral(double[] values, int size) {
+        for (int i = 0; i < size; i++) {
+            double value = values[i];
+            if (Math.abs(value) >= 0x1p53
+                    || Double.doubleToRawLongBits((double) (long) value) != Double.doubleToRawLongBits(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a delta as a single 0 bit if it is zero, else as a prefix of ones
+     * selecting the smallest bucket it fits in, followed by its bits.
+     */
+    private static void writeDelta(BitWriter out, long delta, int[] widths) {
+        if (delta == 0) {
+            out.write(0, 1);
+            return;
+        }
+        for (int bucket = 0; bucket < widths.length; bucket++) {
+            long range = 1L << (widths[bucket] - 1);
+            if (delta >= -range && delta < range) {
+                out.write((1L << (bucket + 2)) - 2, bucket + 2);
+                out.write(delta, widths[bucket]);
+                return;
+            }
+        }
+        out.write((1L << (widths.length + 1)) - 1, widths.length + 1);
+        out.write(delta, 64);
+    }
+
+    private static long readDelta(BitReader in, int[] widths) {
+        if (in.read(1) == 0) {
+            return 0;
+        }
+        for (int width : widths) {
+            if (in.read(1) == 0) {
+                return in.readSigned(width);
+            }
+        }
+        return in.read(64);
+    }
+
+    @Override
+    long bytes() {
+        return OBJECT_BYTES + ARRAY_HEADER_BYTES + 8L * bits.length;
+    }
+
+    private static final class BitWriter {
+        final long[] words;
+        int position;
+
+        BitWriter(long[] words) {
+            this.words = words;
+        }
+
+        /** Appends the low {@code count} bits of the value, most significant first. */
+        void write(long value, int count) {
+            if (count < 64) {
+                value &= (1L << count) - 1;
+            }
+            int word = position >>> 6;
+            int free = 64 - (position & 63);
+            if (count <= free) {
+                words[word] |= value << (free - count);
+            } else {
+                int rest = count - free;
+                words[word] |= value >>> rest;
+                words[word + 1] |= value << (64 - rest);
+            }
+            position += count;
+        }
+    }
+
+    private static final class BitReader {
+        private final long[] words;
+        private int position;
+
+        BitReader(long[] words) {
+            this.words = words;
+        }
+
+        long read(int count) {
+            int word = position >>> 6;
+            int free = 64 - (position & 63);
+            long value;
+            if (count <= free) {
+                value = words[word] >>> (free - count);
+            } else {
+                int rest = count - free;
+                value = (words[word] << rest) | (words[word + 1] >>> (64 - rest));
+            }
+            position += count;
+            return count == 64 ? value : value & ((1L << count) - 1);
+        }
+
+        long readSigned(int count) {
+            return read(count) << (64 - count) >> (64 - count);
+        }
+    }
+}
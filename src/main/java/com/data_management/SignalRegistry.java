@@ -0,0 +1,141 @@
+package com.data_management;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns record type labels (e.g. "ECG", "SystolicPressure") to small, dense
+ * integer signal IDs.
+ * The IDs are stable for the lifetime of the process and can be used to index
+ * plain arrays instead of looking labels up in hash maps on every sample.
+ */
+public final class SignalRegistry {
+    /**
+     * The most record types that can be registered, so that signal IDs fit in
+     * the 15 bits the storage journal keeps of them.
+     */
+    public static final int MAX_SIGNALS = Short.MAX_VALUE + 1;
+    /**
+     * The most record types that labels received from remote clients may
+     * register over the lifetime of the process, so that a client sending
+     * made-up labels can neither fill the registry nor make every patient it
+     * touches allocate arrays for thousands of record types.
+     */
+    public static final int MAX_REMOTE_SIGNALS = 256;
+
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[0];
+    private static int remoteRegistered; // Guarded by the class lock
+
+    private SignalRegistry() {
+    }
+
+    /**
+     * Returns the signal ID for the given record type, registering it if it has
+     * not been seen before.
+     *
+     * @param recordType the record type label
+     * @return the dense signal ID of the record type
+     * @throws IllegalStateException if the record type is new and
+     *                               {@link #MAX_SIGNALS} are registered
+     */
+    public static int idOf(String recordType) {
+        int id = tryIdOf(recordType);
+        if (id < 0) {
+            throw new IllegalStateException("Cannot register more than " + MAX_SIGNALS + " record types: "
+                    + recordType);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the signal ID for the given record type, registering it if it
+     * has not been seen before and there is room.
+     *
+     * @param recordType the record type label
+     * @return the dense signal ID of the record type, or -1 if it is new and
+     * {@link #MAX_SIGNALS} are registered
+     */
+    static int tryIdOf(String recordType) {
+        Integer id = ids.get(recordType);
+        if (id != null) {
+            return id;
+        }
+        return register(recordType, false);
+    }
+
+    /**
+     * Returns the signal ID for a record type received from a remote client,
+     * registering it only while fewer than {@link #MAX_REMOTE_SIGNALS} record
+     * types have been registered this way.
+     *
+     * @param recordType the record type label
+     * @return the dense signal ID of the record type, or -1 if it is new and
+     * no more record types may be registered remotely
+     */
+    static int remoteIdOf(String recordType) {
+        Integer id = ids.get(recordType);
+        if (id != null) {
+            return id;
+        }
+        return register(recordType, true);
+    }
+
+    /**
+     * Returns the signal ID for the given record type without registering it,
+     * for reads, which should not grow the registry with labels no sample was
+     * ever stored under.
+     *
+     * @param recordType the record type label
+     * @return the dense signal ID of the record type, or -1 if it has not
+     * been registered
+     */
+    public static int find(String recordType) {
+        Integer id = ids.get(recordType);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the record type label registered under the given signal ID.
+     *
+     * @param signalId the signal ID
+     * @return the record type label
+     * @throws IllegalArgumentException if no record type has this ID
+     */
+    public static String nameOf(int signalId) {
+        String[] current = names;
+        if (signalId < 0 || signalId >= current.length) {
+            throw new IllegalArgumentException("Unknown signal ID: " + signalId);
+        }
+        return current[signalId];
+    }
+
+    /**
+     * Returns the number of signals registered so far. Valid signal IDs are
+     * {@code 0 .. count() - 1}.
+     *
+     * @return the number of registered signals
+     */
+    public static int count() {
+        return names.length;
+    }
+
+    private static synchronized int register(String recordType, boolean remote) {
+        Integer id = ids.get(recordType);
+        if (id != null) {
+            return id;
+        }
+        if (names.length == MAX_SIGNALS || remote && remoteRegistered == MAX_REMOTE_SIGNALS) {
+            return -1;
+        }
+        if (remote) {
+            remoteRegistered++;
+        }
+        String[] grown = Arrays.copyOf(names, names.length + 1);
+        grown[names.length] = recordType;
+        // Publish the name before the ID so nameOf never misses a returned ID
+        names = grown;
+        ids.put(recordType, names.length - 1);
+        return names.length - 1;
+    }
+}
@@ -0,0 +1,741 @@
+package com.data_management;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar storage for the samples of one signal of one patient.
+ * Timestamps and values are kept in parallel primitive arrays, so a sample
+ * costs 16 bytes instead of a boxed {@link PatientRecord} object plus the list
+ * slot that references it.
+ * Samples are kept sorted by timestamp so time ranges are located by binary
+ * search.
+ *
+ * <p>The arrays are split into chunks of up to {@link SampleChunk#MAX_SAMPLES}
+ * samples that form a bounded ring: once the series holds more history than its
+ * retention allows, the oldest chunk is dropped as a new one is started. The
+ * number of chunks, and so the memory of the series, never exceeds what
+ * {@link #maxBytes(int)} reports for its sample bound.
+ *
+ * <p>Chunks whose samples are all older than the hot window are sealed into a
+ * compressed {@link SealedChunk} when a new chunk starts, so history outside
+ * the window alert rules look at costs a fraction of the raw arrays. Sealed
+ * chunks are decoded only when a query reaches into them.
+ *
+ * <p>Every sample is also added to per-second, per-minute and per-hour
+ * {@link Rollup rollups}, so aggregates over long ranges are answered from a
+ * few buckets instead of the raw samples.
+ *
+ * <p>Writers are serialized on the series itself, so each series has a single
+ * writer at a time and different series never contend. Readers never lock:
+ * they work on a {@link Snapshot}, whose samples are never modified once
+ * published.
+ */
+public class SignalSeries {
+    private static final int INITIAL_CAPACITY = 16;
+    // Object header and fields of the series and its chunk list, rounded up
+    private static final long SERIES_BYTES = 64;
+    private static final long ARRAY_HEADER_BYTES = 16;
+
+    // The buffer forEach decodes sealed chunks into, per thread; taken while in use, so nested calls get their own
+    private static final ThreadLocal<DecodeBuffer> FOR_EACH_BUFFERS = new ThreadLocal<>();
+
+    private final int signalId;
+    private final long retentionMillis;
+    private final int maxSamples;
+    private final int chunkSamples;
+    private final long compressAfterMillis;
+    private final Rollup[] rollups; // Indexed by Resolution ordinal, guarded by the series lock
+    private volatile ChunkList chunks = new ChunkList(new Chunk[0], new int[0]);
+
+    /**
+     * Constructs an empty series for the given signal that never drops samples.
+     *
+     * @param signalId the signal ID, as assigned by {@link SignalRegistry}
+     */
+    public SignalSeries(int signalId) {
+        this(signalId, Long.MAX_VALUE, RetentionPolicy.UNBOUNDED_SAMPLES);
+    }
+
+    /**
+     * Constructs an empty series for the given signal with bounded retention.
+     *
+     * @param signalId        the signal ID, as assigned by {@link SignalRegistry}
+     * @param retentionMillis how long samples are kept, relative to the newest
+     *                        sample of the series
+     * @param maxSamples      the maximum number of samples kept
+     */
+    public SignalSeries(int signalId, long retentionMillis, int maxSamples) {
+        this(signalId, retentionMillis, maxSamples, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructs an empty series for the given signal with bounded retention
+     * that compresses samples once they leave the hot window.
+     *
+     * @param signalId            the signal ID, as assigned by {@link SignalRegistry}
+     * @param retentionMillis     how long samples are kept, relative to the newest
+     *                            sample of the series
+     * @param maxSamples          the maximum number of samples kept
+     * @param compressAfterMillis how old, relative to the newest sample, samples
+     *                            must be before they are compressed, or
+     *                            {@code Long.MAX_VALUE} to never compress
+     */
+    public SignalSeries(int signalId, long retentionMillis, int maxSamples, long compressAfterMillis) {
+        this.signalId = signalId;
+        this.retentionMillis = retentionMillis;
+        this.maxSamples = maxSamples;
+        this.chunkSamples = Math.min(SampleChunk.MAX_SAMPLES, maxSamples);
+        this.compressAfterMillis = compressAfterMillis;
+        Resolution[] resolutions = Resolution.values();
+        this.rollups = new Rollup[resolutions.length];
+        for (Resolution resolution : resolutions) {
+            rollups[resolution.ordinal()] = new Rollup(resolution, maxBuckets(resolution, maxSamples));
+        }
+    }
+
+    /**
+     * Adds a sample to the series, keeping the samples sorted by timestamp.
+     * In-order samples are written past the end of the newest chunk and then
+     * published by bumping its size. A sample older than the newest one is
+     * inserted after any samples with an equal timestamp into a copy of its
+     * chunk, so snapshots held by readers never see samples move underneath
+     * them. Samples that are already outside the retention window are ignored.
+     *
+     * @param timestamp the time of the sample, in milliseconds since UNIX epoch
+     * @param value     the measured value
+     */
+    public synchronized void append(long timestamp, double value) {
+        ChunkList current = chunks;
+        int count = current.chunks.length;
+        if (count == 0) {
+            SampleChunk first = new SampleChunk(Math.min(INITIAL_CAPACITY, chunkSamples));
+            first.timestamps[0] = timestamp;
+            first.values[0] = value;
+            first.size = 1;
+            chunks = new ChunkList(new Chunk[]{first}, new int[]{0});
+            rollUp(timestamp, value, timestamp);
+            return;
+        }
+        SampleChunk tail = (SampleChunk) current.chunks[count - 1];
+        int size = tail.size;
+        long newest = tail.timestamps[size - 1];
+        if (timestamp < newest) {
+            if (retentionMillis != Long.MAX_VALUE && timestamp < newest - retentionMillis) {
+                return; // Already expired
+            }
+            insert(current, timestamp, value);
+            rollUp(timestamp, value, newest);
+            return;
+        }
+        if (size < tail.capacity()) {
+            tail.timestamps[size] = timestamp;
+            tail.values[size] = value;
+            tail.size = size + 1; // Volatile write publishes the sample
+        } else if (tail.capacity() < chunkSamples) {
+            SampleChunk grown = tail.copy(size, Math.min(tail.capacity() * 2, chunkSamples));
+            grown.timestamps[size] = timestamp;
+            grown.values[size] = value;
+            grown.size = size + 1;
+            Chunk[] updated = current.chunks.clone();
+            updated[count - 1] = grown;
+            chunks = new ChunkList(updated, current.starts);
+        } else {
+            SampleChunk next = new SampleChunk(chunkSamples);
+            next.timestamps[0] = timestamp;
+            next.values[0] = value;
+            next.size = 1;
+            Chunk[] updated = Arrays.copyOf(current.chunks, count + 1);
+            updated[count] = next;
+            int[] starts = Arrays.copyOf(current.starts, count + 1);
+            starts[count] = starts[count - 1] + size;
+            sealCold(updated, starts, count - 1, timestamp);
+            chunks = trim(updated, starts, timestamp);
+        }
+        rollUp(timestamp, value, timestamp);
+    }
+
+    /**
+     * Adds a run of samples to the series. Runs that arrive in timestamp order
+     * are copied into the newest chunk in bulk and published with a single size
+     * update; any other sample goes through {@link #append(long, double)}.
+     *
+     * @param timestamps the times of the samples, in milliseconds since UNIX epoch
+     * @param values     the measured values
+     * @param offset     the index of the first sample to add
+     * @param length     the number of samples to add
+     */
+    public synchronized void appendAll(long[] timestamps, double[] values, int offset, int length) {
+        int index = offset;
+        int end = offset + length;
+        while (index < end) {
+            ChunkList current = chunks;
+            int count = current.chunks.length;
+            if (count > 0) {
+                SampleChunk tail = (SampleChunk) current.chunks[count - 1];
+                int size = tail.size;
+                int room = Math.min(tail.capacity() - size, end - index);
+                long last = tail.timestamps[size - 1];
+                int run = 0;
+                while (run < room && timestamps[index + run] >= last) {
+                    last = timestamps[index + run];
+                    run++;
+                }
+                if (run > 0) {
+                    System.arraycopy(timestamps, index, tail.timestamps, size, run);
+                    System.arraycopy(values, index, tail.values, size, run);
+                    tail.size = size + run;
+                    for (int i = index; i < index + run; i++) {
+                        rollUp(timestamps[i], values[i], timestamps[i]);
+                    }
+                    index += run;
+                    continue;
+                }
+            }
+            append(timestamps[index], values[index]);
+            index++;
+        }
+    }
+
+    /**
+     * Returns a read-only view of the samples with a timestamp within
+     * {@code [startTime, endTime]}. The range is located by binary search, so the
+     * cost does not depend on how much history the series holds.
+     *
+     * @param patientId the patient the series belongs to
+     * @param startTime the start of the time range, inclusive
+     * @param endTime   the end of the time range, inclusive
+     * @return a view of the matching samples, ordered by timestamp
+     */
+    public RecordRangeView view(int patientId, long startTime, long endTime) {
+        Snapshot snapshot = snapshot();
+        return new RecordRangeView(patientId, new Snapshot[]{snapshot},
+                new int[]{snapshot.lowerBound(startTime)}, new int[]{snapshot.upperBound(endTime)});
+    }
+
+    /**
+     * Returns the rollup buckets of the given resolution that overlap
+     * {@code [startTime, endTime]}. Buckets at the edges of the range cover
+     * their whole width, and ranges older than the buckets kept at that
+     * resolution return no buckets. The cost depends on the number of buckets,
+     * not on the number of samples in the range.
+     *
+     * @param startTime  the start of the time range, inclusive
+     * @param endTime    the end of the time range, inclusive
+     * @param resolution the bucket width
+     * @return the buckets in time order, each holding at least one sample
+     */
+    public synchronized List<Aggregate> aggregates(long startTime, long endTime, Resolution resolution) {
+        List<Aggregate> out = new ArrayList<>();
+        rollups[resolution.ordinal()].collect(startTime, endTime, out);
+        return out;
+    }
+
+    /**
+     * Returns a consistent, immutable snapshot of the retained samples.
+     * Taking a snapshot never blocks writers.
+     *
+     * @return the current snapshot
+     */
+    public Snapshot snapshot() {
+        ChunkList current = chunks;
+        int count = current.chunks.length;
+        if (count == 0) {
+            return new Snapshot(signalId, current, 0, 0, 0);
+        }
+        SampleChunk tail = (SampleChunk) current.chunks[count - 1];
+        int tailSize = tail.size;
+        int total = current.starts[count - 1] + tailSize;
+        Snapshot all = new Snapshot(signalId, current, tailSize, 0, total);
+        int first = firstRetained(current, tail, tailSize, all);
+        return first == 0 ? all : new Snapshot(signalId, current, tailSize, first, total - first);
+    }
+
+    /**
+     * Passes every sample with a timestamp within {@code [startTime, endTime]}
+     * to the visitor, in timestamp order. Sealed chunks are decoded into a
+     * buffer kept per thread, so once a thread has made its first call this
+     * does not allocate, unless the visitor itself calls {@code forEach}.
+     * Like a snapshot, it sees the samples published when the call starts.
+     *
+     * @param startTime the start of the time range, inclusive
+     * @param endTime   the end of the time range, inclusive
+     * @param visitor   receives each sample
+     * @return the number of samples visited
+     */
+    public int forEach(long startTime, long endTime, SampleVisitor visitor) {
+        ChunkList current = chunks;
+        int count = current.chunks.length;
+        if (count == 0) {
+            return 0;
+        }
+        SampleChunk tail = (SampleChunk) current.chunks[count - 1];
+        int tailSize = tail.size;
+        DecodeBuffer buffer = FOR_EACH_BUFFERS.get();
+        if (buffer == null) {
+            buffer = new DecodeBuffer();
+        } else {
+            FOR_EACH_BUFFERS.set(null);
+        }
+        try {
+            int from = Math.max(firstRetained(current, tail, tailSize, buffer),
+                    current.bound(startTime, false, tailSize, buffer));
+            int to = current.bound(endTime, true, tailSize, buffer);
+            if (from >= to) {
+                return 0;
+            }
+            int position = from;
+            for (int chunk = current.chunkOf(from); position < to; chunk++) {
+                SampleChunk samples = buffer.samples(current, chunk);
+                int chunkStart = current.starts[chunk];
+                int chunkEnd = Math.min(to, chunkStart + current.chunkSize(chunk, tailSize));
+                for (; position < chunkEnd; position++) {
+                    visitor.accept(samples.timestamps[position - chunkStart], samples.values[position - chunkStart]);
+                }
+            }
+            return to - from;
+        } finally {
+            FOR_EACH_BUFFERS.set(buffer);
+        }
+    }
+
+    /**
+     * Positions the cursor on the samples with a timestamp within
+     * {@code [startTime, endTime]}.
+     */
+    void seek(SampleCursor cursor, long startTime, long endTime) {
+        ChunkList current = chunks;
+        int count = current.chunks.length;
+        if (count == 0) {
+            cursor.clear();
+            return;
+        }
+        SampleChunk tail = (SampleChunk) current.chunks[count - 1];
+        int tailSize = tail.size;
+        DecodeBuffer buffer = cursor.buffer();
+        int from = Math.max(firstRetained(current, tail, tailSize, buffer),
+                current.bound(startTime, false, tailSize, buffer));
+        cursor.reset(current, tailSize, from, current.bound(endTime, true, tailSize, buffer));
+    }
+
+    /**
+     * Returns the position of the oldest sample within the retention bounds.
+     * Whole chunks are only dropped when a new one starts, so reads clip to the
+     * exact window themselves.
+     */
+    private int firstRetained(ChunkList list, SampleChunk tail, int tailSize, Decoder decoder) {
+        int total = list.starts[list.chunks.length - 1] + tailSize;
+        int first = Math.max(0, total - maxSamples);
+        if (retentionMillis != Long.MAX_VALUE) {
+            first = Math.max(first, list.bound(tail.timestamps[tailSize - 1] - retentionMillis, false, tailSize,
+                    decoder));
+        }
+        return first;
+    }
+
+    /**
+     * Returns the timestamp of the newest sample, or {@code Long.MIN_VALUE} if
+     * the series is empty.
+     */
+    long newestTimestamp() {
+        Chunk[] list = chunks.chunks;
+        if (list.length == 0) {
+            return Long.MIN_VALUE;
+        }
+        SampleChunk tail = (SampleChunk) list[list.length - 1];
+        int size = tail.size;
+        return size == 0 ? Long.MIN_VALUE : tail.timestamps[size - 1];
+    }
+
+    /**
+     * Returns whether the series holds a sample with exactly this timestamp and
+     * value. Used to replay the part of the log a snapshot may already hold.
+     */
+    boolean contains(long timestamp, double value) {
+        Snapshot snapshot = snapshot();
+        int end = snapshot.upperBound(timestamp);
+        for (int i = snapshot.lowerBound(timestamp); i < end; i++) {
+            if (Double.compare(snapshot.valueAt(i), value) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getSignalId() {
+        return signalId;
+    }
+
+    public int size() {
+        return snapshot().size();
+    }
+
+    /**
+     * Returns an estimate of the heap memory currently used by this series.
+     *
+     * @return the number of bytes used
+     */
+    public long bytesUsed() {
+        ChunkList current = chunks;
+        long bytes = SERIES_BYTES + 2 * (ARRAY_HEADER_BYTES + 4L * current.chunks.length);
+        for (Chunk chunk : current.chunks) {
+            bytes += chunk.bytes();
+        }
+        synchronized (this) {
+            for (Rollup rollup : rollups) {
+                bytes += rollup.bytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the most heap memory a series bounded to the given number of
+     * samples can use.
+     *
+     * @param maxSamples the sample bound of the series
+     * @return the bound in bytes
+     */
+    public static long maxBytes(int maxSamples) {
+        int chunkSamples = Math.min(SampleChunk.MAX_SAMPLES, maxSamples);
+        // One extra chunk, as the oldest is only dropped once a new one has started
+        long chunkCount = (maxSamples + chunkSamples - 1) / chunkSamples + 1;
+        long bytes = SERIES_BYTES + 2 * (ARRAY_HEADER_BYTES + 4L * chunkCount)
+                + chunkCount * SampleChunk.bytesFor(chunkSamples);
+        for (Resolution resolution : Resolution.values()) {
+            bytes += Rollup.bytesFor(maxBuckets(resolution, maxSamples));
+        }
+        return bytes;
+    }
+
+    /** Rollups never keep more buckets than the series keeps samples, so small series stay small. */
+    private static int maxBuckets(Resolution resolution, int maxSamples) {
+        return Math.min(resolution.getMaxBuckets(), maxSamples);
+    }
+
+    private void rollUp(long timestamp, double value, long newest) {
+        long cutoff = retentionMillis == Long.MAX_VALUE ? Long.MIN_VALUE : newest - retentionMillis;
+        for (Rollup rollup : rollups) {
+            rollup.add(timestamp, value, cutoff);
+        }
+    }
+
+    private void insert(ChunkList current, long timestamp, double value) {
+        Chunk[] list = current.chunks;
+        int count = list.length;
+        SampleChunk tail = (SampleChunk) list[count - 1];
+        long newest = tail.timestamps[tail.size - 1];
+
+        // Last chunk starting at or before the timestamp, or the first chunk
+        int low = 1;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (list[mid].firstTimestamp() <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int target = low - 1;
+        SampleChunk chunk = list[target].samples();
+        boolean isTail = target == count - 1;
+        int size = isTail ? tail.size : current.starts[target + 1] - current.starts[target];
+        int at = chunk.upperBound(timestamp, size);
+
+        Chunk[] updated;
+        int[] starts;
+        if (size < chunkSamples) {
+            int capacity = size + 1;
+            if (isTail) {
+                capacity = size < chunk.capacity() ? chunk.capacity() : Math.min(chunk.capacity() * 2, chunkSamples);
+            }
+            updated = list.clone();
+            updated[target] = slice(chunk, size, at, timestamp, value, 0, size + 1, capacity);
+            starts = current.starts.clone();
+            for (int i = target + 1; i < count; i++) {
+                starts[i]++;
+            }
+        } else {
+            // Split the full chunk in two halves
+            int half = (size + 1) / 2;
+            updated = new Chunk[count + 1];
+            System.arraycopy(list, 0, updated, 0, target);
+            System.arraycopy(list, target + 1, updated, target + 2, count - target - 1);
+            updated[target] = slice(chunk, size, at, timestamp, value, 0, half, half);
+            updated[target + 1] = slice(chunk, size, at, timestamp, value, half, size + 1,
+                    isTail ? chunkSamples : size + 1 - half);
+            starts = new int[count + 1];
+            System.arraycopy(current.starts, 0, starts, 0, target + 1);
+            starts[target + 1] = starts[target] + half;
+            for (int i = target + 2; i <= count; i++) {
+                starts[i] = current.starts[i - 1] + 1;
+            }
+        }
+        if (list[target] instanceof SealedChunk) {
+            // Keep late samples in cold history compressed
+            sealCold(updated, starts, updated.length > count ? target + 1 : target, newest);
+        }
+        chunks = trim(updated, starts, newest);
+    }
+
+    /**
+     * Copies the samples {@code [from, to)} of the chunk's first {@code size}
+     * samples with the given sample inserted at index {@code at}.
+     */
+    private static SampleChunk slice(SampleChunk chunk, int size, int at, long timestamp, double value,
+                                     int from, int to, int capacity) {
+        SampleChunk slice = new SampleChunk(capacity);
+        for (int i = from; i < to; i++) {
+            int out = i - from;
+            if (i < at) {
+                slice.timestamps[out] = chunk.timestamps[i];
+                slice.values[out] = chunk.values[i];
+            } else if (i == at) {
+                slice.timestamps[out] = timestamp;
+                slice.values[out] = value;
+            } else {
+                slice.timestamps[out] = chunk.timestamps[i - 1];
+                slice.values[out] = chunk.values[i - 1];
+            }
+        }
+        slice.size = to - from;
+        return slice;
+    }
+
+    /**
+     * Seals the chunks up to index {@code last} whose samples are all outside
+     * the hot window, newest first, stopping at the first chunk that is already
+     * settled. The newest chunk is never sealed, as it is still being written.
+     */
+    private void sealCold(Chunk[] list, int[] starts, int last, long newest) {
+        if (compressAfterMillis == Long.MAX_VALUE) {
+            return;
+        }
+        long cutoff = newest - compressAfterMillis;
+        for (int i = last; i >= 0; i--) {
+            if (!(list[i] instanceof SampleChunk)) {
+                break;
+            }
+            SampleChunk chunk = (SampleChunk) list[i];
+            int size = starts[i + 1] - starts[i];
+            if (chunk.keepRaw) {
+                break;
+            }
+            if (chunk.lastTimestamp(size) >= cutoff) {
+                continue;
+            }
+            SealedChunk sealed = SealedChunk.seal(chunk, size);
+            if (sealed == null) {
+                chunk.keepRaw = true;
+                break;
+            }
+            list[i] = sealed;
+        }
+    }
+
+    /**
+     * Drops the oldest chunks that are entirely outside the retention window or
+     * whose samples are no longer needed to hold {@code maxSamples} samples.
+     */
+    private ChunkList trim(Chunk[] list, int[] starts, long newest) {
+        int count = list.length;
+        int total = starts[count - 1] + ((SampleChunk) list[count - 1]).size;
+        long cutoff = retentionMillis == Long.MAX_VALUE ? Long.MIN_VALUE : newest - retentionMillis;
+        int drop = 0;
+        while (drop < count - 1) {
+            int next = starts[drop + 1];
+            boolean expired = list[drop].lastTimestamp(next - starts[drop]) < cutoff;
+            boolean surplus = total - next >= maxSamples;
+            if (!expired && !surplus) {
+                break;
+            }
+            drop++;
+        }
+        if (drop == 0) {
+            return new ChunkList(list, starts);
+        }
+        int base = starts[drop];
+        int[] shifted = new int[count - drop];
+        for (int i = 0; i < shifted.length; i++) {
+            shifted[i] = starts[drop + i] - base;
+        }
+        return new ChunkList(Arrays.copyOfRange(list, drop, count), shifted);
+    }
+
+    /**
+     * The chunks of a series in timestamp order, with the index of the first
+     * sample of each chunk. Replaced as a whole whenever a chunk is added,
+     * replaced or dropped. The size of the newest chunk is passed to the
+     * search methods, as it keeps growing after the list is published.
+     */
+    static final class ChunkList {
+        final Chunk[] chunks;
+        final int[] starts;
+
+        ChunkList(Chunk[] chunks, int[] starts) {
+            this.chunks = chunks;
+            this.starts = starts;
+        }
+
+        int chunkSize(int chunk, int tailSize) {
+            return chunk == chunks.length - 1 ? tailSize : starts[chunk + 1] - starts[chunk];
+        }
+
+        /** Returns the chunk holding the sample at the given position. */
+        int chunkOf(int position) {
+            int low = 0;
+            int high = chunks.length - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (starts[mid] <= position) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns the position of the first sample with a timestamp after
+         * ({@code upper}) or not before the given time.
+         */
+        int bound(long timestamp, boolean upper, int tailSize, Decoder decoder) {
+            // First chunk starting after the timestamp (upper) or not before it (lower)
+            int low = 0;
+            int high = chunks.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                long start = chunks[mid].firstTimestamp();
+                if (start < timestamp || (upper && start == timestamp)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            if (low == 0) {
+                return 0;
+            }
+            int chunk = low - 1;
+            int count = chunkSize(chunk, tailSize);
+            long last = chunks[chunk].lastTimestamp(count);
+            if (last < timestamp || (upper && last == timestamp)) {
+                return starts[chunk] + count; // Past the end of the chunk, no need to decode it
+            }
+            SampleChunk samples = decoder.samples(this, chunk);
+            int index = upper ? samples.upperBound(timestamp, count) : samples.lowerBound(timestamp, count);
+            return starts[chunk] + index;
+        }
+    }
+
+    /**
+     * Provides the raw samples of a chunk of a list, decoding sealed chunks.
+     */
+    interface Decoder {
+        SampleChunk samples(ChunkList list, int chunk);
+    }
+
+    /**
+     * An immutable, sorted set of samples of one series.
+     * A snapshot taken from {@link SignalSeries#snapshot()} sees exactly the
+     * retained samples that were published when it was taken, indexed from
+     * {@code 0} to {@code size() - 1}.
+     */
+    public static final class Snapshot implements Decoder {
+        private final int signalId;
+        private final ChunkList list;
+        private final int tailSize;
+        private final int first;
+        private final int size;
+        private Decoded decoded; // Last sealed chunk read through this snapshot
+
+        private Snapshot(int signalId, ChunkList list, int tailSize, int first, int size) {
+            this.signalId = signalId;
+            this.list = list;
+            this.tailSize = tailSize;
+            this.first = first;
+            this.size = size;
+        }
+
+        /**
+         * Returns the index of the first sample with a timestamp not before the
+         * given time, or {@link #size()} if there is none.
+         *
+         * @param timestamp the time to search for
+         * @return the index of the first sample at or after {@code timestamp}
+         */
+        public int lowerBound(long timestamp) {
+            return visible(list.bound(timestamp, false, tailSize, this));
+        }
+
+        /**
+         * Returns the index of the first sample with a timestamp after the given
+         * time, or {@link #size()} if there is none.
+         *
+         * @param timestamp the time to search for
+         * @return the index of the first sample after {@code timestamp}
+         */
+        public int upperBound(long timestamp) {
+            return visible(list.bound(timestamp, true, tailSize, this));
+        }
+
+        public int getSignalId() {
+            return signalId;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long timestampAt(int index) {
+            int position = first + index;
+            int chunk = list.chunkOf(position);
+            return samples(list, chunk).timestamps[position - list.starts[chunk]];
+        }
+
+        public double valueAt(int index) {
+            int position = first + index;
+            int chunk = list.chunkOf(position);
+            return samples(list, chunk).values[position - list.starts[chunk]];
+        }
+
+        /**
+         * Returns the raw samples of a chunk. A sealed chunk is decoded once and
+         * kept until a different sealed chunk is read, so sequential scans decode
+         * each chunk once.
+         */
+        @Override
+        public SampleChunk samples(ChunkList list, int chunk) {
+            Chunk block = list.chunks[chunk];
+            if (block instanceof SampleChunk) {
+                return (SampleChunk) block;
+            }
+            Decoded last = decoded;
+            if (last == null || last.chunk != chunk) {
+                last = new Decoded(chunk, block.samples());
+                decoded = last;
+            }
+            return last.samples;
+        }
+
+        private int visible(int position) {
+            return Math.min(Math.max(position - first, 0), size);
+        }
+    }
+
+    /**
+     * A decoded sealed chunk. Immutable, so a snapshot shared between threads
+     * can publish it through a plain field.
+     */
+    private static final class Decoded {
+        final int chunk;
+        final SampleChunk samples;
+
+        Decoded(int chunk, SampleChunk samples) {
+            this.chunk = chunk;
+            this.samples = samples;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes compact binary snapshots of a {@link DataStorage}.
+ * A snapshot holds every retained sample of every patient, with timestamps
+ * delta-encoded as variable-length numbers and values as raw doubles, plus
+ * the number of the first journal segment that is not covered by it.
+ */
+final class SnapshotFile {
+    private static final int MAGIC = 0x43534E50; // "CSNP"
+    private static final int VERSION = 1;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes a snapshot of the given patients. The file is written under a
+     * temporary name, forced to disk and then renamed, so a crash never leaves a
+     * partial snapshot behind.
+     *
+     * @return the number of samples written
+     */
+    static long write(Path file, long firstSegment, List<Patient> patients) throws IOException {
+        // Capture every series first, so the snapshot is as close to one point in time as possible
+        int[] patientIds = new int[patients.size()];
+        List<SignalSeries.Snapshot[]> captured = new ArrayList<>();
+        for (Patient patient : patients) {
+            List<SignalSeries.Snapshot> snapshots = new ArrayList<>();
+            for (SignalSeries series : patient.allSeries()) {
+                if (series != null) {
+                    SignalSeries.Snapshot snapshot = series.snapshot();
+                    if (snapshot.size() > 0) {
+                        snapshots.add(snapshot);
+                    }
+                }
+            }
+            patientIds[captured.size()] = patient.getId();
+            captured.add(snapshots.toArray(new SignalSeries.Snapshot[0]));
+        }
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        long samples = 0;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ChannelOutput out = new ChannelOutput(channel);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(firstSegment);
+            int signals = SignalRegistry.count();
+            out.writeInt(signals);
+            for (int signalId = 0; signalId < signals; signalId++) {
+                byte[] label = SignalRegistry.nameOf(signalId).getBytes(StandardCharsets.UTF_8);
+                out.writeShort(label.length);
+                out.writeBytes(label);
+            }
+            out.writeInt(captured.size());
+            for (int p = 0; p < captured.size(); p++) {
+                SignalSeries.Snapshot[] snapshots = captured.get(p);
+                out.writeInt(patientIds[p]);
+                out.writeInt(snapshots.length);
+                for (SignalSeries.Snapshot snapshot : snapshots) {
+                    int size = snapshot.size();
+                    out.writeInt(snapshot.getSignalId());
+                    out.writeInt(size);
+                    long previous = 0;
+                    for (int i = 0; i < size; i++) {
+                        long timestamp = snapshot.timestampAt(i);
+                        out.writeVarLong(timestamp - previous);
+                        previous = timestamp;
+                    }
+                    for (int i = 0; i < size; i++) {
+                        out.writeDouble(snapshot.valueAt(i));
+                    }
+                    samples += size;
+                }
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return samples;
+    }
+
+    /**
+     * Loads a snapshot into the given storage.
+     *
+     * @return the number of the first journal segment not covered by the snapshot
+     */
+    static long read(Path file, DataStorage storage) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ChannelInput in = new ChannelInput(channel);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a storage snapshot: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            }
+            long firstSegment = in.readLong();
+            int[] signalIds = new int[in.readInt()];
+            for (int i = 0; i < signalIds.length; i++) {
+                String label = new String(in.readBytes(in.readShort()), StandardCharsets.UTF_8);
+                signalIds[i] = SignalRegistry.idOf(label);
+            }
+            long[] timestamps = new long[0];
+            double[] values = new double[0];
+            int patients = in.readInt();
+            for (int p = 0; p < patients; p++) {
+                Patient patient = storage.patient(in.readInt());
+                int seriesCount = in.readInt();
+                for (int s = 0; s < seriesCount; s++) {
+                    int signalId = signalIds[in.readInt()];
+                    int size = in.readInt();
+                    if (timestamps.length < size) {
+                        timestamps = new long[size];
+                        values = new double[size];
+                    }
+                    long previous = 0;
+                    for (int i = 0; i < size; i++) {
+                        previous += in.readVarLong();
+                        timestamps[i] = previous;
+                    }
+                    for (int i = 0; i < size; i++) {
+                        values[i] = in.readDouble();
+                    }
+                    patient.seriesFor(signalId).appendAll(timestamps, values, 0, size);
+                }
+            }
+            return firstSegment;
+        }
+    }
+}
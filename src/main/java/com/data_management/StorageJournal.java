@@ -0,0 +1,527 @@
+package com.data_management;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Makes a {@link DataStorage} durable with an append-only binary write-ahead
+ * log and periodic snapshots.
+ *
+ * <p>Every sample passed to {@link DataStorage#addPatientData} is encoded into
+ * an in-memory batch. A background thread writes the batch to the current log
+ * segment and forces it to disk every few milliseconds, so one fsync covers all
+ * samples that arrived in the meantime (group commit). {@link #sync()} waits
+ * until everything appended so far is on disk.
+ *
+ * <p>A checkpoint starts a new log segment, writes a snapshot of the storage
+ * and deletes the segments the snapshot covers. {@link #open} rebuilds the
+ * storage from the latest snapshot and replays the log segments written after
+ * it, skipping the samples of the segment written during the snapshot that
+ * the snapshot already holds.
+ *
+ * <p>Files in the journal directory:
+ * <ul>
+ *   <li>{@code wal-N.log}: magic, version, then batches of
+ *   {@code [length][crc32][entries]}. Entries either define a record type label
+ *   for the segment or hold one sample (patient ID, signal, timestamp, value).
+ *   A batch with a bad checksum ends replay of its segment.</li>
+ *   <li>{@code snapshot-N.bin}: see {@link SnapshotFile}; {@code N} is the first
+ *   segment not covered by the snapshot.</li>
+ * </ul>
+ */
+public class StorageJournal implements Closeable {
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 10;
+    public static final long DEFAULT_SNAPSHOT_INTERVAL_MILLIS = 5 * 60 * 1000;
+
+    private static final Logger logger = Logger.getLogger(StorageJournal.class.getName());
+    private static final int SEGMENT_MAGIC = 0x4357414C; // "CWAL"
+    private static final int VERSION = 1;
+    private static final byte DEFINE_SIGNAL = 1;
+    private static final byte SAMPLE = 2;
+    private static final int SAMPLE_BYTES = 1 + 4 + 2 + 8 + 8;
+    private static final int BATCH_HEADER_BYTES = 8;
+    private static final int BATCH_BYTES = 512 * 1024;
+
+    private final Path directory;
+    private final DataStorage storage;
+    private final ScheduledExecutorService scheduler;
+
+    // Appends fill the active buffer under the lock; flushes swap it out and write it under ioLock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Object ioLock = new Object();
+    private ByteBuffer active = ByteBuffer.allocate(BATCH_BYTES);
+    private ByteBuffer spare = ByteBuffer.allocate(BATCH_BYTES);
+    private Segment segment;
+    private boolean[] defined = new boolean[0]; // Signals whose label is in the current segment
+    private long appended;
+    private volatile long durable;
+    private volatile boolean closed;
+
+    private StorageJournal(Path directory, DataStorage storage, long firstSegment) throws IOException {
+        this.directory = directory;
+        this.storage = storage;
+        this.segment = openSegment(firstSegment);
+        this.scheduler = Executors.newScheduledThreadPool(2, task -> {
+            Thread thread = new Thread(task, "storage-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens the journal in the given directory with default flush and snapshot
+     * intervals. See {@link #open(Path, DataStorage, long, long)}.
+     *
+     * @param directory the journal directory, created if it does not exist
+     * @param storage   an empty storage to recover into and then journal
+     * @return the open journal
+     * @throws IOException if the journal cannot be read or created
+     */
+    public static StorageJournal open(Path directory, DataStorage storage) throws IOException {
+        return open(directory, storage, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_SNAPSHOT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens the journal in the given directory. Any data found there is first
+     * loaded into {@code storage}: the latest snapshot, then the log written
+     * after it. From then on every sample added to the storage is logged.
+     *
+     * @param directory              the journal directory, created if it does not
+     *                               exist
+     * @param storage                an empty storage to recover into and then
+     *                               journal
+     * @param flushIntervalMillis    how often pending samples are written and
+     *                               forced to disk
+     * @param snapshotIntervalMillis how often a checkpoint is taken, or
+     *                               {@code Long.MAX_VALUE} to only checkpoint on
+     *                               request
+     * @return the open journal
+     * @throws IOException if the journal cannot be read or created
+     */
+    public static StorageJournal open(Path directory, DataStorage storage, long flushIntervalMillis,
+                                      long snapshotIntervalMillis) throws IOException {
+        Files.createDirectories(directory);
+        long nextSegment = recover(directory, storage);
+        StorageJournal journal = new StorageJournal(directory, storage, nextSegment);
+        journal.scheduler.scheduleWithFixedDelay(journal::flushQuietly,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        if (snapshotIntervalMillis != Long.MAX_VALUE) {
+            journal.scheduler.scheduleWithFixedDelay(journal::checkpointQuietly,
+                    snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        storage.attachJournal(journal);
+        return journal;
+    }
+
+    /**
+     * Logs one sample. Called by {@link DataStorage} before the sample is
+     * applied; the storage reports the sample as applied on the returned
+     * segment afterwards.
+     */
+    Segment append(int patientId, int signalId, long timestamp, double value) {
+        lock.lock();
+        try {
+            int needed = SAMPLE_BYTES + defineBytes(signalId);
+            while (active.remaining() < needed) {
+                // Batch is full: write it out on this thread, which also applies backpressure
+                lock.unlock();
+                try {
+                    flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not write the storage journal", e);
+                } finally {
+                    lock.lock();
+                }
+                needed = SAMPLE_BYTES + defineBytes(signalId);
+            }
+            if (signalId >= defined.length || !defined[signalId]) {
+                byte[] label = SignalRegistry.nameOf(signalId).getBytes(StandardCharsets.UTF_8);
+                active.put(DEFINE_SIGNAL).putShort((short) signalId).putShort((short) label.length).put(label);
+                if (signalId >= defined.length) {
+                    defined = Arrays.copyOf(defined, SignalRegistry.count());
+                }
+                defined[signalId] = true;
+            }
+            active.put(SAMPLE).putInt(patientId).putShort((short) signalId).putLong(timestamp).putDouble(value);
+            appended++;
+            segment.logged++;
+            return segment;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until every sample logged so far has been forced to disk.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    public void sync() throws IOException {
+        long target;
+        lock.lock();
+        try {
+            target = appended;
+        } finally {
+            lock.unlock();
+        }
+        if (durable < target) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the storage and deletes the log segments and older
+     * snapshots it makes obsolete.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void checkpoint() throws IOException {
+        long start = System.nanoTime();
+        Segment previous = roll();
+        // Every sample logged to the old segments must be in the storage before it is captured
+        while (previous.applied.sum() < previous.logged) {
+            Thread.yield();
+        }
+        long firstSegment = previous.number + 1;
+        long samples = SnapshotFile.write(directory.resolve(snapshotName(firstSegment)), firstSegment,
+                storage.getAllPatients());
+        for (long number : list(directory, "snapshot-", ".bin")) {
+            if (number < firstSegment) {
+                Files.deleteIfExists(directory.resolve(snapshotName(number)));
+            }
+        }
+        for (long number : list(directory, "wal-", ".log")) {
+            if (number < firstSegment) {
+                Files.deleteIfExists(directory.resolve(segmentName(number)));
+            }
+        }
+        logger.info(String.format("Checkpoint of %d samples written in %d ms", samples,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+
+    /**
+     * Stops the background threads, forces all pending samples to disk and
+     * detaches the journal from the storage.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        storage.detachJournal(this);
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (ioLock) {
+            flush();
+            segment.channel.close();
+        }
+    }
+
+    private int defineBytes(int signalId) {
+        if (signalId < defined.length && defined[signalId]) {
+            return 0;
+        }
+        return 5 + SignalRegistry.nameOf(signalId).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private void flush() throws IOException {
+        synchronized (ioLock) {
+            ByteBuffer pending;
+            long upTo;
+            Segment target;
+            lock.lock();
+            try {
+                if (active.position() == 0) {
+                    return;
+                }
+                pending = active;
+                active = spare;
+                spare = pending;
+                upTo = appended;
+                target = segment;
+            } finally {
+                lock.unlock();
+            }
+            writeBatch(target.channel, pending);
+            durable = upTo;
+        }
+    }
+
+    /**
+     * Starts a new log segment, writing the samples still pending to the old
+     * one, and returns the old segment. The new segment is created and forced
+     * to disk before appends are held up, only to switch to it.
+     */
+    private Segment roll() throws IOException {
+        synchronized (ioLock) {
+            ByteBuffer pending;
+            long upTo;
+            Segment previous;
+            Segment next = openSegment(segment.number + 1); // Only rolls, under ioLock, replace the segment
+            lock.lock();
+            try {
+                previous = segment;
+                segment = next;
+                defined = new boolean[0];
+                pending = active;
+                active = spare;
+                spare = pending;
+                upTo = appended;
+            } finally {
+                lock.unlock();
+            }
+            if (pending.position() > 0) {
+                writeBatch(previous.channel, pending);
+            }
+            previous.channel.close();
+            durable = upTo;
+            return previous;
+        }
+    }
+
+    private static void writeBatch(FileChannel channel, ByteBuffer payload) throws IOException {
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER_BYTES);
+        header.putInt(payload.remaining()).putInt((int) crc.getValue()).flip();
+        ByteBuffer[] batch = {header, payload};
+        while (payload.hasRemaining()) {
+            channel.write(batch);
+        }
+        channel.force(false);
+        payload.clear();
+    }
+
+    private Segment openSegment(long number) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(segmentName(number)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(SEGMENT_MAGIC).putInt(VERSION).flip();
+        channel.write(header);
+        channel.force(true);
+        return new Segment(number, channel);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Could not flush the storage journal", e);
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Could not write a storage snapshot", e);
+        }
+    }
+
+    /**
+     * Loads the latest snapshot and replays the log written after it.
+     *
+     * @return the number to give the next log segment
+     */
+    private static long recover(Path directory, DataStorage storage) throws IOException {
+        long start = System.nanoTime();
+        List<Long> snapshots = list(directory, "snapshot-", ".bin");
+        long firstSegment = 0;
+        if (!snapshots.isEmpty()) {
+            long latest = snapshots.get(snapshots.size() - 1);
+            firstSegment = SnapshotFile.read(directory.resolve(snapshotName(latest)), storage);
+        }
+        long nextSegment = firstSegment;
+        long replayed = 0;
+        for (long number : list(directory, "wal-", ".log")) {
+            if (number == firstSegment && !snapshots.isEmpty()) {
+                // The latest snapshot was taken while this segment was written
+                replayed += replay(directory.resolve(segmentName(number)), new SnapshotOverlap(storage));
+            } else if (number >= firstSegment) {
+                replayed += replay(directory.resolve(segmentName(number)), (patientId, signalId, timestamp, value) ->
+                        storage.patient(patientId).seriesFor(signalId).append(timestamp, value));
+            }
+            nextSegment = Math.max(nextSegment, number + 1);
+        }
+        if (!snapshots.isEmpty() || replayed > 0) {
+            logger.info(String.format("Recovered storage from %s in %d ms, replayed %d logged samples",
+                    directory, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), replayed));
+        }
+        return nextSegment;
+    }
+
+    /**
+     * Replays the segment that was written while the latest snapshot was
+     * taken, so the snapshot may hold some of its samples already. Those were
+     * captured before the snapshot read their series, so none is newer than
+     * the newest sample the snapshot holds of the series: later samples are
+     * appended as they are, and only the ones up to that high-water mark are
+     * looked up in the series first.
+     */
+    private static final class SnapshotOverlap implements RecordListener {
+        private final DataStorage storage;
+        // The newest snapshot timestamp of each series replayed, by patient ID and signal ID
+        private final Map<Long, Long> highWaterMarks = new HashMap<>();
+
+        SnapshotOverlap(DataStorage storage) {
+            this.storage = storage;
+        }
+
+        @Override
+        public void recordAdded(int patientId, int signalId, long timestamp, double value) {
+            SignalSeries series = storage.patient(patientId).seriesFor(signalId);
+            long key = (long) patientId << 32 | signalId;
+            Long highWaterMark = highWaterMarks.get(key);
+            if (highWaterMark == null) {
+                // Nothing of this segment is in the series yet, so its newest sample is the snapshot's
+                highWaterMark = series.newestTimestamp();
+                highWaterMarks.put(key, highWaterMark);
+            }
+            if (timestamp > highWaterMark || !series.contains(timestamp, value)) {
+                series.append(timestamp, value);
+            }
+        }
+    }
+
+    /**
+     * Reads every sample in the log segments of a journal directory, in the
+     * order they were logged, without loading them into a storage. Snapshots
+     * are not read, so this covers what was logged since the oldest segment
+     * still in the directory; a journal kept without checkpoints holds a
+     * complete capture.
+     *
+     * @param directory the journal directory
+     * @param sink      receives each sample
+     * @return the number of samples read
+     * @throws IOException if a segment cannot be read
+     */
+    public static long readLog(Path directory, RecordListener sink) throws IOException {
+        long samples = 0;
+        for (long number : list(directory, "wal-", ".log")) {
+            samples += replay(directory.resolve(segmentName(number)), sink);
+        }
+        return samples;
+    }
+
+    private static long replay(Path file, RecordListener sink) throws IOException {
+        long samples = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ChannelInput in = new ChannelInput(channel);
+            if (!in.request(8) || in.readInt() != SEGMENT_MAGIC || in.readInt() != VERSION) {
+                logger.warning("Skipping unreadable journal segment " + file);
+                return 0;
+            }
+            int[] signalIds = new int[0]; // Journal signal number to registry ID, for this segment
+            while (in.request(BATCH_HEADER_BYTES)) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > BATCH_BYTES || !in.request(length)) {
+                    logger.warning("Journal segment " + file + " ends with a partial batch");
+                    break;
+                }
+                ByteBuffer batch = in.require(length);
+                ByteBuffer entries = batch.slice();
+                entries.limit(length);
+                CRC32 crc = new CRC32();
+                crc.update(entries.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    logger.warning("Journal segment " + file + " has a corrupt batch, ignoring the rest");
+                    break;
+                }
+                batch.position(batch.position() + length);
+                while (entries.hasRemaining()) {
+                    byte tag = entries.get();
+                    if (tag == DEFINE_SIGNAL) {
+                        int number = entries.getShort();
+                        byte[] label = new byte[entries.getShort()];
+                        entries.get(label);
+                        if (number >= signalIds.length) {
+                            signalIds = Arrays.copyOf(signalIds, number + 1);
+                        }
+                        signalIds[number] = SignalRegistry.idOf(new String(label, StandardCharsets.UTF_8));
+                    } else if (tag == SAMPLE) {
+                        int patientId = entries.getInt();
+                        int signalId = signalIds[entries.getShort()];
+                        long timestamp = entries.getLong();
+                        double value = entries.getDouble();
+                        sink.recordAdded(patientId, signalId, timestamp, value);
+                        samples++;
+                    } else {
+                        throw new IOException("Unknown journal entry " + tag + " in " + file);
+                    }
+                }
+            }
+        }
+        return samples;
+    }
+
+    private static List<Long> list(Path directory, String prefix, String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    numbers.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    logger.warning("Ignoring unexpected file in journal directory: " + file);
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private static String segmentName(long number) {
+        return String.format("wal-%016d.log", number);
+    }
+
+    private static String snapshotName(long number) {
+        return String.format("snapshot-%016d.bin", number);
+    }
+
+    /**
+     * A log segment, with the number of samples logged to it and the number the
+     * storage has applied so far.
+     */
+    static final class Segment {
+        final long number;
+        final FileChannel channel;
+        long logged; // Guarded by the journal lock
+        final LongAdder applied = new LongAdder();
+
+        Segment(long number, FileChannel channel) {
+            this.number = number;
+            this.channel = channel;
+        }
+    }
+}